@@ -0,0 +1,161 @@
+/**
+ * 
+ */
+package org.mcisb.subliminal.balance;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.mcisb.math.linearprogramming.*;
+import org.mcisb.ontology.sbo.*;
+import org.sbml.jsbml.*;
+
+/**
+ * Compares the time taken to solve the balancing problems of the test
+ * fixtures with the pure-Java BranchAndBoundSolver, selected for problems of
+ * up to SelectingSolver.MAX_INTEGER_COLUMNS integer columns, against
+ * MixedIntegerLinearProgrammingSolver alone, and checks that both find the
+ * same problems solvable. Where a problem has tied optima, the backends may
+ * return different solutions, so only solvability is compared.
+ * 
+ * ReactionBalancer creates each thread's solver on first use, so each backend
+ * is measured on a new thread with the property set accordingly. The
+ * balancing cache is disabled so that every problem is solved.
+ * 
+ * Built with the benchmark profile (mvn -Pbenchmark test-compile) and run
+ * from the test classpath.
+ * 
+ * Usage: SolverBackendBenchmark [repeats]
+ * 
+ * @author Neil Swainston
+ */
+public class SolverBackendBenchmark
+{
+	/**
+	 * 
+	 */
+	private static final int MAX_STOICHIOMETRIC_COEFFICIENT = 8;
+
+	/**
+	 * 
+	 */
+	private static final String[] RESOURCES = { "org/mcisb/subliminal/balance/balance.xml", "org/mcisb/subliminal/balance/R_LPS2.xml" }; //$NON-NLS-1$ //$NON-NLS-2$
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main( String[] args ) throws Exception
+	{
+		System.setProperty( BalancingCache.CACHE_SIZE, "0" ); //$NON-NLS-1$
+
+		final int repeats = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 20;
+		final SbmlReactionBalancer balancer = new SbmlReactionBalancer();
+		final List<ReactionBalancer> reactionBalancers = new ArrayList<>();
+
+		for( String resource : RESOURCES )
+		{
+			final Model model = SBMLReader.read( SolverBackendBenchmark.class.getClassLoader().getResourceAsStream( resource ) ).getModel();
+
+			for( int l = 0; l < model.getNumReactions(); l++ )
+			{
+				final Reaction reaction = model.getReaction( l );
+
+				try
+				{
+					if( reaction.getSBOTerm() != SboUtils.OMITTED_PROCESS )
+					{
+						reactionBalancers.add( balancer.getReactionBalancer( model, reaction, MAX_STOICHIOMETRIC_COEFFICIENT ) );
+					}
+				}
+				catch( NoFormulaException e )
+				{
+					// Not balanced, so not measured.
+				}
+			}
+		}
+
+		final long milpSolves = ReactionBalancer.getMilpSolveCount();
+		final Object[] glpk = time( reactionBalancers, 0, repeats );
+		final int count = (int)( ( ReactionBalancer.getMilpSolveCount() - milpSolves ) / repeats );
+		final Object[] java = time( reactionBalancers, Integer.MAX_VALUE, repeats );
+
+		final List<?> glpkSolutions = (List<?>)glpk[ 1 ];
+		final List<?> javaSolutions = (List<?>)java[ 1 ];
+		int differences = 0;
+
+		for( int i = 0; i < reactionBalancers.size(); i++ )
+		{
+			if( ( glpkSolutions.get( i ) == null ) != ( javaSolutions.get( i ) == null ) )
+			{
+				differences++;
+			}
+		}
+
+		final long glpkNanos = ( (Long)glpk[ 0 ] ).longValue();
+		final long javaNanos = ( (Long)java[ 0 ] ).longValue();
+		final int perSolve = Math.max( 1, count );
+		System.out.println( reactionBalancers.size() + " reactions, " + count + " solved by MILP" ); //$NON-NLS-1$ //$NON-NLS-2$
+		System.out.println( "MixedIntegerLinearProgrammingSolver:\t" + TimeUnit.NANOSECONDS.toMillis( glpkNanos ) + " ms\t" + TimeUnit.NANOSECONDS.toMicros( glpkNanos / perSolve ) + " us per MILP" ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		System.out.println( "BranchAndBoundSolver:\t" + TimeUnit.NANOSECONDS.toMillis( javaNanos ) + " ms\t" + TimeUnit.NANOSECONDS.toMicros( javaNanos / perSolve ) + " us per MILP" ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		System.out.println( "Reactions solved by only one backend:\t" + differences ); //$NON-NLS-1$
+	}
+
+	/**
+	 * 
+	 * @param reactionBalancers
+	 * @param maxIntegerColumns
+	 * @param repeats
+	 * @return Object[] of the fastest time, in nanoseconds, and the solutions
+	 * @throws Exception
+	 */
+	private static Object[] time( final List<ReactionBalancer> reactionBalancers, final int maxIntegerColumns, final int repeats ) throws Exception
+	{
+		System.setProperty( SelectingSolver.MAX_INTEGER_COLUMNS, Integer.toString( maxIntegerColumns ) );
+
+		final ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+		try
+		{
+			return executorService.submit( new Callable<Object[]>()
+			{
+				/*
+				 * (non-Javadoc)
+				 * 
+				 * @see java.util.concurrent.Callable#call()
+				 */
+				@Override
+				public Object[] call()
+				{
+					try
+					{
+						final List<double[]> solutions = new ArrayList<>();
+						long fastest = Long.MAX_VALUE;
+
+						for( int i = 0; i < repeats; i++ )
+						{
+							solutions.clear();
+							final long start = System.nanoTime();
+
+							for( ReactionBalancer reactionBalancer : reactionBalancers )
+							{
+								solutions.add( reactionBalancer.solve() );
+							}
+
+							fastest = Math.min( fastest, System.nanoTime() - start );
+						}
+
+						return new Object[] { Long.valueOf( fastest ), solutions };
+					}
+					finally
+					{
+						ReactionBalancer.releaseSolver();
+					}
+				}
+			} ).get();
+		}
+		finally
+		{
+			executorService.shutdown();
+		}
+	}
+}
@@ -15,9 +15,14 @@ import java.util.*;
 import org.gnu.glpk.*;
 
 /**
+ * A solver is a session: the native index and value buffers passed to GLPK are
+ * allocated once, grown to the largest problem seen, and reused by every
+ * subsequent solve until the solver is closed. A solver is therefore not
+ * thread-safe.
+ * 
  * @author Neil Swainston
  */
-public abstract class AbstractLinearProgrammingSolver
+public abstract class AbstractLinearProgrammingSolver implements Solver
 {
 	/**
 	 * 
@@ -39,6 +44,36 @@ public abstract class AbstractLinearProgrammingSolver
 	 */
 	private final boolean output;
 
+	/**
+	 * 
+	 */
+	private SWIGTYPE_p_int rowIndices = null;
+
+	/**
+	 * 
+	 */
+	private SWIGTYPE_p_int columnIndices = null;
+
+	/**
+	 * 
+	 */
+	private SWIGTYPE_p_double values = null;
+
+	/**
+	 * Number of elements held by each buffer, including the unused element 0.
+	 */
+	private int capacity = 0;
+
+	/**
+	 * 
+	 */
+	private boolean closed = false;
+
+	/**
+	 * 
+	 */
+	private SolveResult lastResult = null;
+
 	/**
 	 * 
 	 * @param defaultColumnKind
@@ -82,9 +117,155 @@ public abstract class AbstractLinearProgrammingSolver
 	 */
 	public double[] solve( final double[][] matrix, final String[] columnIds, final int[] columnKinds, final double[] rowBounds, final double[] lowerBounds, final double[] upperBounds, final double[] objectiveCoefficients )
 	{
+		return solve( new SparseMatrix( matrix, columnIds.length ), columnIds, columnKinds, rowBounds, lowerBounds, upperBounds, objectiveCoefficients );
+	}
+
+	/**
+	 * 
+	 * @param matrix
+	 * @param columnIds
+	 * @param rowBounds
+	 * @param lowerBounds
+	 * @param upperBounds
+	 * @param objectiveCoefficients
+	 * @return double[]
+	 */
+	public double[] solve( final SparseMatrix matrix, final String[] columnIds, final double[] rowBounds, final double[] lowerBounds, final double[] upperBounds, final double[] objectiveCoefficients )
+	{
+		final int[] columnKinds = new int[ columnIds.length ];
+		Arrays.fill( columnKinds, defaultColumnKind );
+		return solve( matrix, columnIds, columnKinds, rowBounds, lowerBounds, upperBounds, objectiveCoefficients );
+	}
+
+	/**
+	 * Only the non-zero elements of the matrix are passed to GLPK. Column bounds
+	 * may be infinite, and equal bounds fix the column.
+	 * 
+	 * @param matrix
+	 * @param columnIds
+	 * @param columnKinds
+	 * @param rowBounds
+	 * @param lowerBounds
+	 * @param upperBounds
+	 * @param objectiveCoefficients
+	 * @return double[]
+	 */
+	public double[] solve( final SparseMatrix matrix, final String[] columnIds, final int[] columnKinds, final double[] rowBounds, final double[] lowerBounds, final double[] upperBounds, final double[] objectiveCoefficients )
+	{
+		checkOpen();
+
 		// Create problem
 		final glp_prob lp = GLPK.glp_create_prob();
 
+		try
+		{
+			load( lp, matrix, columnIds, columnKinds, rowBounds, lowerBounds, upperBounds, objectiveCoefficients );
+			return getSolution( lp );
+		}
+		finally
+		{
+			// free memory
+			GLPK.glp_delete_prob( lp );
+		}
+	}
+
+	/**
+	 * 
+	 * @param matrix
+	 * @param columnIds
+	 * @param rowBounds
+	 * @param lowerBounds
+	 * @param upperBounds
+	 * @param objectiveCoefficients
+	 * @return LinearProblem
+	 */
+	public LinearProblem createProblem( final SparseMatrix matrix, final String[] columnIds, final double[] rowBounds, final double[] lowerBounds, final double[] upperBounds, final double[] objectiveCoefficients )
+	{
+		final int[] columnKinds = new int[ columnIds.length ];
+		Arrays.fill( columnKinds, defaultColumnKind );
+		return createProblem( matrix, columnIds, columnKinds, rowBounds, lowerBounds, upperBounds, objectiveCoefficients );
+	}
+
+	/**
+	 * Loads a problem that is kept, so that its bounds and objective may be
+	 * changed and it may be solved again without being rebuilt. The problem
+	 * must be closed, and may not be used once this solver is closed.
+	 * 
+	 * @param matrix
+	 * @param columnIds
+	 * @param columnKinds
+	 * @param rowBounds
+	 * @param lowerBounds
+	 * @param upperBounds
+	 * @param objectiveCoefficients
+	 * @return LinearProblem
+	 */
+	public LinearProblem createProblem( final SparseMatrix matrix, final String[] columnIds, final int[] columnKinds, final double[] rowBounds, final double[] lowerBounds, final double[] upperBounds, final double[] objectiveCoefficients )
+	{
+		checkOpen();
+
+		final glp_prob lp = GLPK.glp_create_prob();
+
+		try
+		{
+			load( lp, matrix, columnIds, columnKinds, rowBounds, lowerBounds, upperBounds, objectiveCoefficients );
+			return new LinearProblem( this, lp );
+		}
+		catch( RuntimeException e )
+		{
+			GLPK.glp_delete_prob( lp );
+			throw e;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.mcisb.math.linearprogramming.Solver#getLastResult()
+	 */
+	@Override
+	public SolveResult getLastResult()
+	{
+		return lastResult;
+	}
+
+	/**
+	 * Frees the native buffers. The solver may not be used afterwards.
+	 */
+	@Override
+	public void close()
+	{
+		if( !closed )
+		{
+			closed = true;
+			freeBuffers();
+		}
+	}
+
+	/**
+	 * 
+	 */
+	void checkOpen()
+	{
+		if( closed )
+		{
+			throw new IllegalStateException( "Solver closed" ); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * 
+	 * @param lp
+	 * @param matrix
+	 * @param columnIds
+	 * @param columnKinds
+	 * @param rowBounds
+	 * @param lowerBounds
+	 * @param upperBounds
+	 * @param objectiveCoefficients
+	 */
+	private void load( final glp_prob lp, final SparseMatrix matrix, final String[] columnIds, final int[] columnKinds, final double[] rowBounds, final double[] lowerBounds, final double[] upperBounds, final double[] objectiveCoefficients )
+	{
 		if( !output )
 		{
 			GLPK.glp_term_out( GLPKConstants.GLP_OFF );
@@ -98,30 +279,31 @@ public abstract class AbstractLinearProgrammingSolver
 		{
 			GLPK.glp_set_col_name( lp, i + 1, columnIds[ i ].length() > MAX_COLUMN_NAME_LENGTH ? columnIds[ i ].substring( 0, MAX_COLUMN_NAME_LENGTH ) : columnIds[ i ] );
 			GLPK.glp_set_col_kind( lp, i + 1, columnKinds[ i ] );
-			GLPK.glp_set_col_bnds( lp, i + 1, GLPKConstants.GLP_DB, lowerBounds[ i ], upperBounds[ i ] );
+			GLPK.glp_set_col_bnds( lp, i + 1, LinearProblem.getBoundsType( lowerBounds[ i ], upperBounds[ i ] ), lowerBounds[ i ], upperBounds[ i ] );
 		}
 
 		// Create constraints
-		final int rowCount = matrix.length;
+		final int rowCount = matrix.getRowCount();
 		GLPK.glp_add_rows( lp, rowCount );
 
 		for( int i = 0; i < rowCount; i++ )
 		{
 			GLPK.glp_set_row_bnds( lp, i + 1, GLPKConstants.GLP_FX, rowBounds[ i ], rowBounds[ i ] );
+		}
 
-			final double[] row = matrix[ i ];
-			final SWIGTYPE_p_int ind = GLPK.new_intArray( columnCount + 1 );
-			final SWIGTYPE_p_double val = GLPK.new_doubleArray( columnCount + 1 );
-
-			for( int j = 0; j < columnCount; j++ )
-			{
-				GLPK.intArray_setitem( ind, j + 1, j + 1 );
-				GLPK.doubleArray_setitem( val, j + 1, row[ j ] );
-			}
+		// Load non-zero elements, as 1-based (row, column, value) triplets:
+		final int nonZeroCount = matrix.getNonZeroCount();
+		ensureCapacity( nonZeroCount + 1 );
 
-			GLPK.glp_set_mat_row( lp, i + 1, columnCount, ind, val );
+		for( int k = 0; k < nonZeroCount; k++ )
+		{
+			GLPK.intArray_setitem( rowIndices, k + 1, matrix.getRow( k ) + 1 );
+			GLPK.intArray_setitem( columnIndices, k + 1, matrix.getColumn( k ) + 1 );
+			GLPK.doubleArray_setitem( values, k + 1, matrix.getValue( k ) );
 		}
 
+		GLPK.glp_load_matrix( lp, nonZeroCount, rowIndices, columnIndices, values );
+
 		// Define objective
 		GLPK.glp_set_obj_dir( lp, GLPKConstants.GLP_MIN );
 
@@ -129,13 +311,35 @@ public abstract class AbstractLinearProgrammingSolver
 		{
 			GLPK.glp_set_obj_coef( lp, i + 1, objectiveCoefficients[ i ] );
 		}
+	}
+
+	/**
+	 * Solves a loaded problem, and records its SolveResult. Iterations are
+	 * counted from the problem's iteration count before the solve, as that of
+	 * a LinearProblem accumulates over its solves. Nodes are always UNKNOWN,
+	 * as GLPK does not report them.
+	 * 
+	 * @param lp
+	 * @return double[], or null if no solution was found
+	 */
+	double[] getSolution( final glp_prob lp )
+	{
+		if( !output )
+		{
+			GLPK.glp_term_out( GLPKConstants.GLP_OFF );
+		}
+
+		final int columnCount = GLPK.glp_get_num_cols( lp );
 
 		// Solve model and retrieve solution
 		double[] solution = null;
 
-		// if( returnValue == 0 && GLPK.glp_mip_status( lp ) ==
-		// GLPKConstants.GLP_OPT )
-		if( solve( lp ) )
+		final int iterationCount = GLPK.glp_get_it_cnt( lp );
+		final long start = System.nanoTime();
+		final SolveResult.Status status = solve( lp );
+		final long nanos = System.nanoTime() - start;
+
+		if( status == SolveResult.Status.OPTIMAL )
 		{
 			if( output )
 			{
@@ -150,12 +354,46 @@ public abstract class AbstractLinearProgrammingSolver
 			}
 		}
 
-		// free memory
-		GLPK.glp_delete_prob( lp );
-
+		lastResult = new SolveResult( status, GLPK.glp_get_it_cnt( lp ) - iterationCount, SolveResult.UNKNOWN, nanos, solution == null ? Double.NaN : getObjectiveVal( lp ) );
+		SolverMetrics.getInstance().record( getClass().getSimpleName(), lastResult );
 		return solution;
 	}
 
+	/**
+	 * Grows the buffers, if required, to hold at least size elements.
+	 * 
+	 * @param size
+	 */
+	private void ensureCapacity( final int size )
+	{
+		if( size > capacity )
+		{
+			final int newCapacity = Math.max( size, 2 * capacity );
+			freeBuffers();
+			rowIndices = GLPK.new_intArray( newCapacity );
+			columnIndices = GLPK.new_intArray( newCapacity );
+			values = GLPK.new_doubleArray( newCapacity );
+			capacity = newCapacity;
+		}
+	}
+
+	/**
+	 * 
+	 */
+	private void freeBuffers()
+	{
+		if( rowIndices != null )
+		{
+			GLPK.delete_intArray( rowIndices );
+			GLPK.delete_intArray( columnIndices );
+			GLPK.delete_doubleArray( values );
+			rowIndices = null;
+			columnIndices = null;
+			values = null;
+			capacity = 0;
+		}
+	}
+
 	/**
 	 * 
 	 * @param lp
@@ -177,9 +415,10 @@ public abstract class AbstractLinearProgrammingSolver
 	/**
 	 * 
 	 * @param lp
-	 * @return boolean
+	 * @return SolveResult.Status, which is OPTIMAL only if a solution may be
+	 *         read
 	 */
-	protected abstract boolean solve( final glp_prob lp );
+	protected abstract SolveResult.Status solve( final glp_prob lp );
 
 	/**
 	 * 
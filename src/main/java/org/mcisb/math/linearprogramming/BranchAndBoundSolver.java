@@ -0,0 +1,305 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.math.linearprogramming;
+
+import java.util.*;
+import org.gnu.glpk.*;
+
+/**
+ * Pure-Java backend for small mixed integer problems, such as those of
+ * reaction balancing, which avoids the native call, problem setup and
+ * presolve of GLPK. LP relaxations are solved by a dense simplex and searched
+ * depth first, branching on the most fractional integer column, so it is
+ * suited to problems of a few tens of columns only.
+ * 
+ * A solve gives up, and returns null with isLimitReached() true, if the
+ * optimum is not proven within the node limit, or if a relaxation cannot be
+ * solved, including one whose infeasibility is within the simplex's numerical
+ * tolerances, as its node cannot then be pruned safely. INFEASIBLE is
+ * returned only if every node is proven infeasible.
+ * 
+ * @author Neil Swainston
+ */
+public class BranchAndBoundSolver implements Solver
+{
+	/**
+	 * 
+	 */
+	public static final int DEFAULT_MAX_NODES = 10000;
+
+	/**
+	 * 
+	 */
+	private static final double INTEGER_EPSILON = 1e-6;
+
+	/**
+	 * 
+	 */
+	private static final double OBJECTIVE_EPSILON = 1e-9;
+
+	/**
+	 * 
+	 */
+	private final int defaultColumnKind;
+
+	/**
+	 * 
+	 */
+	private final int maxNodes;
+
+	/**
+	 * 
+	 */
+	private SolveResult lastResult = null;
+
+	/**
+	 * 
+	 * @param defaultColumnKind
+	 */
+	public BranchAndBoundSolver( final int defaultColumnKind )
+	{
+		this( defaultColumnKind, DEFAULT_MAX_NODES );
+	}
+
+	/**
+	 * 
+	 * @param defaultColumnKind
+	 * @param maxNodes
+	 */
+	public BranchAndBoundSolver( final int defaultColumnKind, final int maxNodes )
+	{
+		this.defaultColumnKind = defaultColumnKind;
+		this.maxNodes = maxNodes;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.mcisb.math.linearprogramming.Solver#solve(org.mcisb.math.linearprogramming
+	 * .SparseMatrix, java.lang.String[], double[], double[], double[],
+	 * double[])
+	 */
+	@Override
+	public double[] solve( final SparseMatrix matrix, final String[] columnIds, final double[] rowBounds, final double[] lowerBounds, final double[] upperBounds, final double[] objectiveCoefficients )
+	{
+		final int[] columnKinds = new int[ columnIds.length ];
+		Arrays.fill( columnKinds, defaultColumnKind );
+		return solve( matrix, columnIds, columnKinds, rowBounds, lowerBounds, upperBounds, objectiveCoefficients );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.mcisb.math.linearprogramming.Solver#solve(org.mcisb.math.linearprogramming
+	 * .SparseMatrix, java.lang.String[], int[], double[], double[], double[],
+	 * double[])
+	 */
+	@Override
+	public double[] solve( final SparseMatrix matrix, final String[] columnIds, final int[] columnKinds, final double[] rowBounds, final double[] lowerBounds, final double[] upperBounds, final double[] objectiveCoefficients )
+	{
+		final long start = System.nanoTime();
+		final int m = matrix.getRowCount();
+		final int n = columnIds.length;
+		final double[][] a = new double[ m ][ n ];
+
+		for( int k = 0; k < matrix.getNonZeroCount(); k++ )
+		{
+			a[ matrix.getRow( k ) ][ matrix.getColumn( k ) ] = matrix.getValue( k );
+		}
+
+		final double[] c = new double[ n ];
+		System.arraycopy( objectiveCoefficients, 0, c, 0, Math.min( n, objectiveCoefficients.length ) );
+
+		final boolean[] isInteger = new boolean[ n ];
+		final double[] lower = new double[ n ];
+		final double[] upper = new double[ n ];
+
+		for( int j = 0; j < n; j++ )
+		{
+			isInteger[ j ] = columnKinds[ j ] != GLPKConstants.GLP_CV;
+			lower[ j ] = columnKinds[ j ] == GLPKConstants.GLP_BV ? Math.max( lowerBounds[ j ], 0 ) : lowerBounds[ j ];
+			upper[ j ] = columnKinds[ j ] == GLPKConstants.GLP_BV ? Math.min( upperBounds[ j ], 1 ) : upperBounds[ j ];
+
+			if( isInteger[ j ] )
+			{
+				lower[ j ] = lower[ j ] > -DenseSimplex.INFINITY ? Math.ceil( lower[ j ] - INTEGER_EPSILON ) : lower[ j ];
+				upper[ j ] = upper[ j ] < DenseSimplex.INFINITY ? Math.floor( upper[ j ] + INTEGER_EPSILON ) : upper[ j ];
+			}
+		}
+
+		final DenseSimplex simplex = new DenseSimplex( a, rowBounds.clone(), c );
+		final Deque<double[][]> nodes = new ArrayDeque<>();
+		nodes.push( new double[][] { lower, upper } );
+
+		double[] best = null;
+		double bestObjective = Double.POSITIVE_INFINITY;
+		SolveResult.Status status = null;
+		int nodeCount = 0;
+
+		while( !nodes.isEmpty() && status == null )
+		{
+			if( nodeCount == maxNodes )
+			{
+				status = SolveResult.Status.NODE_LIMIT;
+				continue;
+			}
+
+			nodeCount++;
+
+			final double[][] node = nodes.pop();
+			final double[] x = simplex.solve( node[ 0 ], node[ 1 ] );
+
+			if( x == null )
+			{
+				if( simplex.getStatus() == DenseSimplex.UNBOUNDED )
+				{
+					status = SolveResult.Status.UNBOUNDED;
+				}
+				else if( simplex.getStatus() == DenseSimplex.ITERATION_LIMIT )
+				{
+					status = SolveResult.Status.ITERATION_LIMIT;
+				}
+				else if( simplex.getStatus() == DenseSimplex.NUMERICAL )
+				{
+					status = SolveResult.Status.FAILED;
+				}
+
+				continue;
+			}
+
+			final double objective = getObjective( c, x );
+
+			if( objective >= bestObjective - OBJECTIVE_EPSILON * ( 1 + Math.abs( bestObjective ) ) )
+			{
+				continue;
+			}
+
+			// Branch on the most fractional integer column:
+			int branchColumn = -1;
+			double maxFraction = INTEGER_EPSILON;
+
+			for( int j = 0; j < n; j++ )
+			{
+				if( isInteger[ j ] )
+				{
+					final double fraction = Math.abs( x[ j ] - Math.rint( x[ j ] ) );
+
+					if( fraction > maxFraction )
+					{
+						maxFraction = fraction;
+						branchColumn = j;
+					}
+				}
+			}
+
+			if( branchColumn == -1 )
+			{
+				best = x;
+				bestObjective = objective;
+				continue;
+			}
+
+			final double value = x[ branchColumn ];
+			final double[][] down = new double[][] { node[ 0 ], node[ 1 ].clone() };
+			final double[][] up = new double[][] { node[ 0 ].clone(), node[ 1 ] };
+			down[ 1 ][ branchColumn ] = Math.floor( value );
+			up[ 0 ][ branchColumn ] = Math.ceil( value );
+
+			// Explore the nearer branch first:
+			if( value - Math.floor( value ) < 0.5 )
+			{
+				nodes.push( up );
+				nodes.push( down );
+			}
+			else
+			{
+				nodes.push( down );
+				nodes.push( up );
+			}
+		}
+
+		if( status == null )
+		{
+			status = best == null ? SolveResult.Status.INFEASIBLE : SolveResult.Status.OPTIMAL;
+		}
+
+		lastResult = new SolveResult( status, simplex.getIterations(), nodeCount, System.nanoTime() - start, status == SolveResult.Status.OPTIMAL ? bestObjective : Double.NaN );
+		SolverMetrics.getInstance().record( getClass().getSimpleName(), lastResult );
+
+		if( status != SolveResult.Status.OPTIMAL )
+		{
+			return null;
+		}
+
+		for( int j = 0; j < n; j++ )
+		{
+			if( isInteger[ j ] || Math.abs( best[ j ] - Math.rint( best[ j ] ) ) < OBJECTIVE_EPSILON )
+			{
+				// Adding zero normalises -0.0:
+				best[ j ] = Math.rint( best[ j ] ) + 0.0;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * 
+	 * @return whether the last solve gave up before proving an optimum
+	 */
+	public boolean isLimitReached()
+	{
+		return lastResult != null && lastResult.getStatus() != SolveResult.Status.OPTIMAL && lastResult.getStatus() != SolveResult.Status.INFEASIBLE;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.mcisb.math.linearprogramming.Solver#getLastResult()
+	 */
+	@Override
+	public SolveResult getLastResult()
+	{
+		return lastResult;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.mcisb.math.linearprogramming.Solver#close()
+	 */
+	@Override
+	public void close()
+	{
+		// No resources are held.
+	}
+
+	/**
+	 * 
+	 * @param c
+	 * @param x
+	 * @return double
+	 */
+	private static double getObjective( final double[] c, final double[] x )
+	{
+		double objective = 0;
+
+		for( int j = 0; j < c.length; j++ )
+		{
+			objective += c[ j ] * x[ j ];
+		}
+
+		return objective;
+	}
+}
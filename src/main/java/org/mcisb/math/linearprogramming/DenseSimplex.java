@@ -0,0 +1,469 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.math.linearprogramming;
+
+/**
+ * Two-phase, bounded-variable primal simplex on a dense tableau, for the LP
+ * relaxations of small problems. Minimises c.x subject to A.x = b and
+ * lower <= x <= upper, where bounds whose magnitude is at least INFINITY are
+ * taken to be infinite. Bland's rule is used throughout, so that degenerate
+ * problems cannot cycle.
+ * 
+ * The constraints are fixed on construction; each solve takes new column
+ * bounds, so that branch and bound may re-solve with tightened bounds.
+ * 
+ * @author Neil Swainston
+ */
+final class DenseSimplex
+{
+	/**
+	 * 
+	 */
+	static final double INFINITY = 1e30;
+
+	/**
+	 * 
+	 */
+	static final int OPTIMAL = 0;
+
+	/**
+	 * 
+	 */
+	static final int INFEASIBLE = 1;
+
+	/**
+	 * 
+	 */
+	static final int UNBOUNDED = 2;
+
+	/**
+	 * 
+	 */
+	static final int ITERATION_LIMIT = 3;
+
+	/**
+	 * Phase I ended with a residual too large to accept as feasible, but too
+	 * small to prove infeasibility.
+	 */
+	static final int NUMERICAL = 4;
+
+	/**
+	 * 
+	 */
+	private static final double EPSILON = 1e-9;
+
+	/**
+	 * 
+	 */
+	private static final double FEASIBILITY_EPSILON = 1e-7;
+
+	/**
+	 * Phase I residual, relative to the row values, above which a problem is
+	 * proven infeasible.
+	 */
+	private static final double INFEASIBILITY_EPSILON = 1e-5;
+
+	/**
+	 * 
+	 */
+	private final double[][] a;
+
+	/**
+	 * 
+	 */
+	private final double[] b;
+
+	/**
+	 * 
+	 */
+	private final double[] c;
+
+	/**
+	 * 
+	 */
+	private int status = OPTIMAL;
+
+	/**
+	 * 
+	 */
+	private long iterations = 0;
+
+	/**
+	 * 
+	 * @param a
+	 *            dense row-major constraint matrix
+	 * @param b
+	 *            row values
+	 * @param c
+	 *            objective coefficients
+	 */
+	DenseSimplex( final double[][] a, final double[] b, final double[] c )
+	{
+		this.a = a;
+		this.b = b;
+		this.c = c;
+	}
+
+	/**
+	 * 
+	 * @return status of the last solve
+	 */
+	int getStatus()
+	{
+		return status;
+	}
+
+	/**
+	 * 
+	 * @return simplex iterations over all solves
+	 */
+	long getIterations()
+	{
+		return iterations;
+	}
+
+	/**
+	 * 
+	 * @param lower
+	 * @param upper
+	 * @return x, or null if the status of the solve is not OPTIMAL
+	 */
+	double[] solve( final double[] lower, final double[] upper )
+	{
+		final int m = b.length;
+		final int n = c.length;
+
+		// Substitute variables y >= 0, with upper bounds u, for the columns:
+		// x = l + y, x = u - y or, for free columns, x = y - y'.
+		final int[] firstVariable = new int[ n ];
+		final int[] variableKinds = new int[ n ];
+		final int LOWER = 0;
+		final int UPPER = 1;
+		final int FREE = 2;
+		int variableCount = 0;
+
+		for( int j = 0; j < n; j++ )
+		{
+			final boolean lowerFinite = lower[ j ] > -INFINITY;
+			final boolean upperFinite = upper[ j ] < INFINITY;
+
+			if( lowerFinite && upperFinite && lower[ j ] > upper[ j ] + FEASIBILITY_EPSILON )
+			{
+				status = INFEASIBLE;
+				return null;
+			}
+
+			firstVariable[ j ] = variableCount;
+			variableKinds[ j ] = lowerFinite ? LOWER : upperFinite ? UPPER : FREE;
+			variableCount += variableKinds[ j ] == FREE ? 2 : 1;
+		}
+
+		// Followed by an artificial variable per row:
+		final int columnCount = variableCount + m;
+		final double[][] tableau = new double[ m ][ columnCount ];
+		final double[] beta = b.clone();
+		final double[] variableUpper = new double[ columnCount ];
+		final double[] cost = new double[ columnCount ];
+
+		for( int j = 0; j < n; j++ )
+		{
+			final int k = firstVariable[ j ];
+
+			if( variableKinds[ j ] == LOWER )
+			{
+				variableUpper[ k ] = upper[ j ] < INFINITY ? Math.max( upper[ j ] - lower[ j ], 0 ) : Double.POSITIVE_INFINITY;
+				cost[ k ] = c[ j ];
+
+				for( int i = 0; i < m; i++ )
+				{
+					tableau[ i ][ k ] = a[ i ][ j ];
+					beta[ i ] -= a[ i ][ j ] * lower[ j ];
+				}
+			}
+			else if( variableKinds[ j ] == UPPER )
+			{
+				variableUpper[ k ] = Double.POSITIVE_INFINITY;
+				cost[ k ] = -c[ j ];
+
+				for( int i = 0; i < m; i++ )
+				{
+					tableau[ i ][ k ] = -a[ i ][ j ];
+					beta[ i ] -= a[ i ][ j ] * upper[ j ];
+				}
+			}
+			else
+			{
+				variableUpper[ k ] = Double.POSITIVE_INFINITY;
+				variableUpper[ k + 1 ] = Double.POSITIVE_INFINITY;
+				cost[ k ] = c[ j ];
+				cost[ k + 1 ] = -c[ j ];
+
+				for( int i = 0; i < m; i++ )
+				{
+					tableau[ i ][ k ] = a[ i ][ j ];
+					tableau[ i ][ k + 1 ] = -a[ i ][ j ];
+				}
+			}
+		}
+
+		final int[] basis = new int[ m ];
+		final boolean[] isBasic = new boolean[ columnCount ];
+		final boolean[] atUpper = new boolean[ columnCount ];
+		final double[] artificialCost = new double[ columnCount ];
+		double scale = 1;
+
+		for( int i = 0; i < m; i++ )
+		{
+			if( beta[ i ] < 0 )
+			{
+				beta[ i ] = -beta[ i ];
+
+				for( int k = 0; k < variableCount; k++ )
+				{
+					tableau[ i ][ k ] = -tableau[ i ][ k ];
+				}
+			}
+
+			tableau[ i ][ variableCount + i ] = 1;
+			variableUpper[ variableCount + i ] = Double.POSITIVE_INFINITY;
+			artificialCost[ variableCount + i ] = 1;
+			basis[ i ] = variableCount + i;
+			isBasic[ variableCount + i ] = true;
+			scale = Math.max( scale, beta[ i ] );
+		}
+
+		// Phase I: minimise the sum of the artificial variables.
+		status = iterate( tableau, beta, basis, isBasic, atUpper, variableUpper, artificialCost, columnCount );
+
+		if( status != OPTIMAL )
+		{
+			return null;
+		}
+
+		double infeasibility = 0;
+
+		for( int i = 0; i < m; i++ )
+		{
+			if( basis[ i ] >= variableCount )
+			{
+				infeasibility += beta[ i ];
+			}
+		}
+
+		if( infeasibility > FEASIBILITY_EPSILON * scale )
+		{
+			status = infeasibility > INFEASIBILITY_EPSILON * scale ? INFEASIBLE : NUMERICAL;
+			return null;
+		}
+
+		// Phase II: hold artificial variables at zero, and never enter them.
+		for( int k = variableCount; k < columnCount; k++ )
+		{
+			variableUpper[ k ] = 0;
+		}
+
+		status = iterate( tableau, beta, basis, isBasic, atUpper, variableUpper, cost, variableCount );
+
+		if( status != OPTIMAL )
+		{
+			return null;
+		}
+
+		final double[] values = new double[ columnCount ];
+
+		for( int k = 0; k < columnCount; k++ )
+		{
+			values[ k ] = atUpper[ k ] ? variableUpper[ k ] : 0;
+		}
+
+		for( int i = 0; i < m; i++ )
+		{
+			values[ basis[ i ] ] = beta[ i ];
+		}
+
+		final double[] x = new double[ n ];
+
+		for( int j = 0; j < n; j++ )
+		{
+			final int k = firstVariable[ j ];
+
+			if( variableKinds[ j ] == LOWER )
+			{
+				x[ j ] = lower[ j ] + values[ k ];
+			}
+			else if( variableKinds[ j ] == UPPER )
+			{
+				x[ j ] = upper[ j ] - values[ k ];
+			}
+			else
+			{
+				x[ j ] = values[ k ] - values[ k + 1 ];
+			}
+		}
+
+		return x;
+	}
+
+	/**
+	 * Iterates from the current basis to an optimum of the given cost.
+	 * 
+	 * @param tableau
+	 * @param beta
+	 *            values of the basic variables
+	 * @param basis
+	 * @param isBasic
+	 * @param atUpper
+	 *            whether each non-basic variable is at its upper bound
+	 * @param variableUpper
+	 * @param cost
+	 * @param enteringCount
+	 *            number of leading variables that may enter the basis
+	 * @return status
+	 */
+	private int iterate( final double[][] tableau, final double[] beta, final int[] basis, final boolean[] isBasic, final boolean[] atUpper, final double[] variableUpper, final double[] cost, final int enteringCount )
+	{
+		final int m = beta.length;
+		final int columnCount = cost.length;
+		final long maxIterations = 50L * ( m + columnCount ) + 100;
+		final double[] reducedCosts = cost.clone();
+
+		for( int i = 0; i < m; i++ )
+		{
+			final double basicCost = cost[ basis[ i ] ];
+
+			if( basicCost != 0 )
+			{
+				for( int k = 0; k < columnCount; k++ )
+				{
+					reducedCosts[ k ] -= basicCost * tableau[ i ][ k ];
+				}
+			}
+		}
+
+		for( long iteration = 0;; iteration++ )
+		{
+			if( iteration == maxIterations )
+			{
+				return ITERATION_LIMIT;
+			}
+
+			// Entering variable, by Bland's rule:
+			int q = -1;
+
+			for( int k = 0; k < enteringCount && q == -1; k++ )
+			{
+				if( !isBasic[ k ] && ( atUpper[ k ] ? reducedCosts[ k ] > EPSILON : reducedCosts[ k ] < -EPSILON ) )
+				{
+					q = k;
+				}
+			}
+
+			if( q == -1 )
+			{
+				return OPTIMAL;
+			}
+
+			iterations++;
+
+			// Ratio test, with ties broken by the smallest basic variable:
+			final double direction = atUpper[ q ] ? -1 : 1;
+			double step = variableUpper[ q ];
+			int r = -1;
+			boolean leavesAtUpper = false;
+
+			for( int i = 0; i < m; i++ )
+			{
+				final double gradient = -direction * tableau[ i ][ q ];
+				final double limit;
+				final boolean toUpper;
+
+				if( gradient < -EPSILON )
+				{
+					limit = Math.max( beta[ i ], 0 ) / -gradient;
+					toUpper = false;
+				}
+				else if( gradient > EPSILON && variableUpper[ basis[ i ] ] < Double.POSITIVE_INFINITY )
+				{
+					limit = Math.max( variableUpper[ basis[ i ] ] - beta[ i ], 0 ) / gradient;
+					toUpper = true;
+				}
+				else
+				{
+					continue;
+				}
+
+				if( limit < step || ( limit == step && r != -1 && basis[ i ] < basis[ r ] ) )
+				{
+					step = limit;
+					r = i;
+					leavesAtUpper = toUpper;
+				}
+			}
+
+			if( step == Double.POSITIVE_INFINITY )
+			{
+				return UNBOUNDED;
+			}
+
+			for( int i = 0; i < m; i++ )
+			{
+				beta[ i ] -= direction * tableau[ i ][ q ] * step;
+			}
+
+			if( r == -1 )
+			{
+				// Bound flip, without a change of basis:
+				atUpper[ q ] = !atUpper[ q ];
+				continue;
+			}
+
+			final int p = basis[ r ];
+			isBasic[ p ] = false;
+			atUpper[ p ] = leavesAtUpper;
+			beta[ r ] = atUpper[ q ] ? variableUpper[ q ] - step : step;
+			atUpper[ q ] = false;
+			isBasic[ q ] = true;
+			basis[ r ] = q;
+
+			// Pivot:
+			final double[] pivotRow = tableau[ r ];
+			final double pivot = pivotRow[ q ];
+
+			for( int k = 0; k < columnCount; k++ )
+			{
+				pivotRow[ k ] /= pivot;
+			}
+
+			for( int i = 0; i < m; i++ )
+			{
+				final double factor = tableau[ i ][ q ];
+
+				if( i != r && factor != 0 )
+				{
+					final double[] row = tableau[ i ];
+
+					for( int k = 0; k < columnCount; k++ )
+					{
+						row[ k ] -= factor * pivotRow[ k ];
+					}
+				}
+			}
+
+			final double factor = reducedCosts[ q ];
+
+			for( int k = 0; k < columnCount; k++ )
+			{
+				reducedCosts[ k ] -= factor * pivotRow[ k ];
+			}
+		}
+	}
+}
@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.math.linearprogramming;
+
+import org.gnu.glpk.*;
+
+/**
+ * A problem loaded once by AbstractLinearProgrammingSolver.createProblem, whose
+ * bounds and objective may be changed between solves. Each solve reuses the
+ * GLPK problem object, and with it the basis left by the previous solve, so
+ * that the simplex method is warm-started rather than started from scratch.
+ * 
+ * Warm starts are for linear programs, as used by FluxBalanceAnalyser and
+ * FluxVariabilityAnalyser. Reaction balancing does not use LinearProblem: its
+ * integer problems differ in shape from reaction to reaction, and its retries
+ * in ReactionBalancer solve a new problem through Solver.solve each time.
+ * 
+ * Bounds may be infinite, in which case the row or column is unbounded in that
+ * direction. Like its solver, a problem is not thread-safe, and may not be used
+ * once either it or its solver has been closed.
+ * 
+ * @author Neil Swainston
+ */
+public class LinearProblem implements AutoCloseable
+{
+	/**
+	 * 
+	 */
+	private final AbstractLinearProgrammingSolver solver;
+
+	/**
+	 * 
+	 */
+	private final glp_prob lp;
+
+	/**
+	 * 
+	 */
+	private final int rowCount;
+
+	/**
+	 * 
+	 */
+	private final int columnCount;
+
+	/**
+	 * 
+	 */
+	private boolean closed = false;
+
+	/**
+	 * 
+	 */
+	private SolveResult lastResult = null;
+
+	/**
+	 * 
+	 * @param solver
+	 * @param lp
+	 */
+	LinearProblem( final AbstractLinearProgrammingSolver solver, final glp_prob lp )
+	{
+		this.solver = solver;
+		this.lp = lp;
+		this.rowCount = GLPK.glp_get_num_rows( lp );
+		this.columnCount = GLPK.glp_get_num_cols( lp );
+	}
+
+	/**
+	 * 
+	 * @return number of rows
+	 */
+	public int getRowCount()
+	{
+		return rowCount;
+	}
+
+	/**
+	 * 
+	 * @return number of columns
+	 */
+	public int getColumnCount()
+	{
+		return columnCount;
+	}
+
+	/**
+	 * 
+	 * @param column
+	 *            0-based column index
+	 * @param lowerBound
+	 * @param upperBound
+	 */
+	public void setColumnBounds( final int column, final double lowerBound, final double upperBound )
+	{
+		checkOpen();
+		checkIndex( column, columnCount );
+		GLPK.glp_set_col_bnds( lp, column + 1, getBoundsType( lowerBound, upperBound ), lowerBound, upperBound );
+	}
+
+	/**
+	 * 
+	 * @param row
+	 *            0-based row index
+	 * @param lowerBound
+	 * @param upperBound
+	 */
+	public void setRowBounds( final int row, final double lowerBound, final double upperBound )
+	{
+		checkOpen();
+		checkIndex( row, rowCount );
+		GLPK.glp_set_row_bnds( lp, row + 1, getBoundsType( lowerBound, upperBound ), lowerBound, upperBound );
+	}
+
+	/**
+	 * 
+	 * @param column
+	 *            0-based column index
+	 * @param coefficient
+	 */
+	public void setObjectiveCoefficient( final int column, final double coefficient )
+	{
+		checkOpen();
+		checkIndex( column, columnCount );
+		GLPK.glp_set_obj_coef( lp, column + 1, coefficient );
+	}
+
+	/**
+	 * 
+	 * @param coefficients
+	 */
+	public void setObjectiveCoefficients( final double[] coefficients )
+	{
+		checkOpen();
+
+		if( coefficients.length != columnCount )
+		{
+			throw new IllegalArgumentException( "Expected " + columnCount + " objective coefficients: " + coefficients.length ); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		for( int i = 0; i < columnCount; i++ )
+		{
+			GLPK.glp_set_obj_coef( lp, i + 1, coefficients[ i ] );
+		}
+	}
+
+	/**
+	 * Problems are minimised unless set otherwise.
+	 * 
+	 * @param maximise
+	 */
+	public void setMaximise( final boolean maximise )
+	{
+		checkOpen();
+		GLPK.glp_set_obj_dir( lp, maximise ? GLPKConstants.GLP_MAX : GLPKConstants.GLP_MIN );
+	}
+
+	/**
+	 * Solves the problem with its current bounds and objective, starting from
+	 * the basis of the previous solve where the solver supports it.
+	 * 
+	 * @return double[], or null if no solution was found
+	 */
+	public double[] solve()
+	{
+		checkOpen();
+		final double[] solution = solver.getSolution( lp );
+		lastResult = solver.getLastResult();
+		return solution;
+	}
+
+	/**
+	 * 
+	 * @return result of the last solve, or null if none
+	 */
+	public SolveResult getLastResult()
+	{
+		return lastResult;
+	}
+
+	/**
+	 * 
+	 * @return objective value of the last solve
+	 */
+	public double getObjectiveValue()
+	{
+		checkOpen();
+		return solver.getObjectiveVal( lp );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.AutoCloseable#close()
+	 */
+	@Override
+	public void close()
+	{
+		if( !closed )
+		{
+			closed = true;
+			GLPK.glp_delete_prob( lp );
+		}
+	}
+
+	/**
+	 * 
+	 */
+	private void checkOpen()
+	{
+		if( closed )
+		{
+			throw new IllegalStateException( "Problem closed" ); //$NON-NLS-1$
+		}
+
+		solver.checkOpen();
+	}
+
+	/**
+	 * 
+	 * @param index
+	 * @param count
+	 */
+	private static void checkIndex( final int index, final int count )
+	{
+		if( index < 0 || index >= count )
+		{
+			throw new IndexOutOfBoundsException( "Index " + index + " not in [0, " + count + ")" ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	/**
+	 * 
+	 * @param lowerBound
+	 * @param upperBound
+	 * @return GLPK bounds type
+	 */
+	static int getBoundsType( final double lowerBound, final double upperBound )
+	{
+		final boolean lowerInfinite = Double.isInfinite( lowerBound );
+		final boolean upperInfinite = Double.isInfinite( upperBound );
+
+		if( lowerInfinite && upperInfinite )
+		{
+			return GLPKConstants.GLP_FR;
+		}
+		else if( upperInfinite )
+		{
+			return GLPKConstants.GLP_LO;
+		}
+		else if( lowerInfinite )
+		{
+			return GLPKConstants.GLP_UP;
+		}
+		else if( lowerBound == upperBound )
+		{
+			return GLPKConstants.GLP_FX;
+		}
+
+		return GLPKConstants.GLP_DB;
+	}
+}
@@ -23,6 +23,11 @@ public class LinearProgrammingSolver extends AbstractLinearProgrammingSolver
 	 */
 	private final static int COLUMN_KIND = GLPKConstants.GLP_CV;
 
+	/**
+	 * Control parameters, reused by every solve.
+	 */
+	private final glp_smcp smcp = new glp_smcp();
+
 	/**
 	 * 
 	 * @param timeout
@@ -31,6 +36,21 @@ public class LinearProgrammingSolver extends AbstractLinearProgrammingSolver
 	public LinearProgrammingSolver( final int timeout, final boolean output )
 	{
 		super( COLUMN_KIND, timeout, output );
+		GLPK.glp_init_smcp( smcp );
+		smcp.setTm_lim( timeout );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.mcisb.math.linearprogramming.AbstractLinearProgrammingSolver#close()
+	 */
+	@Override
+	public void close()
+	{
+		super.close();
+		smcp.delete();
 	}
 
 	/*
@@ -41,17 +61,45 @@ public class LinearProgrammingSolver extends AbstractLinearProgrammingSolver
 	 * #solve(org.gnu.glpk.glp_prob)
 	 */
 	@Override
-	protected boolean solve( final glp_prob lp )
+	protected SolveResult.Status solve( final glp_prob lp )
 	{
-		final glp_smcp smcp = new glp_smcp();
-		GLPK.glp_init_smcp( smcp );
-		smcp.setTm_lim( timeout );
-
 		final int returnValue = GLPK.glp_simplex( lp, smcp );
-		return returnValue == 0 /*
-								 * && GLPK.glp_mip_status( lp ) ==
-								 * GLPKConstants.GLP_OPT
-								 */;
+
+		if( returnValue == 0 )
+		{
+			final int status = GLPK.glp_get_status( lp );
+
+			if( status == GLPKConstants.GLP_OPT )
+			{
+				return SolveResult.Status.OPTIMAL;
+			}
+			else if( status == GLPKConstants.GLP_NOFEAS || status == GLPKConstants.GLP_INFEAS )
+			{
+				return SolveResult.Status.INFEASIBLE;
+			}
+			else if( status == GLPKConstants.GLP_UNBND )
+			{
+				return SolveResult.Status.UNBOUNDED;
+			}
+		}
+		else if( returnValue == GLPKConstants.GLP_ETMLIM )
+		{
+			return SolveResult.Status.TIME_LIMIT;
+		}
+		else if( returnValue == GLPKConstants.GLP_EITLIM )
+		{
+			return SolveResult.Status.ITERATION_LIMIT;
+		}
+		else if( returnValue == GLPKConstants.GLP_ENOPFS )
+		{
+			return SolveResult.Status.INFEASIBLE;
+		}
+		else if( returnValue == GLPKConstants.GLP_ENODFS )
+		{
+			return SolveResult.Status.UNBOUNDED;
+		}
+
+		return SolveResult.Status.FAILED;
 	}
 
 	/*
@@ -23,6 +23,11 @@ public class MixedIntegerLinearProgrammingSolver extends AbstractLinearProgrammi
 	 */
 	private final static int COLUMN_KIND = GLPKConstants.GLP_IV;
 
+	/**
+	 * Control parameters, reused by every solve.
+	 */
+	private final glp_iocp iocp = new glp_iocp();
+
 	/**
 	 * 
 	 * @param timeout
@@ -31,6 +36,22 @@ public class MixedIntegerLinearProgrammingSolver extends AbstractLinearProgrammi
 	public MixedIntegerLinearProgrammingSolver( final int timeout, final boolean output )
 	{
 		super( COLUMN_KIND, timeout, output );
+		GLPK.glp_init_iocp( iocp );
+		iocp.setPresolve( GLPKConstants.GLP_ON );
+		iocp.setTm_lim( timeout );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.mcisb.math.linearprogramming.AbstractLinearProgrammingSolver#close()
+	 */
+	@Override
+	public void close()
+	{
+		super.close();
+		iocp.delete();
 	}
 
 	/*
@@ -41,15 +62,42 @@ public class MixedIntegerLinearProgrammingSolver extends AbstractLinearProgrammi
 	 * #solve(org.gnu.glpk.glp_prob)
 	 */
 	@Override
-	protected boolean solve( final glp_prob lp )
+	protected SolveResult.Status solve( final glp_prob lp )
 	{
-		final glp_iocp iocp = new glp_iocp();
-		GLPK.glp_init_iocp( iocp );
-		iocp.setPresolve( GLPKConstants.GLP_ON );
-		iocp.setTm_lim( timeout );
-
 		final int returnValue = GLPK.glp_intopt( lp, iocp );
-		return returnValue == 0 && GLPK.glp_mip_status( lp ) == GLPKConstants.GLP_OPT;
+
+		if( returnValue == 0 )
+		{
+			final int status = GLPK.glp_mip_status( lp );
+
+			if( status == GLPKConstants.GLP_OPT )
+			{
+				return SolveResult.Status.OPTIMAL;
+			}
+			else if( status == GLPKConstants.GLP_NOFEAS )
+			{
+				return SolveResult.Status.INFEASIBLE;
+			}
+			else if( status == GLPKConstants.GLP_FEAS )
+			{
+				// Stopped before optimality was proven:
+				return SolveResult.Status.TIME_LIMIT;
+			}
+		}
+		else if( returnValue == GLPKConstants.GLP_ETMLIM )
+		{
+			return SolveResult.Status.TIME_LIMIT;
+		}
+		else if( returnValue == GLPKConstants.GLP_ENOPFS )
+		{
+			return SolveResult.Status.INFEASIBLE;
+		}
+		else if( returnValue == GLPKConstants.GLP_ENODFS )
+		{
+			return SolveResult.Status.UNBOUNDED;
+		}
+
+		return SolveResult.Status.FAILED;
 	}
 
 	/*
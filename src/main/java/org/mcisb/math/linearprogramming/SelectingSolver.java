@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.math.linearprogramming;
+
+import org.gnu.glpk.*;
+
+/**
+ * Solves problems with few integer columns with a BranchAndBoundSolver, and
+ * larger problems, or any it gives up on, with another backend.
+ * 
+ * Where a problem has more than one optimum, the backends may return
+ * different ones, so solutions, such as balanced stoichiometries, may depend
+ * on MAX_INTEGER_COLUMNS.
+ * 
+ * @author Neil Swainston
+ */
+public class SelectingSolver implements Solver
+{
+	/**
+	 * System property giving the largest number of integer columns of problems
+	 * solved by the BranchAndBoundSolver. 0 disables it.
+	 */
+	public static final String MAX_INTEGER_COLUMNS = "org.mcisb.math.linearprogramming.MaxIntegerColumns"; //$NON-NLS-1$
+
+	/**
+	 * 
+	 */
+	private static final int DEFAULT_MAX_INTEGER_COLUMNS = 20;
+
+	/**
+	 * 
+	 */
+	private final BranchAndBoundSolver smallSolver;
+
+	/**
+	 * 
+	 */
+	private final Solver largeSolver;
+
+	/**
+	 * 
+	 */
+	private final int maxIntegerColumns;
+
+	/**
+	 * Backend of the last solve.
+	 */
+	private Solver lastSolver = null;
+
+	/**
+	 * Configured from the MAX_INTEGER_COLUMNS system property.
+	 * 
+	 * @param smallSolver
+	 * @param largeSolver
+	 */
+	public SelectingSolver( final BranchAndBoundSolver smallSolver, final Solver largeSolver )
+	{
+		this( smallSolver, largeSolver, Integer.getInteger( MAX_INTEGER_COLUMNS, DEFAULT_MAX_INTEGER_COLUMNS ).intValue() );
+	}
+
+	/**
+	 * 
+	 * @param smallSolver
+	 * @param largeSolver
+	 * @param maxIntegerColumns
+	 */
+	public SelectingSolver( final BranchAndBoundSolver smallSolver, final Solver largeSolver, final int maxIntegerColumns )
+	{
+		this.smallSolver = smallSolver;
+		this.largeSolver = largeSolver;
+		this.maxIntegerColumns = maxIntegerColumns;
+	}
+
+	/**
+	 * 
+	 * @return largest number of integer columns of problems solved by the
+	 *         BranchAndBoundSolver
+	 */
+	public int getMaxIntegerColumns()
+	{
+		return maxIntegerColumns;
+	}
+
+	/**
+	 * As the default column kind is not known here, every column is counted
+	 * as an integer column.
+	 * 
+	 * @see org.mcisb.math.linearprogramming.Solver#solve(org.mcisb.math.linearprogramming.SparseMatrix,
+	 *      java.lang.String[], double[], double[], double[], double[])
+	 */
+	@Override
+	public double[] solve( final SparseMatrix matrix, final String[] columnIds, final double[] rowBounds, final double[] lowerBounds, final double[] upperBounds, final double[] objectiveCoefficients )
+	{
+		if( columnIds.length <= maxIntegerColumns )
+		{
+			final double[] solution = smallSolver.solve( matrix, columnIds, rowBounds, lowerBounds, upperBounds, objectiveCoefficients );
+
+			if( !smallSolver.isLimitReached() )
+			{
+				lastSolver = smallSolver;
+				return solution;
+			}
+		}
+
+		lastSolver = largeSolver;
+		return largeSolver.solve( matrix, columnIds, rowBounds, lowerBounds, upperBounds, objectiveCoefficients );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.mcisb.math.linearprogramming.Solver#solve(org.mcisb.math.linearprogramming
+	 * .SparseMatrix, java.lang.String[], int[], double[], double[], double[],
+	 * double[])
+	 */
+	@Override
+	public double[] solve( final SparseMatrix matrix, final String[] columnIds, final int[] columnKinds, final double[] rowBounds, final double[] lowerBounds, final double[] upperBounds, final double[] objectiveCoefficients )
+	{
+		if( getIntegerColumnCount( columnKinds ) <= maxIntegerColumns )
+		{
+			final double[] solution = smallSolver.solve( matrix, columnIds, columnKinds, rowBounds, lowerBounds, upperBounds, objectiveCoefficients );
+
+			if( !smallSolver.isLimitReached() )
+			{
+				lastSolver = smallSolver;
+				return solution;
+			}
+		}
+
+		lastSolver = largeSolver;
+		return largeSolver.solve( matrix, columnIds, columnKinds, rowBounds, lowerBounds, upperBounds, objectiveCoefficients );
+	}
+
+	/**
+	 * 
+	 * @return result of the backend that gave the last solution
+	 * @see org.mcisb.math.linearprogramming.Solver#getLastResult()
+	 */
+	@Override
+	public SolveResult getLastResult()
+	{
+		return lastSolver == null ? null : lastSolver.getLastResult();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.mcisb.math.linearprogramming.Solver#close()
+	 */
+	@Override
+	public void close()
+	{
+		smallSolver.close();
+		largeSolver.close();
+	}
+
+	/**
+	 * 
+	 * @param columnKinds
+	 * @return int
+	 */
+	private static int getIntegerColumnCount( final int[] columnKinds )
+	{
+		int count = 0;
+
+		for( int columnKind : columnKinds )
+		{
+			if( columnKind != GLPKConstants.GLP_CV )
+			{
+				count++;
+			}
+		}
+
+		return count;
+	}
+}
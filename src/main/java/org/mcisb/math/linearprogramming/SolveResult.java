@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.math.linearprogramming;
+
+/**
+ * The outcome of a single solve. Counts that a backend cannot provide are
+ * UNKNOWN. In particular, solvers built on AbstractLinearProgrammingSolver
+ * always report nodes as UNKNOWN, as glp_intopt does not return the number of
+ * branch and bound nodes it explored; only BranchAndBoundSolver counts them.
+ * 
+ * @author Neil Swainston
+ */
+public class SolveResult
+{
+	/**
+	 * 
+	 * @author Neil Swainston
+	 */
+	public enum Status
+	{
+		/**
+		 * An optimal solution was found.
+		 */
+		OPTIMAL,
+
+		/**
+		 * The problem has no feasible solution.
+		 */
+		INFEASIBLE,
+
+		/**
+		 * The objective is unbounded.
+		 */
+		UNBOUNDED,
+
+		/**
+		 * The time limit, or another limit on the search of the backend, was
+		 * reached before an optimum was proven.
+		 */
+		TIME_LIMIT,
+
+		/**
+		 * The iteration limit was reached before an optimum was proven.
+		 */
+		ITERATION_LIMIT,
+
+		/**
+		 * The node limit was reached before an optimum was proven.
+		 */
+		NODE_LIMIT,
+
+		/**
+		 * The solver failed, for example numerically.
+		 */
+		FAILED
+	}
+
+	/**
+	 * 
+	 */
+	public static final long UNKNOWN = -1;
+
+	/**
+	 * 
+	 */
+	private final Status status;
+
+	/**
+	 * 
+	 */
+	private final long iterations;
+
+	/**
+	 * 
+	 */
+	private final long nodes;
+
+	/**
+	 * 
+	 */
+	private final long nanos;
+
+	/**
+	 * 
+	 */
+	private final double objective;
+
+	/**
+	 * 
+	 * @param status
+	 * @param iterations
+	 *            simplex iterations, or UNKNOWN
+	 * @param nodes
+	 *            branch and bound nodes, or UNKNOWN (as for every GLPK
+	 *            solve)
+	 * @param nanos
+	 *            wall time
+	 * @param objective
+	 *            objective value, or NaN if no solution was found
+	 */
+	public SolveResult( final Status status, final long iterations, final long nodes, final long nanos, final double objective )
+	{
+		this.status = status;
+		this.iterations = iterations;
+		this.nodes = nodes;
+		this.nanos = nanos;
+		this.objective = objective;
+	}
+
+	/**
+	 * 
+	 * @return Status
+	 */
+	public Status getStatus()
+	{
+		return status;
+	}
+
+	/**
+	 * 
+	 * @return simplex iterations, or UNKNOWN
+	 */
+	public long getIterations()
+	{
+		return iterations;
+	}
+
+	/**
+	 * 
+	 * @return branch and bound nodes, or UNKNOWN, which GLPK solves always
+	 *         report
+	 */
+	public long getNodes()
+	{
+		return nodes;
+	}
+
+	/**
+	 * 
+	 * @return wall time, in nanoseconds
+	 */
+	public long getNanos()
+	{
+		return nanos;
+	}
+
+	/**
+	 * 
+	 * @return objective value, or NaN if no solution was found
+	 */
+	public double getObjective()
+	{
+		return objective;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return status + " (" + iterations + " iterations, " + nodes + " nodes, " + nanos / 1e6 + " ms, objective " + objective + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+	}
+}
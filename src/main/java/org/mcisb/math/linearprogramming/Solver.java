@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.math.linearprogramming;
+
+/**
+ * A backend that minimises a linear objective subject to equality rows and
+ * bounded columns. Column kinds are those of GLPK (GLPKConstants.GLP_CV,
+ * GLP_IV and GLP_BV), whichever backend is used.
+ * 
+ * Implementations are not required to be thread-safe.
+ * 
+ * @author Neil Swainston
+ */
+public interface Solver extends AutoCloseable
+{
+	/**
+	 * Solves with the backend's default column kind.
+	 * 
+	 * @param matrix
+	 * @param columnIds
+	 * @param rowBounds
+	 * @param lowerBounds
+	 * @param upperBounds
+	 * @param objectiveCoefficients
+	 * @return double[], or null if no solution was found
+	 */
+	public double[] solve( final SparseMatrix matrix, final String[] columnIds, final double[] rowBounds, final double[] lowerBounds, final double[] upperBounds, final double[] objectiveCoefficients );
+
+	/**
+	 * 
+	 * @param matrix
+	 * @param columnIds
+	 * @param columnKinds
+	 * @param rowBounds
+	 * @param lowerBounds
+	 * @param upperBounds
+	 * @param objectiveCoefficients
+	 * @return double[], or null if no solution was found
+	 */
+	public double[] solve( final SparseMatrix matrix, final String[] columnIds, final int[] columnKinds, final double[] rowBounds, final double[] lowerBounds, final double[] upperBounds, final double[] objectiveCoefficients );
+
+	/**
+	 * 
+	 * @return result of the last solve, or null if none
+	 */
+	public SolveResult getLastResult();
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.AutoCloseable#close()
+	 */
+	@Override
+	public void close();
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.math.linearprogramming;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Counts and timings of every solve, by backend and status, aggregated over
+ * all threads. Backends record each solve here, so that, for example, the
+ * share of balancing time spent in solves that reach the time limit may be
+ * found.
+ * 
+ * @author Neil Swainston
+ */
+public class SolverMetrics
+{
+	/**
+	 * 
+	 */
+	private static final SolverMetrics instance = new SolverMetrics();
+
+	/**
+	 * 
+	 */
+	private final ConcurrentMap<String,BackendMetrics> backendToMetrics = new ConcurrentSkipListMap<>();
+
+	/**
+	 * 
+	 * @return SolverMetrics
+	 */
+	public static SolverMetrics getInstance()
+	{
+		return instance;
+	}
+
+	/**
+	 * 
+	 * @param backend
+	 * @param result
+	 */
+	public void record( final String backend, final SolveResult result )
+	{
+		BackendMetrics metrics = backendToMetrics.get( backend );
+
+		if( metrics == null )
+		{
+			final BackendMetrics newMetrics = new BackendMetrics();
+			metrics = backendToMetrics.putIfAbsent( backend, newMetrics );
+
+			if( metrics == null )
+			{
+				metrics = newMetrics;
+			}
+		}
+
+		metrics.record( result );
+	}
+
+	/**
+	 * 
+	 * @return names of the backends that have recorded solves
+	 */
+	public Set<String> getBackends()
+	{
+		return Collections.unmodifiableSet( backendToMetrics.keySet() );
+	}
+
+	/**
+	 * 
+	 * @param backend
+	 * @param status
+	 * @return number of solves
+	 */
+	public long getCount( final String backend, final SolveResult.Status status )
+	{
+		final BackendMetrics metrics = backendToMetrics.get( backend );
+		return metrics == null ? 0 : metrics.counts.get( status.ordinal() );
+	}
+
+	/**
+	 * 
+	 * @param backend
+	 * @param status
+	 * @return total wall time of the solves, in nanoseconds
+	 */
+	public long getNanos( final String backend, final SolveResult.Status status )
+	{
+		final BackendMetrics metrics = backendToMetrics.get( backend );
+		return metrics == null ? 0 : metrics.nanos.get( status.ordinal() );
+	}
+
+	/**
+	 * 
+	 * @param backend
+	 * @param status
+	 * @return longest wall time of a solve, in nanoseconds
+	 */
+	public long getMaxNanos( final String backend, final SolveResult.Status status )
+	{
+		final BackendMetrics metrics = backendToMetrics.get( backend );
+		return metrics == null ? 0 : metrics.maxNanos.get( status.ordinal() );
+	}
+
+	/**
+	 * 
+	 */
+	public void clear()
+	{
+		backendToMetrics.clear();
+	}
+
+	/**
+	 * Tab-separated backend, status, count, total and maximum milliseconds, one
+	 * line per backend and status with solves.
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		final String TAB = "\t"; //$NON-NLS-1$
+		final String NEW_LINE = "\n"; //$NON-NLS-1$
+		final StringBuilder builder = new StringBuilder();
+
+		for( String backend : backendToMetrics.keySet() )
+		{
+			for( SolveResult.Status status : SolveResult.Status.values() )
+			{
+				final long count = getCount( backend, status );
+
+				if( count > 0 )
+				{
+					builder.append( backend );
+					builder.append( TAB );
+					builder.append( status );
+					builder.append( TAB );
+					builder.append( count );
+					builder.append( TAB );
+					builder.append( getNanos( backend, status ) / 1e6 );
+					builder.append( TAB );
+					builder.append( getMaxNanos( backend, status ) / 1e6 );
+					builder.append( NEW_LINE );
+				}
+			}
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * Metrics of a single backend, indexed by status ordinal.
+	 */
+	private static class BackendMetrics
+	{
+		/**
+		 * 
+		 */
+		final AtomicLongArray counts = new AtomicLongArray( SolveResult.Status.values().length );
+
+		/**
+		 * 
+		 */
+		final AtomicLongArray nanos = new AtomicLongArray( SolveResult.Status.values().length );
+
+		/**
+		 * 
+		 */
+		final AtomicLongArray maxNanos = new AtomicLongArray( SolveResult.Status.values().length );
+
+		/**
+		 * 
+		 * @param result
+		 */
+		void record( final SolveResult result )
+		{
+			final int index = result.getStatus().ordinal();
+			counts.incrementAndGet( index );
+			nanos.addAndGet( index, result.getNanos() );
+
+			long max = maxNanos.get( index );
+
+			while( result.getNanos() > max && !maxNanos.compareAndSet( index, max, result.getNanos() ) )
+			{
+				max = maxNanos.get( index );
+			}
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.math.linearprogramming;
+
+import java.util.*;
+
+/**
+ * Thread-confined solvers. Each thread is given its own solver session, so
+ * that solvers, their native buffers and GLPK's per-thread environment
+ * (including the terminal output setting toggled by each solve) are never
+ * shared between threads.
+ * 
+ * @author Neil Swainston
+ */
+public abstract class SolverPool implements AutoCloseable
+{
+	/**
+	 * 
+	 */
+	private final Collection<Solver> solvers = new ArrayList<>();
+
+	/**
+	 * 
+	 */
+	private final ThreadLocal<Solver> threadSolver = new ThreadLocal<>();
+
+	/**
+	 * 
+	 */
+	private boolean closed = false;
+
+	/**
+	 * 
+	 * @return the calling thread's solver, which must not be passed to other
+	 *         threads
+	 */
+	public Solver get()
+	{
+		Solver solver = threadSolver.get();
+
+		if( solver == null )
+		{
+			solver = newSolver();
+
+			synchronized( solvers )
+			{
+				if( closed )
+				{
+					solver.close();
+					throw new IllegalStateException( "Solver pool closed" ); //$NON-NLS-1$
+				}
+
+				solvers.add( solver );
+			}
+
+			threadSolver.set( solver );
+		}
+
+		return solver;
+	}
+
+	/**
+	 * Closes the calling thread's solver, if any, for example before a pooled
+	 * worker thread finishes. Does nothing if the thread has no solver.
+	 */
+	public void release()
+	{
+		final Solver solver = threadSolver.get();
+
+		if( solver == null )
+		{
+			return;
+		}
+
+		threadSolver.remove();
+
+		synchronized( solvers )
+		{
+			solvers.remove( solver );
+		}
+
+		solver.close();
+	}
+
+	/**
+	 * Closes every thread's solver. Solvers must no longer be in use.
+	 */
+	@Override
+	public void close()
+	{
+		synchronized( solvers )
+		{
+			closed = true;
+
+			for( Solver solver : solvers )
+			{
+				solver.close();
+			}
+
+			solvers.clear();
+		}
+	}
+
+	/**
+	 * 
+	 * @return a new solver, for use by a single thread
+	 */
+	protected abstract Solver newSolver();
+}
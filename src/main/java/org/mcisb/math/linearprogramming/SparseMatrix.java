@@ -0,0 +1,316 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.math.linearprogramming;
+
+import java.util.*;
+
+/**
+ * Constraint matrix held as (row, column, value) triplets of its non-zero
+ * elements only, so that problem setup is proportional to the number of
+ * non-zeros rather than to rows x columns.
+ * 
+ * @author Neil Swainston
+ */
+public class SparseMatrix
+{
+	/**
+	 * 
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * 
+	 */
+	private final int rowCount;
+
+	/**
+	 * 
+	 */
+	private final int columnCount;
+
+	/**
+	 * 
+	 */
+	private int[] rows = new int[ INITIAL_CAPACITY ];
+
+	/**
+	 * 
+	 */
+	private int[] columns = new int[ INITIAL_CAPACITY ];
+
+	/**
+	 * 
+	 */
+	private double[] values = new double[ INITIAL_CAPACITY ];
+
+	/**
+	 * 
+	 */
+	private int nonZeroCount = 0;
+
+	/**
+	 * Keys, as row * columnCount + column, of the elements set.
+	 */
+	private final KeySet elements = new KeySet();
+
+	/**
+	 * 
+	 * @param rowCount
+	 * @param columnCount
+	 */
+	public SparseMatrix( final int rowCount, final int columnCount )
+	{
+		this.rowCount = rowCount;
+		this.columnCount = columnCount;
+	}
+
+	/**
+	 * 
+	 * @param matrix
+	 *            dense matrix, whose rows may be shorter than columnCount
+	 * @param columnCount
+	 */
+	public SparseMatrix( final double[][] matrix, final int columnCount )
+	{
+		this( matrix.length, columnCount );
+
+		for( int i = 0; i < matrix.length; i++ )
+		{
+			final double[] row = matrix[ i ];
+
+			for( int j = 0; j < Math.min( row.length, columnCount ); j++ )
+			{
+				set( i, j, row[ j ] );
+			}
+		}
+	}
+
+	/**
+	 * Copies the elements of a matrix into a matrix of at least its size,
+	 * whose further rows and columns are left empty for the caller to set.
+	 * 
+	 * @param matrix
+	 * @param rowCount
+	 * @param columnCount
+	 */
+	public SparseMatrix( final SparseMatrix matrix, final int rowCount, final int columnCount )
+	{
+		this( rowCount, columnCount );
+
+		if( rowCount < matrix.rowCount || columnCount < matrix.columnCount )
+		{
+			throw new IndexOutOfBoundsException( matrix.rowCount + " x " + matrix.columnCount + " outside " + rowCount + " x " + columnCount ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+
+		final int capacity = Math.max( matrix.nonZeroCount, INITIAL_CAPACITY );
+		rows = Arrays.copyOf( matrix.rows, capacity );
+		columns = Arrays.copyOf( matrix.columns, capacity );
+		values = Arrays.copyOf( matrix.values, capacity );
+		nonZeroCount = matrix.nonZeroCount;
+
+		for( int i = 0; i < nonZeroCount; i++ )
+		{
+			elements.add( (long)rows[ i ] * columnCount + columns[ i ] );
+		}
+	}
+
+	/**
+	 * Sets the element at the given zero-based row and column. Zero values
+	 * are ignored, and each element may be set at most once, as GLPK rejects
+	 * duplicate elements.
+	 * 
+	 * @param row
+	 * @param column
+	 * @param value
+	 * @throws IllegalArgumentException
+	 *             if the element has already been set
+	 */
+	public void set( final int row, final int column, final double value )
+	{
+		if( row < 0 || row >= rowCount || column < 0 || column >= columnCount )
+		{
+			throw new IndexOutOfBoundsException( "(" + row + ", " + column + ") outside " + rowCount + " x " + columnCount ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		}
+
+		if( value == 0 )
+		{
+			return;
+		}
+
+		if( !elements.add( (long)row * columnCount + column ) )
+		{
+			throw new IllegalArgumentException( "(" + row + ", " + column + ") already set" ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+
+		if( nonZeroCount == values.length )
+		{
+			rows = Arrays.copyOf( rows, nonZeroCount * 2 );
+			columns = Arrays.copyOf( columns, nonZeroCount * 2 );
+			values = Arrays.copyOf( values, nonZeroCount * 2 );
+		}
+
+		rows[ nonZeroCount ] = row;
+		columns[ nonZeroCount ] = column;
+		values[ nonZeroCount ] = value;
+		nonZeroCount++;
+	}
+
+	/**
+	 * 
+	 * @return int
+	 */
+	public int getRowCount()
+	{
+		return rowCount;
+	}
+
+	/**
+	 * 
+	 * @return int
+	 */
+	public int getColumnCount()
+	{
+		return columnCount;
+	}
+
+	/**
+	 * 
+	 * @return int
+	 */
+	public int getNonZeroCount()
+	{
+		return nonZeroCount;
+	}
+
+	/**
+	 * 
+	 * @param index
+	 *            of the non-zero element
+	 * @return zero-based row
+	 */
+	public int getRow( final int index )
+	{
+		return rows[ index ];
+	}
+
+	/**
+	 * 
+	 * @param index
+	 *            of the non-zero element
+	 * @return zero-based column
+	 */
+	public int getColumn( final int index )
+	{
+		return columns[ index ];
+	}
+
+	/**
+	 * 
+	 * @param index
+	 *            of the non-zero element
+	 * @return double
+	 */
+	public double getValue( final int index )
+	{
+		return values[ index ];
+	}
+
+	/**
+	 * Open-addressing set of non-negative element keys, so that checking for
+	 * duplicates does not box each key.
+	 */
+	private static class KeySet
+	{
+		/**
+		 * 
+		 */
+		private static final long EMPTY = -1;
+
+		/**
+		 * 
+		 */
+		private long[] keys = newKeys( INITIAL_CAPACITY );
+
+		/**
+		 * 
+		 */
+		private int size = 0;
+
+		/**
+		 * 
+		 * @param key
+		 * @return true if the key was not already present
+		 */
+		boolean add( final long key )
+		{
+			// Kept at most half full:
+			if( 2 * ( size + 1 ) > keys.length )
+			{
+				final long[] oldKeys = keys;
+				keys = newKeys( oldKeys.length * 2 );
+
+				for( long oldKey : oldKeys )
+				{
+					if( oldKey != EMPTY )
+					{
+						insert( oldKey );
+					}
+				}
+			}
+
+			if( insert( key ) )
+			{
+				size++;
+				return true;
+			}
+
+			return false;
+		}
+
+		/**
+		 * 
+		 * @param key
+		 * @return true if the key was not already present
+		 */
+		private boolean insert( final long key )
+		{
+			final int mask = keys.length - 1;
+			int index = (int)( ( key * 0x9E3779B97F4A7C15L ) >>> 32 ) & mask;
+
+			while( keys[ index ] != EMPTY )
+			{
+				if( keys[ index ] == key )
+				{
+					return false;
+				}
+
+				index = ( index + 1 ) & mask;
+			}
+
+			keys[ index ] = key;
+			return true;
+		}
+
+		/**
+		 * 
+		 * @param capacity
+		 *            a power of two
+		 * @return long[]
+		 */
+		private static long[] newKeys( final int capacity )
+		{
+			final long[] emptyKeys = new long[ capacity ];
+			Arrays.fill( emptyKeys, EMPTY );
+			return emptyKeys;
+		}
+	}
+}
@@ -0,0 +1,673 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.subliminal.balance;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import org.mcisb.math.linearprogramming.*;
+
+/**
+ * Memoised solutions of balancing problems, keyed by a canonical signature of
+ * the problem: its constraint matrix, row and column bounds, column kinds and
+ * objective. The same chemistry (formulae, charges, stoichiometries, cofactors
+ * and maximum stoichiometric coefficient) gives the same signature, whichever
+ * compartment or model it occurs in, and whatever the order of its
+ * participants (columns) and elements (rows), as both are sorted before the
+ * signature is built. Solutions are cached in that canonical column order. The signature also names the solver's
+ * backend, as backends may break ties between optima differently, so that a
+ * solution is reused only by the backend that found it.
+ * 
+ * Solutions are held in a least recently used in-memory tier and, optionally,
+ * in a directory on disk that persists between runs. The disk tier is
+ * advisory: entries that cannot be read or written are counted, and the
+ * problem is solved instead. Problems proven to be
+ * infeasible are cached too, but those that the solver gave up on, for
+ * example at a time or node limit, are not, so that they are solved again.
+ * 
+ * @author Neil Swainston
+ */
+public class BalancingCache
+{
+	/**
+	 * System property giving the number of solutions held in memory.
+	 */
+	public static final String CACHE_SIZE = "org.mcisb.subliminal.balance.CacheSize"; //$NON-NLS-1$
+
+	/**
+	 * System property naming the directory of the persistent tier, which is
+	 * disabled if not set.
+	 */
+	public static final String CACHE_DIRECTORY = "org.mcisb.subliminal.balance.CacheDirectory"; //$NON-NLS-1$
+
+	/**
+	 * 
+	 */
+	private static final int DEFAULT_CACHE_SIZE = 10000;
+
+	/**
+	 * 
+	 */
+	private static final double[] NO_SOLUTION = new double[ 0 ];
+
+	/**
+	 * 
+	 */
+	private static final String NO_SOLUTION_STRING = "-"; //$NON-NLS-1$
+
+	/**
+	 * 
+	 */
+	private static final String TAB = "\t"; //$NON-NLS-1$
+
+	/**
+	 * 
+	 */
+	private static BalancingCache instance = null;
+
+	/**
+	 * 
+	 */
+	private final Map<String,double[]> solutions;
+
+	/**
+	 * 
+	 */
+	private final File directory;
+
+	/**
+	 * 
+	 */
+	private final AtomicLong hits = new AtomicLong();
+
+	/**
+	 * 
+	 */
+	private final AtomicLong diskHits = new AtomicLong();
+
+	/**
+	 * 
+	 */
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * 
+	 */
+	private final AtomicLong readErrors = new AtomicLong();
+
+	/**
+	 * 
+	 */
+	private final AtomicLong writeErrors = new AtomicLong();
+
+	/**
+	 * 
+	 * @return BalancingCache, configured from system properties
+	 */
+	public static synchronized BalancingCache getInstance()
+	{
+		if( instance == null )
+		{
+			final String directoryName = System.getProperty( CACHE_DIRECTORY );
+			instance = new BalancingCache( Integer.getInteger( CACHE_SIZE, DEFAULT_CACHE_SIZE ).intValue(), directoryName == null ? null : new File( directoryName ) );
+		}
+
+		return instance;
+	}
+
+	/**
+	 * 
+	 * @param size
+	 *            maximum number of solutions held in memory
+	 * @param directory
+	 *            of the persistent tier, or null
+	 */
+	public BalancingCache( final int size, final File directory )
+	{
+		this.directory = directory;
+		this.solutions = new LinkedHashMap<String,double[]>( 16, 0.75f, true )
+		{
+			/**
+			 * 
+			 */
+			private static final long serialVersionUID = 1L;
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+			 */
+			@Override
+			protected boolean removeEldestEntry( final Map.Entry<String,double[]> eldest )
+			{
+				return size() > size;
+			}
+		};
+
+		if( directory != null && !directory.exists() && !directory.mkdirs() && !directory.exists() )
+		{
+			throw new IllegalArgumentException( "Unable to create cache directory " + directory ); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Returns the cached solution of the given problem, solving it with the
+	 * given solver if it is not cached.
+	 * 
+	 * @param solver
+	 * @param matrix
+	 * @param columnIds
+	 * @param columnKinds
+	 *            or null for the solver's default column kind
+	 * @param rowBounds
+	 * @param lowerBounds
+	 * @param upperBounds
+	 * @param objectiveCoefficients
+	 * @return double[], or null if no solution was found
+	 */
+	public double[] solve( final Solver solver, final SparseMatrix matrix, final String[] columnIds, final int[] columnKinds, final double[] rowBounds, final double[] lowerBounds, final double[] upperBounds, final double[] objectiveCoefficients )
+	{
+		final int[] columnOrder = getColumnOrder( matrix, columnKinds, rowBounds, lowerBounds, upperBounds, objectiveCoefficients );
+		final String signature = getSignature( getBackend( solver ), matrix, columnKinds, rowBounds, lowerBounds, upperBounds, objectiveCoefficients, columnOrder );
+		final double[] canonicalSolution = get( signature );
+
+		if( canonicalSolution == null )
+		{
+			misses.incrementAndGet();
+			final double[] solution = columnKinds == null ? solver.solve( matrix, columnIds, rowBounds, lowerBounds, upperBounds, objectiveCoefficients ) : solver.solve( matrix, columnIds, columnKinds, rowBounds, lowerBounds, upperBounds, objectiveCoefficients );
+
+			if( solution != null )
+			{
+				put( signature, permute( solution, columnOrder ) );
+			}
+			else if( isInfeasible( solver.getLastResult() ) )
+			{
+				put( signature, NO_SOLUTION );
+			}
+
+			return solution;
+		}
+
+		hits.incrementAndGet();
+
+		if( canonicalSolution == NO_SOLUTION )
+		{
+			return null;
+		}
+
+		// Returned in the caller's column order:
+		final double[] solution = new double[ canonicalSolution.length ];
+
+		for( int c = 0; c < canonicalSolution.length; c++ )
+		{
+			solution[ columnOrder[ c ] ] = canonicalSolution[ c ];
+		}
+
+		return solution;
+	}
+
+	/**
+	 * 
+	 * @param solution
+	 * @param columnOrder
+	 * @return solution in canonical column order
+	 */
+	private static double[] permute( final double[] solution, final int[] columnOrder )
+	{
+		final double[] canonicalSolution = new double[ solution.length ];
+
+		for( int c = 0; c < solution.length; c++ )
+		{
+			canonicalSolution[ c ] = solution[ columnOrder[ c ] ];
+		}
+
+		return canonicalSolution;
+	}
+
+	/**
+	 * 
+	 * @return number of problems whose solution was found in either tier
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * 
+	 * @return number of hits found in the persistent tier only
+	 */
+	public long getDiskHits()
+	{
+		return diskHits.get();
+	}
+
+	/**
+	 * 
+	 * @return number of problems that were solved
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * 
+	 * @return number of entries of the persistent tier that could not be read
+	 */
+	public long getReadErrors()
+	{
+		return readErrors.get();
+	}
+
+	/**
+	 * 
+	 * @return number of entries of the persistent tier that could not be
+	 *         written
+	 */
+	public long getWriteErrors()
+	{
+		return writeErrors.get();
+	}
+
+	/**
+	 * 
+	 * @param result
+	 * @return whether the result proves that the problem has no solution
+	 */
+	private static boolean isInfeasible( final SolveResult result )
+	{
+		return result != null && result.getStatus() == SolveResult.Status.INFEASIBLE;
+	}
+
+	/**
+	 * 
+	 * @param signature
+	 * @return double[], NO_SOLUTION or null if not cached
+	 */
+	private double[] get( final String signature )
+	{
+		synchronized( solutions )
+		{
+			final double[] solution = solutions.get( signature );
+
+			if( solution != null )
+			{
+				return solution;
+			}
+		}
+
+		if( directory != null )
+		{
+			final double[] solution = read( signature );
+
+			if( solution != null )
+			{
+				diskHits.incrementAndGet();
+
+				synchronized( solutions )
+				{
+					solutions.put( signature, solution );
+				}
+			}
+
+			return solution;
+		}
+
+		return null;
+	}
+
+	/**
+	 * 
+	 * @param signature
+	 * @param solution
+	 */
+	private void put( final String signature, final double[] solution )
+	{
+		synchronized( solutions )
+		{
+			solutions.put( signature, solution );
+		}
+
+		if( directory != null )
+		{
+			write( signature, solution );
+		}
+	}
+
+	/**
+	 * 
+	 * @param signature
+	 * @return double[], NO_SOLUTION or null if not cached
+	 */
+	private double[] read( final String signature )
+	{
+		final File file = getFile( signature );
+
+		if( !file.exists() )
+		{
+			return null;
+		}
+
+		try
+		{
+			final List<String> lines = Files.readAllLines( file.toPath(), StandardCharsets.UTF_8 );
+			final int SIGNATURE = 0;
+			final int SOLUTION = 1;
+
+			// Guard against digest collisions and partial files:
+			if( lines.size() != 2 || !lines.get( SIGNATURE ).equals( signature ) )
+			{
+				return null;
+			}
+
+			final String solutionString = lines.get( SOLUTION );
+
+			if( solutionString.equals( NO_SOLUTION_STRING ) )
+			{
+				return NO_SOLUTION;
+			}
+
+			final String[] tokens = solutionString.length() == 0 ? new String[ 0 ] : solutionString.split( TAB );
+			final double[] solution = new double[ tokens.length ];
+
+			for( int i = 0; i < tokens.length; i++ )
+			{
+				solution[ i ] = Double.parseDouble( tokens[ i ] );
+			}
+
+			return solution;
+		}
+		catch( IOException | NumberFormatException e )
+		{
+			// The persistent tier is advisory:
+			readErrors.incrementAndGet();
+			return null;
+		}
+	}
+
+	/**
+	 * 
+	 * @param signature
+	 * @param solution
+	 */
+	private void write( final String signature, final double[] solution )
+	{
+		final StringBuilder builder = new StringBuilder();
+		builder.append( signature );
+		builder.append( '\n' );
+
+		if( solution == NO_SOLUTION )
+		{
+			builder.append( NO_SOLUTION_STRING );
+		}
+		else
+		{
+			for( int i = 0; i < solution.length; i++ )
+			{
+				if( i > 0 )
+				{
+					builder.append( TAB );
+				}
+
+				builder.append( solution[ i ] );
+			}
+		}
+
+		builder.append( '\n' );
+
+		try
+		{
+			// Write to a temporary file, and move it into place atomically, so
+			// that concurrent processes never read a partial entry:
+			final File file = getFile( signature );
+			final File tempFile = File.createTempFile( file.getName(), null, directory );
+
+			try
+			{
+				Files.write( tempFile.toPath(), builder.toString().getBytes( StandardCharsets.UTF_8 ) );
+				Files.move( tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+			}
+			finally
+			{
+				Files.deleteIfExists( tempFile.toPath() );
+			}
+		}
+		catch( IOException e )
+		{
+			// The persistent tier is advisory:
+			writeErrors.incrementAndGet();
+		}
+	}
+
+	/**
+	 * 
+	 * @param signature
+	 * @return File named by the SHA-256 digest of the signature
+	 */
+	private File getFile( final String signature )
+	{
+		try
+		{
+			final byte[] digest = MessageDigest.getInstance( "SHA-256" ).digest( signature.getBytes( StandardCharsets.UTF_8 ) ); //$NON-NLS-1$
+			final StringBuilder builder = new StringBuilder();
+
+			for( byte b : digest )
+			{
+				builder.append( String.format( "%02x", Integer.valueOf( b & 0xff ) ) ); //$NON-NLS-1$
+			}
+
+			return new File( directory, builder.toString() );
+		}
+		catch( NoSuchAlgorithmException e )
+		{
+			// SHA-256 is required of every Java platform:
+			throw new AssertionError( e );
+		}
+	}
+
+	/**
+	 * 
+	 * @param solver
+	 * @return class name of the solver, with the number of integer columns up
+	 *         to which a SelectingSolver uses its BranchAndBoundSolver
+	 */
+	static String getBackend( final Solver solver )
+	{
+		final String name = solver.getClass().getName();
+		return solver instanceof SelectingSolver ? name + '(' + ( (SelectingSolver)solver ).getMaxIntegerColumns() + ')' : name;
+	}
+
+	/**
+	 * Orders columns by their kind, bounds and objective coefficient, and by
+	 * their elements, each described by its value and by the bound and values
+	 * of its row, none of which depend on the order of rows or columns.
+	 * Columns that remain tied keep their order.
+	 * 
+	 * @param matrix
+	 * @param columnKinds
+	 * @param rowBounds
+	 * @param lowerBounds
+	 * @param upperBounds
+	 * @param objectiveCoefficients
+	 * @return original index of each column, in canonical order
+	 */
+	static int[] getColumnOrder( final SparseMatrix matrix, final int[] columnKinds, final double[] rowBounds, final double[] lowerBounds, final double[] upperBounds, final double[] objectiveCoefficients )
+	{
+		final char SEPARATOR = ';';
+		final List<List<Double>> rowValues = new ArrayList<>();
+
+		for( int i = 0; i < matrix.getRowCount(); i++ )
+		{
+			rowValues.add( new ArrayList<Double>() );
+		}
+
+		for( int k = 0; k < matrix.getNonZeroCount(); k++ )
+		{
+			rowValues.get( matrix.getRow( k ) ).add( Double.valueOf( matrix.getValue( k ) ) );
+		}
+
+		final String[] rowKeys = new String[ matrix.getRowCount() ];
+
+		for( int i = 0; i < rowKeys.length; i++ )
+		{
+			final List<Double> values = rowValues.get( i );
+			Collections.sort( values );
+			rowKeys[ i ] = rowBounds[ i ] + values.toString();
+		}
+
+		final List<List<String>> columnElements = new ArrayList<>();
+
+		for( int j = 0; j < matrix.getColumnCount(); j++ )
+		{
+			columnElements.add( new ArrayList<String>() );
+		}
+
+		for( int k = 0; k < matrix.getNonZeroCount(); k++ )
+		{
+			columnElements.get( matrix.getColumn( k ) ).add( matrix.getValue( k ) + rowKeys[ matrix.getRow( k ) ] );
+		}
+
+		final String[] columnKeys = new String[ matrix.getColumnCount() ];
+		final Integer[] order = new Integer[ columnKeys.length ];
+
+		for( int j = 0; j < columnKeys.length; j++ )
+		{
+			final List<String> elements = columnElements.get( j );
+			Collections.sort( elements );
+			columnKeys[ j ] = String.valueOf( columnKinds == null ? null : Integer.valueOf( columnKinds[ j ] ) ) + SEPARATOR + lowerBounds[ j ] + SEPARATOR + upperBounds[ j ] + SEPARATOR + objectiveCoefficients[ j ] + SEPARATOR + elements;
+			order[ j ] = Integer.valueOf( j );
+		}
+
+		// Stable, so that tied columns keep their order:
+		Arrays.sort( order, new Comparator<Integer>()
+		{
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see java.util.Comparator#compare(java.lang.Object,
+			 * java.lang.Object)
+			 */
+			@Override
+			public int compare( final Integer o1, final Integer o2 )
+			{
+				return columnKeys[ o1.intValue() ].compareTo( columnKeys[ o2.intValue() ] );
+			}
+		} );
+
+		final int[] columnOrder = new int[ order.length ];
+
+		for( int c = 0; c < order.length; c++ )
+		{
+			columnOrder[ c ] = order[ c ].intValue();
+		}
+
+		return columnOrder;
+	}
+
+	/**
+	 * 
+	 * @param backend
+	 * @param matrix
+	 * @param columnKinds
+	 * @param rowBounds
+	 * @param lowerBounds
+	 * @param upperBounds
+	 * @param objectiveCoefficients
+	 * @param columnOrder
+	 *            as returned by getColumnOrder
+	 * @return String which is equal for equal problems, whatever the order of
+	 *         their rows and columns and the order in which matrix elements
+	 *         were set, unless tied columns are ordered differently
+	 */
+	static String getSignature( final String backend, final SparseMatrix matrix, final int[] columnKinds, final double[] rowBounds, final double[] lowerBounds, final double[] upperBounds, final double[] objectiveCoefficients, final int[] columnOrder )
+	{
+		final char SEPARATOR = ';';
+		final int[] columnPositions = new int[ columnOrder.length ];
+
+		for( int c = 0; c < columnOrder.length; c++ )
+		{
+			columnPositions[ columnOrder[ c ] ] = c;
+		}
+
+		// Rows are ordered by their bound and their elements in canonical
+		// column order:
+		final List<SortedMap<Integer,Double>> rowElements = new ArrayList<>();
+
+		for( int i = 0; i < matrix.getRowCount(); i++ )
+		{
+			rowElements.add( new TreeMap<Integer,Double>() );
+		}
+
+		for( int k = 0; k < matrix.getNonZeroCount(); k++ )
+		{
+			rowElements.get( matrix.getRow( k ) ).put( Integer.valueOf( columnPositions[ matrix.getColumn( k ) ] ), Double.valueOf( matrix.getValue( k ) ) );
+		}
+
+		final String[] rowKeys = new String[ matrix.getRowCount() ];
+		final Integer[] rowOrder = new Integer[ rowKeys.length ];
+
+		for( int i = 0; i < rowKeys.length; i++ )
+		{
+			rowKeys[ i ] = rowBounds[ i ] + rowElements.get( i ).toString();
+			rowOrder[ i ] = Integer.valueOf( i );
+		}
+
+		Arrays.sort( rowOrder, new Comparator<Integer>()
+		{
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see java.util.Comparator#compare(java.lang.Object,
+			 * java.lang.Object)
+			 */
+			@Override
+			public int compare( final Integer o1, final Integer o2 )
+			{
+				return rowKeys[ o1.intValue() ].compareTo( rowKeys[ o2.intValue() ] );
+			}
+		} );
+
+		final StringBuilder builder = new StringBuilder();
+		builder.append( backend );
+		builder.append( SEPARATOR );
+		builder.append( matrix.getRowCount() );
+		builder.append( 'x' );
+		builder.append( matrix.getColumnCount() );
+		builder.append( SEPARATOR );
+
+		for( int c = 0; c < columnOrder.length; c++ )
+		{
+			final int j = columnOrder[ c ];
+			builder.append( columnKinds == null ? null : Integer.valueOf( columnKinds[ j ] ) );
+			builder.append( ',' );
+			builder.append( lowerBounds[ j ] );
+			builder.append( ',' );
+			builder.append( upperBounds[ j ] );
+			builder.append( ',' );
+			builder.append( objectiveCoefficients[ j ] );
+			builder.append( ' ' );
+		}
+
+		// Each row's elements, keyed by canonical column:
+		for( Integer i : rowOrder )
+		{
+			builder.append( SEPARATOR );
+			builder.append( rowKeys[ i.intValue() ] );
+		}
+
+		return builder.toString();
+	}
+}
@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.subliminal.balance;
+
+import java.io.*;
+
+/**
+ * Sink to which SbmlReactionBalancerTask writes the result of each reaction
+ * as soon as it has been processed, in reaction order.
+ * 
+ * @author Neil Swainston
+ */
+public interface BalancingReport extends Closeable
+{
+	/**
+	 * 
+	 * @param result
+	 * @throws IOException
+	 */
+	public void write( final ReactionResult result ) throws IOException;
+}
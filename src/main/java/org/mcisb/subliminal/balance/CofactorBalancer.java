@@ -0,0 +1,466 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.subliminal.balance;
+
+import java.util.*;
+
+/**
+ * Closed-form balancing of reactions whose imbalance can be made good by
+ * cofactors alone (such as protons and water), without a MILP solve.
+ * 
+ * The residual of the current stoichiometries is solved exactly for the net
+ * amount of each cofactor. The solution is returned only if it is the unique
+ * optimum of ReactionBalancer's MILP, which minimises the total change in
+ * stoichiometry: that is, if no other distribution of the cofactors between
+ * reactants and products, and no change of at most the same total to the
+ * other participants, balances the reaction as cheaply. Otherwise null is
+ * returned, and the MILP is solved as before, so results are unchanged.
+ * 
+ * @author Neil Swainston
+ */
+final class CofactorBalancer
+{
+	/**
+	 * Total change above which the closed form is not attempted, bounding the
+	 * search for alternative solutions.
+	 */
+	private static final int MAX_COST = 4;
+
+	/**
+	 * 
+	 */
+	private static final double EPSILON = 1e-9;
+
+	/**
+	 * 
+	 */
+	private final int[][] rows;
+
+	/**
+	 * 
+	 */
+	private final double[] stoichiometries;
+
+	/**
+	 * 
+	 */
+	private final double[] lowerBounds;
+
+	/**
+	 * 
+	 */
+	private final double[] upperBounds;
+
+	/**
+	 * Indices of the participants that are not cofactors.
+	 */
+	private final int[] others;
+
+	/**
+	 * Element composition of each cofactor, as a reactant.
+	 */
+	private final List<int[]> cofactorCompositions = new ArrayList<>();
+
+	/**
+	 * Index of each cofactor's reactant participant.
+	 */
+	private final List<Integer> reactantIndices = new ArrayList<>();
+
+	/**
+	 * Index of each cofactor's product participant.
+	 */
+	private final List<Integer> productIndices = new ArrayList<>();
+
+	/**
+	 * Whether a cofactor appears twice on one side, in which case the closed
+	 * form is not attempted.
+	 */
+	private final boolean duplicateCofactor;
+
+	/**
+	 * 
+	 * @param rows
+	 *            element counts of each participant, positive for reactants and
+	 *            negative for products
+	 * @param isReactants
+	 * @param isCofactors
+	 * @param stoichiometries
+	 *            current stoichiometries, zero for cofactors not in the
+	 *            reaction
+	 * @param lowerBounds
+	 * @param upperBounds
+	 */
+	private CofactorBalancer( final int[][] rows, final boolean[] isReactants, final boolean[] isCofactors, final double[] stoichiometries, final double[] lowerBounds, final double[] upperBounds )
+	{
+		this.rows = rows;
+		this.stoichiometries = stoichiometries;
+		this.lowerBounds = lowerBounds;
+		this.upperBounds = upperBounds;
+
+		final List<Integer> otherIndices = new ArrayList<>();
+		boolean duplicate = false;
+
+		for( int i = 0; i < rows.length; i++ )
+		{
+			if( !isCofactors[ i ] )
+			{
+				otherIndices.add( Integer.valueOf( i ) );
+				continue;
+			}
+
+			final int[] composition = rows[ i ].clone();
+
+			if( !isReactants[ i ] )
+			{
+				for( int j = 0; j < composition.length; j++ )
+				{
+					composition[ j ] = -composition[ j ];
+				}
+			}
+
+			int cofactor = 0;
+
+			while( cofactor < cofactorCompositions.size() && !Arrays.equals( cofactorCompositions.get( cofactor ), composition ) )
+			{
+				cofactor++;
+			}
+
+			if( cofactor == cofactorCompositions.size() )
+			{
+				cofactorCompositions.add( composition );
+				reactantIndices.add( null );
+				productIndices.add( null );
+			}
+
+			final List<Integer> indices = isReactants[ i ] ? reactantIndices : productIndices;
+
+			if( indices.get( cofactor ) != null )
+			{
+				duplicate = true;
+				break;
+			}
+
+			indices.set( cofactor, Integer.valueOf( i ) );
+		}
+
+		others = new int[ otherIndices.size() ];
+
+		for( int i = 0; i < others.length; i++ )
+		{
+			others[ i ] = otherIndices.get( i ).intValue();
+		}
+
+		duplicateCofactor = duplicate;
+	}
+
+	/**
+	 * 
+	 * @param rows
+	 *            element counts of each participant, positive for reactants and
+	 *            negative for products
+	 * @param isReactants
+	 * @param isCofactors
+	 * @param stoichiometries
+	 *            current stoichiometries, zero for cofactors not in the
+	 *            reaction
+	 * @param lowerBounds
+	 * @param upperBounds
+	 * @return stoichiometries of the unique optimal solution, or null if the
+	 *         MILP must be solved
+	 */
+	static double[] solve( final int[][] rows, final boolean[] isReactants, final boolean[] isCofactors, final double[] stoichiometries, final double[] lowerBounds, final double[] upperBounds )
+	{
+		if( rows.length == 0 )
+		{
+			return null;
+		}
+
+		return new CofactorBalancer( rows, isReactants, isCofactors, stoichiometries, lowerBounds, upperBounds ).solve();
+	}
+
+	/**
+	 * 
+	 * @return double[], or null
+	 */
+	private double[] solve()
+	{
+		if( duplicateCofactor )
+		{
+			return null;
+		}
+
+		for( int i = 0; i < stoichiometries.length; i++ )
+		{
+			if( !isInteger( stoichiometries[ i ] ) )
+			{
+				return null;
+			}
+		}
+
+		for( int i : others )
+		{
+			if( stoichiometries[ i ] < lowerBounds[ i ] || stoichiometries[ i ] > upperBounds[ i ] )
+			{
+				return null;
+			}
+		}
+
+		for( int cofactor = 0; cofactor < cofactorCompositions.size(); cofactor++ )
+		{
+			if( reactantIndices.get( cofactor ) == null || productIndices.get( cofactor ) == null )
+			{
+				return null;
+			}
+		}
+
+		final int[] residual = new int[ rows[ 0 ].length ];
+
+		for( int i = 0; i < rows.length; i++ )
+		{
+			for( int j = 0; j < residual.length; j++ )
+			{
+				residual[ j ] += rows[ i ][ j ] * (int)stoichiometries[ i ];
+			}
+		}
+
+		final int[] amounts = getCofactorAmounts( residual );
+
+		if( amounts == null )
+		{
+			return null;
+		}
+
+		final int cost = getCost( amounts );
+
+		if( cost > MAX_COST || hasAlternative( amounts ) || hasAlternative( residual, cost, 0, 0 ) )
+		{
+			return null;
+		}
+
+		final double[] solution = stoichiometries.clone();
+
+		for( int cofactor = 0; cofactor < amounts.length; cofactor++ )
+		{
+			final int amount = amounts[ cofactor ];
+			final int index = ( amount > 0 ? reactantIndices : productIndices ).get( cofactor ).intValue();
+			solution[ index ] += Math.abs( amount );
+		}
+
+		return solution;
+	}
+
+	/**
+	 * A change to a cofactor may be made either by adding it to one side or by
+	 * removing it from the other, at the same cost. Removal is possible if the
+	 * other side is above its lower bound.
+	 * 
+	 * @param amounts
+	 * @return true if any cofactor change could be distributed differently
+	 */
+	private boolean hasAlternative( final int[] amounts )
+	{
+		for( int cofactor = 0; cofactor < amounts.length; cofactor++ )
+		{
+			if( amounts[ cofactor ] != 0 )
+			{
+				final int otherSide = ( amounts[ cofactor ] > 0 ? productIndices : reactantIndices ).get( cofactor ).intValue();
+
+				if( stoichiometries[ otherSide ] > lowerBounds[ otherSide ] )
+				{
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Searches changes to the stoichiometries of non-cofactor participants,
+	 * with the cofactor changes they require, for a solution costing no more
+	 * than the cofactor-only solution.
+	 * 
+	 * @param residual
+	 *            after the changes made so far
+	 * @param budget
+	 *            total change still allowed
+	 * @param from
+	 *            index into others of the next participant to change
+	 * @param spent
+	 *            total change made so far
+	 * @return boolean
+	 */
+	private boolean hasAlternative( final int[] residual, final int budget, final int from, final int spent )
+	{
+		if( spent > 0 )
+		{
+			final int[] amounts = getCofactorAmounts( residual );
+
+			if( amounts != null && getCost( amounts ) <= budget )
+			{
+				return true;
+			}
+		}
+
+		for( int k = from; k < others.length; k++ )
+		{
+			final int i = others[ k ];
+
+			for( int change = -budget; change <= budget; change++ )
+			{
+				final double stoichiometry = stoichiometries[ i ] + change;
+
+				if( change == 0 || stoichiometry < lowerBounds[ i ] || stoichiometry > upperBounds[ i ] )
+				{
+					continue;
+				}
+
+				final int[] changedResidual = residual.clone();
+
+				for( int j = 0; j < changedResidual.length; j++ )
+				{
+					changedResidual[ j ] += rows[ i ][ j ] * change;
+				}
+
+				if( hasAlternative( changedResidual, budget - Math.abs( change ), k + 1, spent + Math.abs( change ) ) )
+				{
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Solves, by Gaussian elimination, for the net amount of each cofactor that
+	 * cancels the residual.
+	 * 
+	 * @param residual
+	 * @return int[] of net amounts, positive for reactants, or null if there is
+	 *         no unique integer solution
+	 */
+	private int[] getCofactorAmounts( final int[] residual )
+	{
+		final int columns = cofactorCompositions.size();
+		final double[][] augmented = new double[ residual.length ][ columns + 1 ];
+
+		for( int j = 0; j < residual.length; j++ )
+		{
+			for( int cofactor = 0; cofactor < columns; cofactor++ )
+			{
+				augmented[ j ][ cofactor ] = cofactorCompositions.get( cofactor )[ j ];
+			}
+
+			augmented[ j ][ columns ] = -residual[ j ];
+		}
+
+		int pivotRow = 0;
+
+		for( int column = 0; column < columns; column++ )
+		{
+			int best = pivotRow;
+
+			for( int j = pivotRow + 1; j < augmented.length; j++ )
+			{
+				if( Math.abs( augmented[ j ][ column ] ) > Math.abs( augmented[ best ][ column ] ) )
+				{
+					best = j;
+				}
+			}
+
+			if( best >= augmented.length || Math.abs( augmented[ best ][ column ] ) < EPSILON )
+			{
+				// Cofactors are not independent:
+				return null;
+			}
+
+			final double[] swap = augmented[ pivotRow ];
+			augmented[ pivotRow ] = augmented[ best ];
+			augmented[ best ] = swap;
+
+			for( int j = 0; j < augmented.length; j++ )
+			{
+				if( j != pivotRow )
+				{
+					final double factor = augmented[ j ][ column ] / augmented[ pivotRow ][ column ];
+
+					for( int c = column; c <= columns; c++ )
+					{
+						augmented[ j ][ c ] -= factor * augmented[ pivotRow ][ c ];
+					}
+				}
+			}
+
+			pivotRow++;
+		}
+
+		final int[] amounts = new int[ columns ];
+
+		for( int cofactor = 0; cofactor < columns; cofactor++ )
+		{
+			final double amount = augmented[ cofactor ][ columns ] / augmented[ cofactor ][ cofactor ];
+
+			if( !isInteger( amount ) )
+			{
+				return null;
+			}
+
+			amounts[ cofactor ] = (int)Math.round( amount );
+		}
+
+		// Verify exactly, which also rejects inconsistent systems:
+		for( int j = 0; j < residual.length; j++ )
+		{
+			int sum = residual[ j ];
+
+			for( int cofactor = 0; cofactor < columns; cofactor++ )
+			{
+				sum += amounts[ cofactor ] * cofactorCompositions.get( cofactor )[ j ];
+			}
+
+			if( sum != 0 )
+			{
+				return null;
+			}
+		}
+
+		return amounts;
+	}
+
+	/**
+	 * 
+	 * @param amounts
+	 * @return int
+	 */
+	private static int getCost( final int[] amounts )
+	{
+		int cost = 0;
+
+		for( int amount : amounts )
+		{
+			cost += Math.abs( amount );
+		}
+
+		return cost;
+	}
+
+	/**
+	 * 
+	 * @param value
+	 * @return boolean
+	 */
+	private static boolean isInteger( final double value )
+	{
+		return Math.abs( value - Math.rint( value ) ) < EPSILON;
+	}
+}
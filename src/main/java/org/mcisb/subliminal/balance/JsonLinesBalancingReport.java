@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.subliminal.balance;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Writes one JSON object per line per reaction (JSON Lines), flushing each so
+ * that the report may be followed while balancing runs.
+ * 
+ * @author Neil Swainston
+ */
+public class JsonLinesBalancingReport implements BalancingReport
+{
+	/**
+	 * 
+	 */
+	private final Writer writer;
+
+	/**
+	 * 
+	 * @param writer
+	 */
+	public JsonLinesBalancingReport( final Writer writer )
+	{
+		this.writer = writer;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.mcisb.subliminal.balance.BalancingReport#write(org.mcisb.subliminal
+	 * .balance.ReactionResult)
+	 */
+	@Override
+	public void write( final ReactionResult result ) throws IOException
+	{
+		final StringBuilder builder = new StringBuilder();
+		builder.append( "{\"reaction\":" ); //$NON-NLS-1$
+		appendString( builder, result.getReactionId() );
+		builder.append( ",\"outcome\":" ); //$NON-NLS-1$
+		appendString( builder, result.getOutcome().toString() );
+		builder.append( ",\"residual\":" ); //$NON-NLS-1$
+		appendResidual( builder, result.getResidual() );
+		builder.append( ",\"reset_residual\":" ); //$NON-NLS-1$
+		appendResidual( builder, result.getResetResidual() );
+		builder.append( ",\"problematic_species\":[" ); //$NON-NLS-1$
+
+		for( Iterator<String> iterator = result.getProblematicSpeciesIds().iterator(); iterator.hasNext(); )
+		{
+			appendString( builder, iterator.next() );
+
+			if( iterator.hasNext() )
+			{
+				builder.append( ',' );
+			}
+		}
+
+		builder.append( "],\"millis\":" ); //$NON-NLS-1$
+		builder.append( result.getNanos() / 1e6 );
+		builder.append( ",\"solve_status\":" ); //$NON-NLS-1$
+		appendString( builder, result.getSolveStatus() == null ? null : result.getSolveStatus().toString() );
+		builder.append( ",\"solve_millis\":" ); //$NON-NLS-1$
+		builder.append( result.getSolveNanos() / 1e6 );
+		builder.append( "}\n" ); //$NON-NLS-1$
+
+		writer.write( builder.toString() );
+		writer.flush();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		writer.close();
+	}
+
+	/**
+	 * 
+	 * @param builder
+	 * @param residual
+	 */
+	private static void appendResidual( final StringBuilder builder, final Map<String,Double> residual )
+	{
+		if( residual == null )
+		{
+			builder.append( "null" ); //$NON-NLS-1$
+			return;
+		}
+
+		builder.append( '{' );
+
+		for( Iterator<Map.Entry<String,Double>> iterator = residual.entrySet().iterator(); iterator.hasNext(); )
+		{
+			final Map.Entry<String,Double> entry = iterator.next();
+			appendString( builder, entry.getKey() );
+			builder.append( ':' );
+			builder.append( entry.getValue() );
+
+			if( iterator.hasNext() )
+			{
+				builder.append( ',' );
+			}
+		}
+
+		builder.append( '}' );
+	}
+
+	/**
+	 * 
+	 * @param builder
+	 * @param value
+	 */
+	private static void appendString( final StringBuilder builder, final String value )
+	{
+		if( value == null )
+		{
+			builder.append( "null" ); //$NON-NLS-1$
+			return;
+		}
+
+		builder.append( '"' );
+
+		for( int i = 0; i < value.length(); i++ )
+		{
+			final char c = value.charAt( i );
+
+			switch( c )
+			{
+				case '"':
+					builder.append( "\\\"" ); //$NON-NLS-1$
+					break;
+				case '\\':
+					builder.append( "\\\\" ); //$NON-NLS-1$
+					break;
+				case '\n':
+					builder.append( "\\n" ); //$NON-NLS-1$
+					break;
+				case '\r':
+					builder.append( "\\r" ); //$NON-NLS-1$
+					break;
+				case '\t':
+					builder.append( "\\t" ); //$NON-NLS-1$
+					break;
+				default:
+					if( c < ' ' )
+					{
+						builder.append( String.format( "\\u%04x", Integer.valueOf( c ) ) ); //$NON-NLS-1$
+					}
+					else
+					{
+						builder.append( c );
+					}
+			}
+		}
+
+		builder.append( '"' );
+	}
+}
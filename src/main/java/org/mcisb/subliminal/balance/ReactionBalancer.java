@@ -12,16 +12,16 @@
 package org.mcisb.subliminal.balance;
 
 import java.util.*;
+import java.util.concurrent.atomic.*;
 import org.gnu.glpk.*;
 import org.mcisb.math.linearprogramming.*;
 import org.mcisb.ontology.*;
-import org.mcisb.ontology.OntologyUtils.MatchCriteria;
 import org.mcisb.ontology.chebi.*;
 import org.mcisb.ontology.sbo.*;
 import org.mcisb.sbml.*;
+import org.mcisb.subliminal.sbml.*;
 import org.mcisb.util.*;
 import org.mcisb.util.chem.*;
-import org.mcisb.util.math.*;
 import org.sbml.jsbml.*;
 
 /**
@@ -76,25 +76,56 @@ public class ReactionBalancer
 	private static final int TIMEOUT = 1000;
 
 	/**
-	 * 
+	 * One solver per thread, so that reactions may be balanced concurrently.
+	 * Small problems are solved in Java, and larger ones by GLPK.
 	 */
-	private final static AbstractLinearProgrammingSolver solver = new MixedIntegerLinearProgrammingSolver( TIMEOUT, false );
+	private final static SolverPool solvers = new SolverPool()
+	{
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.mcisb.math.linearprogramming.SolverPool#newSolver()
+		 */
+		@Override
+		protected Solver newSolver()
+		{
+			return new SelectingSolver( new BranchAndBoundSolver( GLPKConstants.GLP_IV ), new MixedIntegerLinearProgrammingSolver( TIMEOUT, false ) );
+		}
+	};
 
 	/**
-	 * 
+	 * Number of solves made in closed form by CofactorBalancer.
 	 */
-	private final Map<Set<Object>,String> ontologyTermAndCompartmentIdToSpeciesId = new HashMap<>();
+	private static final AtomicLong closedFormSolves = new AtomicLong();
 
 	/**
-	 * 
+	 * Number of solves made by the MILP, excluding those whose solution was
+	 * found in the BalancingCache.
 	 */
-	private final List<List<Integer>> matrix = new ArrayList<>();
+	private static final AtomicLong milpSolves = new AtomicLong();
+
+	/**
+	 * Element counts, row-major by participant (positive for reactants and
+	 * negative for products), with a column for each of elementIds.
+	 */
+	private final int[] matrix;
+
+	/**
+	 * Element (row) by participant (column) counts, built once from matrix
+	 * and copied into each problem solved.
+	 */
+	private final SparseMatrix transposedMatrix;
 
 	/**
 	 * 
 	 */
 	private final List<String> elementIds = new ArrayList<>();
 
+	/**
+	 * Index of each element in elementIds.
+	 */
+	private final Map<String,Integer> elementIdToIndex = new HashMap<>();
+
 	/**
 	 * 
 	 */
@@ -130,6 +161,19 @@ public class ReactionBalancer
 	 */
 	private final List<Boolean> isRepeatingUnits = new ArrayList<>();
 
+	/**
+	 * Whether each participant is a cofactor, either added or a species of the
+	 * reaction equivalent to one.
+	 */
+	private final List<Boolean> isCofactors = new ArrayList<>();
+
+	/**
+	 * Stoichiometry of each participant in the reaction when this balancer
+	 * was created (0 for cofactors added), so that solve() does not read the
+	 * model.
+	 */
+	private final List<Double> participantStoichiometries = new ArrayList<>();
+
 	/**
 	 * 
 	 */
@@ -155,11 +199,31 @@ public class ReactionBalancer
 	 */
 	private final int maxStoichiometricCoefficient;
 
+	/**
+	 * 
+	 */
+	private final FormulaCache formulaCache;
+
+	/**
+	 * 
+	 */
+	private final SpeciesIndex speciesIndex;
+
+	/**
+	 * The cofactor to which each equivalent ChEBI id is equivalent.
+	 */
+	private final Map<String,ChebiTerm> equivalentIdToCofactor;
+
 	/**
 	 * 
 	 */
 	private Set<String> updatedSpeciesIds = new HashSet<>();
 
+	/**
+	 * 
+	 */
+	private SolveResult solveResult = null;
+
 	/**
 	 * 
 	 * @param model
@@ -170,12 +234,35 @@ public class ReactionBalancer
 	 */
 	public ReactionBalancer( final Model model, final Reaction reaction, final Set<ChebiTerm> cofactors, final int maxStoichiometricCoefficient ) throws Exception
 	{
+		this( model, reaction, getEquivalentIds( cofactors ), maxStoichiometricCoefficient, new SpeciesIndex( new FormulaCache( model ) ) );
+	}
+
+	/**
+	 * 
+	 * @param model
+	 * @param reaction
+	 * @param equivalentIdToCofactor
+	 *            as returned by getEquivalentIds, whose values are the
+	 *            cofactors
+	 * @param maxStoichiometricCoefficient
+	 * @param speciesIndex
+	 *            of the model, through which cofactor species are found, and
+	 *            through whose FormulaCache formulae are read and updated
+	 * @throws Exception
+	 */
+	public ReactionBalancer( final Model model, final Reaction reaction, final Map<String,ChebiTerm> equivalentIdToCofactor, final int maxStoichiometricCoefficient, final SpeciesIndex speciesIndex ) throws Exception
+	{
+		final Set<ChebiTerm> cofactors = new LinkedHashSet<>( equivalentIdToCofactor.values() );
 		this.model = model;
 		this.reaction = reaction;
 		this.maxStoichiometricCoefficient = maxStoichiometricCoefficient;
+		this.formulaCache = speciesIndex.getFormulaCache();
+		this.speciesIndex = speciesIndex;
+		this.equivalentIdToCofactor = equivalentIdToCofactor;
 		reactantCofactors.addAll( cofactors );
 		productCofactors.addAll( cofactors );
-		fillMatrix();
+		matrix = fillMatrix();
+		transposedMatrix = getTransposedMatrix();
 	}
 
 	/**
@@ -238,8 +325,7 @@ public class ReactionBalancer
 			}
 		}
 
-		final double[][] transposedMatrix = MathUtils.transpose( matrix );
-		final double[] stoichiometries = solver.solve( transposedMatrix, moleculeIds.toArray( new String[ moleculeIds.size() ] ), new double[ transposedMatrix.length ], CollectionUtils.toDoubleArray( lowerBounds ), CollectionUtils.toDoubleArray( upperBounds ), objectiveCoefficients );
+		final double[] stoichiometries = BalancingCache.getInstance().solve( solvers.get(), transposedMatrix, moleculeIds.toArray( new String[ moleculeIds.size() ] ), null, new double[ transposedMatrix.getRowCount() ], CollectionUtils.toDoubleArray( lowerBounds ), CollectionUtils.toDoubleArray( upperBounds ), objectiveCoefficients );
 
 		if( stoichiometries != null )
 		{
@@ -256,26 +342,41 @@ public class ReactionBalancer
 	 */
 	public boolean balance() throws Exception
 	{
-		final String EMPTY_STRING = ""; //$NON-NLS-1$
-		final double[][] transposedMatrix = MathUtils.transpose( matrix );
-		final int m = transposedMatrix.length;
-		final int n = m > 0 ? transposedMatrix[ ZERO.intValue() ].length : ZERO.intValue();
-		final double[][] expandedMatrix = new double[ m + n ][];
+		return apply( solve() );
+	}
 
-		// Deep copy:
-		for( int i = 0; i < m; i++ )
+	/**
+	 * Solves the balancing problem without reading or updating the model, from
+	 * the participants, stoichiometries and bounds read when this balancer was
+	 * created, so that reactions may be solved concurrently and their
+	 * solutions applied later in order. Leaves this balancer unchanged, other
+	 * than its solve result, so that it may be checked and solved again.
+	 * 
+	 * @return stoichiometries, or null if no solution was found
+	 */
+	public double[] solve()
+	{
+		final double[] closedFormSolution = solveClosedForm();
+
+		solveResult = null;
+
+		if( closedFormSolution != null )
 		{
-			expandedMatrix[ i ] = Arrays.copyOf( transposedMatrix[ i ], 3 * n );
+			closedFormSolves.incrementAndGet();
+			return closedFormSolution;
 		}
 
+		final String EMPTY_STRING = ""; //$NON-NLS-1$
+		final int m = elementIds.size();
+		final int n = m > 0 ? moleculeIds.size() : ZERO.intValue();
+		final SparseMatrix expandedMatrix = n > 0 ? new SparseMatrix( transposedMatrix, m + n, 3 * n ) : new SparseMatrix( 0, 0 );
+
 		// Add actual, positive and negative coefficients (i.e. x + p - n):
-		for( int i = m; i < expandedMatrix.length; i++ )
+		for( int i = 0; i < n; i++ )
 		{
-			final double[] row = new double[ 3 * n ];
-			row[ i - m ] = 1;
-			row[ i - m + n ] = 1;
-			row[ i - m + 2 * n ] = -1;
-			expandedMatrix[ i ] = row;
+			expandedMatrix.set( m + i, i, 1 );
+			expandedMatrix.set( m + i, i + n, 1 );
+			expandedMatrix.set( m + i, i + 2 * n, -1 );
 		}
 
 		// Specify reactants / products to be integer, errors to be continuous:
@@ -283,12 +384,15 @@ public class ReactionBalancer
 		Arrays.fill( columnKinds, GLPKConstants.GLP_IV );
 
 		final double[] objectiveCoefficients = new double[ 3 * n ];
+		final List<String> columnIds = new ArrayList<>( moleculeIds );
+		final List<Double> columnLowerBounds = new ArrayList<>( lowerBounds );
+		final List<Double> columnUpperBounds = new ArrayList<>( upperBounds );
 
 		for( int i = n; i < 3 * n; i++ )
 		{
-			moleculeIds.add( EMPTY_STRING );
-			lowerBounds.add( Double.valueOf( ZERO.intValue() ) );
-			upperBounds.add( Double.valueOf( Integer.MAX_VALUE ) );
+			columnIds.add( EMPTY_STRING );
+			columnLowerBounds.add( Double.valueOf( ZERO.intValue() ) );
+			columnUpperBounds.add( Double.valueOf( Integer.MAX_VALUE ) );
 			objectiveCoefficients[ i ] = isRepeatingUnits.get( i % n ).booleanValue() ? 0 : 1;
 			columnKinds[ i ] = GLPKConstants.GLP_CV;
 		}
@@ -297,12 +401,110 @@ public class ReactionBalancer
 
 		for( int i = 0; i < n; i++ )
 		{
-			final SpeciesReference ref = allSpeciesReferences.get( i );
-			rowBounds[ i + m ] = ref == null || isRepeatingUnits.get( i ).booleanValue() ? 0 : ref.getStoichiometry();
+			rowBounds[ i + m ] = isRepeatingUnits.get( i ).booleanValue() ? 0 : participantStoichiometries.get( i ).doubleValue();
+		}
+
+		// The solver is confined to this thread, so a new result is this solve's:
+		final Solver solver = solvers.get();
+		final SolveResult lastResult = solver.getLastResult();
+		final double[] solution = BalancingCache.getInstance().solve( solver, expandedMatrix, columnIds.toArray( new String[ columnIds.size() ] ), columnKinds, rowBounds, CollectionUtils.toDoubleArray( columnLowerBounds ), CollectionUtils.toDoubleArray( columnUpperBounds ), objectiveCoefficients );
+		solveResult = solver.getLastResult() == lastResult ? null : solver.getLastResult();
+
+		if( solveResult != null )
+		{
+			milpSolves.incrementAndGet();
+		}
+
+		return solution;
+	}
+
+	/**
+	 * 
+	 * @return result of the solver in the last call to solve(), or null if
+	 *         the solution was found in closed form or in the BalancingCache
+	 */
+	public SolveResult getSolveResult()
+	{
+		return solveResult;
+	}
+
+	/**
+	 * Solves the balancing problem without the MILP, if its imbalance can be
+	 * made good by cofactors alone and that solution is the MILP's unique
+	 * optimum.
+	 * 
+	 * @return solution in the form of the MILP's (actual, positive and negative
+	 *         coefficients), or null if the MILP must be solved
+	 */
+	private double[] solveClosedForm()
+	{
+		final int m = elementIds.size();
+		final int n = moleculeIds.size();
+
+		if( m == 0 || isRepeatingUnits.contains( Boolean.TRUE ) )
+		{
+			return null;
 		}
 
-		final double[] stoichiometries = solver.solve( expandedMatrix, moleculeIds.toArray( new String[ moleculeIds.size() ] ), columnKinds, rowBounds, CollectionUtils.toDoubleArray( lowerBounds ), CollectionUtils.toDoubleArray( upperBounds ), objectiveCoefficients );
+		final int[][] rows = new int[ n ][ m ];
+		final boolean[] isReactant = new boolean[ n ];
+		final boolean[] isCofactor = new boolean[ n ];
+		final double[] currentStoichiometries = CollectionUtils.toDoubleArray( participantStoichiometries );
 
+		for( int i = 0; i < n; i++ )
+		{
+			System.arraycopy( matrix, i * m, rows[ i ], 0, m );
+			isReactant[ i ] = isReactants.get( i ).booleanValue();
+			isCofactor[ i ] = isCofactors.get( i ).booleanValue();
+		}
+
+		final double[] solution = CofactorBalancer.solve( rows, isReactant, isCofactor, currentStoichiometries, CollectionUtils.toDoubleArray( lowerBounds ), CollectionUtils.toDoubleArray( upperBounds ) );
+
+		if( solution == null )
+		{
+			return null;
+		}
+
+		final double[] expandedSolution = new double[ 3 * n ];
+
+		for( int i = 0; i < n; i++ )
+		{
+			expandedSolution[ i ] = solution[ i ];
+			expandedSolution[ i + n ] = Math.max( currentStoichiometries[ i ] - solution[ i ], 0 );
+			expandedSolution[ i + 2 * n ] = Math.max( solution[ i ] - currentStoichiometries[ i ], 0 );
+		}
+
+		return expandedSolution;
+	}
+
+	/**
+	 * 
+	 * @return number of reactions solved in closed form, without the MILP
+	 */
+	public static long getClosedFormSolveCount()
+	{
+		return closedFormSolves.get();
+	}
+
+	/**
+	 * 
+	 * @return number of reactions solved by the MILP
+	 */
+	public static long getMilpSolveCount()
+	{
+		return milpSolves.get();
+	}
+
+	/**
+	 * Updates the reaction, and any repeating unit species, from a solution
+	 * of solve().
+	 * 
+	 * @param stoichiometries
+	 * @return boolean
+	 * @throws Exception
+	 */
+	public boolean apply( final double[] stoichiometries ) throws Exception
+	{
 		if( stoichiometries != null )
 		{
 			return fixReaction( stoichiometries );
@@ -311,6 +513,15 @@ public class ReactionBalancer
 		return false;
 	}
 
+	/**
+	 * Closes the calling thread's solver, for example before a worker thread
+	 * finishes.
+	 */
+	public static void releaseSolver()
+	{
+		solvers.release();
+	}
+
 	/**
 	 * 
 	 * @return updatedSpeciesIds
@@ -322,42 +533,65 @@ public class ReactionBalancer
 
 	/**
 	 * 
-	 * @return List<List<Integer>>
-	 * @throws Exception
+	 * @return SparseMatrix of element (row) by participant (column) counts
 	 */
-	private void fillMatrix() throws Exception
+	private SparseMatrix getTransposedMatrix()
 	{
-		int columns = 0;
+		final int m = elementIds.size();
+		final SparseMatrix transposed = new SparseMatrix( m, moleculeIds.size() );
 
+		for( int i = 0; i < moleculeIds.size(); i++ )
+		{
+			for( int j = 0; j < m; j++ )
+			{
+				transposed.set( j, i, matrix[ i * m + j ] );
+			}
+		}
+
+		return transposed;
+	}
+
+	/**
+	 * 
+	 * @return int[] matrix, sized once all participants and elements are known
+	 * @throws Exception
+	 */
+	private int[] fillMatrix() throws Exception
+	{
+		// Rows hold only the elements known when they were added:
+		final List<int[]> rows = new ArrayList<>();
 		final boolean isTransport = SbmlUtils.isTransport( model, reaction );
 
 		for( int l = 0; l < reaction.getNumReactants(); l++ )
 		{
-			columns = Math.max( columns, addSpeciesReference( isTransport, reaction.getReactant( l ), true ) );
+			addSpeciesReference( isTransport, reaction.getReactant( l ), true, rows );
 		}
 
 		for( int l = 0; l < reaction.getNumProducts(); l++ )
 		{
-			columns = Math.max( columns, addSpeciesReference( isTransport, reaction.getProduct( l ), false ) );
+			addSpeciesReference( isTransport, reaction.getProduct( l ), false, rows );
 		}
 
 		for( ChebiTerm cofactor : reactantCofactors )
 		{
-			columns = Math.max( columns, addCofactor( cofactor, true, reactantCofactors ) );
+			addCofactor( cofactor, true, reactantCofactors, rows );
 		}
 
 		for( ChebiTerm cofactor : productCofactors )
 		{
-			columns = Math.max( columns, addCofactor( cofactor, false, productCofactors ) );
+			addCofactor( cofactor, false, productCofactors, rows );
 		}
 
-		for( List<Integer> row : matrix )
+		final int m = elementIds.size();
+		final int[] filledMatrix = new int[ rows.size() * m ];
+
+		for( int i = 0; i < rows.size(); i++ )
 		{
-			for( int i = row.size(); i < columns; i++ )
-			{
-				row.add( ZERO );
-			}
+			final int[] row = rows.get( i );
+			System.arraycopy( row, 0, filledMatrix, i * m, row.length );
 		}
+
+		return filledMatrix;
 	}
 
 	/**
@@ -365,15 +599,15 @@ public class ReactionBalancer
 	 * @param isTransport
 	 * @param speciesReference
 	 * @param isReactant
-	 * @return int
+	 * @param rows
 	 * @throws Exception
 	 */
-	private int addSpeciesReference( final boolean isTransport, final SpeciesReference speciesReference, final boolean isReactant ) throws Exception
+	private void addSpeciesReference( final boolean isTransport, final SpeciesReference speciesReference, final boolean isReactant, final List<int[]> rows ) throws Exception
 	{
 		final String speciesId = speciesReference.getSpecies();
 		final Species species = model.getSpecies( speciesId );
-		String formula = SbmlUtils.getFormula( model, species );
-		int charge = getCharge( model, species );
+		final Formula formula = formulaCache.getFormula( species );
+		final int charge = getCharge( species );
 
 		if( formula == null )
 		{
@@ -383,79 +617,107 @@ public class ReactionBalancer
 		final int LOWER_BOUND_INDEX = 0;
 		final int UPPER_BOUND_INDEX = 1;
 		final List<ChebiTerm> potentialCofactors = isReactant ? reactantCofactors : productCofactors;
-		final double[] bounds = getBounds( speciesReference, isTransport, potentialCofactors );
-		return addParticipant( species.getName(), formula, charge, speciesReference, null, isReactant, bounds[ LOWER_BOUND_INDEX ], bounds[ UPPER_BOUND_INDEX ], potentialCofactors );
+		final ChebiTerm cofactorTerm = getCofactor( speciesReference, potentialCofactors );
+		final double[] bounds = getBounds( speciesReference, isTransport, cofactorTerm );
+		addParticipant( species.getName(), formula, charge, speciesReference, null, isReactant, false, cofactorTerm != null, bounds[ LOWER_BOUND_INDEX ], bounds[ UPPER_BOUND_INDEX ], potentialCofactors, rows );
 	}
 
 	/**
+	 * Finds the cofactor to which the species is equivalent, and removes it
+	 * from the potential cofactors, so that it is not added again.
 	 * 
 	 * @param speciesReference
-	 * @param isTransport
 	 * @param potentialCofactors
-	 * @return double[]
+	 * @return ChebiTerm, or null if the species is not a cofactor
 	 * @throws Exception
 	 */
-	private double[] getBounds( final SpeciesReference speciesReference, final boolean isTransport, final Collection<ChebiTerm> potentialCofactors ) throws Exception
+	private ChebiTerm getCofactor( final SpeciesReference speciesReference, final Collection<ChebiTerm> potentialCofactors ) throws Exception
 	{
-		// Initialise with default values for non-cofactor:
-		double lowerBound = 1;
-		double upperBound = maxStoichiometricCoefficient;
-
 		final Species species = model.getSpecies( speciesReference.getSpecies() );
-		final Collection<OntologyTerm> ontologyTerms = SbmlUtils.getOntologyTerms( species ).keySet();
 
-		for( Iterator<ChebiTerm> iterator = potentialCofactors.iterator(); iterator.hasNext(); )
+		for( OntologyTerm ontologyTerm : SbmlUtils.getOntologyTerms( species ).keySet() )
 		{
-			final OntologyTerm cofactorTerm = iterator.next();
+			final ChebiTerm cofactorTerm = equivalentIdToCofactor.get( ontologyTerm.getId() );
 
-			for( OntologyTerm ontologyTerm : ontologyTerms )
+			if( cofactorTerm != null && potentialCofactors.remove( cofactorTerm ) )
 			{
-				// Just added a cofactor...
-				if( OntologyUtils.getInstance().areEquivalent( ontologyTerm, cofactorTerm, MatchCriteria.ANY ) )
-				{
-					iterator.remove();
-
-					final boolean protonPump = isTransport && ( cofactorTerm.getId().equals( PROTON ) || cofactorTerm.getId().equals( HYDRON ) );
-					lowerBound = protonPump ? (int)speciesReference.getStoichiometry() : 0;
-					upperBound = COFACTOR_MAX_STOICHIOMETRIC_COEFFICIENT;
-					return new double[] { lowerBound, upperBound };
-				}
+				return cofactorTerm;
 			}
 		}
 
-		// Added a non-cofactor:
-		return new double[] { lowerBound, upperBound };
+		return null;
 	}
 
 	/**
 	 * 
-	 * @param cofactor
-	 * @param isReactant
-	 * @param potentialCofactors
-	 * @return int
+	 * @param speciesReference
+	 * @param isTransport
+	 * @param cofactorTerm
+	 *            to which the species is equivalent, or null
+	 * @return double[]
+	 */
+	private double[] getBounds( final SpeciesReference speciesReference, final boolean isTransport, final ChebiTerm cofactorTerm )
+	{
+		if( cofactorTerm == null )
+		{
+			// Default values for non-cofactor:
+			return new double[] { 1, maxStoichiometricCoefficient };
+		}
+
+		final boolean protonPump = isTransport && ( cofactorTerm.getId().equals( PROTON ) || cofactorTerm.getId().equals( HYDRON ) );
+		return new double[] { protonPump ? (int)speciesReference.getStoichiometry() : 0, COFACTOR_MAX_STOICHIOMETRIC_COEFFICIENT };
+	}
+
+	/**
+	 * Maps the ChEBI id of each cofactor, and of each ChEBI term
+	 * cross-referenced from it (such as hydron for proton), to the cofactor.
+	 * Built once per set of cofactors, so that participants are matched to
+	 * cofactors by the ChEBI ids of their annotations without querying the
+	 * ontology for every reaction.
+	 * 
+	 * @param cofactors
+	 * @return Map<String,ChebiTerm>
 	 * @throws Exception
 	 */
-	private int addCofactor( final ChebiTerm cofactor, final boolean isReactant, final List<ChebiTerm> potentialCofactors ) throws Exception
+	public static Map<String,ChebiTerm> getEquivalentIds( final Collection<ChebiTerm> cofactors ) throws Exception
 	{
-		return addParticipant( cofactor.getName(), cofactor.getFormula(), cofactor.getCharge(), null, cofactor, isReactant, 0, COFACTOR_MAX_STOICHIOMETRIC_COEFFICIENT, potentialCofactors );
+		final OntologyUtils ontologyUtils = OntologyUtils.getInstance();
+		final Map<String,ChebiTerm> equivalentIdToCofactor = new LinkedHashMap<>();
+
+		for( ChebiTerm cofactor : cofactors )
+		{
+			equivalentIdToCofactor.put( cofactor.getId(), cofactor );
+		}
+
+		for( ChebiTerm cofactor : cofactors )
+		{
+			final Collection<OntologyTerm> cofactorTerms = new ArrayList<>();
+			cofactorTerms.add( cofactor );
+
+			for( OntologyTerm xref : ontologyUtils.getXrefs( cofactorTerms, Ontology.CHEBI ) )
+			{
+				// A cofactor is never remapped to another:
+				if( !equivalentIdToCofactor.containsKey( xref.getId() ) )
+				{
+					equivalentIdToCofactor.put( xref.getId(), cofactor );
+				}
+			}
+		}
+
+		return Collections.unmodifiableMap( equivalentIdToCofactor );
 	}
 
 	/**
 	 * 
-	 * @param name
-	 * @param formula
-	 * @param charge
-	 * @param speciesReference
 	 * @param cofactor
 	 * @param isReactant
-	 * @param lowerBound
-	 * @param upperBound
 	 * @param potentialCofactors
-	 * @return int
+	 * @param rows
+	 * @throws Exception
 	 */
-	private int addParticipant( final String name, final String formula, final int charge, final SpeciesReference speciesReference, final ChebiTerm cofactor, final boolean isReactant, final double lowerBound, final double upperBound, final List<ChebiTerm> potentialCofactors )
+	private void addCofactor( final ChebiTerm cofactor, final boolean isReactant, final List<ChebiTerm> potentialCofactors, final List<int[]> rows ) throws Exception
 	{
-		return addParticipant( name, Formula.getFormula( formula ), charge, speciesReference, cofactor, isReactant, false, lowerBound, upperBound, potentialCofactors );
+		addParticipant( cofactor.getName(), Formula.getFormula( cofactor.getFormula() ), cofactor.getCharge(), null, cofactor, isReactant, false, true, 0, COFACTOR_MAX_STOICHIOMETRIC_COEFFICIENT, potentialCofactors, rows );
 	}
 
 	/**
@@ -467,55 +729,49 @@ public class ReactionBalancer
 	 * @param cofactor
 	 * @param isReactant
 	 * @param isRepeatingUnit
+	 * @param isCofactor
 	 * @param lowerBound
 	 * @param upperBound
 	 * @param potentialCofactors
-	 * @return int
+	 * @param rows
 	 */
-	private int addParticipant( final String name, final Formula formula, final int charge, final SpeciesReference speciesReference, final ChebiTerm cofactor, final boolean isReactant, final boolean isRepeatingUnit, final double lowerBound, final double upperBound, final List<ChebiTerm> potentialCofactors )
+	private void addParticipant( final String name, final Formula formula, final int charge, final SpeciesReference speciesReference, final ChebiTerm cofactor, final boolean isReactant, final boolean isRepeatingUnit, final boolean isCofactor, final double lowerBound, final double upperBound, final List<ChebiTerm> potentialCofactors, final List<int[]> rows )
 	{
-		final Map<String,Integer> elementMap = formula.getElementMap();
+		// Copied, as formula may be shared through the FormulaCache:
+		final Map<String,Integer> elementMap = new LinkedHashMap<>( formula.getElementMap() );
 		elementMap.put( CHARGE, Integer.valueOf( charge ) );
 
-		final List<Integer> row = new ArrayList<>();
-		final int size = matrix.size() == 0 ? 0 : matrix.get( matrix.size() - 1 ).size();
-
-		for( int i = 0; i < size; i++ )
+		for( String elementId : elementMap.keySet() )
 		{
-			row.add( ZERO );
+			if( !elementIdToIndex.containsKey( elementId ) )
+			{
+				elementIdToIndex.put( elementId, Integer.valueOf( elementIds.size() ) );
+				elementIds.add( elementId );
+			}
 		}
 
+		final int[] row = new int[ elementIds.size() ];
+
 		for( Map.Entry<String,Integer> entry : elementMap.entrySet() )
 		{
-			final Integer elementCount = Integer.valueOf( ( isReactant ? 1 : -1 ) * entry.getValue().intValue() );
-			int elementIndex = elementIds.indexOf( entry.getKey() );
-
-			if( elementIndex == -1 )
-			{
-				elementIds.add( entry.getKey() );
-				row.add( elementCount );
-			}
-			else
-			{
-				row.set( elementIndex, elementCount );
-			}
+			row[ elementIdToIndex.get( entry.getKey() ).intValue() ] = ( isReactant ? 1 : -1 ) * entry.getValue().intValue();
 		}
 
-		matrix.add( row );
+		rows.add( row );
 		moleculeIds.add( name );
 		isReactants.add( Boolean.valueOf( isReactant ) );
 		isRepeatingUnits.add( Boolean.valueOf( isRepeatingUnit ) );
+		isCofactors.add( Boolean.valueOf( isCofactor ) );
 		allSpeciesReferences.add( speciesReference );
 		allCofactors.add( cofactor );
+		participantStoichiometries.add( Double.valueOf( speciesReference == null ? 0 : speciesReference.getStoichiometry() ) );
 		lowerBounds.add( Double.valueOf( lowerBound ) );
 		upperBounds.add( Double.valueOf( upperBound ) );
 
 		for( Formula repeatingUnit : formula.getRepeatingUnits() )
 		{
-			addParticipant( repeatingUnit.toString(), repeatingUnit, 0, speciesReference, cofactor, isReactant, true, 0, REPEATING_UNIT_MAX_STOICHIOMETRIC_COEFFICIENT, potentialCofactors );
+			addParticipant( repeatingUnit.toString(), repeatingUnit, 0, speciesReference, cofactor, isReactant, true, false, 0, REPEATING_UNIT_MAX_STOICHIOMETRIC_COEFFICIENT, potentialCofactors, rows );
 		}
-
-		return row.size();
 	}
 
 	/**
@@ -525,8 +781,16 @@ public class ReactionBalancer
 	private Map<String,Double> isBalanced( final double[] stoichiometries )
 	{
 		final Map<String,Double> imbalancedElementIdToCount = new HashMap<>();
-		final double[][] transposedMatrix = MathUtils.transpose( matrix );
-		final double[] product = MathUtils.multiply( transposedMatrix, stoichiometries );
+		final int m = elementIds.size();
+		final double[] product = new double[ m ];
+
+		for( int i = 0; i < moleculeIds.size(); i++ )
+		{
+			for( int j = 0; j < m; j++ )
+			{
+				product[ j ] += matrix[ i * m + j ] * stoichiometries[ i ];
+			}
+		}
 
 		for( int i = 0; i < product.length; i++ )
 		{
@@ -551,7 +815,7 @@ public class ReactionBalancer
 		final List<String> reactantsToRemove = new ArrayList<>();
 		final List<String> productsToRemove = new ArrayList<>();
 
-		for( int i = 0; i < matrix.size(); i++ )
+		for( int i = 0; i < moleculeIds.size(); i++ )
 		{
 			final double stoichiometry = stoichiometries[ i ];
 			final boolean isReactant = isReactants.get( i ).booleanValue();
@@ -565,7 +829,7 @@ public class ReactionBalancer
 				final Species species = model.getSpecies( speciesReference.getSpecies() );
 
 				// Generate updated formula and update species:
-				final Formula originalFormula = Formula.getFormula( SbmlUtils.getFormula( model, species ) );
+				final Formula originalFormula = formulaCache.getFormula( species );
 				updatedSpeciesIds.add( species.getId() );
 
 				final int updatedStoichiometry = isInteger( stoichiometry / speciesReference.getStoichiometry() );
@@ -579,7 +843,7 @@ public class ReactionBalancer
 				}
 
 				final Formula updatedFormula = Formula.expand( originalFormula, updatedStoichiometry );
-				SbmlUtils.setFormula( species, updatedFormula.toString() );
+				FormulaCache.setFormula( species, updatedFormula.toString() );
 			}
 			else if( stoichiometry == 0 )
 			{
@@ -650,55 +914,18 @@ public class ReactionBalancer
 				compartmentId = model.getSpecies( reaction.getListOfProducts().get( FIRST ).getSpecies() ).getCompartment();
 			}
 
-			final List<Object> ontologyTermAndCompartmentIdList = new ArrayList<>();
-			ontologyTermAndCompartmentIdList.add( ontologyTerm );
-			ontologyTermAndCompartmentIdList.add( compartmentId );
-			final Set<Object> ontologyTermAndCompartmentId = new HashSet<>( ontologyTermAndCompartmentIdList );
-			speciesId = ontologyTermAndCompartmentIdToSpeciesId.get( ontologyTermAndCompartmentId );
+			speciesId = speciesIndex.getSpeciesId( ontologyTerm, ontologyTerm.getFormula(), ontologyTerm.getCharge(), compartmentId );
 
 			if( speciesId == null )
 			{
-				final String formula = ontologyTerm.getFormula();
-				final int charge = ontologyTerm.getCharge();
-
-				for( int l = 0; l < model.getNumSpecies(); l++ )
-				{
-					final Species species = model.getSpecies( l );
-
-					if( species.isSetSBOTerm() && species.getSBOTerm() == SboUtils.SIMPLE_CHEMICAL && species.getCompartment().equals( compartmentId ) )
-					{
-						if( SbmlUtils.getOntologyTerms( species ).containsKey( ontologyTerm ) )
-						{
-							speciesId = species.getId();
-							break;
-						}
-						// else
-						// WARNING! Comparing formulae inherently dodgy, BUT we
-						// are only interested in H+, H20 and CO2 so should be
-						// unique.
-						final String currentFormula = SbmlUtils.getFormula( model, species );
-						final int currentCharge = SbmlUtils.getCharge( model, species );
-
-						if( currentFormula != null && currentFormula.equals( formula ) && currentCharge == charge )
-						{
-							speciesId = species.getId();
-							break;
-						}
-					}
-				}
-
-				if( speciesId == null )
-				{
-					final Species species = model.createSpecies();
-					species.setId( StringUtils.getUniqueId() + UNDERSCORE + compartmentId );
-					species.setName( ontologyTerm.getName() );
-					species.setCompartment( compartmentId );
-					species.setSBOTerm( SboUtils.SIMPLE_CHEMICAL );
-					SbmlUtils.addOntologyTerm( species, ontologyTerm, CVTerm.Type.BIOLOGICAL_QUALIFIER, CVTerm.Qualifier.BQB_IS );
-					speciesId = species.getId();
-				}
-
-				ontologyTermAndCompartmentIdToSpeciesId.put( ontologyTermAndCompartmentId, speciesId );
+				final Species species = model.createSpecies();
+				species.setId( StringUtils.getUniqueId() + UNDERSCORE + compartmentId );
+				species.setName( ontologyTerm.getName() );
+				species.setCompartment( compartmentId );
+				species.setSBOTerm( SboUtils.SIMPLE_CHEMICAL );
+				SbmlUtils.addOntologyTerm( species, ontologyTerm, CVTerm.Type.BIOLOGICAL_QUALIFIER, CVTerm.Qualifier.BQB_IS );
+				speciesIndex.add( species );
+				speciesId = species.getId();
 			}
 		}
 
@@ -707,14 +934,13 @@ public class ReactionBalancer
 
 	/**
 	 * 
-	 * @param model
 	 * @param species
 	 * @return int
 	 * @throws Exception
 	 */
-	private static int getCharge( final Model model, final Species species ) throws Exception
+	private int getCharge( final Species species ) throws Exception
 	{
-		int charge = SbmlUtils.getCharge( model, species );
+		int charge = formulaCache.getCharge( species );
 
 		if( charge == NumberUtils.UNDEFINED )
 		{
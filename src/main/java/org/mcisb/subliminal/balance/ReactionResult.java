@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.subliminal.balance;
+
+import java.util.*;
+import org.mcisb.math.linearprogramming.*;
+
+/**
+ * The outcome of balancing a single reaction, as reported to a
+ * BalancingReport when the reaction has been processed.
+ * 
+ * @author Neil Swainston
+ */
+public class ReactionResult
+{
+	/**
+	 * 
+	 * @author Neil Swainston
+	 */
+	public enum Outcome
+	{
+		/**
+		 * Not balanced, as an omitted process.
+		 */
+		OMITTED,
+
+		/**
+		 * Balanced as written.
+		 */
+		ALREADY_BALANCED,
+
+		/**
+		 * Balanced by updating its stoichiometries or participants.
+		 */
+		BALANCED,
+
+		/**
+		 * Imbalanced as written, balanced with reset stoichiometries, but left
+		 * unchanged.
+		 */
+		UNCHANGED,
+
+		/**
+		 * Could not be balanced.
+		 */
+		UNBALANCED,
+
+		/**
+		 * A participant has no formula.
+		 */
+		NO_FORMULA
+	}
+
+	/**
+	 * 
+	 */
+	private final String reactionId;
+
+	/**
+	 * 
+	 */
+	private final Outcome outcome;
+
+	/**
+	 * 
+	 */
+	private final Map<String,Double> residual;
+
+	/**
+	 * 
+	 */
+	private final Map<String,Double> resetResidual;
+
+	/**
+	 * 
+	 */
+	private final List<String> problematicSpeciesIds;
+
+	/**
+	 * 
+	 */
+	private final long nanos;
+
+	/**
+	 * 
+	 */
+	private final SolveResult.Status solveStatus;
+
+	/**
+	 * 
+	 */
+	private final long solveNanos;
+
+	/**
+	 * 
+	 * @param reactionId
+	 * @param outcome
+	 * @param residual
+	 *            element imbalance as written, or null if not checked
+	 * @param resetResidual
+	 *            element imbalance with reset stoichiometries, or null if not
+	 *            checked
+	 * @param problematicSpeciesIds
+	 * @param nanos
+	 *            time taken to process the reaction
+	 */
+	public ReactionResult( final String reactionId, final Outcome outcome, final Map<String,Double> residual, final Map<String,Double> resetResidual, final List<String> problematicSpeciesIds, final long nanos )
+	{
+		this( reactionId, outcome, residual, resetResidual, problematicSpeciesIds, nanos, null, 0 );
+	}
+
+	/**
+	 * 
+	 * @param reactionId
+	 * @param outcome
+	 * @param residual
+	 *            element imbalance as written, or null if not checked
+	 * @param resetResidual
+	 *            element imbalance with reset stoichiometries, or null if not
+	 *            checked
+	 * @param problematicSpeciesIds
+	 * @param nanos
+	 *            time taken to process the reaction
+	 * @param solveStatus
+	 *            status of the last solver run for the reaction, or null if
+	 *            none was run
+	 * @param solveNanos
+	 *            time taken by solver runs for the reaction
+	 */
+	public ReactionResult( final String reactionId, final Outcome outcome, final Map<String,Double> residual, final Map<String,Double> resetResidual, final List<String> problematicSpeciesIds, final long nanos, final SolveResult.Status solveStatus, final long solveNanos )
+	{
+		this.reactionId = reactionId;
+		this.outcome = outcome;
+		this.residual = residual == null ? null : Collections.unmodifiableMap( new TreeMap<>( residual ) );
+		this.resetResidual = resetResidual == null ? null : Collections.unmodifiableMap( new TreeMap<>( resetResidual ) );
+		this.problematicSpeciesIds = Collections.unmodifiableList( new ArrayList<>( problematicSpeciesIds ) );
+		this.nanos = nanos;
+		this.solveStatus = solveStatus;
+		this.solveNanos = solveNanos;
+	}
+
+	/**
+	 * 
+	 * @return reaction id
+	 */
+	public String getReactionId()
+	{
+		return reactionId;
+	}
+
+	/**
+	 * 
+	 * @return Outcome
+	 */
+	public Outcome getOutcome()
+	{
+		return outcome;
+	}
+
+	/**
+	 * 
+	 * @return element imbalance as written, by element id, or null if not
+	 *         checked
+	 */
+	public Map<String,Double> getResidual()
+	{
+		return residual;
+	}
+
+	/**
+	 * 
+	 * @return element imbalance with reset stoichiometries, by element id, or
+	 *         null if not checked
+	 */
+	public Map<String,Double> getResetResidual()
+	{
+		return resetResidual;
+	}
+
+	/**
+	 * 
+	 * @return ids of species that may have prevented balancing
+	 */
+	public List<String> getProblematicSpeciesIds()
+	{
+		return problematicSpeciesIds;
+	}
+
+	/**
+	 * 
+	 * @return time taken to process the reaction, in nanoseconds
+	 */
+	public long getNanos()
+	{
+		return nanos;
+	}
+
+	/**
+	 * 
+	 * @return status of the last solver run for the reaction, or null if none
+	 *         was run, as it was balanced in closed form or from the
+	 *         BalancingCache
+	 */
+	public SolveResult.Status getSolveStatus()
+	{
+		return solveStatus;
+	}
+
+	/**
+	 * 
+	 * @return time taken by solver runs for the reaction, in nanoseconds
+	 */
+	public long getSolveNanos()
+	{
+		return solveNanos;
+	}
+}
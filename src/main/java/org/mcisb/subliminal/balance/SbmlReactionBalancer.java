@@ -14,6 +14,7 @@ package org.mcisb.subliminal.balance;
 import java.util.*;
 import org.mcisb.ontology.*;
 import org.mcisb.ontology.chebi.*;
+import org.mcisb.subliminal.sbml.*;
 import org.sbml.jsbml.*;
 
 /**
@@ -32,10 +33,15 @@ public class SbmlReactionBalancer
 	 */
 	public final static int UPDATED_SPECIES = 1;
 
+	/**
+	 * ChEBI ids equivalent to each cofactor, enumerated once.
+	 */
+	private final Map<String,ChebiTerm> equivalentIdToCofactor;
+
 	/**
 	 * 
 	 */
-	private final Set<ChebiTerm> cofactors = new LinkedHashSet<>();
+	private SpeciesIndex speciesIndex = null;
 
 	/**
 	 * 
@@ -46,8 +52,10 @@ public class SbmlReactionBalancer
 		final String PROTON = "CHEBI:24636"; //$NON-NLS-1$
 		final String WATER = "CHEBI:15377"; //$NON-NLS-1$
 		final OntologyUtils ontologyUtils = OntologyUtils.getInstance();
+		final Set<ChebiTerm> cofactors = new LinkedHashSet<>();
 		cofactors.add( (ChebiTerm)ontologyUtils.getOntologyTerm( Ontology.CHEBI, PROTON ) );
 		cofactors.add( (ChebiTerm)ontologyUtils.getOntologyTerm( Ontology.CHEBI, WATER ) );
+		equivalentIdToCofactor = ReactionBalancer.getEquivalentIds( cofactors );
 	}
 
 	/**
@@ -60,7 +68,7 @@ public class SbmlReactionBalancer
 	 */
 	public Map<String,Double> isBalanced( final Model model, final Reaction reaction, final int maxStoichiometricCoefficient ) throws Exception
 	{
-		return new ReactionBalancer( model, reaction, cofactors, maxStoichiometricCoefficient ).isBalanced();
+		return new ReactionBalancer( model, reaction, equivalentIdToCofactor, maxStoichiometricCoefficient, getSpeciesIndex( model ) ).isBalanced();
 	}
 
 	/**
@@ -73,7 +81,7 @@ public class SbmlReactionBalancer
 	 */
 	public Map<String,Double> isBalancedResetStoichiometry( final Model model, final Reaction reaction, final int maxStoichiometricCoefficient ) throws Exception
 	{
-		return new ReactionBalancer( model, reaction, cofactors, maxStoichiometricCoefficient ).isBalancedResetStoichiometry();
+		return new ReactionBalancer( model, reaction, equivalentIdToCofactor, maxStoichiometricCoefficient, getSpeciesIndex( model ) ).isBalancedResetStoichiometry();
 	}
 
 	/**
@@ -86,8 +94,66 @@ public class SbmlReactionBalancer
 	 */
 	public Object[] balance( final Model model, final Reaction reaction, final int maxStoichiometricCoefficient ) throws Exception
 	{
-		final ReactionBalancer balancer = new ReactionBalancer( model, reaction, cofactors, maxStoichiometricCoefficient );
-		return new Object[] { Boolean.valueOf( balancer.balance() ), balancer.getUpdatedSpeciesIds() };
+		final ReactionBalancer balancer = getReactionBalancer( model, reaction, maxStoichiometricCoefficient );
+		return apply( balancer, balancer.solve() );
+	}
+
+	/**
+	 * 
+	 * @param model
+	 * @param reaction
+	 * @param maxStoichiometricCoefficient
+	 * @return ReactionBalancer, whose solve() may be called concurrently with
+	 *         those of other reactions
+	 * @throws Exception
+	 */
+	public ReactionBalancer getReactionBalancer( final Model model, final Reaction reaction, final int maxStoichiometricCoefficient ) throws Exception
+	{
+		return new ReactionBalancer( model, reaction, equivalentIdToCofactor, maxStoichiometricCoefficient, getSpeciesIndex( model ) );
+	}
+
+	/**
+	 * Returns the formula cache of the model most recently balanced, shared by
+	 * its ReactionBalancers. Formulae and charges changed other than through
+	 * it must be invalidated in it.
+	 * 
+	 * @param model
+	 * @return FormulaCache
+	 */
+	public FormulaCache getFormulaCache( final Model model )
+	{
+		return getSpeciesIndex( model ).getFormulaCache();
+	}
+
+	/**
+	 * Returns the species index of the model most recently balanced, shared by
+	 * its ReactionBalancers to place cofactors.
+	 * 
+	 * @param model
+	 * @return SpeciesIndex
+	 */
+	public synchronized SpeciesIndex getSpeciesIndex( final Model model )
+	{
+		if( speciesIndex == null || speciesIndex.getFormulaCache().getModel() != model )
+		{
+			speciesIndex = new SpeciesIndex( new FormulaCache( model ) );
+		}
+
+		return speciesIndex;
+	}
+
+	/**
+	 * Equivalent to balance(), given a solution previously returned by
+	 * balancer.solve().
+	 * 
+	 * @param balancer
+	 * @param stoichiometries
+	 * @return boolean[]
+	 * @throws Exception
+	 */
+	public static Object[] apply( final ReactionBalancer balancer, final double[] stoichiometries ) throws Exception
+	{
+		return new Object[] { Boolean.valueOf( balancer.apply( stoichiometries ) ), balancer.getUpdatedSpeciesIds() };
 	}
 
 	/**
@@ -100,7 +166,7 @@ public class SbmlReactionBalancer
 	 */
 	public Object[] balanceMinimiseStoichiometries( final Model model, final Reaction reaction, final int maxStoichiometricCoefficient ) throws Exception
 	{
-		final ReactionBalancer balancer = new ReactionBalancer( model, reaction, cofactors, maxStoichiometricCoefficient );
+		final ReactionBalancer balancer = new ReactionBalancer( model, reaction, equivalentIdToCofactor, maxStoichiometricCoefficient, getSpeciesIndex( model ) );
 		return new Object[] { Boolean.valueOf( balancer.balanceMinimiseStoichiometries() ), balancer.getUpdatedSpeciesIds() };
 	}
 }
\ No newline at end of file
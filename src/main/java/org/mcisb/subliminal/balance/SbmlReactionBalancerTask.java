@@ -13,10 +13,15 @@ package org.mcisb.subliminal.balance;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
 
+import org.mcisb.math.linearprogramming.*;
 import org.mcisb.ontology.sbo.*;
 import org.mcisb.sbml.*;
 import org.mcisb.subliminal.model.*;
+import org.mcisb.subliminal.sbml.*;
 import org.mcisb.ui.util.*;
 import org.mcisb.util.chem.*;
 import org.sbml.jsbml.*;
@@ -27,6 +32,12 @@ import org.sbml.jsbml.*;
  */
 public class SbmlReactionBalancerTask
 {
+	/**
+	 * Reactions that each partition may solve ahead of the reaction being
+	 * applied, bounding the solutions held in memory.
+	 */
+	private static final int SPECULATIONS_PER_PARTITION = 4;
+
 	/**
 	 * 
 	 */
@@ -57,16 +68,53 @@ public class SbmlReactionBalancerTask
 	 */
 	private final Map<String,Map<String,Double>[]> unbalancedReactions = new LinkedHashMap<>();
 
+	/**
+	 * Problematic species of each unbalanced reaction, from which
+	 * problematicMetaboliteDegree is collated.
+	 */
+	private final Map<String,List<Species>> reactionIdToProblematicSpecies = new HashMap<>();
+
+	/**
+	 * 
+	 */
+	private final Collection<String> updatedSpeciesIds = new LinkedHashSet<>();
+
 	/**
 	 * 
 	 */
 	private boolean updatedSpecies = false;
 
+	/**
+	 * Held to read the model while solving reactions concurrently, and to
+	 * update it while applying their solutions.
+	 */
+	private final ReadWriteLock modelLock = new ReentrantReadWriteLock();
+
 	/**
 	 * 
 	 */
 	private int maxStoichiometricCoefficient;
 
+	/**
+	 * 
+	 */
+	private ExecutorService executorService = null;
+
+	/**
+	 * 
+	 */
+	private int partitions = 1;
+
+	/**
+	 * 
+	 */
+	private BalancingReport report = null;
+
+	/**
+	 * 
+	 */
+	private boolean retainResults = true;
+
 	/**
 	 * 
 	 * @param inFile
@@ -106,7 +154,51 @@ public class SbmlReactionBalancerTask
 	}
 
 	/**
-	 * @return the balancedReactionIds
+	 * Balances reactions in parallel. The given number of tasks solve
+	 * reactions concurrently, in order, without updating the model. Each
+	 * solution is applied serially, in reaction order, as soon as it is ready,
+	 * with any reaction whose species were changed by an earlier reaction (or
+	 * that has R groups to expand) balanced again serially, so that the result
+	 * is the same as that of a serial run.
+	 * 
+	 * @param executorService
+	 *            or null to balance serially
+	 * @param partitions
+	 */
+	public void setExecutorService( final ExecutorService executorService, final int partitions )
+	{
+		this.executorService = executorService;
+		this.partitions = partitions;
+	}
+
+	/**
+	 * Sets a report to which the result of each reaction is written as soon
+	 * as it has been processed. The report is not closed by this task.
+	 * 
+	 * @param report
+	 *            or null
+	 */
+	public void setReport( final BalancingReport report )
+	{
+		this.report = report;
+	}
+
+	/**
+	 * Sets whether the residuals and problematic species of unbalanced
+	 * reactions are retained, for getUnbalancedReactions,
+	 * getProblematicMetaboliteDegree and printResult. They need not be when a
+	 * report is set, so that large models may be balanced without holding
+	 * every result in memory. Incremental runs require them to be retained.
+	 * 
+	 * @param retainResults
+	 */
+	public void setRetainResults( final boolean retainResults )
+	{
+		this.retainResults = retainResults;
+	}
+
+	/**
+	 * @return the ids of reactions balanced by the last run
 	 */
 	public Collection<String> getBalancedReactionIds()
 	{
@@ -114,7 +206,7 @@ public class SbmlReactionBalancerTask
 	}
 
 	/**
-	 * @return the unbalancedReactions
+	 * @return the unbalancedReactions, of all runs, in model order
 	 */
 	public Map<String,Map<String,Double>[]> getUnbalancedReactions()
 	{
@@ -135,88 +227,339 @@ public class SbmlReactionBalancerTask
 	 * @return SBMLDocument
 	 * @throws Exception
 	 */
-	@SuppressWarnings("unchecked")
 	public SBMLDocument run() throws Exception
+	{
+		return run( null );
+	}
+
+	/**
+	 * Balances the given reactions, replacing any results of previous runs for
+	 * them and keeping those of other reactions. Results of reactions no longer
+	 * in the model are discarded.
+	 * 
+	 * @param reactionIds
+	 *            or null to balance all reactions
+	 * @return SBMLDocument
+	 * @throws Exception
+	 */
+	public SBMLDocument run( final Collection<String> reactionIds ) throws Exception
 	{
 		final Model model = document.getModel();
+		final Collection<String> reactionIdSet = reactionIds == null ? null : new HashSet<>( reactionIds );
+		final List<Reaction> reactions = new ArrayList<>();
+
+		balancedReactionIds.clear();
+		updatedSpeciesIds.clear();
+		updatedSpecies = false;
+
+		if( reactionIdSet == null )
+		{
+			unbalancedReactions.clear();
+			reactionIdToProblematicSpecies.clear();
+		}
+		else
+		{
+			unbalancedReactions.keySet().removeAll( reactionIdSet );
+			reactionIdToProblematicSpecies.keySet().removeAll( reactionIdSet );
+		}
 
 		for( int l = 0; l < model.getNumReactions(); l++ )
 		{
 			final Reaction reaction = model.getReaction( l );
 
-			try
+			if( reactionIdSet == null || reactionIdSet.contains( reaction.getId() ) )
+			{
+				reactions.add( reaction );
+			}
+		}
+
+		final Speculator speculator = executorService == null ? null : new Speculator( model, reactions );
+
+		try
+		{
+			for( int i = 0; i < reactions.size(); i++ )
 			{
-				final boolean omittedProcess = reaction.getSBOTerm() == SboUtils.OMITTED_PROCESS;
+				final Speculation speculation = speculator == null ? null : speculator.take( i );
+				final Lock lock = modelLock.writeLock();
+				lock.lock();
 
-				if( !omittedProcess )
+				try
 				{
-					final Map<String,Formula> speciesIdToOriginalFormula = expandRgroups( model, reaction );
-					final Map<String,Double> imbalancedElementIdToCount = balancer.isBalanced( model, reaction, maxStoichiometricCoefficient );
+					balance( model, reactions.get( i ), speculation );
+				}
+				finally
+				{
+					lock.unlock();
+				}
+			}
+		}
+		finally
+		{
+			if( speculator != null )
+			{
+				speculator.stop();
+			}
+		}
+
+		collate( model );
+
+		if( outFile != null )
+		{
+			XmlFormatter.getInstance().write( document, outFile );
+		}
 
-					if( imbalancedElementIdToCount.size() > 0 )
+		return document;
+	}
+
+	/**
+	 * 
+	 * @param model
+	 * @param reaction
+	 * @param speculation
+	 *            concurrently solved, or null
+	 * @throws Exception
+	 */
+	@SuppressWarnings("unchecked")
+	private void balance( final Model model, final Reaction reaction, final Speculation speculation ) throws Exception
+	{
+		final long start = System.nanoTime();
+		ReactionResult.Outcome outcome = ReactionResult.Outcome.OMITTED;
+		Map<String,Double> imbalancedElementIdToCount = null;
+		Map<String,Double> imbalancedElementIdToCountResetStoichiometry = null;
+		List<Species> problematicSpecies = Collections.emptyList();
+		final List<SolveResult> solveResults = new ArrayList<>();
+
+		try
+		{
+			final boolean omittedProcess = reaction.getSBOTerm() == SboUtils.OMITTED_PROCESS;
+
+			if( !omittedProcess )
+			{
+				final Map<String,Formula> speciesIdToOriginalFormula = expandRgroups( model, reaction, updatedSpeciesIds );
+				final boolean speculated = speculation != null && speculation.fingerprint.equals( getFingerprint( model, reaction ) );
+				final ReactionBalancer reactionBalancer = speculated ? speculation.reactionBalancer : balancer.getReactionBalancer( model, reaction, maxStoichiometricCoefficient );
+				imbalancedElementIdToCount = speculated ? speculation.imbalancedElementIdToCount : reactionBalancer.isBalanced();
+				outcome = ReactionResult.Outcome.ALREADY_BALANCED;
+
+				if( imbalancedElementIdToCount.size() > 0 )
+				{
+					final double[] stoichiometries = speculated ? speculation.stoichiometries : reactionBalancer.solve();
+					addSolveResult( reactionBalancer, solveResults );
+					final Object[] balanceReturnValue = SbmlReactionBalancer.apply( reactionBalancer, stoichiometries );
+
+					if( ( (Boolean)balanceReturnValue[ SbmlReactionBalancer.IS_BALANCED ] ).booleanValue() )
 					{
-						final Object[] balanceReturnValue = balancer.balance( model, reaction, maxStoichiometricCoefficient );
+						balancedReactionIds.add( reaction.getId() );
+						outcome = ReactionResult.Outcome.BALANCED;
 
-						if( ( (Boolean)balanceReturnValue[ SbmlReactionBalancer.IS_BALANCED ] ).booleanValue() )
+						for( String speciesId : (Collection<String>)balanceReturnValue[ SbmlReactionBalancer.UPDATED_SPECIES ] )
 						{
-							balancedReactionIds.add( reaction.getId() );
+							FormulaCache.set( model.getSpecies( speciesId ), SbmlUtils.NON_SPECIFIC_FORMULA, speciesIdToOriginalFormula.get( speciesId ) );
+							// System.out.println( reaction.getId() + "\t" + speciesId + "\t" + SbmlUtils.getFormula( model, model.getSpecies( speciesId ) ) + "\t" + speciesIdToOriginalFormula.get( speciesId ) ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+							updatedSpeciesIds.add( speciesId );
+							updatedSpecies = true;
+						}
+					}
+					else
+					{
+						// The reaction is unchanged, and its balancer still
+						// valid, unless a solution was found but not applied:
+						final ReactionBalancer resetBalancer = stoichiometries == null ? reactionBalancer : balancer.getReactionBalancer( model, reaction, maxStoichiometricCoefficient );
+						imbalancedElementIdToCountResetStoichiometry = resetBalancer.isBalancedResetStoichiometry();
+						outcome = ReactionResult.Outcome.UNCHANGED;
+
+						if( imbalancedElementIdToCountResetStoichiometry.size() > 0 )
+						{
+							// Solving an unchanged problem again finds no
+							// solution again:
+							final Object[] balanceReturnValueResetStoichiometry;
 
-							for( String speciesId : (Collection<String>)balanceReturnValue[ SbmlReactionBalancer.UPDATED_SPECIES ] )
+							if( stoichiometries == null )
 							{
-								SbmlUtils.set( model.getSpecies( speciesId ), SbmlUtils.NON_SPECIFIC_FORMULA, speciesIdToOriginalFormula.get( speciesId ) );
-								// System.out.println( reaction.getId() + "\t" + speciesId + "\t" + SbmlUtils.getFormula( model, model.getSpecies( speciesId ) ) + "\t" + speciesIdToOriginalFormula.get( speciesId ) ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-								updatedSpecies = true;
+								balanceReturnValueResetStoichiometry = balanceReturnValue;
+							}
+							else
+							{
+								balanceReturnValueResetStoichiometry = SbmlReactionBalancer.apply( resetBalancer, resetBalancer.solve() );
+								addSolveResult( resetBalancer, solveResults );
 							}
-						}
-						else
-						{
-							final Map<String,Double> imbalancedElementIdToCountResetStoichiometry = balancer.isBalancedResetStoichiometry( model, reaction, maxStoichiometricCoefficient );
 
-							if( imbalancedElementIdToCountResetStoichiometry.size() > 0 )
+							if( ( (Boolean)balanceReturnValue[ SbmlReactionBalancer.IS_BALANCED ] ).booleanValue() )
 							{
-								final Object[] balanceReturnValueResetStoichiometry = balancer.balance( model, reaction, maxStoichiometricCoefficient );
+								balancedReactionIds.add( reaction.getId() );
+								outcome = ReactionResult.Outcome.BALANCED;
 
-								if( ( (Boolean)balanceReturnValue[ SbmlReactionBalancer.IS_BALANCED ] ).booleanValue() )
+								for( String speciesId : (Collection<String>)balanceReturnValueResetStoichiometry[ SbmlReactionBalancer.UPDATED_SPECIES ] )
 								{
-									balancedReactionIds.add( reaction.getId() );
-
-									for( String speciesId : (Collection<String>)balanceReturnValueResetStoichiometry[ SbmlReactionBalancer.UPDATED_SPECIES ] )
-									{
-										SbmlUtils.set( model.getSpecies( speciesId ), SbmlUtils.NON_SPECIFIC_FORMULA, speciesIdToOriginalFormula.get( speciesId ) );
-										// System.out.println( reaction.getId() + "\t" + speciesId + "\t" + SbmlUtils.getFormula( model, model.getSpecies( speciesId ) ) + "\t" + speciesIdToOriginalFormula.get( speciesId ) ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-										updatedSpecies = true;
-									}
+									FormulaCache.set( model.getSpecies( speciesId ), SbmlUtils.NON_SPECIFIC_FORMULA, speciesIdToOriginalFormula.get( speciesId ) );
+									// System.out.println( reaction.getId() + "\t" + speciesId + "\t" + SbmlUtils.getFormula( model, model.getSpecies( speciesId ) ) + "\t" + speciesIdToOriginalFormula.get( speciesId ) ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+									updatedSpeciesIds.add( speciesId );
+									updatedSpecies = true;
 								}
-								else
+							}
+							else
+							{
+								// Revert formula mapping from R-group if
+								// unsuccessfully balanced:
+								for( Map.Entry<String,Formula> entry : speciesIdToOriginalFormula.entrySet() )
 								{
-									// Revert formula mapping from R-group if
-									// unsuccessfully balanced:
-									for( Map.Entry<String,Formula> entry : speciesIdToOriginalFormula.entrySet() )
-									{
-										SbmlUtils.setFormula( model.getSpecies( entry.getKey() ), entry.getValue().toString() );
-									}
+									FormulaCache.setFormula( model.getSpecies( entry.getKey() ), entry.getValue().toString() );
+								}
 
+								outcome = ReactionResult.Outcome.UNBALANCED;
+								problematicSpecies = getParticipants( model, reaction );
+
+								if( retainResults )
+								{
 									unbalancedReactions.put( reaction.getId(), new Map[] { imbalancedElementIdToCount, imbalancedElementIdToCountResetStoichiometry } );
-									countProblematicMetabolites( model, reaction );
+									reactionIdToProblematicSpecies.put( reaction.getId(), problematicSpecies );
 								}
 							}
 						}
 					}
 				}
 			}
-			catch( NoFormulaException e )
+		}
+		catch( NoFormulaException e )
+		{
+			outcome = ReactionResult.Outcome.NO_FORMULA;
+			problematicSpecies = Arrays.asList( e.getSpecies() );
+
+			if( retainResults )
 			{
 				unbalancedReactions.put( reaction.getId(), null );
-				addProblematicMetabolite( e.getSpecies() );
+				reactionIdToProblematicSpecies.put( reaction.getId(), problematicSpecies );
 			}
 		}
 
-		if( outFile != null )
+		if( report != null )
 		{
-			XmlFormatter.getInstance().write( document, outFile );
+			final List<String> problematicSpeciesIds = new ArrayList<>();
+
+			for( Species species : problematicSpecies )
+			{
+				problematicSpeciesIds.add( species.getId() );
+			}
+
+			long solveNanos = 0;
+
+			for( SolveResult solveResult : solveResults )
+			{
+				solveNanos += solveResult.getNanos();
+			}
+
+			final SolveResult.Status solveStatus = solveResults.isEmpty() ? null : solveResults.get( solveResults.size() - 1 ).getStatus();
+			report.write( new ReactionResult( reaction.getId(), outcome, imbalancedElementIdToCount, imbalancedElementIdToCountResetStoichiometry, problematicSpeciesIds, System.nanoTime() - start, solveStatus, solveNanos ) );
 		}
+	}
 
-		return document;
+	/**
+	 * 
+	 * @param reactionBalancer
+	 * @param solveResults
+	 */
+	private static void addSolveResult( final ReactionBalancer reactionBalancer, final List<SolveResult> solveResults )
+	{
+		final SolveResult solveResult = reactionBalancer.getSolveResult();
+
+		if( solveResult != null )
+		{
+			solveResults.add( solveResult );
+		}
+	}
+
+	/**
+	 * Solves a reaction without updating the model.
+	 * 
+	 * @param model
+	 * @param reaction
+	 * @return Speculation, or null if the reaction is to be balanced serially
+	 */
+	private Speculation speculate( final Model model, final Reaction reaction )
+	{
+		try
+		{
+			if( reaction.getSBOTerm() == SboUtils.OMITTED_PROCESS )
+			{
+				return null;
+			}
+
+			final List<Object> fingerprint;
+			final ReactionBalancer reactionBalancer;
+			final Map<String,Double> imbalancedElementIdToCount;
+			final Lock lock = modelLock.readLock();
+			lock.lock();
+
+			try
+			{
+				fingerprint = getFingerprint( model, reaction );
+
+				if( fingerprint == null )
+				{
+					return null;
+				}
+
+				reactionBalancer = balancer.getReactionBalancer( model, reaction, maxStoichiometricCoefficient );
+				imbalancedElementIdToCount = reactionBalancer.isBalanced();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+
+			// Solved from the stoichiometries and bounds read above, so
+			// outside the lock:
+			final double[] stoichiometries = imbalancedElementIdToCount.size() > 0 ? reactionBalancer.solve() : null;
+			return new Speculation( fingerprint, imbalancedElementIdToCount, reactionBalancer, stoichiometries );
+		}
+		catch( Exception e )
+		{
+			// Balanced again serially, which reports any error:
+			return null;
+		}
+	}
+
+	/**
+	 * The balancing problem is also determined by the annotations of the
+	 * participants, which decide which are cofactors and so their bounds, and
+	 * by the compartments that decide whether the reaction is a transport.
+	 * These are left out as balancing never changes them for an existing
+	 * species: reactions are applied serially, and each application changes
+	 * only the stoichiometries of its own reaction, the formulae of its
+	 * species, and adds new cofactor species.
+	 * 
+	 * @param model
+	 * @param reaction
+	 * @return the id, stoichiometry, formula and charge of each participant,
+	 *         or null if a participant has no formula or has R groups
+	 * @throws Exception
+	 */
+	private List<Object> getFingerprint( final Model model, final Reaction reaction ) throws Exception
+	{
+		final FormulaCache formulaCache = balancer.getFormulaCache( model );
+		final List<SpeciesReference> speciesReferences = new ArrayList<>( reaction.getListOfReactants() );
+		speciesReferences.addAll( reaction.getListOfProducts() );
+
+		final List<Object> fingerprint = new ArrayList<>();
+
+		for( SpeciesReference ref : speciesReferences )
+		{
+			final Species species = model.getSpecies( ref.getSpecies() );
+			final String formulaString = formulaCache.getFormulaString( species );
+			final Formula formula = formulaCache.getFormula( species );
+
+			if( formula == null || formula.get( Formula.R_GROUP ) > 0 )
+			{
+				return null;
+			}
+
+			fingerprint.add( species.getId() );
+			fingerprint.add( Double.valueOf( ref.getStoichiometry() ) );
+			fingerprint.add( formulaString );
+			fingerprint.add( Integer.valueOf( formulaCache.getCharge( species ) ) );
+		}
+
+		return fingerprint;
 	}
 
 	/**
@@ -270,39 +613,80 @@ public class SbmlReactionBalancerTask
 	}
 
 	/**
+	 * 
+	 * @return ids of species whose formulae were updated by the last run, by
+	 *         R group expansion or by balancing repeating units
+	 */
+	public Collection<String> getUpdatedSpeciesIds()
+	{
+		return updatedSpeciesIds;
+	}
+
+	/**
+	 * 
+	 * @param model
 	 * @param reaction
+	 * @return reactants and products of the reaction
 	 */
-	private void countProblematicMetabolites( final Model model, final Reaction reaction )
+	private static List<Species> getParticipants( final Model model, final Reaction reaction )
 	{
+		final List<Species> participants = new ArrayList<>();
+
 		for( int l = 0; l < reaction.getNumReactants(); l++ )
 		{
-			addProblematicMetabolite( model.getSpecies( reaction.getReactant( l ).getSpecies() ) );
+			participants.add( model.getSpecies( reaction.getReactant( l ).getSpecies() ) );
 		}
 
 		for( int l = 0; l < reaction.getNumProducts(); l++ )
 		{
-			addProblematicMetabolite( model.getSpecies( reaction.getProduct( l ).getSpecies() ) );
+			participants.add( model.getSpecies( reaction.getProduct( l ).getSpecies() ) );
 		}
+
+		return participants;
 	}
 
 	/**
+	 * Puts the results of all runs into model order, discarding those of
+	 * reactions no longer in the model, and counts problematic metabolites.
 	 * 
 	 * @param model
-	 * @param species
-	 * @throws Exception
 	 */
-	private void addProblematicMetabolite( final Species species )
+	private void collate( final Model model )
 	{
-		Integer count = problematicMetaboliteDegree.get( species.getId() );
+		final Map<String,Map<String,Double>[]> allUnbalancedReactions = new HashMap<>( unbalancedReactions );
+		unbalancedReactions.clear();
+		problematicMetaboliteDegree.clear();
 
-		if( count == null )
-		{
-			problematicMetaboliteDegree.put( species.getId(), Integer.valueOf( 1 ) );
-		}
-		else
+		for( int l = 0; l < model.getNumReactions(); l++ )
 		{
-			problematicMetaboliteDegree.put( species.getId(), Integer.valueOf( count.intValue() + 1 ) );
+			final String reactionId = model.getReaction( l ).getId();
+
+			if( allUnbalancedReactions.containsKey( reactionId ) )
+			{
+				unbalancedReactions.put( reactionId, allUnbalancedReactions.get( reactionId ) );
+			}
+
+			final List<Species> problematicSpecies = reactionIdToProblematicSpecies.get( reactionId );
+
+			if( problematicSpecies != null )
+			{
+				for( Species species : problematicSpecies )
+				{
+					final Integer count = problematicMetaboliteDegree.get( species.getId() );
+
+					if( count == null )
+					{
+						problematicMetaboliteDegree.put( species.getId(), Integer.valueOf( 1 ) );
+					}
+					else
+					{
+						problematicMetaboliteDegree.put( species.getId(), Integer.valueOf( count.intValue() + 1 ) );
+					}
+				}
+			}
 		}
+
+		reactionIdToProblematicSpecies.keySet().retainAll( unbalancedReactions.keySet() );
 	}
 
 	/**
@@ -332,11 +716,14 @@ public class SbmlReactionBalancerTask
 	 * 
 	 * @param model
 	 * @param reaction
+	 * @param expandedSpeciesIds
+	 *            to which the ids of species with expanded R groups are added
 	 * @return Map<String,Formula>
 	 * @throws Exception
 	 */
-	private static Map<String,Formula> expandRgroups( final Model model, final Reaction reaction ) throws Exception
+	private Map<String,Formula> expandRgroups( final Model model, final Reaction reaction, final Collection<String> expandedSpeciesIds ) throws Exception
 	{
+		final FormulaCache formulaCache = balancer.getFormulaCache( model );
 		final int ONE = 1;
 		final int TWO = 2;
 
@@ -349,7 +736,7 @@ public class SbmlReactionBalancerTask
 		for( SpeciesReference ref : reaction.getListOfReactants() )
 		{
 			final Species species = model.getSpecies( ref.getSpecies() );
-			final Formula formula = Formula.getFormula( SbmlUtils.getFormula( model, species ) );
+			final Formula formula = formulaCache.getFormula( species );
 
 			if( formula == null )
 			{
@@ -370,7 +757,7 @@ public class SbmlReactionBalancerTask
 		for( SpeciesReference ref : reaction.getListOfProducts() )
 		{
 			final Species species = model.getSpecies( ref.getSpecies() );
-			final Formula formula = Formula.getFormula( SbmlUtils.getFormula( model, species ) );
+			final Formula formula = formulaCache.getFormula( species );
 
 			if( formula == null )
 			{
@@ -398,7 +785,8 @@ public class SbmlReactionBalancerTask
 				final Species species = entry.getKey();
 				final Formula formula = Formula.getFormula( speciesIdToOriginalFormula.get( species.getId() ).toString() );
 				Formula.replace( formula, Formula.R_GROUP, Formula.R_GROUP_EXPANSION, entry.getValue().intValue() - Math.min( reactantRgroups, productRgroups ) );
-				SbmlUtils.setFormula( species, formula.toString() );
+				FormulaCache.setFormula( species, formula.toString() );
+				expandedSpeciesIds.add( species.getId() );
 			}
 		}
 
@@ -415,22 +803,230 @@ public class SbmlReactionBalancerTask
 		final File sourceFile = new File( args[ 0 ] );
 		final File targetFile = new File( args[ 1 ] );
 		final int maxStoichiometricCoefficient = args.length > 2 ? Integer.parseInt( args[ 2 ] ) : DEFAULT_MAX_STOICHIOMETRIC_COEFFICIENT;
+		final int threads = args.length > 3 ? Integer.parseInt( args[ 3 ] ) : 1;
+		final ExecutorService executorService = threads > 1 ? Executors.newFixedThreadPool( threads ) : null;
+		final BalancingReport report = args.length > 4 ? getReport( new File( args[ 4 ] ) ) : null;
 
-		if( sourceFile.isDirectory() && ( !targetFile.exists() || targetFile.isDirectory() ) )
+		try
 		{
-			for( final File sourceSbmlFile : sourceFile.listFiles( new CustomFileFilter( "xml" ) ) ) //$NON-NLS-1$
+			if( sourceFile.isDirectory() && ( !targetFile.exists() || targetFile.isDirectory() ) )
 			{
-				final File targetSbmlFile = new File( targetFile, sourceSbmlFile.getName() );
-				final SbmlReactionBalancerTask task = new SbmlReactionBalancerTask( sourceSbmlFile, targetSbmlFile, maxStoichiometricCoefficient );
+				for( final File sourceSbmlFile : sourceFile.listFiles( new CustomFileFilter( "xml" ) ) ) //$NON-NLS-1$
+				{
+					final File targetSbmlFile = new File( targetFile, sourceSbmlFile.getName() );
+					final SbmlReactionBalancerTask task = new SbmlReactionBalancerTask( sourceSbmlFile, targetSbmlFile, maxStoichiometricCoefficient );
+					task.setExecutorService( executorService, threads );
+					task.setReport( report );
+					task.run();
+					task.printResult();
+				}
+			}
+			else
+			{
+				final SbmlReactionBalancerTask task = new SbmlReactionBalancerTask( sourceFile, targetFile, maxStoichiometricCoefficient );
+				task.setExecutorService( executorService, threads );
+				task.setReport( report );
 				task.run();
 				task.printResult();
 			}
+
+			System.out.println( "Solved in closed form: " + ReactionBalancer.getClosedFormSolveCount() + "\tSolved by MILP: " + ReactionBalancer.getMilpSolveCount() ); //$NON-NLS-1$ //$NON-NLS-2$
+			System.out.print( SolverMetrics.getInstance() );
 		}
-		else
+		finally
+		{
+			if( executorService != null )
+			{
+				executorService.shutdown();
+			}
+
+			if( report != null )
+			{
+				report.close();
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param file
+	 * @return JsonLinesBalancingReport if the file name ends .jsonl, otherwise
+	 *         TsvBalancingReport
+	 * @throws IOException
+	 */
+	private static BalancingReport getReport( final File file ) throws IOException
+	{
+		final String JSON_LINES_SUFFIX = ".jsonl"; //$NON-NLS-1$
+		final Writer writer = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" ); //$NON-NLS-1$
+		return file.getName().endsWith( JSON_LINES_SUFFIX ) ? new JsonLinesBalancingReport( writer ) : new TsvBalancingReport( writer );
+	}
+
+	/**
+	 * Solves reactions concurrently, in order, so that each solution may be
+	 * applied as soon as it is ready. Partitions take the next reaction to
+	 * solve while the window allows, so that at most
+	 * SPECULATIONS_PER_PARTITION per partition are held unapplied.
+	 */
+	private class Speculator
+	{
+		/**
+		 * One per reaction, dropped once taken.
+		 */
+		private final AtomicReferenceArray<FutureTask<Speculation>> speculations;
+
+		/**
+		 * Index of the next reaction to solve.
+		 */
+		private final AtomicInteger next = new AtomicInteger();
+
+		/**
+		 * Permits to solve reactions ahead of those taken.
+		 */
+		private final Semaphore window = new Semaphore( partitions * SPECULATIONS_PER_PARTITION );
+
+		/**
+		 * 
+		 */
+		private final List<Future<Void>> futures = new ArrayList<>();
+
+		/**
+		 * Starts solving the reactions.
+		 * 
+		 * @param model
+		 * @param reactions
+		 */
+		Speculator( final Model model, final List<Reaction> reactions )
+		{
+			speculations = new AtomicReferenceArray<>( reactions.size() );
+
+			for( int l = 0; l < reactions.size(); l++ )
+			{
+				final Reaction reaction = reactions.get( l );
+
+				speculations.set( l, new FutureTask<>( new Callable<Speculation>()
+				{
+					/*
+					 * (non-Javadoc)
+					 * 
+					 * @see java.util.concurrent.Callable#call()
+					 */
+					@Override
+					public Speculation call()
+					{
+						return speculate( model, reaction );
+					}
+				} ) );
+			}
+
+			for( int p = 0; p < partitions; p++ )
+			{
+				futures.add( executorService.submit( new Callable<Void>()
+				{
+					/*
+					 * (non-Javadoc)
+					 * 
+					 * @see java.util.concurrent.Callable#call()
+					 */
+					@Override
+					public Void call() throws InterruptedException
+					{
+						try
+						{
+							while( true )
+							{
+								window.acquire();
+								final int l = next.getAndIncrement();
+
+								if( l >= speculations.length() )
+								{
+									return null;
+								}
+
+								speculations.get( l ).run();
+							}
+						}
+						finally
+						{
+							ReactionBalancer.releaseSolver();
+						}
+					}
+				} ) );
+			}
+		}
+
+		/**
+		 * Waits for the given reaction to be solved, and drops its speculation,
+		 * so that another reaction may be solved.
+		 * 
+		 * @param l
+		 * @return Speculation, or null if the reaction is to be balanced
+		 *         serially
+		 * @throws Exception
+		 */
+		Speculation take( final int l ) throws Exception
+		{
+			final Speculation speculation = speculations.get( l ).get();
+			speculations.set( l, null );
+			window.release();
+			return speculation;
+		}
+
+		/**
+		 * Stops solving reactions, and waits for the tasks to finish.
+		 * 
+		 * @throws Exception
+		 */
+		void stop() throws Exception
+		{
+			next.set( speculations.length() );
+			window.release( partitions );
+
+			for( Future<Void> future : futures )
+			{
+				future.get();
+			}
+		}
+	}
+
+	/**
+	 * A reaction solved concurrently, and the participants that it was solved
+	 * for.
+	 */
+	private static class Speculation
+	{
+		/**
+		 * 
+		 */
+		final List<Object> fingerprint;
+
+		/**
+		 * 
+		 */
+		final Map<String,Double> imbalancedElementIdToCount;
+
+		/**
+		 * 
+		 */
+		final ReactionBalancer reactionBalancer;
+
+		/**
+		 * 
+		 */
+		final double[] stoichiometries;
+
+		/**
+		 * 
+		 * @param fingerprint
+		 * @param imbalancedElementIdToCount
+		 * @param reactionBalancer
+		 * @param stoichiometries
+		 */
+		Speculation( final List<Object> fingerprint, final Map<String,Double> imbalancedElementIdToCount, final ReactionBalancer reactionBalancer, final double[] stoichiometries )
 		{
-			final SbmlReactionBalancerTask task = new SbmlReactionBalancerTask( sourceFile, targetFile, maxStoichiometricCoefficient );
-			task.run();
-			task.printResult();
+			this.fingerprint = fingerprint;
+			this.imbalancedElementIdToCount = imbalancedElementIdToCount;
+			this.reactionBalancer = reactionBalancer;
+			this.stoichiometries = stoichiometries;
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.subliminal.balance;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Writes one tab-separated line per reaction, after a header line, flushing
+ * each so that the report may be followed while balancing runs. Residuals are
+ * written as comma-separated element=count pairs.
+ * 
+ * @author Neil Swainston
+ */
+public class TsvBalancingReport implements BalancingReport
+{
+	/**
+	 * 
+	 */
+	private static final char TAB = '\t';
+
+	/**
+	 * 
+	 */
+	private static final char COMMA = ',';
+
+	/**
+	 * 
+	 */
+	private final Writer writer;
+
+	/**
+	 * 
+	 * @param writer
+	 * @throws IOException
+	 */
+	public TsvBalancingReport( final Writer writer ) throws IOException
+	{
+		this.writer = writer;
+		writer.write( "reaction\toutcome\tresidual\treset_residual\tproblematic_species\tmillis\tsolve_status\tsolve_millis\n" ); //$NON-NLS-1$
+		writer.flush();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.mcisb.subliminal.balance.BalancingReport#write(org.mcisb.subliminal
+	 * .balance.ReactionResult)
+	 */
+	@Override
+	public void write( final ReactionResult result ) throws IOException
+	{
+		final StringBuilder builder = new StringBuilder();
+		builder.append( result.getReactionId() );
+		builder.append( TAB );
+		builder.append( result.getOutcome() );
+		builder.append( TAB );
+		append( builder, result.getResidual() );
+		builder.append( TAB );
+		append( builder, result.getResetResidual() );
+		builder.append( TAB );
+
+		for( Iterator<String> iterator = result.getProblematicSpeciesIds().iterator(); iterator.hasNext(); )
+		{
+			builder.append( iterator.next() );
+
+			if( iterator.hasNext() )
+			{
+				builder.append( COMMA );
+			}
+		}
+
+		builder.append( TAB );
+		builder.append( result.getNanos() / 1e6 );
+		builder.append( TAB );
+
+		if( result.getSolveStatus() != null )
+		{
+			builder.append( result.getSolveStatus() );
+		}
+
+		builder.append( TAB );
+		builder.append( result.getSolveNanos() / 1e6 );
+		builder.append( '\n' );
+
+		writer.write( builder.toString() );
+		writer.flush();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		writer.close();
+	}
+
+	/**
+	 * 
+	 * @param builder
+	 * @param residual
+	 */
+	private static void append( final StringBuilder builder, final Map<String,Double> residual )
+	{
+		if( residual == null )
+		{
+			return;
+		}
+
+		for( Iterator<Map.Entry<String,Double>> iterator = residual.entrySet().iterator(); iterator.hasNext(); )
+		{
+			final Map.Entry<String,Double> entry = iterator.next();
+			builder.append( entry.getKey() );
+			builder.append( '=' );
+			builder.append( entry.getValue() );
+
+			if( iterator.hasNext() )
+			{
+				builder.append( COMMA );
+			}
+		}
+	}
+}
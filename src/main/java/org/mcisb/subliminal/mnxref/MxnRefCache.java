@@ -0,0 +1,344 @@
+package org.mcisb.subliminal.mnxref;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Local, gzip-compressed cache of MNXref downloads.
+ *
+ * Remote (http) URLs are resolved to a file in the cache directory, which is
+ * revalidated with a conditional request (ETag / Last-Modified) once it is
+ * older than the maximum age. A stale cache entry is used if the server cannot
+ * be reached, which is reported once per URL on standard error and recorded,
+ * so that callers may check it with isStale. In offline mode, only the cache is read, and an uncompressed file
+ * of the same name (such as a test fixture) is also accepted. URLs that are
+ * not remote are returned unchanged.
+ *
+ * @author Neil Swainston
+ */
+public final class MxnRefCache
+{
+	/**
+	 * System property naming the cache directory. Defaults to
+	 * ~/.subliminal/mnxref.
+	 */
+	public static final String CACHE_DIRECTORY = "org.mcisb.subliminal.mnxref.CacheDirectory"; //$NON-NLS-1$
+
+	/**
+	 * System property which, if true, prevents any network access.
+	 */
+	public static final String OFFLINE = "org.mcisb.subliminal.mnxref.Offline"; //$NON-NLS-1$
+
+	/**
+	 * System property giving the age, in seconds, after which a cached file is
+	 * revalidated. Defaults to one day.
+	 */
+	public static final String MAX_AGE = "org.mcisb.subliminal.mnxref.CacheMaxAge"; //$NON-NLS-1$
+
+	/**
+	 *
+	 */
+	static final String GZIP_SUFFIX = ".gz"; //$NON-NLS-1$
+
+	/**
+	 *
+	 */
+	private static final String PROPERTIES_SUFFIX = ".properties"; //$NON-NLS-1$
+
+	/**
+	 *
+	 */
+	private static final String ETAG = "ETag"; //$NON-NLS-1$
+
+	/**
+	 *
+	 */
+	private static final String LAST_MODIFIED = "Last-Modified"; //$NON-NLS-1$
+
+	/**
+	 *
+	 */
+	private static final String CHECKED = "Checked"; //$NON-NLS-1$
+
+	/**
+	 *
+	 */
+	private static final long DEFAULT_MAX_AGE = 24 * 60 * 60;
+
+	/**
+	 *
+	 */
+	private static final int CONNECT_TIMEOUT = 30 * 1000;
+
+	/**
+	 *
+	 */
+	private static final int READ_TIMEOUT = 5 * 60 * 1000;
+
+	/**
+	 * Remote URLs whose stale cached copy is in use, as they could not be
+	 * revalidated.
+	 */
+	private static final Set<String> staleUrls = new HashSet<>();
+
+	/**
+	 *
+	 */
+	private MxnRefCache()
+	{
+		// No implementation.
+	}
+
+	/**
+	 * Returns the URL from which the content of the given URL should be read,
+	 * downloading or revalidating the cached copy as required.
+	 *
+	 * @param url
+	 * @return URL
+	 * @throws IOException
+	 */
+	public static synchronized URL getUrl( final URL url ) throws IOException
+	{
+		if( !isRemote( url ) )
+		{
+			return url;
+		}
+
+		final File directory = getDirectory();
+		final String name = new File( url.getPath() ).getName();
+		final File file = new File( directory, name + GZIP_SUFFIX );
+
+		if( Boolean.getBoolean( OFFLINE ) )
+		{
+			if( file.exists() )
+			{
+				return file.toURI().toURL();
+			}
+
+			final File uncompressedFile = new File( directory, name );
+
+			if( uncompressedFile.exists() )
+			{
+				return uncompressedFile.toURI().toURL();
+			}
+
+			throw new FileNotFoundException( "Offline, and " + url + " is not cached in " + directory ); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		final File propertiesFile = new File( directory, name + GZIP_SUFFIX + PROPERTIES_SUFFIX );
+		final Properties properties = readProperties( propertiesFile );
+		final long maxAge = Long.getLong( MAX_AGE, DEFAULT_MAX_AGE ).longValue() * 1000;
+
+		if( file.exists() && System.currentTimeMillis() - Long.parseLong( properties.getProperty( CHECKED, "0" ) ) < maxAge ) //$NON-NLS-1$
+		{
+			return file.toURI().toURL();
+		}
+
+		try
+		{
+			download( url, file, propertiesFile, file.exists() ? properties : new Properties() );
+		}
+		catch( IOException e )
+		{
+			if( !file.exists() )
+			{
+				throw e;
+			}
+
+			// Fall back to the stale cached copy:
+			if( staleUrls.add( url.toExternalForm() ) )
+			{
+				System.err.println( "Unable to revalidate " + url + ", using cached copy " + file + ": " + e ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+
+			return file.toURI().toURL();
+		}
+
+		staleUrls.remove( url.toExternalForm() );
+		return file.toURI().toURL();
+	}
+
+	/**
+	 *
+	 * @param url
+	 * @return whether the cached copy of the URL is in use because it could
+	 *         not be revalidated
+	 */
+	public static synchronized boolean isStale( final URL url )
+	{
+		return staleUrls.contains( url.toExternalForm() );
+	}
+
+	/**
+	 * Opens a URL, transparently decompressing gzip files.
+	 *
+	 * @param url
+	 * @return InputStream
+	 * @throws IOException
+	 */
+	static InputStream openStream( final URL url ) throws IOException
+	{
+		final InputStream is = url.openStream();
+		return url.getPath().endsWith( GZIP_SUFFIX ) ? new GZIPInputStream( is ) : is;
+	}
+
+	/**
+	 *
+	 * @param url
+	 * @param file
+	 * @param propertiesFile
+	 * @param properties
+	 * @throws IOException
+	 */
+	private static void download( final URL url, final File file, final File propertiesFile, final Properties properties ) throws IOException
+	{
+		final HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+		connection.setConnectTimeout( CONNECT_TIMEOUT );
+		connection.setReadTimeout( READ_TIMEOUT );
+
+		final String eTag = properties.getProperty( ETAG );
+		final String lastModified = properties.getProperty( LAST_MODIFIED );
+
+		if( eTag != null )
+		{
+			connection.setRequestProperty( "If-None-Match", eTag ); //$NON-NLS-1$
+		}
+
+		if( lastModified != null )
+		{
+			connection.setRequestProperty( "If-Modified-Since", lastModified ); //$NON-NLS-1$
+		}
+
+		try
+		{
+			final int responseCode = connection.getResponseCode();
+
+			if( responseCode == HttpURLConnection.HTTP_NOT_MODIFIED )
+			{
+				properties.setProperty( CHECKED, Long.toString( System.currentTimeMillis() ) );
+				writeProperties( propertiesFile, properties );
+				return;
+			}
+
+			if( responseCode != HttpURLConnection.HTTP_OK )
+			{
+				throw new IOException( url + " returned " + responseCode ); //$NON-NLS-1$
+			}
+
+			// Write to a temporary file, and move it into place atomically, so
+			// that concurrent processes never read a partial download:
+			final File tempFile = File.createTempFile( file.getName(), null, file.getParentFile() );
+
+			try
+			{
+				try ( final InputStream is = connection.getInputStream(); final OutputStream os = new GZIPOutputStream( new BufferedOutputStream( new FileOutputStream( tempFile ) ) ) )
+				{
+					final byte[] buffer = new byte[ 64 * 1024 ];
+					int read = -1;
+
+					while( ( read = is.read( buffer ) ) != -1 )
+					{
+						os.write( buffer, 0, read );
+					}
+				}
+
+				Files.move( tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+			}
+			finally
+			{
+				Files.deleteIfExists( tempFile.toPath() );
+			}
+
+			final Properties newProperties = new Properties();
+			setProperty( newProperties, ETAG, connection.getHeaderField( ETAG ) );
+			setProperty( newProperties, LAST_MODIFIED, connection.getHeaderField( LAST_MODIFIED ) );
+			newProperties.setProperty( CHECKED, Long.toString( System.currentTimeMillis() ) );
+			writeProperties( propertiesFile, newProperties );
+		}
+		finally
+		{
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 *
+	 * @return File
+	 * @throws IOException
+	 */
+	private static File getDirectory() throws IOException
+	{
+		final String directoryName = System.getProperty( CACHE_DIRECTORY );
+		final File directory = directoryName == null ? new File( new File( System.getProperty( "user.home" ), ".subliminal" ), "mnxref" ) : new File( directoryName ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+		if( !directory.exists() && !directory.mkdirs() && !directory.exists() )
+		{
+			throw new IOException( "Unable to create cache directory " + directory ); //$NON-NLS-1$
+		}
+
+		return directory;
+	}
+
+	/**
+	 *
+	 * @param url
+	 * @return boolean
+	 */
+	private static boolean isRemote( final URL url )
+	{
+		final String protocol = url.getProtocol();
+		return "http".equals( protocol ) || "https".equals( protocol ); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @return Properties
+	 * @throws IOException
+	 */
+	private static Properties readProperties( final File file ) throws IOException
+	{
+		final Properties properties = new Properties();
+
+		if( file.exists() )
+		{
+			try ( final InputStream is = new FileInputStream( file ) )
+			{
+				properties.load( is );
+			}
+		}
+
+		return properties;
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @param properties
+	 * @throws IOException
+	 */
+	private static void writeProperties( final File file, final Properties properties ) throws IOException
+	{
+		try ( final OutputStream os = new FileOutputStream( file ) )
+		{
+			properties.store( os, null );
+		}
+	}
+
+	/**
+	 *
+	 * @param properties
+	 * @param key
+	 * @param value
+	 */
+	private static void setProperty( final Properties properties, final String key, final String value )
+	{
+		if( value != null )
+		{
+			properties.setProperty( key, value );
+		}
+	}
+}
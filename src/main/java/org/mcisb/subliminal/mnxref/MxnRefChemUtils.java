@@ -2,6 +2,7 @@ package org.mcisb.subliminal.mnxref;
 
 import java.io.*;
 import java.net.*;
+import java.util.*;
 import org.mcisb.subliminal.*;
 
 /**
@@ -10,6 +11,36 @@ import org.mcisb.subliminal.*;
  */
 public class MxnRefChemUtils extends MxnRefUtils
 {
+	/**
+	 * Columns of the property table, which may be declared up front with
+	 * {@link #setColumns(Column...)} so that unused columns are not loaded.
+	 * 
+	 * @author Neil Swainston
+	 */
+	public enum Column
+	{
+		NAME( MxnRefChemUtils.NAME ),
+		FORMULA( MxnRefChemUtils.FORMULA ),
+		CHARGE( MxnRefChemUtils.CHARGE ),
+		MASS( MxnRefChemUtils.MASS ),
+		INCHI( MxnRefChemUtils.INCHI ),
+		SMILES( MxnRefChemUtils.SMILES );
+
+		/**
+		 * 
+		 */
+		private final int index;
+
+		/**
+		 * 
+		 * @param index
+		 */
+		private Column( final int index )
+		{
+			this.index = index;
+		}
+	}
+
 	/**
 	 * 
 	 */
@@ -28,7 +59,7 @@ public class MxnRefChemUtils extends MxnRefUtils
 	/**
 	 * 
 	 */
-	// private static final int MASS = 4;
+	private static final int MASS = 4;
 
 	/**
 	 * 
@@ -48,12 +79,7 @@ public class MxnRefChemUtils extends MxnRefUtils
 	/**
 	 * 
 	 */
-	private final URL dataUrl = new URL( "http://metanetx.org/cgi-bin/mnxget/mnxref/chem_prop.tsv" ); //$NON-NLS-1$
-
-	/**
-	 * 
-	 */
-	private static MxnRefChemUtils instance = null;
+	private static volatile MxnRefChemUtils instance = null;
 
 	/**
 	 * 
@@ -64,7 +90,13 @@ public class MxnRefChemUtils extends MxnRefUtils
 	{
 		if( instance == null )
 		{
-			instance = new MxnRefChemUtils();
+			synchronized( MxnRefChemUtils.class )
+			{
+				if( instance == null )
+				{
+					instance = new MxnRefChemUtils();
+				}
+			}
 		}
 
 		return instance;
@@ -76,7 +108,26 @@ public class MxnRefChemUtils extends MxnRefUtils
 	 */
 	private MxnRefChemUtils() throws MalformedURLException
 	{
-		super( MXNREF_ID_REG_EXP, new URL( "http://metanetx.org/cgi-bin/mnxget/mnxref/chem_xref.tsv" ) ); //$NON-NLS-1$
+		super( "chem", MXNREF_ID_REG_EXP, new URL( "http://metanetx.org/cgi-bin/mnxget/mnxref/chem_xref.tsv" ), new URL( "http://metanetx.org/cgi-bin/mnxget/mnxref/chem_prop.tsv" ) ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	/**
+	 * Declares which columns are needed, so that no others are loaded. Must be
+	 * called before first use to avoid loading the full table. Properties of
+	 * undeclared columns subsequently read as null.
+	 * 
+	 * @param columns
+	 */
+	public void setColumns( final Column... columns )
+	{
+		final BitSet selectedColumns = new BitSet();
+
+		for( Column column : columns )
+		{
+			selectedColumns.set( column.index );
+		}
+
+		setColumns( selectedColumns );
 	}
 
 	/**
@@ -85,9 +136,9 @@ public class MxnRefChemUtils extends MxnRefUtils
 	 * @return String
 	 * @throws IOException
 	 */
-	public synchronized String getName( final String id ) throws IOException
+	public String getName( final String id ) throws IOException
 	{
-		return getData( id, NAME, dataUrl );
+		return getData( id, NAME );
 	}
 
 	/**
@@ -96,9 +147,9 @@ public class MxnRefChemUtils extends MxnRefUtils
 	 * @return String
 	 * @throws IOException
 	 */
-	public synchronized String getFormula( final String id ) throws IOException
+	public String getFormula( final String id ) throws IOException
 	{
-		return getData( id, FORMULA, dataUrl );
+		return getData( id, FORMULA );
 	}
 
 	/**
@@ -107,16 +158,9 @@ public class MxnRefChemUtils extends MxnRefUtils
 	 * @return int
 	 * @throws IOException
 	 */
-	public synchronized int getCharge( final String id ) throws IOException
+	public int getCharge( final String id ) throws IOException
 	{
-		final String charge = getData( id, CHARGE, dataUrl );
-
-		if( charge != null && !charge.equals( SubliminalUtils.EMPTY_STRING ) )
-		{
-			return Integer.parseInt( charge );
-		}
-
-		return SubliminalUtils.UNDEFINED_NUMBER;
+		return parseCharge( getData( id, CHARGE ) );
 	}
 
 	/**
@@ -125,9 +169,9 @@ public class MxnRefChemUtils extends MxnRefUtils
 	 * @return String
 	 * @throws IOException
 	 */
-	public synchronized String getInchi( final String id ) throws IOException
+	public String getInchi( final String id ) throws IOException
 	{
-		return getData( id, INCHI, dataUrl );
+		return getData( id, INCHI );
 	}
 
 	/**
@@ -136,8 +180,80 @@ public class MxnRefChemUtils extends MxnRefUtils
 	 * @return String
 	 * @throws IOException
 	 */
-	public synchronized String getSmiles( final String id ) throws IOException
+	public String getSmiles( final String id ) throws IOException
 	{
-		return getData( id, SMILES, dataUrl );
+		return getData( id, SMILES );
+	}
+
+	/**
+	 * Resolves the id once and returns all of its properties and xrefs.
+	 * 
+	 * @param id
+	 * @return MxnRefChemical, or null if the id cannot be resolved
+	 * @throws IOException
+	 */
+	public MxnRefChemical getChemical( final String id ) throws IOException
+	{
+		final String mxnRefId = getMxnRefId( id );
+		return mxnRefId == null ? null : getChemical( mxnRefId, getXrefTable(), getDataTable() );
+	}
+
+	/**
+	 * Resolves many ids, such as all participants of a reaction or pathway,
+	 * in a single pass. Ids sharing an MNXref id share the same record.
+	 * 
+	 * @param ids
+	 * @return Map<String,MxnRefChemical>, keyed by each resolvable id
+	 * @throws IOException
+	 */
+	public Map<String,MxnRefChemical> getChemicals( final Collection<String> ids ) throws IOException
+	{
+		final MxnRefXrefTable xrefTable = getXrefTable();
+		final MxnRefDataTable dataTable = getDataTable();
+		final Map<String,MxnRefChemical> mxnRefIdToChemical = new HashMap<>();
+		final Map<String,MxnRefChemical> chemicals = new LinkedHashMap<>();
+
+		for( Map.Entry<String,String> entry : getMxnRefIds( ids ).entrySet() )
+		{
+			final String mxnRefId = entry.getValue();
+			MxnRefChemical chemical = mxnRefIdToChemical.get( mxnRefId );
+
+			if( chemical == null )
+			{
+				chemical = getChemical( mxnRefId, xrefTable, dataTable );
+				mxnRefIdToChemical.put( mxnRefId, chemical );
+			}
+
+			chemicals.put( entry.getKey(), chemical );
+		}
+
+		return chemicals;
+	}
+
+	/**
+	 * 
+	 * @param mxnRefId
+	 * @param xrefTable
+	 * @param dataTable
+	 * @return MxnRefChemical
+	 */
+	private static MxnRefChemical getChemical( final String mxnRefId, final MxnRefXrefTable xrefTable, final MxnRefDataTable dataTable )
+	{
+		return new MxnRefChemical( mxnRefId, dataTable.getData( mxnRefId, NAME ), dataTable.getData( mxnRefId, FORMULA ), parseCharge( dataTable.getData( mxnRefId, CHARGE ) ), dataTable.getData( mxnRefId, INCHI ), dataTable.getData( mxnRefId, SMILES ), xrefTable.getXrefIds( mxnRefId ) );
+	}
+
+	/**
+	 * 
+	 * @param charge
+	 * @return int
+	 */
+	private static int parseCharge( final String charge )
+	{
+		if( charge != null && !charge.equals( SubliminalUtils.EMPTY_STRING ) )
+		{
+			return Integer.parseInt( charge );
+		}
+
+		return SubliminalUtils.UNDEFINED_NUMBER;
 	}
 }
\ No newline at end of file
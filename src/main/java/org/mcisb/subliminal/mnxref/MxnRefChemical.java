@@ -0,0 +1,153 @@
+package org.mcisb.subliminal.mnxref;
+
+import java.util.*;
+
+/**
+ * Immutable record of the properties and xrefs of a single MNXref chemical,
+ * resolved in one pass and safe to share between threads.
+ *
+ * @author Neil Swainston
+ */
+public final class MxnRefChemical
+{
+	/**
+	 *
+	 */
+	private final String mxnRefId;
+
+	/**
+	 *
+	 */
+	private final String name;
+
+	/**
+	 *
+	 */
+	private final String formula;
+
+	/**
+	 *
+	 */
+	private final int charge;
+
+	/**
+	 *
+	 */
+	private final String inchi;
+
+	/**
+	 *
+	 */
+	private final String smiles;
+
+	/**
+	 *
+	 */
+	private final Map<String,Collection<String>> xrefIds;
+
+	/**
+	 *
+	 * @param mxnRefId
+	 * @param name
+	 * @param formula
+	 * @param charge
+	 * @param inchi
+	 * @param smiles
+	 * @param xrefIds
+	 */
+	MxnRefChemical( final String mxnRefId, final String name, final String formula, final int charge, final String inchi, final String smiles, final Map<String,Collection<String>> xrefIds )
+	{
+		this.mxnRefId = mxnRefId;
+		this.name = name;
+		this.formula = formula;
+		this.charge = charge;
+		this.inchi = inchi;
+		this.smiles = smiles;
+		this.xrefIds = xrefIds == null ? Collections.<String,Collection<String>>emptyMap() : Collections.unmodifiableMap( xrefIds );
+	}
+
+	/**
+	 *
+	 * @return String
+	 */
+	public String getMxnRefId()
+	{
+		return mxnRefId;
+	}
+
+	/**
+	 *
+	 * @return String
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 *
+	 * @return String
+	 */
+	public String getFormula()
+	{
+		return formula;
+	}
+
+	/**
+	 *
+	 * @return int
+	 */
+	public int getCharge()
+	{
+		return charge;
+	}
+
+	/**
+	 *
+	 * @return String
+	 */
+	public String getInchi()
+	{
+		return inchi;
+	}
+
+	/**
+	 *
+	 * @return String
+	 */
+	public String getSmiles()
+	{
+		return smiles;
+	}
+
+	/**
+	 *
+	 * @return Map<String,Collection<String>>
+	 */
+	public Map<String,Collection<String>> getXrefIds()
+	{
+		return xrefIds;
+	}
+
+	/**
+	 *
+	 * @param source
+	 * @return Collection<String>
+	 */
+	public Collection<String> getXrefIds( final String source )
+	{
+		final Collection<String> sourceXrefIds = xrefIds.get( source );
+		return sourceXrefIds == null ? Collections.<String>emptyList() : sourceXrefIds;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return mxnRefId;
+	}
+}
@@ -0,0 +1,425 @@
+package org.mcisb.subliminal.mnxref;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+/**
+ * In-memory, immutable MNXref property table.
+ *
+ * Cells are held unescaped in a single {@link StringBlob}, and only made valid
+ * XML when read. Optionally, only a selection of columns is loaded, so that
+ * large, unused columns such as InChI and SMILES cost nothing.
+ *
+ * @author Neil Swainston
+ */
+final class MxnRefData implements MxnRefDataTable
+{
+	/**
+	 *
+	 */
+	private static final int ID = 0;
+
+	/**
+	 * Loaded columns, or null if all are loaded.
+	 */
+	private final BitSet columns;
+
+	/**
+	 * Sorted MNXref ids.
+	 */
+	private final StringBlob mxnRefIds;
+
+	/**
+	 * First cell of each MNXref id's row, of length mxnRefIds.size() + 1.
+	 */
+	private final int[] rowStarts;
+
+	/**
+	 *
+	 */
+	private final StringBlob cells;
+
+	/**
+	 *
+	 * @param columns
+	 * @param mxnRefIds
+	 * @param rowStarts
+	 * @param cells
+	 */
+	private MxnRefData( final BitSet columns, final StringBlob mxnRefIds, final int[] rowStarts, final StringBlob cells )
+	{
+		this.columns = columns;
+		this.mxnRefIds = mxnRefIds;
+		this.rowStarts = rowStarts;
+		this.cells = cells;
+	}
+
+	/**
+	 *
+	 * @param url
+	 * @param columns
+	 *            columns to load, or null to load all
+	 * @return MxnRefData
+	 * @throws IOException
+	 */
+	static MxnRefData read( final URL url, final BitSet columns ) throws IOException
+	{
+		return merge( MxnRefTsvParser.parse( url, getRowParserFactory( columns ) ) );
+	}
+
+	/**
+	 * Copies the raw cells of the given columns of each chunk of the property
+	 * file into its own {@link Builder}, and sorts the chunk.
+	 *
+	 * @param columns
+	 *            columns to load, or null to load all
+	 * @return MxnRefTsvParser.RowHandlerFactory<Builder>
+	 */
+	static MxnRefTsvParser.RowHandlerFactory<Builder> getRowParserFactory( final BitSet columns )
+	{
+		return new MxnRefTsvParser.RowHandlerFactory<Builder>()
+		{
+			/*
+			 * (non-Javadoc)
+			 *
+			 * @see org.mcisb.subliminal.mnxref.MxnRefTsvParser.RowHandlerFactory
+			 * #newRowHandler()
+			 */
+			@Override
+			public MxnRefTsvParser.RowHandler<Builder> newRowHandler()
+			{
+				return new MxnRefTsvParser.RowHandler<Builder>()
+				{
+					/**
+					 *
+					 */
+					private final Builder builder = new Builder( columns );
+
+					/*
+					 * (non-Javadoc)
+					 *
+					 * @see
+					 * org.mcisb.subliminal.mnxref.MxnRefTsvParser.RowHandler#row
+					 * (byte[], int[], int[], int)
+					 */
+					@Override
+					void row( final byte[] bytes, final int[] starts, final int[] ends, final int numFields )
+					{
+						builder.add( bytes, starts, ends, numFields );
+					}
+
+					/*
+					 * (non-Javadoc)
+					 *
+					 * @see
+					 * org.mcisb.subliminal.mnxref.MxnRefTsvParser.RowHandler#
+					 * getResult()
+					 */
+					@Override
+					Builder getResult()
+					{
+						builder.sort();
+						return builder;
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Merges sorted per-chunk builders, given in file order. For any id
+	 * repeated across chunks, the row from the latest chunk takes precedence.
+	 *
+	 * @param chunks
+	 * @return MxnRefData
+	 */
+	static MxnRefData merge( final List<Builder> chunks )
+	{
+		final int[] positions = new int[ chunks.size() ];
+		final PriorityQueue<Integer> queue = new PriorityQueue<>( Math.max( 1, chunks.size() ), new Comparator<Integer>()
+		{
+			/*
+			 * (non-Javadoc)
+			 *
+			 * @see java.util.Comparator#compare(java.lang.Object,
+			 * java.lang.Object)
+			 */
+			@Override
+			public int compare( final Integer o1, final Integer o2 )
+			{
+				final int comparison = compareHeads( chunks, positions, o1.intValue(), o2.intValue() );
+				return comparison == 0 ? o2.compareTo( o1 ) : comparison;
+			}
+		} );
+
+		int size = 0;
+
+		for( int i = 0; i < chunks.size(); i++ )
+		{
+			size += chunks.get( i ).order.length;
+
+			if( chunks.get( i ).order.length > 0 )
+			{
+				queue.add( Integer.valueOf( i ) );
+			}
+		}
+
+		final StringBlob.Builder mxnRefIds = new StringBlob.Builder();
+		final StringBlob.Builder cells = new StringBlob.Builder();
+		final int[] rowStarts = new int[ size + 1 ];
+		int numMxnRefIds = 0;
+
+		while( !queue.isEmpty() )
+		{
+			// Latest chunk first, among those with the same head id:
+			final int first = queue.poll().intValue();
+			final Builder chunk = chunks.get( first );
+			final int row = chunk.order[ positions[ first ] ];
+			final int start = chunk.rowStarts[ row ];
+			final int end = chunk.rowStarts[ row + 1 ];
+
+			mxnRefIds.add( chunk.sortedCells, start + ID );
+			cells.addAll( chunk.sortedCells, start, end );
+			rowStarts[ numMxnRefIds + 1 ] = rowStarts[ numMxnRefIds ] + end - start;
+			numMxnRefIds++;
+
+			while( !queue.isEmpty() && compareHeads( chunks, positions, queue.peek().intValue(), first ) == 0 )
+			{
+				advance( chunks, positions, queue, queue.poll().intValue() );
+			}
+
+			advance( chunks, positions, queue, first );
+		}
+
+		return new MxnRefData( chunks.isEmpty() ? null : chunks.get( 0 ).columns, mxnRefIds.build(), Arrays.copyOf( rowStarts, numMxnRefIds + 1 ), cells.build() );
+	}
+
+	/**
+	 *
+	 * @param chunks
+	 * @param positions
+	 * @param chunk
+	 * @param otherChunk
+	 * @return int
+	 */
+	private static int compareHeads( final List<Builder> chunks, final int[] positions, final int chunk, final int otherChunk )
+	{
+		final Builder builder = chunks.get( chunk );
+		final Builder otherBuilder = chunks.get( otherChunk );
+		return StringBlob.compare( builder.sortedCells, builder.rowStarts[ builder.order[ positions[ chunk ] ] ] + ID, otherBuilder.sortedCells, otherBuilder.rowStarts[ otherBuilder.order[ positions[ otherChunk ] ] ] + ID );
+	}
+
+	/**
+	 *
+	 * @param chunks
+	 * @param positions
+	 * @param queue
+	 * @param chunk
+	 */
+	private static void advance( final List<Builder> chunks, final int[] positions, final PriorityQueue<Integer> queue, final int chunk )
+	{
+		if( ++positions[ chunk ] < chunks.get( chunk ).order.length )
+		{
+			queue.add( Integer.valueOf( chunk ) );
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.mcisb.subliminal.mnxref.MxnRefDataTable#getData(java.lang.String,
+	 * int)
+	 */
+	@Override
+	public String getData( final String mxnRefId, final int column )
+	{
+		if( columns != null && !columns.get( column ) )
+		{
+			return null;
+		}
+
+		final int index = mxnRefIds.indexOf( mxnRefId );
+
+		if( index >= 0 && column < rowStarts[ index + 1 ] - rowStarts[ index ] )
+		{
+			return MxnRefUtils.getValidXml( cells.get( rowStarts[ index ] + column ) );
+		}
+
+		return null;
+	}
+
+	/**
+	 *
+	 * @return BitSet of loaded columns, or null if all are loaded
+	 */
+	BitSet getColumns()
+	{
+		return columns == null ? null : (BitSet)columns.clone();
+	}
+
+	/**
+	 * Approximate heap footprint of the table's arrays, in bytes.
+	 *
+	 * @return long
+	 */
+	long getFootprint()
+	{
+		return mxnRefIds.getFootprint() + 4L * rowStarts.length + cells.getFootprint();
+	}
+
+	/**
+	 * Materialises the whole table, with all loaded cells made valid XML.
+	 *
+	 * @return Map<String,String[]>
+	 */
+	Map<String,String[]> getMxnRefIdToData()
+	{
+		final Map<String,String[]> mxnRefIdToData = new HashMap<>();
+
+		for( int i = 0; i < mxnRefIds.size(); i++ )
+		{
+			final String[] data = new String[ rowStarts[ i + 1 ] - rowStarts[ i ] ];
+
+			for( int j = 0; j < data.length; j++ )
+			{
+				data[ j ] = columns == null || columns.get( j ) ? MxnRefUtils.getValidXml( cells.get( rowStarts[ i ] + j ) ) : null;
+			}
+
+			mxnRefIdToData.put( data[ ID ], data );
+		}
+
+		return Collections.unmodifiableMap( mxnRefIdToData );
+	}
+
+	/**
+	 * Accumulates rows of raw cells in file order, and then sorts them by
+	 * MNXref id.
+	 *
+	 * @author Neil Swainston
+	 */
+	static final class Builder
+	{
+		/**
+		 *
+		 */
+		private final BitSet columns;
+
+		/**
+		 *
+		 */
+		private final StringBlob.Builder cells = new StringBlob.Builder();
+
+		/**
+		 *
+		 */
+		private int[] rowStarts = new int[ 1025 ];
+
+		/**
+		 *
+		 */
+		private int size = 0;
+
+		/**
+		 *
+		 */
+		private StringBlob sortedCells = null;
+
+		/**
+		 * Rows of distinct MNXref ids, in MNXref id order.
+		 */
+		private int[] order = null;
+
+		/**
+		 *
+		 * @param columns
+		 *            columns to load, or null to load all
+		 */
+		Builder( final BitSet columns )
+		{
+			if( columns == null )
+			{
+				this.columns = null;
+			}
+			else
+			{
+				this.columns = (BitSet)columns.clone();
+				this.columns.set( ID );
+			}
+		}
+
+		/**
+		 * Adds the row's cells up to the last loaded column. Cells of columns
+		 * that are not loaded are held as empty placeholders.
+		 *
+		 * @param bytes
+		 * @param starts
+		 * @param ends
+		 * @param numFields
+		 */
+		void add( final byte[] bytes, final int[] starts, final int[] ends, final int numFields )
+		{
+			if( size + 2 > rowStarts.length )
+			{
+				rowStarts = Arrays.copyOf( rowStarts, rowStarts.length * 2 );
+			}
+
+			final int numCells = columns == null ? numFields : Math.min( numFields, columns.length() );
+
+			for( int i = 0; i < numCells; i++ )
+			{
+				cells.add( bytes, starts[ i ], columns == null || columns.get( i ) ? ends[ i ] - starts[ i ] : 0 );
+			}
+
+			rowStarts[ size + 1 ] = rowStarts[ size ] + numCells;
+			size++;
+		}
+
+		/**
+		 * Sorts rows by MNXref id, the last row for any repeated id taking
+		 * precedence.
+		 */
+		void sort()
+		{
+			final StringBlob rowCells = cells.build();
+			final Integer[] rows = new Integer[ size ];
+
+			for( int i = 0; i < size; i++ )
+			{
+				rows[ i ] = Integer.valueOf( i );
+			}
+
+			Arrays.sort( rows, new Comparator<Integer>()
+			{
+				/*
+				 * (non-Javadoc)
+				 *
+				 * @see java.util.Comparator#compare(java.lang.Object,
+				 * java.lang.Object)
+				 */
+				@Override
+				public int compare( final Integer o1, final Integer o2 )
+				{
+					final int comparison = rowCells.compare( rowStarts[ o1.intValue() ] + ID, rowStarts[ o2.intValue() ] + ID );
+					return comparison == 0 ? o1.compareTo( o2 ) : comparison;
+				}
+			} );
+
+			final int[] distinctRows = new int[ size ];
+			int numDistinctRows = 0;
+
+			for( int i = 0; i < size; i++ )
+			{
+				final int row = rows[ i ].intValue();
+
+				if( i + 1 == size || rowCells.compare( rowStarts[ row ] + ID, rowStarts[ rows[ i + 1 ].intValue() ] + ID ) != 0 )
+				{
+					distinctRows[ numDistinctRows++ ] = row;
+				}
+			}
+
+			sortedCells = rowCells;
+			order = Arrays.copyOf( distinctRows, numDistinctRows );
+		}
+	}
+}
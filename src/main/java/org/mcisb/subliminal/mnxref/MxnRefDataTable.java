@@ -0,0 +1,19 @@
+package org.mcisb.subliminal.mnxref;
+
+/**
+ * Immutable, read-only view of an MNXref property table. Implementations are
+ * fully built before publication and are safe for concurrent use without
+ * locking.
+ * 
+ * @author Neil Swainston
+ */
+interface MxnRefDataTable
+{
+	/**
+	 * 
+	 * @param mxnRefId
+	 * @param column
+	 * @return String
+	 */
+	public String getData( final String mxnRefId, final int column );
+}
@@ -0,0 +1,137 @@
+package org.mcisb.subliminal.mnxref;
+
+import java.util.*;
+
+/**
+ * Immutable record of the properties and xrefs of a single MNXref reaction,
+ * resolved in one pass and safe to share between threads.
+ *
+ * @author Neil Swainston
+ */
+public final class MxnRefReaction
+{
+	/**
+	 *
+	 */
+	private final String mxnRefId;
+
+	/**
+	 *
+	 */
+	private final String equation;
+
+	/**
+	 *
+	 */
+	private final String description;
+
+	/**
+	 *
+	 */
+	private final boolean balance;
+
+	/**
+	 *
+	 */
+	private final Collection<String> ec;
+
+	/**
+	 *
+	 */
+	private final Map<String,Collection<String>> xrefIds;
+
+	/**
+	 *
+	 * @param mxnRefId
+	 * @param equation
+	 * @param description
+	 * @param balance
+	 * @param ec
+	 * @param xrefIds
+	 */
+	MxnRefReaction( final String mxnRefId, final String equation, final String description, final boolean balance, final Collection<String> ec, final Map<String,Collection<String>> xrefIds )
+	{
+		this.mxnRefId = mxnRefId;
+		this.equation = equation;
+		this.description = description;
+		this.balance = balance;
+		this.ec = Collections.unmodifiableList( new ArrayList<>( ec ) );
+		this.xrefIds = xrefIds == null ? Collections.<String,Collection<String>>emptyMap() : Collections.unmodifiableMap( xrefIds );
+	}
+
+	/**
+	 *
+	 * @return String
+	 */
+	public String getMxnRefId()
+	{
+		return mxnRefId;
+	}
+
+	/**
+	 *
+	 * @return String
+	 */
+	public String getEquation()
+	{
+		return equation;
+	}
+
+	/**
+	 *
+	 * @return String
+	 */
+	public String getDescription()
+	{
+		return description;
+	}
+
+	/**
+	 *
+	 * @return boolean
+	 */
+	public boolean getBalance()
+	{
+		return balance;
+	}
+
+	/**
+	 *
+	 * @return Collection<String>
+	 */
+	public Collection<String> getEC()
+	{
+		return ec;
+	}
+
+	/**
+	 *
+	 * @return Map<String,Collection<String>>
+	 */
+	public Map<String,Collection<String>> getXrefIds()
+	{
+		return xrefIds;
+	}
+
+	/**
+	 *
+	 * @param source
+	 * @return Collection<String>
+	 */
+	public Collection<String> getXrefIds( final String source )
+	{
+		final Collection<String> sourceXrefIds = xrefIds.get( source );
+		return sourceXrefIds == null ? Collections.<String>emptyList() : sourceXrefIds;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return mxnRefId;
+	}
+}
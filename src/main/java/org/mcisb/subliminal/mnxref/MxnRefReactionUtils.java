@@ -10,6 +10,34 @@ import java.util.*;
  */
 public class MxnRefReactionUtils extends MxnRefUtils
 {
+	/**
+	 * Columns of the property table, which may be declared up front with
+	 * {@link #setColumns(Column...)} so that unused columns are not loaded.
+	 * 
+	 * @author Neil Swainston
+	 */
+	public enum Column
+	{
+		REACTION( MxnRefReactionUtils.REACTION ),
+		DESCRIPTION( MxnRefReactionUtils.DESCRIPTION ),
+		BALANCE( MxnRefReactionUtils.BALANCE ),
+		EC( MxnRefReactionUtils.EC );
+
+		/**
+		 * 
+		 */
+		private final int index;
+
+		/**
+		 * 
+		 * @param index
+		 */
+		private Column( final int index )
+		{
+			this.index = index;
+		}
+	}
+
 	/**
 	 * 
 	 */
@@ -43,12 +71,7 @@ public class MxnRefReactionUtils extends MxnRefUtils
 	/**
 	 * 
 	 */
-	private final URL dataUrl = new URL( "http://metanetx.org/cgi-bin/mnxget/mnxref/reac_prop.tsv" ); //$NON-NLS-1$
-
-	/**
-	 * 
-	 */
-	private static MxnRefReactionUtils instance = null;
+	private static volatile MxnRefReactionUtils instance = null;
 
 	/**
 	 * 
@@ -59,7 +82,13 @@ public class MxnRefReactionUtils extends MxnRefUtils
 	{
 		if( instance == null )
 		{
-			instance = new MxnRefReactionUtils();
+			synchronized( MxnRefReactionUtils.class )
+			{
+				if( instance == null )
+				{
+					instance = new MxnRefReactionUtils();
+				}
+			}
 		}
 
 		return instance;
@@ -71,7 +100,26 @@ public class MxnRefReactionUtils extends MxnRefUtils
 	 */
 	private MxnRefReactionUtils() throws MalformedURLException
 	{
-		super( MXNREF_ID_REG_EXP, new URL( "http://metanetx.org/cgi-bin/mnxget/mnxref/reac_xref.tsv" ) ); //$NON-NLS-1$
+		super( "reac", MXNREF_ID_REG_EXP, new URL( "http://metanetx.org/cgi-bin/mnxget/mnxref/reac_xref.tsv" ), new URL( "http://metanetx.org/cgi-bin/mnxget/mnxref/reac_prop.tsv" ) ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	/**
+	 * Declares which columns are needed, so that no others are loaded. Must be
+	 * called before first use to avoid loading the full table. Properties of
+	 * undeclared columns subsequently read as null.
+	 * 
+	 * @param columns
+	 */
+	public void setColumns( final Column... columns )
+	{
+		final BitSet selectedColumns = new BitSet();
+
+		for( Column column : columns )
+		{
+			selectedColumns.set( column.index );
+		}
+
+		setColumns( selectedColumns );
 	}
 
 	/**
@@ -80,9 +128,9 @@ public class MxnRefReactionUtils extends MxnRefUtils
 	 * @return String
 	 * @throws IOException
 	 */
-	public synchronized String getEquation( final String id ) throws IOException
+	public String getEquation( final String id ) throws IOException
 	{
-		return getData( id, REACTION, dataUrl );
+		return getData( id, REACTION );
 	}
 
 	/**
@@ -91,9 +139,9 @@ public class MxnRefReactionUtils extends MxnRefUtils
 	 * @return String
 	 * @throws IOException
 	 */
-	public synchronized String getDescription( final String id ) throws IOException
+	public String getDescription( final String id ) throws IOException
 	{
-		return getData( id, DESCRIPTION, dataUrl );
+		return getData( id, DESCRIPTION );
 	}
 
 	/**
@@ -102,10 +150,86 @@ public class MxnRefReactionUtils extends MxnRefUtils
 	 * @return boolean
 	 * @throws IOException
 	 */
-	public synchronized boolean getBalance( final String id ) throws IOException
+	public boolean getBalance( final String id ) throws IOException
+	{
+		return parseBalance( getData( id, BALANCE ) );
+	}
+
+	/**
+	 * 
+	 * @param id
+	 * @return Collection<String>
+	 * @throws IOException
+	 */
+	public Collection<String> getEC( final String id ) throws IOException
+	{
+		return parseEC( getData( id, EC ) );
+	}
+
+	/**
+	 * Resolves the id once and returns all of its properties and xrefs.
+	 * 
+	 * @param id
+	 * @return MxnRefReaction, or null if the id cannot be resolved
+	 * @throws IOException
+	 */
+	public MxnRefReaction getReaction( final String id ) throws IOException
+	{
+		final String mxnRefId = getMxnRefId( id );
+		return mxnRefId == null ? null : getReaction( mxnRefId, getXrefTable(), getDataTable() );
+	}
+
+	/**
+	 * Resolves many ids, such as all reactions of a pathway, in a single pass.
+	 * Ids sharing an MNXref id share the same record.
+	 * 
+	 * @param ids
+	 * @return Map<String,MxnRefReaction>, keyed by each resolvable id
+	 * @throws IOException
+	 */
+	public Map<String,MxnRefReaction> getReactions( final Collection<String> ids ) throws IOException
+	{
+		final MxnRefXrefTable xrefTable = getXrefTable();
+		final MxnRefDataTable dataTable = getDataTable();
+		final Map<String,MxnRefReaction> mxnRefIdToReaction = new HashMap<>();
+		final Map<String,MxnRefReaction> reactions = new LinkedHashMap<>();
+
+		for( Map.Entry<String,String> entry : getMxnRefIds( ids ).entrySet() )
+		{
+			final String mxnRefId = entry.getValue();
+			MxnRefReaction reaction = mxnRefIdToReaction.get( mxnRefId );
+
+			if( reaction == null )
+			{
+				reaction = getReaction( mxnRefId, xrefTable, dataTable );
+				mxnRefIdToReaction.put( mxnRefId, reaction );
+			}
+
+			reactions.put( entry.getKey(), reaction );
+		}
+
+		return reactions;
+	}
+
+	/**
+	 * 
+	 * @param mxnRefId
+	 * @param xrefTable
+	 * @param dataTable
+	 * @return MxnRefReaction
+	 */
+	private static MxnRefReaction getReaction( final String mxnRefId, final MxnRefXrefTable xrefTable, final MxnRefDataTable dataTable )
 	{
-		final String balance = getData( id, BALANCE, dataUrl );
+		return new MxnRefReaction( mxnRefId, dataTable.getData( mxnRefId, REACTION ), dataTable.getData( mxnRefId, DESCRIPTION ), parseBalance( dataTable.getData( mxnRefId, BALANCE ) ), parseEC( dataTable.getData( mxnRefId, EC ) ), xrefTable.getXrefIds( mxnRefId ) );
+	}
 
+	/**
+	 * 
+	 * @param balance
+	 * @return boolean
+	 */
+	private static boolean parseBalance( final String balance )
+	{
 		if( balance != null )
 		{
 			return Boolean.parseBoolean( balance );
@@ -116,14 +240,12 @@ public class MxnRefReactionUtils extends MxnRefUtils
 
 	/**
 	 * 
-	 * @param id
+	 * @param data
 	 * @return Collection<String>
-	 * @throws IOException
 	 */
-	public synchronized Collection<String> getEC( final String id ) throws IOException
+	private static Collection<String> parseEC( final String data )
 	{
 		final Collection<String> ecTerms = new ArrayList<>();
-		final String data = getData( id, EC, dataUrl );
 
 		if( data != null )
 		{
@@ -0,0 +1,673 @@
+package org.mcisb.subliminal.mnxref;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.zip.*;
+import org.mcisb.subliminal.mnxref.MxnRefUtils.Evidence;
+
+/**
+ * Read-only, memory-mapped binary snapshot of an MNXref xref / property table
+ * pair.
+ *
+ * The snapshot is produced once from the MNXref tsv files by
+ * {@link #compile(URL, URL, File)} and consists of sorted string tables and
+ * offset arrays, so that lookups are resolved directly from the mapping by
+ * binary search, without building any Java object graph on load.
+ *
+ * @author Neil Swainston
+ */
+public class MxnRefSnapshot implements MxnRefXrefTable, MxnRefDataTable
+{
+	/**
+	 *
+	 */
+	private static final int MAGIC = 0x4D4E5853; // "MNXS"
+
+	/**
+	 *
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Magic, version and CRC32 of the payload.
+	 */
+	private static final int HEADER_LENGTH = 4 + 4 + 8;
+
+	/**
+	 *
+	 */
+	private static final int CHECKSUM_POSITION = 8;
+
+	/**
+	 *
+	 */
+	private static final int NO_EVIDENCE = 0;
+
+	/**
+	 *
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 *
+	 */
+	private static final Charset UTF_8 = Charset.forName( "UTF-8" ); //$NON-NLS-1$
+
+	/**
+	 *
+	 */
+	private final ByteBuffer buffer;
+
+	/**
+	 *
+	 */
+	private final StringTable sources;
+
+	/**
+	 *
+	 */
+	private final StringTable xrefIds;
+
+	/**
+	 *
+	 */
+	private final int xrefTargetsPosition;
+
+	/**
+	 *
+	 */
+	private final int xrefEvidencePosition;
+
+	/**
+	 *
+	 */
+	private final StringTable mxnRefIds;
+
+	/**
+	 *
+	 */
+	private final int xrefStartsPosition;
+
+	/**
+	 *
+	 */
+	private final int xrefSourcesPosition;
+
+	/**
+	 *
+	 */
+	private final StringTable xrefValues;
+
+	/**
+	 *
+	 */
+	private final int numColumns;
+
+	/**
+	 *
+	 */
+	private final int hasDataPosition;
+
+	/**
+	 *
+	 */
+	private final StringTable cells;
+
+	/**
+	 *
+	 * @param buffer
+	 * @throws IOException
+	 */
+	private MxnRefSnapshot( final ByteBuffer buffer ) throws IOException
+	{
+		this.buffer = buffer;
+
+		if( buffer.getInt( 0 ) != MAGIC )
+		{
+			throw new IOException( "Not an MNXref snapshot" ); //$NON-NLS-1$
+		}
+
+		final int version = buffer.getInt( 4 );
+
+		if( version != VERSION )
+		{
+			throw new IOException( "Unsupported MNXref snapshot version: " + version ); //$NON-NLS-1$
+		}
+
+		if( buffer.getLong( CHECKSUM_POSITION ) != getChecksum( buffer ) )
+		{
+			throw new IOException( "Corrupt MNXref snapshot: checksum mismatch" ); //$NON-NLS-1$
+		}
+
+		int position = HEADER_LENGTH;
+
+		sources = new StringTable( buffer, position );
+		position = sources.end;
+
+		xrefIds = new StringTable( buffer, position );
+		position = xrefIds.end;
+		xrefTargetsPosition = position;
+		position += 4 * xrefIds.count;
+		xrefEvidencePosition = position;
+		position += xrefIds.count;
+
+		mxnRefIds = new StringTable( buffer, position );
+		position = mxnRefIds.end;
+		xrefStartsPosition = position;
+		position += 4 * ( mxnRefIds.count + 1 );
+		xrefSourcesPosition = position;
+		position += 4 * buffer.getInt( xrefStartsPosition + 4 * mxnRefIds.count );
+
+		xrefValues = new StringTable( buffer, position );
+		position = xrefValues.end;
+
+		numColumns = buffer.getInt( position );
+		position += 4;
+		hasDataPosition = position;
+		position += mxnRefIds.count;
+
+		cells = new StringTable( buffer, position );
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @return MxnRefSnapshot
+	 * @throws IOException
+	 */
+	public static MxnRefSnapshot open( final File file ) throws IOException
+	{
+		try ( final RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" ); final FileChannel channel = randomAccessFile.getChannel() ) //$NON-NLS-1$
+		{
+			if( channel.size() > Integer.MAX_VALUE )
+			{
+				throw new IOException( "MNXref snapshot too large to map: " + file ); //$NON-NLS-1$
+			}
+
+			// The mapping remains valid once the channel is closed:
+			return new MxnRefSnapshot( channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() ) );
+		}
+	}
+
+	/**
+	 *
+	 * @param xrefUrl
+	 * @param dataUrl
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void compile( final URL xrefUrl, final URL dataUrl, final File file ) throws IOException
+	{
+		final MxnRefXrefs xrefs = MxnRefXrefs.read( xrefUrl );
+		final Map<String,String> xrefIdToMxnRefId = xrefs.getXrefIdToMxnRefId();
+		final Map<String,Evidence> xrefIdToEvidence = xrefs.getXrefIdToEvidence();
+		final Map<String,Map<String,Collection<String>>> mxnRefIdToXrefIds = xrefs.getMxnRefIdToXrefIds();
+		final Map<String,String[]> mxnRefIdToData = MxnRefData.read( dataUrl, null ).getMxnRefIdToData();
+		int numColumns = 0;
+
+		for( String[] data : mxnRefIdToData.values() )
+		{
+			numColumns = Math.max( numColumns, data.length );
+		}
+
+		// Sources dictionary:
+		final Map<String,Integer> sourceToIndex = new LinkedHashMap<>();
+
+		for( Map<String,Collection<String>> xrefIds : mxnRefIdToXrefIds.values() )
+		{
+			for( String source : xrefIds.keySet() )
+			{
+				if( !sourceToIndex.containsKey( source ) )
+				{
+					sourceToIndex.put( source, Integer.valueOf( sourceToIndex.size() ) );
+				}
+			}
+		}
+
+		// Sorted MNXref ids, being the union of those in xref and data files:
+		final Set<String> allMxnRefIds = new HashSet<>( mxnRefIdToXrefIds.keySet() );
+		allMxnRefIds.addAll( mxnRefIdToData.keySet() );
+		allMxnRefIds.addAll( xrefIdToMxnRefId.values() );
+		final byte[][] sortedMxnRefIds = sort( allMxnRefIds );
+		final Map<String,Integer> mxnRefIdToIndex = new HashMap<>();
+
+		for( int i = 0; i < sortedMxnRefIds.length; i++ )
+		{
+			mxnRefIdToIndex.put( new String( sortedMxnRefIds[ i ], UTF_8 ), Integer.valueOf( i ) );
+		}
+
+		final byte[][] sortedXrefIds = sort( xrefIdToMxnRefId.keySet() );
+
+		final CRC32 checksum = new CRC32();
+
+		try ( final DataOutputStream os = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ), BUFFER_SIZE ) ) )
+		{
+			os.writeInt( MAGIC );
+			os.writeInt( VERSION );
+			os.writeLong( 0 );
+			os.flush();
+
+			// From here on, maintain the checksum of the payload:
+			final DataOutputStream payload = new DataOutputStream( new CheckedOutputStream( os, checksum ) );
+
+			writeStringTable( payload, toBytes( sourceToIndex.keySet() ) );
+
+			writeStringTable( payload, sortedXrefIds );
+
+			for( byte[] xrefId : sortedXrefIds )
+			{
+				payload.writeInt( mxnRefIdToIndex.get( xrefIdToMxnRefId.get( new String( xrefId, UTF_8 ) ) ).intValue() );
+			}
+
+			for( byte[] xrefId : sortedXrefIds )
+			{
+				final Evidence evidence = xrefIdToEvidence.get( new String( xrefId, UTF_8 ) );
+				payload.writeByte( evidence == null ? NO_EVIDENCE : evidence.ordinal() + 1 );
+			}
+
+			writeStringTable( payload, sortedMxnRefIds );
+
+			final List<Integer> xrefSources = new ArrayList<>();
+			final List<byte[]> xrefValues = new ArrayList<>();
+
+			payload.writeInt( 0 );
+
+			for( byte[] mxnRefId : sortedMxnRefIds )
+			{
+				final Map<String,Collection<String>> xrefIds = mxnRefIdToXrefIds.get( new String( mxnRefId, UTF_8 ) );
+
+				if( xrefIds != null )
+				{
+					for( Map.Entry<String,Collection<String>> entry : xrefIds.entrySet() )
+					{
+						for( String value : entry.getValue() )
+						{
+							xrefSources.add( sourceToIndex.get( entry.getKey() ) );
+							xrefValues.add( value.getBytes( UTF_8 ) );
+						}
+					}
+				}
+
+				payload.writeInt( xrefSources.size() );
+			}
+
+			for( Integer xrefSource : xrefSources )
+			{
+				payload.writeInt( xrefSource.intValue() );
+			}
+
+			writeStringTable( payload, xrefValues.toArray( new byte[ xrefValues.size() ][] ) );
+
+			payload.writeInt( numColumns );
+
+			final byte[][] cells = new byte[ sortedMxnRefIds.length * numColumns ][];
+
+			for( int i = 0; i < sortedMxnRefIds.length; i++ )
+			{
+				final String[] data = mxnRefIdToData.get( new String( sortedMxnRefIds[ i ], UTF_8 ) );
+				payload.writeByte( data == null ? 0 : 1 );
+
+				for( int j = 0; j < numColumns; j++ )
+				{
+					cells[ i * numColumns + j ] = data == null || j >= data.length ? new byte[ 0 ] : data[ j ].getBytes( UTF_8 );
+				}
+			}
+
+			writeStringTable( payload, cells );
+			payload.flush();
+		}
+
+		try ( final RandomAccessFile randomAccessFile = new RandomAccessFile( file, "rw" ) ) //$NON-NLS-1$
+		{
+			randomAccessFile.seek( CHECKSUM_POSITION );
+			randomAccessFile.writeLong( checksum.getValue() );
+		}
+	}
+
+	/**
+	 *
+	 * @param normalisedXrefId
+	 * @return String
+	 */
+	@Override
+	public String getMxnRefId( final String normalisedXrefId )
+	{
+		final int index = xrefIds.indexOf( normalisedXrefId.getBytes( UTF_8 ) );
+		return index < 0 ? null : mxnRefIds.get( buffer.getInt( xrefTargetsPosition + 4 * index ) );
+	}
+
+	/**
+	 *
+	 * @param normalisedXrefId
+	 * @return Evidence
+	 */
+	@Override
+	public Evidence getEvidence( final String normalisedXrefId )
+	{
+		final int index = xrefIds.indexOf( normalisedXrefId.getBytes( UTF_8 ) );
+
+		if( index < 0 )
+		{
+			return null;
+		}
+
+		final int evidence = buffer.get( xrefEvidencePosition + index );
+		return evidence == NO_EVIDENCE ? null : Evidence.values()[ evidence - 1 ];
+	}
+
+	/**
+	 *
+	 * @param mxnRefId
+	 * @return Map<String,Collection<String>>
+	 */
+	@Override
+	public Map<String,Collection<String>> getXrefIds( final String mxnRefId )
+	{
+		final int index = mxnRefId == null ? -1 : mxnRefIds.indexOf( mxnRefId.getBytes( UTF_8 ) );
+
+		if( index < 0 )
+		{
+			return null;
+		}
+
+		final int start = buffer.getInt( xrefStartsPosition + 4 * index );
+		final int end = buffer.getInt( xrefStartsPosition + 4 * ( index + 1 ) );
+
+		if( start == end )
+		{
+			return null;
+		}
+
+		final Map<String,Collection<String>> xrefIdsMap = new LinkedHashMap<>();
+
+		for( int i = start; i < end; i++ )
+		{
+			final String source = sources.get( buffer.getInt( xrefSourcesPosition + 4 * i ) );
+			Collection<String> values = xrefIdsMap.get( source );
+
+			if( values == null )
+			{
+				values = new LinkedHashSet<>();
+				xrefIdsMap.put( source, values );
+			}
+
+			values.add( xrefValues.get( i ) );
+		}
+
+		return xrefIdsMap;
+	}
+
+	/**
+	 *
+	 * @param mxnRefId
+	 * @param column
+	 * @return String
+	 */
+	@Override
+	public String getData( final String mxnRefId, final int column )
+	{
+		final int index = mxnRefIds.indexOf( mxnRefId.getBytes( UTF_8 ) );
+
+		if( index < 0 || buffer.get( hasDataPosition + index ) == 0 || column >= numColumns )
+		{
+			return null;
+		}
+
+		return cells.get( index * numColumns + column );
+	}
+
+	/**
+	 *
+	 * @param values
+	 * @return byte[][]
+	 */
+	private static byte[][] toBytes( final Collection<String> values )
+	{
+		final byte[][] bytes = new byte[ values.size() ][];
+		int i = 0;
+
+		for( String value : values )
+		{
+			bytes[ i++ ] = value.getBytes( UTF_8 );
+		}
+
+		return bytes;
+	}
+
+	/**
+	 *
+	 * @param values
+	 * @return byte[][]
+	 */
+	private static byte[][] sort( final Collection<String> values )
+	{
+		final byte[][] bytes = toBytes( values );
+
+		Arrays.sort( bytes, new Comparator<byte[]>()
+		{
+			/*
+			 * (non-Javadoc)
+			 *
+			 * @see java.util.Comparator#compare(java.lang.Object,
+			 * java.lang.Object)
+			 */
+			@Override
+			public int compare( final byte[] o1, final byte[] o2 )
+			{
+				return StringTable.compare( o1, o2 );
+			}
+		} );
+
+		return bytes;
+	}
+
+	/**
+	 *
+	 * @param os
+	 * @param values
+	 * @throws IOException
+	 */
+	private static void writeStringTable( final DataOutputStream os, final byte[][] values ) throws IOException
+	{
+		os.writeInt( values.length );
+
+		int offset = 0;
+		os.writeInt( offset );
+
+		for( byte[] value : values )
+		{
+			offset += value.length;
+			os.writeInt( offset );
+		}
+
+		for( byte[] value : values )
+		{
+			os.write( value );
+		}
+	}
+
+	/**
+	 *
+	 * @param buffer
+	 * @return long
+	 */
+	private static long getChecksum( final ByteBuffer buffer )
+	{
+		final CRC32 checksum = new CRC32();
+		final byte[] chunk = new byte[ BUFFER_SIZE ];
+		final ByteBuffer payload = buffer.duplicate();
+		payload.position( HEADER_LENGTH );
+
+		while( payload.hasRemaining() )
+		{
+			final int length = Math.min( chunk.length, payload.remaining() );
+			payload.get( chunk, 0, length );
+			checksum.update( chunk, 0, length );
+		}
+
+		return checksum.getValue();
+	}
+
+	/**
+	 * A table of UTF-8 strings, stored as a count, an offset array and a
+	 * contiguous block of bytes.
+	 */
+	private static class StringTable
+	{
+		/**
+		 *
+		 */
+		final ByteBuffer buffer;
+
+		/**
+		 *
+		 */
+		final int count;
+
+		/**
+		 *
+		 */
+		final int offsetsPosition;
+
+		/**
+		 *
+		 */
+		final int bytesPosition;
+
+		/**
+		 *
+		 */
+		final int end;
+
+		/**
+		 *
+		 * @param buffer
+		 * @param position
+		 */
+		StringTable( final ByteBuffer buffer, final int position )
+		{
+			this.buffer = buffer;
+			this.count = buffer.getInt( position );
+			this.offsetsPosition = position + 4;
+			this.bytesPosition = offsetsPosition + 4 * ( count + 1 );
+			this.end = bytesPosition + buffer.getInt( offsetsPosition + 4 * count );
+		}
+
+		/**
+		 *
+		 * @param index
+		 * @return String
+		 */
+		String get( final int index )
+		{
+			final int start = buffer.getInt( offsetsPosition + 4 * index );
+			final byte[] bytes = new byte[ buffer.getInt( offsetsPosition + 4 * ( index + 1 ) ) - start ];
+
+			for( int i = 0; i < bytes.length; i++ )
+			{
+				bytes[ i ] = buffer.get( bytesPosition + start + i );
+			}
+
+			return new String( bytes, UTF_8 );
+		}
+
+		/**
+		 * Binary search over a table sorted in unsigned byte order.
+		 *
+		 * @param key
+		 * @return int
+		 */
+		int indexOf( final byte[] key )
+		{
+			int low = 0;
+			int high = count - 1;
+
+			while( low <= high )
+			{
+				final int mid = ( low + high ) >>> 1;
+				final int comparison = compare( mid, key );
+
+				if( comparison < 0 )
+				{
+					low = mid + 1;
+				}
+				else if( comparison > 0 )
+				{
+					high = mid - 1;
+				}
+				else
+				{
+					return mid;
+				}
+			}
+
+			return -1;
+		}
+
+		/**
+		 *
+		 * @param index
+		 * @param key
+		 * @return int
+		 */
+		private int compare( final int index, final byte[] key )
+		{
+			final int start = buffer.getInt( offsetsPosition + 4 * index );
+			final int length = buffer.getInt( offsetsPosition + 4 * ( index + 1 ) ) - start;
+			final int minLength = Math.min( length, key.length );
+
+			for( int i = 0; i < minLength; i++ )
+			{
+				final int difference = ( buffer.get( bytesPosition + start + i ) & 0xFF ) - ( key[ i ] & 0xFF );
+
+				if( difference != 0 )
+				{
+					return difference;
+				}
+			}
+
+			return length - key.length;
+		}
+
+		/**
+		 *
+		 * @param o1
+		 * @param o2
+		 * @return int
+		 */
+		static int compare( final byte[] o1, final byte[] o2 )
+		{
+			final int minLength = Math.min( o1.length, o2.length );
+
+			for( int i = 0; i < minLength; i++ )
+			{
+				final int difference = ( o1[ i ] & 0xFF ) - ( o2[ i ] & 0xFF );
+
+				if( difference != 0 )
+				{
+					return difference;
+				}
+			}
+
+			return o1.length - o2.length;
+		}
+	}
+
+	/**
+	 * Compiles snapshots of the chemical and reaction tables into the given
+	 * directory.
+	 *
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main( String[] args ) throws IOException
+	{
+		final File directory = new File( args[ 0 ] );
+		MxnRefChemUtils.getInstance().compileSnapshot( directory );
+		MxnRefReactionUtils.getInstance().compileSnapshot( directory );
+	}
+}
@@ -0,0 +1,431 @@
+package org.mcisb.subliminal.mnxref;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Chunked, parallel parser for MNXref tsv dumps.
+ *
+ * The file is split into byte ranges on line boundaries, and each range is
+ * tokenised on a fork/join pool by its own {@link RowHandler}, without regular
+ * expressions or intermediate strings. Per-chunk results are returned in file
+ * order, so that callers can merge them deterministically.
+ *
+ * @author Neil Swainston
+ */
+final class MxnRefTsvParser
+{
+	/**
+	 * System property overriding the number of parser threads.
+	 */
+	static final String PARALLELISM = "org.mcisb.subliminal.mnxref.MxnRefTsvParser.Parallelism"; //$NON-NLS-1$
+
+	/**
+	 *
+	 */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/**
+	 *
+	 */
+	private static final int MIN_CHUNK_SIZE = 1 << 20;
+
+	/**
+	 *
+	 */
+	private static final byte TAB = '\t';
+
+	/**
+	 *
+	 */
+	private static final byte NEW_LINE = '\n';
+
+	/**
+	 *
+	 */
+	private static final byte CARRIAGE_RETURN = '\r';
+
+	/**
+	 *
+	 */
+	private static final byte COMMENT = '#';
+
+	/**
+	 *
+	 */
+	private static final String FILE_PROTOCOL = "file"; //$NON-NLS-1$
+
+	/**
+	 *
+	 */
+	private static final ForkJoinPool pool = new ForkJoinPool( Integer.getInteger( PARALLELISM, Runtime.getRuntime().availableProcessors() ).intValue() );
+
+	/**
+	 *
+	 * @author Neil Swainston
+	 */
+	abstract static class RowHandler<T>
+	{
+		/**
+		 * Receives one non-comment row. Fields are the byte ranges [starts[i],
+		 * ends[i]) of bytes, for i < numFields. As with String.split, trailing
+		 * empty fields are not counted.
+		 *
+		 * @param bytes
+		 * @param starts
+		 * @param ends
+		 * @param numFields
+		 */
+		abstract void row( final byte[] bytes, final int[] starts, final int[] ends, final int numFields );
+
+		/**
+		 *
+		 * @return T
+		 */
+		abstract T getResult();
+	}
+
+	/**
+	 *
+	 * @author Neil Swainston
+	 */
+	interface RowHandlerFactory<T>
+	{
+		/**
+		 *
+		 * @return RowHandler<T>
+		 */
+		public RowHandler<T> newRowHandler();
+	}
+
+	/**
+	 *
+	 */
+	private MxnRefTsvParser()
+	{
+		// No implementation.
+	}
+
+	/**
+	 *
+	 * @param url
+	 * @param factory
+	 * @return List<T>, one result per chunk in file order
+	 * @throws IOException
+	 */
+	static <T> List<T> parse( final URL url, final RowHandlerFactory<T> factory ) throws IOException
+	{
+		return parse( read( url ), factory );
+	}
+
+	/**
+	 *
+	 * @param buffer
+	 * @param factory
+	 * @return List<T>, one result per chunk in file order
+	 */
+	static <T> List<T> parse( final ByteBuffer buffer, final RowHandlerFactory<T> factory )
+	{
+		return parse( buffer, factory, Math.max( 1, Math.min( pool.getParallelism() * CHUNKS_PER_THREAD, buffer.limit() / MIN_CHUNK_SIZE ) ) );
+	}
+
+	/**
+	 *
+	 * @param buffer
+	 * @param factory
+	 * @param numChunks
+	 * @return List<T>, one result per chunk in file order
+	 */
+	static <T> List<T> parse( final ByteBuffer buffer, final RowHandlerFactory<T> factory, final int numChunks )
+	{
+		return pool.invoke( new ParseTask<>( buffer, getBoundaries( buffer, numChunks ), 0, numChunks, factory ) );
+	}
+
+	/**
+	 * Memory-maps uncompressed file URLs, and reads any other URL fully into
+	 * memory, decompressing gzip files.
+	 *
+	 * @param url
+	 * @return ByteBuffer
+	 * @throws IOException
+	 */
+	static ByteBuffer read( final URL url ) throws IOException
+	{
+		if( FILE_PROTOCOL.equals( url.getProtocol() ) && !url.getPath().endsWith( MxnRefCache.GZIP_SUFFIX ) )
+		{
+			try ( final RandomAccessFile file = new RandomAccessFile( toFile( url ), "r" ); final FileChannel channel = file.getChannel() ) //$NON-NLS-1$
+			{
+				return channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+			}
+		}
+
+		try ( final InputStream is = MxnRefCache.openStream( url ) )
+		{
+			final ByteArrayOutputStream os = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[ 64 * 1024 ];
+			int read = -1;
+
+			while( ( read = is.read( buffer ) ) != -1 )
+			{
+				os.write( buffer, 0, read );
+			}
+
+			return ByteBuffer.wrap( os.toByteArray() );
+		}
+	}
+
+	/**
+	 * Byte-level equivalent of SubliminalUtils.getNormalisedId. Dashes are
+	 * encoded, runs of non-word characters (including all non-ASCII UTF-8
+	 * bytes) are replaced by a single underscore, and an underscore is
+	 * prepended to ids starting with a digit.
+	 *
+	 * @param bytes
+	 * @param start
+	 * @param end
+	 * @param normalised
+	 *            buffer of at least 6 * ( end - start ) + 1 bytes
+	 * @return int length of the normalised id
+	 */
+	static int normalise( final byte[] bytes, final int start, final int end, final byte[] normalised )
+	{
+		final byte UNDERSCORE = '_';
+		final byte DASH = '-';
+		final byte[] DASH_ENCODED = { '_', 'D', 'A', 'S', 'H', '_' };
+		int length = 0;
+		boolean nonWord = false;
+
+		if( start < end && bytes[ start ] >= '0' && bytes[ start ] <= '9' )
+		{
+			normalised[ length++ ] = UNDERSCORE;
+		}
+
+		for( int i = start; i < end; i++ )
+		{
+			final byte b = bytes[ i ];
+
+			if( b == DASH )
+			{
+				System.arraycopy( DASH_ENCODED, 0, normalised, length, DASH_ENCODED.length );
+				length += DASH_ENCODED.length;
+				nonWord = false;
+			}
+			else if( ( b >= 'a' && b <= 'z' ) || ( b >= 'A' && b <= 'Z' ) || ( b >= '0' && b <= '9' ) || b == UNDERSCORE )
+			{
+				normalised[ length++ ] = b;
+				nonWord = false;
+			}
+			else if( !nonWord )
+			{
+				normalised[ length++ ] = UNDERSCORE;
+				nonWord = true;
+			}
+		}
+
+		return length;
+	}
+
+	/**
+	 *
+	 * @param url
+	 * @return File
+	 * @throws IOException
+	 */
+	private static File toFile( final URL url ) throws IOException
+	{
+		try
+		{
+			return new File( url.toURI() );
+		}
+		catch( URISyntaxException e )
+		{
+			throw new IOException( e );
+		}
+	}
+
+	/**
+	 * Splits the buffer into numChunks byte ranges, each starting at the
+	 * beginning of a line.
+	 *
+	 * @param buffer
+	 * @param numChunks
+	 * @return int[] of numChunks + 1 boundaries
+	 */
+	private static int[] getBoundaries( final ByteBuffer buffer, final int numChunks )
+	{
+		final int length = buffer.limit();
+		final int[] boundaries = new int[ numChunks + 1 ];
+		boundaries[ numChunks ] = length;
+
+		for( int i = 1; i < numChunks; i++ )
+		{
+			int boundary = Math.max( boundaries[ i - 1 ], (int)( (long)length * i / numChunks ) );
+
+			while( boundary < length && boundary > 0 && buffer.get( boundary - 1 ) != NEW_LINE )
+			{
+				boundary++;
+			}
+
+			boundaries[ i ] = boundary;
+		}
+
+		return boundaries;
+	}
+
+	/**
+	 *
+	 * @param buffer
+	 * @param start
+	 * @param end
+	 * @param handler
+	 * @return T
+	 */
+	private static <T> T parse( final ByteBuffer buffer, final int start, final int end, final RowHandler<T> handler )
+	{
+		final byte[] bytes = new byte[ end - start ];
+		final ByteBuffer chunk = buffer.duplicate();
+		chunk.position( start );
+		chunk.get( bytes );
+
+		int[] starts = new int[ 16 ];
+		int[] ends = new int[ 16 ];
+		int lineStart = 0;
+
+		while( lineStart < bytes.length )
+		{
+			int lineEnd = lineStart;
+
+			while( lineEnd < bytes.length && bytes[ lineEnd ] != NEW_LINE )
+			{
+				lineEnd++;
+			}
+
+			final int next = lineEnd + 1;
+
+			if( lineEnd > lineStart && bytes[ lineEnd - 1 ] == CARRIAGE_RETURN )
+			{
+				lineEnd--;
+			}
+
+			if( lineEnd > lineStart && bytes[ lineStart ] != COMMENT )
+			{
+				int numFields = 0;
+				int fieldStart = lineStart;
+
+				for( int i = lineStart; i <= lineEnd; i++ )
+				{
+					if( i == lineEnd || bytes[ i ] == TAB )
+					{
+						if( numFields == starts.length )
+						{
+							starts = Arrays.copyOf( starts, numFields * 2 );
+							ends = Arrays.copyOf( ends, numFields * 2 );
+						}
+
+						starts[ numFields ] = fieldStart;
+						ends[ numFields ] = i;
+						numFields++;
+						fieldStart = i + 1;
+					}
+				}
+
+				while( numFields > 0 && starts[ numFields - 1 ] == ends[ numFields - 1 ] )
+				{
+					numFields--;
+				}
+
+				if( numFields > 0 )
+				{
+					handler.row( bytes, starts, ends, numFields );
+				}
+			}
+
+			lineStart = next;
+		}
+
+		return handler.getResult();
+	}
+
+	/**
+	 *
+	 * @author Neil Swainston
+	 */
+	private static final class ParseTask<T> extends RecursiveTask<List<T>>
+	{
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 *
+		 */
+		private final transient ByteBuffer buffer;
+
+		/**
+		 *
+		 */
+		private final int[] boundaries;
+
+		/**
+		 *
+		 */
+		private final int firstChunk;
+
+		/**
+		 *
+		 */
+		private final int lastChunk;
+
+		/**
+		 *
+		 */
+		private final transient RowHandlerFactory<T> factory;
+
+		/**
+		 *
+		 * @param buffer
+		 * @param boundaries
+		 * @param firstChunk
+		 * @param lastChunk
+		 * @param factory
+		 */
+		ParseTask( final ByteBuffer buffer, final int[] boundaries, final int firstChunk, final int lastChunk, final RowHandlerFactory<T> factory )
+		{
+			this.buffer = buffer;
+			this.boundaries = boundaries;
+			this.firstChunk = firstChunk;
+			this.lastChunk = lastChunk;
+			this.factory = factory;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.concurrent.RecursiveTask#compute()
+		 */
+		@Override
+		protected List<T> compute()
+		{
+			if( lastChunk - firstChunk == 1 )
+			{
+				final List<T> results = new ArrayList<>();
+				results.add( parse( buffer, boundaries[ firstChunk ], boundaries[ lastChunk ], factory.newRowHandler() ) );
+				return results;
+			}
+
+			final int middle = ( firstChunk + lastChunk ) >>> 1;
+			final ParseTask<T> first = new ParseTask<>( buffer, boundaries, firstChunk, middle, factory );
+			first.fork();
+
+			final List<T> second = new ParseTask<>( buffer, boundaries, middle, lastChunk, factory ).compute();
+			final List<T> results = first.join();
+			results.addAll( second );
+			return results;
+		}
+	}
+}
@@ -3,19 +3,23 @@ package org.mcisb.subliminal.mnxref;
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.regex.*;
 import org.apache.commons.lang3.*;
 import org.mcisb.subliminal.*;
 
 /**
- * 
+ * Lookups are served from immutable tables, which are built once on first use
+ * and safely published through volatile fields, so that concurrent readers
+ * never need to lock. Downloads are read through {@link MxnRefCache}.
+ *
  * @author Neil Swainston
  */
 public abstract class MxnRefUtils
 {
 	/**
-	 * 
+	 *
 	 * @author Neil Swainston
-	 * 
+	 *
 	 */
 	public enum Evidence
 	{
@@ -23,102 +27,223 @@ public abstract class MxnRefUtils
 	}
 
 	/**
-	 * 
+	 * System property naming a directory of compiled snapshots, which are used
+	 * in preference to downloading and parsing the tsv files. A snapshot that
+	 * exists but cannot be opened is an error, reported by the first lookup.
 	 */
-	private static final int XREF_ID_SOURCE = 0;
+	public static final String SNAPSHOT_DIRECTORY = "org.mcisb.subliminal.mnxref.SnapshotDirectory"; //$NON-NLS-1$
 
 	/**
-	 * 
+	 *
 	 */
-	private static final int XREF_ID_VALUE = 1;
+	private static final String SNAPSHOT_SUFFIX = ".snapshot"; //$NON-NLS-1$
 
 	/**
-	 * 
+	 *
 	 */
-	private final String mxnRefIdRegExp;
+	private final String name;
 
 	/**
-	 * 
+	 *
+	 */
+	private final Pattern mxnRefIdPattern;
+
+	/**
+	 *
 	 */
 	private final URL xrefUrl;
 
 	/**
-	 * 
+	 *
+	 */
+	private final URL dataUrl;
+
+	/**
+	 *
+	 */
+	private final Object lock = new Object();
+
+	/**
+	 *
 	 */
-	protected Map<String,Map<String,Collection<String>>> mxnRefIdToXrefIds = null;
+	private volatile MxnRefXrefTable xrefTable = null;
 
 	/**
-	 * 
+	 *
 	 */
-	private Map<String,String[]> mxnRefIdToData = null;
+	private volatile MxnRefDataTable dataTable = null;
 
 	/**
-	 * 
+	 * Failure to open the configured snapshot, or null.
 	 */
-	private Map<String,String> xrefIdToMxnRefId = null;
+	private final IOException snapshotException;
 
 	/**
-	 * 
+	 * Columns of the data table to load, or null to load all.
 	 */
-	private Map<String,Evidence> xrefIdToEvidence = null;
+	private BitSet columns = null;
 
 	/**
-	 * 
+	 *
+	 * @param name
 	 * @param mxnRefIdRegExp
 	 * @param xrefUrl
+	 * @param dataUrl
 	 */
-	protected MxnRefUtils( final String mxnRefIdRegExp, final URL xrefUrl )
+	protected MxnRefUtils( final String name, final String mxnRefIdRegExp, final URL xrefUrl, final URL dataUrl )
 	{
-		this.mxnRefIdRegExp = mxnRefIdRegExp;
+		this.name = name;
+		this.mxnRefIdPattern = Pattern.compile( mxnRefIdRegExp );
 		this.xrefUrl = xrefUrl;
+		this.dataUrl = dataUrl;
+
+		final String snapshotDirectory = System.getProperty( SNAPSHOT_DIRECTORY );
+		IOException exception = null;
+
+		if( snapshotDirectory != null )
+		{
+			final File snapshotFile = getSnapshotFile( new File( snapshotDirectory ) );
+
+			if( snapshotFile.exists() )
+			{
+				try
+				{
+					setSnapshot( snapshotFile );
+				}
+				catch( IOException e )
+				{
+					// Thrown by the first lookup, which has no other way to
+					// fail:
+					exception = e;
+				}
+			}
+		}
+
+		snapshotException = exception;
 	}
 
 	/**
-	 * 
+	 * Compiles the xref and data tables to a binary snapshot in the given
+	 * directory.
+	 *
+	 * @param directory
+	 * @return File
+	 * @throws IOException
+	 */
+	public File compileSnapshot( final File directory ) throws IOException
+	{
+		final File snapshotFile = getSnapshotFile( directory );
+		MxnRefSnapshot.compile( MxnRefCache.getUrl( xrefUrl ), MxnRefCache.getUrl( dataUrl ), snapshotFile );
+		return snapshotFile;
+	}
+
+	/**
+	 * Serves all subsequent lookups from the given binary snapshot.
+	 *
+	 * @param snapshotFile
+	 * @throws IOException
+	 */
+	public void setSnapshot( final File snapshotFile ) throws IOException
+	{
+		final MxnRefSnapshot snapshot = MxnRefSnapshot.open( snapshotFile );
+
+		synchronized( lock )
+		{
+			xrefTable = snapshot;
+			dataTable = snapshot;
+		}
+	}
+
+	/**
+	 * Declares which columns of the data table are needed, so that no others
+	 * are loaded. Undeclared columns subsequently read as null. A table that
+	 * is already loaded is kept if it holds all of the declared columns, and
+	 * is otherwise reloaded on next use. Snapshots always hold all columns.
+	 *
+	 * @param columns
+	 *            columns to load, or null to load all
+	 */
+	protected void setColumns( final BitSet columns )
+	{
+		synchronized( lock )
+		{
+			this.columns = columns == null ? null : (BitSet)columns.clone();
+
+			if( dataTable instanceof MxnRefData )
+			{
+				final BitSet loadedColumns = ( (MxnRefData)dataTable ).getColumns();
+
+				if( loadedColumns != null && ( this.columns == null || !contains( loadedColumns, this.columns ) ) )
+				{
+					dataTable = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 *
 	 * @param id
 	 * @return String
 	 * @throws IOException
 	 */
-	public synchronized String getMxnRefId( final String id ) throws IOException
+	public String getMxnRefId( final String id ) throws IOException
 	{
-		if( id.matches( mxnRefIdRegExp ) )
+		if( mxnRefIdPattern.matcher( id ).matches() )
 		{
 			return id;
 		}
 
-		if( xrefIdToMxnRefId == null )
+		return getXrefTable().getMxnRefId( SubliminalUtils.getNormalisedId( id ) );
+	}
+
+	/**
+	 * Resolves many ids in a single pass, returning a map from each resolvable
+	 * id to its MNXref id in iteration order of the supplied ids.
+	 *
+	 * @param ids
+	 * @return Map<String,String>
+	 * @throws IOException
+	 */
+	public Map<String,String> getMxnRefIds( final Collection<String> ids ) throws IOException
+	{
+		final MxnRefXrefTable table = getXrefTable();
+		final Map<String,String> idToMxnRefId = new LinkedHashMap<>();
+
+		for( String id : ids )
 		{
-			initXrefs();
+			if( !idToMxnRefId.containsKey( id ) )
+			{
+				final String mxnRefId = mxnRefIdPattern.matcher( id ).matches() ? id : table.getMxnRefId( SubliminalUtils.getNormalisedId( id ) );
+
+				if( mxnRefId != null )
+				{
+					idToMxnRefId.put( id, mxnRefId );
+				}
+			}
 		}
 
-		return xrefIdToMxnRefId.get( SubliminalUtils.getNormalisedId( id ) );
+		return idToMxnRefId;
 	}
 
 	/**
-	 * 
+	 *
 	 * @param id
 	 * @return Map<String,Collection<String>>
 	 * @throws IOException
 	 */
-	public synchronized Map<String,Collection<String>> getXrefIds( final String id ) throws IOException
+	public Map<String,Collection<String>> getXrefIds( final String id ) throws IOException
 	{
-		final String mxnRefId = getMxnRefId( id );
-
-		if( mxnRefIdToXrefIds == null )
-		{
-			initXrefs();
-		}
-
-		return mxnRefIdToXrefIds.get( mxnRefId );
+		return getXrefTable().getXrefIds( getMxnRefId( id ) );
 	}
 
 	/**
-	 * 
+	 *
 	 * @param id
 	 * @return Collection<String>
 	 * @throws IOException
 	 */
-	public synchronized Collection<String> getXrefIds( final String id, final String source ) throws IOException
+	public Collection<String> getXrefIds( final String id, final String source ) throws IOException
 	{
 		final Map<String,Collection<String>> xrefIds = getXrefIds( id );
 
@@ -133,36 +258,25 @@ public abstract class MxnRefUtils
 	}
 
 	/**
-	 * 
+	 *
 	 * @param xrefId
 	 * @return Evidence
 	 * @throws IOException
 	 */
-	public synchronized Evidence getEvidence( final String xrefId ) throws IOException
+	public Evidence getEvidence( final String xrefId ) throws IOException
 	{
-		if( xrefIdToMxnRefId == null )
-		{
-			initXrefs();
-		}
-
-		return xrefIdToEvidence.get( SubliminalUtils.getNormalisedId( xrefId ) );
+		return getXrefTable().getEvidence( SubliminalUtils.getNormalisedId( xrefId ) );
 	}
 
 	/**
-	 * 
+	 *
 	 * @param id
 	 * @param column
-	 * @param dataUrl
 	 * @return String
 	 * @throws IOException
 	 */
-	protected synchronized String getData( final String id, final int column, final URL dataUrl ) throws IOException
+	protected String getData( final String id, final int column ) throws IOException
 	{
-		if( mxnRefIdToData == null )
-		{
-			initMxnRefIdToData( dataUrl );
-		}
-
 		final String mxnRefId = getMxnRefId( id );
 
 		if( mxnRefId == null )
@@ -170,109 +284,106 @@ public abstract class MxnRefUtils
 			return null;
 		}
 
-		final String[] data = mxnRefIdToData.get( mxnRefId );
+		return getDataTable().getData( mxnRefId, column );
+	}
 
-		if( data != null )
+	/**
+	 * Rather than silently parsing the tsv files, fails if the configured
+	 * snapshot could not be opened.
+	 *
+	 * @throws IOException
+	 */
+	private void checkSnapshot() throws IOException
+	{
+		if( snapshotException != null )
 		{
-			return data[ column ];
+			throw new IOException( "Unable to open " + name + " snapshot", snapshotException ); //$NON-NLS-1$ //$NON-NLS-2$
 		}
-
-		return null;
 	}
 
 	/**
-	 * 
+	 *
+	 * @return MxnRefXrefTable
 	 * @throws IOException
 	 */
-	protected void initXrefs() throws IOException
+	MxnRefXrefTable getXrefTable() throws IOException
 	{
-		final int ID = 0;
-		final int MXNREF_ID = 1;
-		final int EVIDENCE_ID = 2;
+		MxnRefXrefTable table = xrefTable;
 
-		try ( final InputStream is = xrefUrl.openStream(); final BufferedReader reader = new BufferedReader( new InputStreamReader( is ) ) )
+		if( table == null )
 		{
-			mxnRefIdToXrefIds = new TreeMap<>();
-			xrefIdToMxnRefId = new TreeMap<>();
-			xrefIdToEvidence = new TreeMap<>();
-
-			String line = null;
-
-			while( ( line = reader.readLine() ) != null )
+			synchronized( lock )
 			{
-				if( !line.startsWith( "#" ) ) //$NON-NLS-1$
-				{
-					String[] tokens = line.split( "\t" ); //$NON-NLS-1$
-					final String xrefId = tokens[ ID ];
-					final String normalisedXRefId = SubliminalUtils.getNormalisedId( xrefId );
-					final String mnxRefId = tokens[ MXNREF_ID ];
-
-					xrefIdToMxnRefId.put( normalisedXRefId, mnxRefId );
-
-					if( tokens.length > EVIDENCE_ID )
-					{
-						final Evidence evidence = Evidence.valueOf( tokens[ EVIDENCE_ID ] );
-						xrefIdToEvidence.put( normalisedXRefId, evidence );
-					}
-
-					Map<String,Collection<String>> xrefIds = mxnRefIdToXrefIds.get( mnxRefId );
-
-					if( xrefIds == null )
-					{
-						xrefIds = new LinkedHashMap<>();
-						mxnRefIdToXrefIds.put( mnxRefId, xrefIds );
-					}
+				table = xrefTable;
 
-					final String[] xrefIdTokens = xrefId.split( ":" ); //$NON-NLS-1$
-					final String xrefIdSource = xrefIdTokens[ XREF_ID_SOURCE ];
-					final String xrefIdValue = xrefIdTokens[ XREF_ID_VALUE ];
-
-					Collection<String> xrefIdValues = xrefIds.get( xrefIdSource );
-
-					if( xrefIdValues == null )
-					{
-						xrefIdValues = new LinkedHashSet<>();
-						xrefIds.put( xrefIdSource, xrefIdValues );
-					}
-
-					xrefIdValues.add( xrefIdValue );
+				if( table == null )
+				{
+					checkSnapshot();
+					table = MxnRefXrefIndex.read( MxnRefCache.getUrl( xrefUrl ) );
+					xrefTable = table;
 				}
 			}
 		}
+
+		return table;
 	}
 
 	/**
-	 * 
-	 * @param url
+	 *
+	 * @return MxnRefDataTable
 	 * @throws IOException
 	 */
-	private void initMxnRefIdToData( final URL url ) throws IOException
+	MxnRefDataTable getDataTable() throws IOException
 	{
-		final int ID = 0;
+		MxnRefDataTable table = dataTable;
 
-		try ( final InputStream is = url.openStream(); final BufferedReader reader = new BufferedReader( new InputStreamReader( is ) ) )
+		if( table == null )
 		{
-			mxnRefIdToData = new TreeMap<>();
-
-			String line = null;
-
-			while( ( line = reader.readLine() ) != null )
+			synchronized( lock )
 			{
-				if( !line.startsWith( "#" ) ) //$NON-NLS-1$
+				table = dataTable;
+
+				if( table == null )
 				{
-					final String[] tokens = getValidXml( line ).split( "\t" ); //$NON-NLS-1$
-					mxnRefIdToData.put( tokens[ ID ], tokens );
+					checkSnapshot();
+					table = MxnRefData.read( MxnRefCache.getUrl( dataUrl ), columns );
+					dataTable = table;
 				}
 			}
 		}
+
+		return table;
+	}
+
+	/**
+	 *
+	 * @param columns
+	 * @param otherColumns
+	 * @return true if columns contains all of otherColumns
+	 */
+	private static boolean contains( final BitSet columns, final BitSet otherColumns )
+	{
+		final BitSet missingColumns = (BitSet)otherColumns.clone();
+		missingColumns.andNot( columns );
+		return missingColumns.isEmpty();
+	}
+
+	/**
+	 *
+	 * @param directory
+	 * @return File
+	 */
+	private File getSnapshotFile( final File directory )
+	{
+		return new File( directory, name + SNAPSHOT_SUFFIX );
 	}
 
 	/**
-	 * 
+	 *
 	 * @param input
 	 * @return String
 	 */
-	private static String getValidXml( final String input )
+	static String getValidXml( final String input )
 	{
 		final char UNDERSCORE = '_';
 		final int MAX_VALUE = 127;
@@ -290,4 +401,4 @@ public abstract class MxnRefUtils
 
 		return StringEscapeUtils.escapeXml10( new String( output ) );
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,845 @@
+package org.mcisb.subliminal.mnxref;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import org.mcisb.subliminal.mnxref.MxnRefUtils.Evidence;
+
+/**
+ * Compact, immutable MNXref xref table.
+ *
+ * MNXref ids, being a common prefix plus an integer, are encoded as ints (any
+ * id not of that form is held in a small overflow dictionary under a negative
+ * code). Normalised xref ids are held in a sorted {@link StringBlob} with
+ * parallel target and evidence arrays, and the xrefs of each MNXref id are
+ * stored as a CSR-style adjacency list over an interned source dictionary.
+ *
+ * @author Neil Swainston
+ */
+final class MxnRefXrefIndex implements MxnRefXrefTable
+{
+	/**
+	 *
+	 */
+	private static final int XREF_ID_SOURCE = 0;
+
+	/**
+	 *
+	 */
+	private static final int XREF_ID_VALUE = 1;
+
+	/**
+	 *
+	 */
+	private static final byte NO_EVIDENCE = 0;
+
+	/**
+	 * Tokenises each chunk of the xref file into its own {@link Builder}.
+	 */
+	static final MxnRefTsvParser.RowHandlerFactory<Builder> ROW_PARSER_FACTORY = new MxnRefTsvParser.RowHandlerFactory<Builder>()
+	{
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see org.mcisb.subliminal.mnxref.MxnRefTsvParser.RowHandlerFactory#
+		 * newRowHandler()
+		 */
+		@Override
+		public MxnRefTsvParser.RowHandler<Builder> newRowHandler()
+		{
+			return new RowParser();
+		}
+	};
+
+	/**
+	 *
+	 */
+	private final String prefix;
+
+	/**
+	 *
+	 */
+	private final String[] overflowIds;
+
+	/**
+	 *
+	 */
+	private final Map<String,Integer> overflowIdToCode;
+
+	/**
+	 * Sorted normalised xref ids.
+	 */
+	private final StringBlob xrefIds;
+
+	/**
+	 * Encoded MNXref id of each xref id.
+	 */
+	private final int[] xrefTargets;
+
+	/**
+	 * Evidence ordinal + 1 of each xref id, or NO_EVIDENCE.
+	 */
+	private final byte[] xrefEvidence;
+
+	/**
+	 * Sorted, encoded MNXref ids.
+	 */
+	private final int[] mxnRefIds;
+
+	/**
+	 * Start of each MNXref id's xrefs, of length mxnRefIds.length + 1.
+	 */
+	private final int[] xrefStarts;
+
+	/**
+	 *
+	 */
+	private final int[] xrefSources;
+
+	/**
+	 *
+	 */
+	private final StringBlob xrefValues;
+
+	/**
+	 *
+	 */
+	private final String[] sources;
+
+	/**
+	 *
+	 * @param prefix
+	 * @param overflowIds
+	 * @param xrefIds
+	 * @param xrefTargets
+	 * @param xrefEvidence
+	 * @param mxnRefIds
+	 * @param xrefStarts
+	 * @param xrefSources
+	 * @param xrefValues
+	 * @param sources
+	 */
+	private MxnRefXrefIndex( final String prefix, final String[] overflowIds, final StringBlob xrefIds, final int[] xrefTargets, final byte[] xrefEvidence, final int[] mxnRefIds, final int[] xrefStarts, final int[] xrefSources, final StringBlob xrefValues, final String[] sources )
+	{
+		this.prefix = prefix;
+		this.overflowIds = overflowIds;
+		this.xrefIds = xrefIds;
+		this.xrefTargets = xrefTargets;
+		this.xrefEvidence = xrefEvidence;
+		this.mxnRefIds = mxnRefIds;
+		this.xrefStarts = xrefStarts;
+		this.xrefSources = xrefSources;
+		this.xrefValues = xrefValues;
+		this.sources = sources;
+
+		final Map<String,Integer> overflowIdToCode = new HashMap<>();
+
+		for( int i = 0; i < overflowIds.length; i++ )
+		{
+			overflowIdToCode.put( overflowIds[ i ], Integer.valueOf( -( i + 1 ) ) );
+		}
+
+		this.overflowIdToCode = Collections.unmodifiableMap( overflowIdToCode );
+	}
+
+	/**
+	 *
+	 * @param url
+	 * @return MxnRefXrefIndex
+	 * @throws IOException
+	 */
+	static MxnRefXrefIndex read( final URL url ) throws IOException
+	{
+		return merge( MxnRefTsvParser.parse( url, ROW_PARSER_FACTORY ) );
+	}
+
+	/**
+	 * Merges per-chunk builders in file order.
+	 *
+	 * @param chunks
+	 * @return MxnRefXrefIndex
+	 */
+	static MxnRefXrefIndex merge( final List<Builder> chunks )
+	{
+		final Builder builder = new Builder();
+
+		for( Builder chunk : chunks )
+		{
+			builder.addAll( chunk );
+		}
+
+		return builder.build();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.mcisb.subliminal.mnxref.MxnRefXrefTable#getMxnRefId(java.lang.String)
+	 */
+	@Override
+	public String getMxnRefId( final String normalisedXrefId )
+	{
+		final int index = xrefIds.indexOf( normalisedXrefId );
+		return index < 0 ? null : decode( xrefTargets[ index ] );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.mcisb.subliminal.mnxref.MxnRefXrefTable#getEvidence(java.lang.String)
+	 */
+	@Override
+	public Evidence getEvidence( final String normalisedXrefId )
+	{
+		final int index = xrefIds.indexOf( normalisedXrefId );
+
+		if( index < 0 || xrefEvidence[ index ] == NO_EVIDENCE )
+		{
+			return null;
+		}
+
+		return Evidence.values()[ xrefEvidence[ index ] - 1 ];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.mcisb.subliminal.mnxref.MxnRefXrefTable#getXrefIds(java.lang.String)
+	 */
+	@Override
+	public Map<String,Collection<String>> getXrefIds( final String mxnRefId )
+	{
+		final int index = mxnRefId == null ? -1 : indexOf( mxnRefId );
+
+		if( index < 0 )
+		{
+			return null;
+		}
+
+		final Map<String,Collection<String>> xrefIdsMap = new LinkedHashMap<>();
+
+		for( int i = xrefStarts[ index ]; i < xrefStarts[ index + 1 ]; i++ )
+		{
+			final String source = sources[ xrefSources[ i ] ];
+			Collection<String> values = xrefIdsMap.get( source );
+
+			if( values == null )
+			{
+				values = new LinkedHashSet<>();
+				xrefIdsMap.put( source, values );
+			}
+
+			values.add( xrefValues.get( i ) );
+		}
+
+		return xrefIdsMap;
+	}
+
+	/**
+	 * Approximate heap footprint of the index's arrays, in bytes.
+	 *
+	 * @return long
+	 */
+	long getFootprint()
+	{
+		return xrefIds.getFootprint() + 4L * xrefTargets.length + xrefEvidence.length + 4L * mxnRefIds.length + 4L * xrefStarts.length + 4L * xrefSources.length + xrefValues.getFootprint();
+	}
+
+	/**
+	 *
+	 * @param mxnRefId
+	 * @return int
+	 */
+	private int indexOf( final String mxnRefId )
+	{
+		final int code = encode( prefix, mxnRefId );
+
+		if( code != Integer.MIN_VALUE )
+		{
+			return Arrays.binarySearch( mxnRefIds, code );
+		}
+
+		final Integer overflowCode = overflowIdToCode.get( mxnRefId );
+		return overflowCode == null ? -1 : Arrays.binarySearch( mxnRefIds, overflowCode.intValue() );
+	}
+
+	/**
+	 *
+	 * @param code
+	 * @return String
+	 */
+	private String decode( final int code )
+	{
+		return code < 0 ? overflowIds[ -code - 1 ] : prefix + code;
+	}
+
+	/**
+	 * Returns the non-negative integer part of an id of the form prefix +
+	 * integer (without leading zeros), or Integer.MIN_VALUE if the id is not
+	 * of that form.
+	 *
+	 * @param prefix
+	 * @param mxnRefId
+	 * @return int
+	 */
+	private static int encode( final String prefix, final String mxnRefId )
+	{
+		final int length = mxnRefId.length();
+		final int prefixLength = prefix == null ? 0 : prefix.length();
+
+		if( prefix == null || length == prefixLength || length - prefixLength > 9 || !mxnRefId.startsWith( prefix ) || ( mxnRefId.charAt( prefixLength ) == '0' && length - prefixLength > 1 ) )
+		{
+			return Integer.MIN_VALUE;
+		}
+
+		int value = 0;
+
+		for( int i = prefixLength; i < length; i++ )
+		{
+			final char c = mxnRefId.charAt( i );
+
+			if( c < '0' || c > '9' )
+			{
+				return Integer.MIN_VALUE;
+			}
+
+			value = value * 10 + ( c - '0' );
+		}
+
+		return value;
+	}
+
+	/**
+	 * Byte-level equivalent of encode( String, String ).
+	 *
+	 * @param prefix
+	 * @param bytes
+	 * @param start
+	 * @param end
+	 * @return int
+	 */
+	private static int encode( final byte[] prefix, final byte[] bytes, final int start, final int end )
+	{
+		final int length = end - start;
+		final int prefixLength = prefix == null ? 0 : prefix.length;
+
+		if( prefix == null || length <= prefixLength || length - prefixLength > 9 || StringBlob.compare( bytes, start, prefixLength, prefix, 0, prefixLength ) != 0 || ( bytes[ start + prefixLength ] == '0' && length - prefixLength > 1 ) )
+		{
+			return Integer.MIN_VALUE;
+		}
+
+		int value = 0;
+
+		for( int i = start + prefixLength; i < end; i++ )
+		{
+			final byte b = bytes[ i ];
+
+			if( b < '0' || b > '9' )
+			{
+				return Integer.MIN_VALUE;
+			}
+
+			value = value * 10 + ( b - '0' );
+		}
+
+		return value;
+	}
+
+	/**
+	 *
+	 * @param bytes
+	 * @param start
+	 * @param end
+	 * @return String, or null if the id contains no digits
+	 */
+	private static String getPrefix( final byte[] bytes, final int start, final int end )
+	{
+		for( int i = start; i < end; i++ )
+		{
+			if( bytes[ i ] >= '0' && bytes[ i ] <= '9' )
+			{
+				return new String( bytes, start, i - start, StringBlob.UTF_8 );
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Tokenises xref rows straight from bytes into a {@link Builder}.
+	 *
+	 * @author Neil Swainston
+	 */
+	private static final class RowParser extends MxnRefTsvParser.RowHandler<Builder>
+	{
+		/**
+		 *
+		 */
+		private static final byte[][] EVIDENCE_NAMES = getEvidenceNames();
+
+		/**
+		 *
+		 */
+		private final Builder builder = new Builder();
+
+		/**
+		 *
+		 */
+		private byte[] normalised = new byte[ 64 ];
+
+		/**
+		 *
+		 */
+		RowParser()
+		{
+			// Package-private constructor.
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * org.mcisb.subliminal.mnxref.MxnRefTsvParser.RowHandler#row(byte[],
+		 * int[], int[], int)
+		 */
+		@Override
+		void row( final byte[] bytes, final int[] starts, final int[] ends, final int numFields )
+		{
+			final int ID = 0;
+			final int MXNREF_ID = 1;
+			final int EVIDENCE_ID = 2;
+			final byte SEPARATOR = ':';
+
+			if( numFields <= MXNREF_ID )
+			{
+				return;
+			}
+
+			final int idStart = starts[ ID ];
+			final int idEnd = ends[ ID ];
+
+			if( normalised.length < 6 * ( idEnd - idStart ) + 1 )
+			{
+				normalised = new byte[ 6 * ( idEnd - idStart ) + 1 ];
+			}
+
+			final int normalisedLength = MxnRefTsvParser.normalise( bytes, idStart, idEnd, normalised );
+
+			int sourceEnd = idStart;
+
+			while( sourceEnd < idEnd && bytes[ sourceEnd ] != SEPARATOR )
+			{
+				sourceEnd++;
+			}
+
+			final int valueStart = Math.min( sourceEnd + 1, idEnd );
+			int valueEnd = valueStart;
+
+			while( valueEnd < idEnd && bytes[ valueEnd ] != SEPARATOR )
+			{
+				valueEnd++;
+			}
+
+			final Evidence evidence = numFields > EVIDENCE_ID ? getEvidence( bytes, starts[ EVIDENCE_ID ], ends[ EVIDENCE_ID ] ) : null;
+			builder.add( normalised, normalisedLength, bytes, starts[ MXNREF_ID ], ends[ MXNREF_ID ], evidence, idStart, sourceEnd, valueStart, valueEnd );
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see org.mcisb.subliminal.mnxref.MxnRefTsvParser.RowHandler#getResult()
+		 */
+		@Override
+		Builder getResult()
+		{
+			return builder;
+		}
+
+		/**
+		 *
+		 * @param bytes
+		 * @param start
+		 * @param end
+		 * @return Evidence
+		 */
+		private static Evidence getEvidence( final byte[] bytes, final int start, final int end )
+		{
+			if( start == end )
+			{
+				return null;
+			}
+
+			for( int i = 0; i < EVIDENCE_NAMES.length; i++ )
+			{
+				if( StringBlob.compare( bytes, start, end - start, EVIDENCE_NAMES[ i ], 0, EVIDENCE_NAMES[ i ].length ) == 0 )
+				{
+					return Evidence.values()[ i ];
+				}
+			}
+
+			// Unknown evidence, which fails as Evidence.valueOf always has:
+			return Evidence.valueOf( new String( bytes, start, end - start, StringBlob.UTF_8 ) );
+		}
+
+		/**
+		 *
+		 * @return byte[][]
+		 */
+		private static byte[][] getEvidenceNames()
+		{
+			final Evidence[] values = Evidence.values();
+			final byte[][] names = new byte[ values.length ][];
+
+			for( int i = 0; i < values.length; i++ )
+			{
+				names[ i ] = values[ i ].name().getBytes( StringBlob.UTF_8 );
+			}
+
+			return names;
+		}
+	}
+
+	/**
+	 * Accumulates xref rows in primitive arrays, in file order, and then sorts
+	 * them into the index layout.
+	 *
+	 * @author Neil Swainston
+	 */
+	static final class Builder
+	{
+		/**
+		 *
+		 */
+		private final StringBlob.Builder normalisedXrefIds = new StringBlob.Builder();
+
+		/**
+		 *
+		 */
+		private final StringBlob.Builder values = new StringBlob.Builder();
+
+		/**
+		 *
+		 */
+		private final Map<String,Integer> sourceToIndex = new LinkedHashMap<>();
+
+		/**
+		 * UTF-8 bytes of each source, by index.
+		 */
+		private final List<byte[]> sourceBytes = new ArrayList<>();
+
+		/**
+		 *
+		 */
+		private final Map<String,Integer> overflowIdToCode = new LinkedHashMap<>();
+
+		/**
+		 *
+		 */
+		private String prefix = null;
+
+		/**
+		 *
+		 */
+		private byte[] prefixBytes = null;
+
+		/**
+		 *
+		 */
+		private int[] codes = new int[ 1024 ];
+
+		/**
+		 *
+		 */
+		private int[] sourceIndices = new int[ 1024 ];
+
+		/**
+		 *
+		 */
+		private byte[] evidence = new byte[ 1024 ];
+
+		/**
+		 *
+		 */
+		private int size = 0;
+
+		/**
+		 *
+		 * @param normalisedXrefId
+		 * @param normalisedXrefIdLength
+		 * @param row
+		 * @param mxnRefIdStart
+		 * @param mxnRefIdEnd
+		 * @param xrefEvidence
+		 * @param sourceStart
+		 * @param sourceEnd
+		 * @param valueStart
+		 * @param valueEnd
+		 */
+		void add( final byte[] normalisedXrefId, final int normalisedXrefIdLength, final byte[] row, final int mxnRefIdStart, final int mxnRefIdEnd, final Evidence xrefEvidence, final int sourceStart, final int sourceEnd, final int valueStart, final int valueEnd )
+		{
+			ensureCapacity( size + 1 );
+
+			if( prefix == null )
+			{
+				setPrefix( getPrefix( row, mxnRefIdStart, mxnRefIdEnd ) );
+			}
+
+			int code = encode( prefixBytes, row, mxnRefIdStart, mxnRefIdEnd );
+
+			if( code == Integer.MIN_VALUE )
+			{
+				code = getOverflowCode( new String( row, mxnRefIdStart, mxnRefIdEnd - mxnRefIdStart, StringBlob.UTF_8 ) );
+			}
+
+			normalisedXrefIds.add( normalisedXrefId, 0, normalisedXrefIdLength );
+			values.add( row, valueStart, valueEnd - valueStart );
+			codes[ size ] = code;
+			sourceIndices[ size ] = getSourceIndex( row, sourceStart, sourceEnd );
+			evidence[ size ] = xrefEvidence == null ? NO_EVIDENCE : (byte)( xrefEvidence.ordinal() + 1 );
+			size++;
+		}
+
+		/**
+		 * Appends all rows of another builder, such as that of a later chunk of
+		 * the same file, remapping its source and MNXref id codes.
+		 *
+		 * @param other
+		 */
+		void addAll( final Builder other )
+		{
+			// Rows added while the prefix was unset had no digits, and so can
+			// never be encoded under any prefix:
+			if( prefix == null )
+			{
+				setPrefix( other.prefix );
+			}
+
+			final boolean samePrefix = prefix != null && prefix.equals( other.prefix );
+			final String[] otherOverflowIds = other.overflowIdToCode.keySet().toArray( new String[ other.overflowIdToCode.size() ] );
+			final int[] otherSourceIndices = new int[ other.sourceBytes.size() ];
+
+			for( Map.Entry<String,Integer> entry : other.sourceToIndex.entrySet() )
+			{
+				final byte[] bytes = other.sourceBytes.get( entry.getValue().intValue() );
+				otherSourceIndices[ entry.getValue().intValue() ] = getSourceIndex( bytes, 0, bytes.length );
+			}
+
+			ensureCapacity( size + other.size );
+
+			for( int i = 0; i < other.size; i++ )
+			{
+				final int otherCode = other.codes[ i ];
+
+				if( otherCode >= 0 && samePrefix )
+				{
+					codes[ size + i ] = otherCode;
+				}
+				else
+				{
+					codes[ size + i ] = getCode( otherCode >= 0 ? other.prefix + otherCode : otherOverflowIds[ -otherCode - 1 ] );
+				}
+
+				sourceIndices[ size + i ] = otherSourceIndices[ other.sourceIndices[ i ] ];
+				evidence[ size + i ] = other.evidence[ i ];
+			}
+
+			normalisedXrefIds.addAll( other.normalisedXrefIds );
+			values.addAll( other.values );
+			size += other.size;
+		}
+
+		/**
+		 *
+		 * @return MxnRefXrefIndex
+		 */
+		MxnRefXrefIndex build()
+		{
+			// Distinct, sorted MNXref ids:
+			final int[] sortedCodes = Arrays.copyOf( codes, size );
+			Arrays.sort( sortedCodes );
+			int numMxnRefIds = 0;
+
+			for( int i = 0; i < sortedCodes.length; i++ )
+			{
+				if( i == 0 || sortedCodes[ i ] != sortedCodes[ i - 1 ] )
+				{
+					sortedCodes[ numMxnRefIds++ ] = sortedCodes[ i ];
+				}
+			}
+
+			final int[] mxnRefIds = Arrays.copyOf( sortedCodes, numMxnRefIds );
+
+			// CSR adjacency, by stable counting sort of rows on MNXref id:
+			final int[] rowMxnRefIndices = new int[ size ];
+			final int[] xrefStarts = new int[ numMxnRefIds + 1 ];
+
+			for( int i = 0; i < size; i++ )
+			{
+				rowMxnRefIndices[ i ] = Arrays.binarySearch( mxnRefIds, codes[ i ] );
+				xrefStarts[ rowMxnRefIndices[ i ] + 1 ]++;
+			}
+
+			for( int i = 0; i < numMxnRefIds; i++ )
+			{
+				xrefStarts[ i + 1 ] += xrefStarts[ i ];
+			}
+
+			final int[] positions = Arrays.copyOf( xrefStarts, numMxnRefIds );
+			final int[] order = new int[ size ];
+
+			for( int i = 0; i < size; i++ )
+			{
+				order[ positions[ rowMxnRefIndices[ i ] ]++ ] = i;
+			}
+
+			final StringBlob rowValues = values.build();
+			final StringBlob.Builder xrefValues = new StringBlob.Builder();
+			final int[] xrefSources = new int[ size ];
+
+			for( int i = 0; i < size; i++ )
+			{
+				xrefSources[ i ] = sourceIndices[ order[ i ] ];
+				xrefValues.add( rowValues, order[ i ] );
+			}
+
+			// Sorted xref ids, the last row for any repeated id taking
+			// precedence:
+			final StringBlob rowXrefIds = normalisedXrefIds.build();
+			final Integer[] rows = new Integer[ size ];
+
+			for( int i = 0; i < size; i++ )
+			{
+				rows[ i ] = Integer.valueOf( i );
+			}
+
+			Arrays.sort( rows, new Comparator<Integer>()
+			{
+				/*
+				 * (non-Javadoc)
+				 *
+				 * @see java.util.Comparator#compare(java.lang.Object,
+				 * java.lang.Object)
+				 */
+				@Override
+				public int compare( final Integer o1, final Integer o2 )
+				{
+					final int comparison = rowXrefIds.compare( o1.intValue(), o2.intValue() );
+					return comparison == 0 ? o1.compareTo( o2 ) : comparison;
+				}
+			} );
+
+			final StringBlob.Builder xrefIds = new StringBlob.Builder();
+			final int[] xrefTargets = new int[ size ];
+			final byte[] xrefEvidence = new byte[ size ];
+			int numXrefIds = 0;
+
+			for( int i = 0; i < size; i++ )
+			{
+				final int row = rows[ i ].intValue();
+
+				if( i + 1 < size && rowXrefIds.compare( row, rows[ i + 1 ].intValue() ) == 0 )
+				{
+					continue;
+				}
+
+				xrefIds.add( rowXrefIds, row );
+				xrefTargets[ numXrefIds ] = codes[ row ];
+				xrefEvidence[ numXrefIds ] = evidence[ row ];
+				numXrefIds++;
+			}
+
+			final String[] overflowIds = overflowIdToCode.keySet().toArray( new String[ overflowIdToCode.size() ] );
+			final String[] sources = sourceToIndex.keySet().toArray( new String[ sourceToIndex.size() ] );
+
+			for( int i = 0; i < sources.length; i++ )
+			{
+				sources[ i ] = sources[ i ].intern();
+			}
+
+			return new MxnRefXrefIndex( prefix, overflowIds, xrefIds.build(), Arrays.copyOf( xrefTargets, numXrefIds ), Arrays.copyOf( xrefEvidence, numXrefIds ), mxnRefIds, xrefStarts, xrefSources, xrefValues.build(), sources );
+		}
+
+		/**
+		 *
+		 * @param newPrefix
+		 */
+		private void setPrefix( final String newPrefix )
+		{
+			prefix = newPrefix;
+			prefixBytes = newPrefix == null ? null : newPrefix.getBytes( StringBlob.UTF_8 );
+		}
+
+		/**
+		 *
+		 * @param mxnRefId
+		 * @return int
+		 */
+		private int getCode( final String mxnRefId )
+		{
+			final int code = encode( prefix, mxnRefId );
+			return code == Integer.MIN_VALUE ? getOverflowCode( mxnRefId ) : code;
+		}
+
+		/**
+		 *
+		 * @param mxnRefId
+		 * @return int
+		 */
+		private int getOverflowCode( final String mxnRefId )
+		{
+			Integer overflowCode = overflowIdToCode.get( mxnRefId );
+
+			if( overflowCode == null )
+			{
+				overflowCode = Integer.valueOf( -( overflowIdToCode.size() + 1 ) );
+				overflowIdToCode.put( mxnRefId, overflowCode );
+			}
+
+			return overflowCode.intValue();
+		}
+
+		/**
+		 * Sources are few, so are matched by a linear scan of their bytes.
+		 *
+		 * @param bytes
+		 * @param start
+		 * @param end
+		 * @return int
+		 */
+		private int getSourceIndex( final byte[] bytes, final int start, final int end )
+		{
+			for( int i = 0; i < sourceBytes.size(); i++ )
+			{
+				final byte[] source = sourceBytes.get( i );
+
+				if( StringBlob.compare( bytes, start, end - start, source, 0, source.length ) == 0 )
+				{
+					return i;
+				}
+			}
+
+			final byte[] source = Arrays.copyOfRange( bytes, start, end );
+			sourceToIndex.put( new String( source, StringBlob.UTF_8 ), Integer.valueOf( sourceBytes.size() ) );
+			sourceBytes.add( source );
+			return sourceBytes.size() - 1;
+		}
+
+		/**
+		 *
+		 * @param capacity
+		 */
+		private void ensureCapacity( final int capacity )
+		{
+			if( capacity > codes.length )
+			{
+				final int newCapacity = Math.max( codes.length * 2, capacity );
+				codes = Arrays.copyOf( codes, newCapacity );
+				sourceIndices = Arrays.copyOf( sourceIndices, newCapacity );
+				evidence = Arrays.copyOf( evidence, newCapacity );
+			}
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package org.mcisb.subliminal.mnxref;
+
+import java.util.*;
+import org.mcisb.subliminal.mnxref.MxnRefUtils.Evidence;
+
+/**
+ * Immutable, read-only view of an MNXref xref table. Implementations are
+ * fully built before publication and are safe for concurrent use without
+ * locking.
+ * 
+ * @author Neil Swainston
+ */
+interface MxnRefXrefTable
+{
+	/**
+	 * 
+	 * @param normalisedXrefId
+	 * @return String
+	 */
+	public String getMxnRefId( final String normalisedXrefId );
+
+	/**
+	 * 
+	 * @param normalisedXrefId
+	 * @return Evidence
+	 */
+	public Evidence getEvidence( final String normalisedXrefId );
+
+	/**
+	 * 
+	 * @param mxnRefId
+	 * @return Map<String,Collection<String>>
+	 */
+	public Map<String,Collection<String>> getXrefIds( final String mxnRefId );
+}
@@ -0,0 +1,193 @@
+package org.mcisb.subliminal.mnxref;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import org.mcisb.subliminal.*;
+import org.mcisb.subliminal.mnxref.MxnRefUtils.Evidence;
+
+/**
+ * In-memory, immutable MNXref xref table.
+ *
+ * @author Neil Swainston
+ */
+final class MxnRefXrefs implements MxnRefXrefTable
+{
+	/**
+	 *
+	 */
+	private static final int XREF_ID_SOURCE = 0;
+
+	/**
+	 *
+	 */
+	private static final int XREF_ID_VALUE = 1;
+
+	/**
+	 *
+	 */
+	private final Map<String,Map<String,Collection<String>>> mxnRefIdToXrefIds;
+
+	/**
+	 *
+	 */
+	private final Map<String,String> xrefIdToMxnRefId;
+
+	/**
+	 *
+	 */
+	private final Map<String,Evidence> xrefIdToEvidence;
+
+	/**
+	 *
+	 * @param mxnRefIdToXrefIds
+	 * @param xrefIdToMxnRefId
+	 * @param xrefIdToEvidence
+	 */
+	private MxnRefXrefs( final Map<String,Map<String,Collection<String>>> mxnRefIdToXrefIds, final Map<String,String> xrefIdToMxnRefId, final Map<String,Evidence> xrefIdToEvidence )
+	{
+		for( Map.Entry<String,Map<String,Collection<String>>> entry : mxnRefIdToXrefIds.entrySet() )
+		{
+			final Map<String,Collection<String>> xrefIds = entry.getValue();
+
+			for( Map.Entry<String,Collection<String>> xrefIdsEntry : xrefIds.entrySet() )
+			{
+				xrefIdsEntry.setValue( Collections.unmodifiableCollection( xrefIdsEntry.getValue() ) );
+			}
+
+			entry.setValue( Collections.unmodifiableMap( xrefIds ) );
+		}
+
+		this.mxnRefIdToXrefIds = Collections.unmodifiableMap( mxnRefIdToXrefIds );
+		this.xrefIdToMxnRefId = Collections.unmodifiableMap( xrefIdToMxnRefId );
+		this.xrefIdToEvidence = Collections.unmodifiableMap( xrefIdToEvidence );
+	}
+
+	/**
+	 *
+	 * @param url
+	 * @return MxnRefXrefs
+	 * @throws IOException
+	 */
+	static MxnRefXrefs read( final URL url ) throws IOException
+	{
+		final int ID = 0;
+		final int MXNREF_ID = 1;
+		final int EVIDENCE_ID = 2;
+
+		final Map<String,Map<String,Collection<String>>> mxnRefIdToXrefIds = new HashMap<>();
+		final Map<String,String> xrefIdToMxnRefId = new HashMap<>();
+		final Map<String,Evidence> xrefIdToEvidence = new HashMap<>();
+
+		try ( final InputStream is = MxnRefCache.openStream( url ); final BufferedReader reader = new BufferedReader( new InputStreamReader( is ) ) )
+		{
+			String line = null;
+
+			while( ( line = reader.readLine() ) != null )
+			{
+				if( !line.startsWith( "#" ) ) //$NON-NLS-1$
+				{
+					String[] tokens = line.split( "\t" ); //$NON-NLS-1$
+					final String xrefId = tokens[ ID ];
+					final String normalisedXRefId = SubliminalUtils.getNormalisedId( xrefId );
+					final String mnxRefId = tokens[ MXNREF_ID ];
+
+					xrefIdToMxnRefId.put( normalisedXRefId, mnxRefId );
+
+					if( tokens.length > EVIDENCE_ID )
+					{
+						final Evidence evidence = Evidence.valueOf( tokens[ EVIDENCE_ID ] );
+						xrefIdToEvidence.put( normalisedXRefId, evidence );
+					}
+
+					Map<String,Collection<String>> xrefIds = mxnRefIdToXrefIds.get( mnxRefId );
+
+					if( xrefIds == null )
+					{
+						xrefIds = new LinkedHashMap<>();
+						mxnRefIdToXrefIds.put( mnxRefId, xrefIds );
+					}
+
+					final String[] xrefIdTokens = xrefId.split( ":" ); //$NON-NLS-1$
+					final String xrefIdSource = xrefIdTokens[ XREF_ID_SOURCE ];
+					final String xrefIdValue = xrefIdTokens[ XREF_ID_VALUE ];
+
+					Collection<String> xrefIdValues = xrefIds.get( xrefIdSource );
+
+					if( xrefIdValues == null )
+					{
+						xrefIdValues = new LinkedHashSet<>();
+						xrefIds.put( xrefIdSource, xrefIdValues );
+					}
+
+					xrefIdValues.add( xrefIdValue );
+				}
+			}
+		}
+
+		return new MxnRefXrefs( mxnRefIdToXrefIds, xrefIdToMxnRefId, xrefIdToEvidence );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.mcisb.subliminal.mnxref.MxnRefXrefTable#getMxnRefId(java.lang.String)
+	 */
+	@Override
+	public String getMxnRefId( final String normalisedXrefId )
+	{
+		return xrefIdToMxnRefId.get( normalisedXrefId );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.mcisb.subliminal.mnxref.MxnRefXrefTable#getEvidence(java.lang.String)
+	 */
+	@Override
+	public Evidence getEvidence( final String normalisedXrefId )
+	{
+		return xrefIdToEvidence.get( normalisedXrefId );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.mcisb.subliminal.mnxref.MxnRefXrefTable#getXrefIds(java.lang.String)
+	 */
+	@Override
+	public Map<String,Collection<String>> getXrefIds( final String mxnRefId )
+	{
+		return mxnRefId == null ? null : mxnRefIdToXrefIds.get( mxnRefId );
+	}
+
+	/**
+	 *
+	 * @return Map<String,String>
+	 */
+	Map<String,String> getXrefIdToMxnRefId()
+	{
+		return xrefIdToMxnRefId;
+	}
+
+	/**
+	 *
+	 * @return Map<String,Evidence>
+	 */
+	Map<String,Evidence> getXrefIdToEvidence()
+	{
+		return xrefIdToEvidence;
+	}
+
+	/**
+	 *
+	 * @return Map<String,Map<String,Collection<String>>>
+	 */
+	Map<String,Map<String,Collection<String>>> getMxnRefIdToXrefIds()
+	{
+		return mxnRefIdToXrefIds;
+	}
+}
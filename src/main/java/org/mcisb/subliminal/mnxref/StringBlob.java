@@ -0,0 +1,316 @@
+package org.mcisb.subliminal.mnxref;
+
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * Compact, immutable list of strings held as a single UTF-8 byte array plus
+ * an offset array, avoiding a String object per entry.
+ *
+ * @author Neil Swainston
+ */
+final class StringBlob
+{
+	/**
+	 *
+	 */
+	static final Charset UTF_8 = Charset.forName( "UTF-8" ); //$NON-NLS-1$
+
+	/**
+	 *
+	 */
+	private final byte[] bytes;
+
+	/**
+	 *
+	 */
+	private final int[] offsets;
+
+	/**
+	 *
+	 * @param bytes
+	 * @param offsets
+	 */
+	private StringBlob( final byte[] bytes, final int[] offsets )
+	{
+		this.bytes = bytes;
+		this.offsets = offsets;
+	}
+
+	/**
+	 *
+	 * @return int
+	 */
+	int size()
+	{
+		return offsets.length - 1;
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return String
+	 */
+	String get( final int index )
+	{
+		return new String( bytes, offsets[ index ], offsets[ index + 1 ] - offsets[ index ], UTF_8 );
+	}
+
+	/**
+	 * Binary search, valid only if entries were added in unsigned byte order.
+	 *
+	 * @param key
+	 * @return int
+	 */
+	int indexOf( final String key )
+	{
+		final byte[] keyBytes = key.getBytes( UTF_8 );
+		int low = 0;
+		int high = size() - 1;
+
+		while( low <= high )
+		{
+			final int mid = ( low + high ) >>> 1;
+			final int comparison = compare( bytes, offsets[ mid ], offsets[ mid + 1 ] - offsets[ mid ], keyBytes, 0, keyBytes.length );
+
+			if( comparison < 0 )
+			{
+				low = mid + 1;
+			}
+			else if( comparison > 0 )
+			{
+				high = mid - 1;
+			}
+			else
+			{
+				return mid;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Compares two entries in unsigned byte order.
+	 *
+	 * @param index
+	 * @param otherIndex
+	 * @return int
+	 */
+	int compare( final int index, final int otherIndex )
+	{
+		return compare( bytes, offsets[ index ], offsets[ index + 1 ] - offsets[ index ], bytes, offsets[ otherIndex ], offsets[ otherIndex + 1 ] - offsets[ otherIndex ] );
+	}
+
+	/**
+	 * Compares entries of two blobs in unsigned byte order.
+	 *
+	 * @param blob
+	 * @param index
+	 * @param otherBlob
+	 * @param otherIndex
+	 * @return int
+	 */
+	static int compare( final StringBlob blob, final int index, final StringBlob otherBlob, final int otherIndex )
+	{
+		return compare( blob.bytes, blob.offsets[ index ], blob.offsets[ index + 1 ] - blob.offsets[ index ], otherBlob.bytes, otherBlob.offsets[ otherIndex ], otherBlob.offsets[ otherIndex + 1 ] - otherBlob.offsets[ otherIndex ] );
+	}
+
+	/**
+	 *
+	 * @return long
+	 */
+	long getFootprint()
+	{
+		return bytes.length + 4L * offsets.length;
+	}
+
+	/**
+	 *
+	 * @param a
+	 * @param aStart
+	 * @param aLength
+	 * @param b
+	 * @param bStart
+	 * @param bLength
+	 * @return int
+	 */
+	static int compare( final byte[] a, final int aStart, final int aLength, final byte[] b, final int bStart, final int bLength )
+	{
+		final int minLength = Math.min( aLength, bLength );
+
+		for( int i = 0; i < minLength; i++ )
+		{
+			final int difference = ( a[ aStart + i ] & 0xFF ) - ( b[ bStart + i ] & 0xFF );
+
+			if( difference != 0 )
+			{
+				return difference;
+			}
+		}
+
+		return aLength - bLength;
+	}
+
+	/**
+	 *
+	 * @author Neil Swainston
+	 */
+	static final class Builder
+	{
+		/**
+		 *
+		 */
+		private byte[] bytes = new byte[ 1024 ];
+
+		/**
+		 *
+		 */
+		private int[] offsets = new int[ 64 ];
+
+		/**
+		 *
+		 */
+		private int size = 0;
+
+		/**
+		 *
+		 * @param value
+		 * @return Builder
+		 */
+		Builder add( final String value )
+		{
+			return add( value.getBytes( UTF_8 ) );
+		}
+
+		/**
+		 *
+		 * @param value
+		 * @return Builder
+		 */
+		Builder add( final byte[] value )
+		{
+			return add( value, 0, value.length );
+		}
+
+		/**
+		 *
+		 * @param value
+		 * @param start
+		 * @param length
+		 * @return Builder
+		 */
+		Builder add( final byte[] value, final int start, final int length )
+		{
+			final int end = offsets[ size ];
+
+			if( end + length > bytes.length )
+			{
+				bytes = Arrays.copyOf( bytes, Math.max( bytes.length * 2, end + length ) );
+			}
+
+			if( size + 2 > offsets.length )
+			{
+				offsets = Arrays.copyOf( offsets, offsets.length * 2 );
+			}
+
+			System.arraycopy( value, start, bytes, end, length );
+			offsets[ ++size ] = end + length;
+			return this;
+		}
+
+		/**
+		 *
+		 * @param blob
+		 * @param index
+		 * @return Builder
+		 */
+		Builder add( final StringBlob blob, final int index )
+		{
+			return add( blob.bytes, blob.offsets[ index ], blob.offsets[ index + 1 ] - blob.offsets[ index ] );
+		}
+
+		/**
+		 * Appends the entries [from, to) of a blob.
+		 *
+		 * @param blob
+		 * @param from
+		 * @param to
+		 * @return Builder
+		 */
+		Builder addAll( final StringBlob blob, final int from, final int to )
+		{
+			final int end = offsets[ size ];
+			final int length = blob.offsets[ to ] - blob.offsets[ from ];
+
+			if( end + length > bytes.length )
+			{
+				bytes = Arrays.copyOf( bytes, Math.max( bytes.length * 2, end + length ) );
+			}
+
+			if( size + to - from + 1 > offsets.length )
+			{
+				offsets = Arrays.copyOf( offsets, Math.max( offsets.length * 2, size + to - from + 1 ) );
+			}
+
+			System.arraycopy( blob.bytes, blob.offsets[ from ], bytes, end, length );
+
+			for( int i = from + 1; i <= to; i++ )
+			{
+				offsets[ ++size ] = end + blob.offsets[ i ] - blob.offsets[ from ];
+			}
+
+			return this;
+		}
+
+		/**
+		 * Appends all entries of another builder.
+		 *
+		 * @param other
+		 * @return Builder
+		 */
+		Builder addAll( final Builder other )
+		{
+			final int end = offsets[ size ];
+			final int otherEnd = other.offsets[ other.size ];
+
+			if( end + otherEnd > bytes.length )
+			{
+				bytes = Arrays.copyOf( bytes, Math.max( bytes.length * 2, end + otherEnd ) );
+			}
+
+			if( size + other.size + 1 > offsets.length )
+			{
+				offsets = Arrays.copyOf( offsets, Math.max( offsets.length * 2, size + other.size + 1 ) );
+			}
+
+			System.arraycopy( other.bytes, 0, bytes, end, otherEnd );
+
+			for( int i = 1; i <= other.size; i++ )
+			{
+				offsets[ size + i ] = end + other.offsets[ i ];
+			}
+
+			size += other.size;
+			return this;
+		}
+
+		/**
+		 *
+		 * @return int
+		 */
+		int size()
+		{
+			return size;
+		}
+
+		/**
+		 *
+		 * @return StringBlob
+		 */
+		StringBlob build()
+		{
+			return new StringBlob( Arrays.copyOf( bytes, offsets[ size ] ), Arrays.copyOf( offsets, size + 1 ) );
+		}
+	}
+}
@@ -0,0 +1,424 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.subliminal.model;
+
+import java.io.*;
+import java.util.*;
+import org.mcisb.math.linearprogramming.*;
+import org.sbml.jsbml.*;
+
+/**
+ * Flux balance analysis of a model, directly from its jsbml representation.
+ * 
+ * The stoichiometric matrix has a row per species that is not a boundary
+ * species and takes part in a reaction, and a column per reaction, and is
+ * built in a single pass over the reactions' species references. Flux bounds
+ * and objective coefficients are read from the LOWER_BOUND, UPPER_BOUND and
+ * OBJECTIVE_COEFFICIENT local parameters written by FluxBoundsGenerater.
+ * Reactions without bounds are bounded by their reversibility, and reactions
+ * without an objective coefficient are not in the objective.
+ * 
+ * The problem is loaded into the solver once, so that bounds and objective
+ * coefficients may be changed and the model solved again from the previous
+ * basis.
+ * 
+ * @author Neil Swainston
+ */
+public class FluxBalanceAnalyser implements AutoCloseable
+{
+	/**
+	 * 
+	 */
+	private static final int TIMEOUT = 60 * 1000;
+
+	/**
+	 * 
+	 */
+	private final String[] reactionIds;
+
+	/**
+	 * 
+	 */
+	private final Map<String,Integer> reactionIdToIndex = new HashMap<>();
+
+	/**
+	 * 
+	 */
+	private final SparseMatrix matrix;
+
+	/**
+	 * 
+	 */
+	private final double[] lowerBounds;
+
+	/**
+	 * 
+	 */
+	private final double[] upperBounds;
+
+	/**
+	 * 
+	 */
+	private final double[] objectiveCoefficients;
+
+	/**
+	 * 
+	 */
+	private final AbstractLinearProgrammingSolver solver = new LinearProgrammingSolver( TIMEOUT, false );
+
+	/**
+	 * 
+	 */
+	private LinearProblem problem = null;
+
+	/**
+	 * 
+	 * @param model
+	 */
+	public FluxBalanceAnalyser( final Model model )
+	{
+		final int reactionCount = model.getNumReactions();
+		reactionIds = new String[ reactionCount ];
+		lowerBounds = new double[ reactionCount ];
+		upperBounds = new double[ reactionCount ];
+		objectiveCoefficients = new double[ reactionCount ];
+
+		final Map<String,Integer> speciesIdToRow = new HashMap<>();
+		final List<Map<Integer,Double>> columns = new ArrayList<>( reactionCount );
+		final Set<String> boundarySpeciesIds = new HashSet<>();
+
+		for( int l = 0; l < model.getNumSpecies(); l++ )
+		{
+			final Species species = model.getSpecies( l );
+
+			if( species.getBoundaryCondition() )
+			{
+				boundarySpeciesIds.add( species.getId() );
+			}
+		}
+
+		for( int j = 0; j < reactionCount; j++ )
+		{
+			final Reaction reaction = model.getReaction( j );
+			reactionIds[ j ] = reaction.getId();
+			reactionIdToIndex.put( reaction.getId(), Integer.valueOf( j ) );
+			lowerBounds[ j ] = getParameterValue( reaction, FluxBoundsGenerater.LOWER_BOUND, reaction.getReversible() ? FluxBoundsGenerater.MIN_FLUX : FluxBoundsGenerater.ZERO_FLUX );
+			upperBounds[ j ] = getParameterValue( reaction, FluxBoundsGenerater.UPPER_BOUND, FluxBoundsGenerater.MAX_FLUX );
+			objectiveCoefficients[ j ] = getParameterValue( reaction, FluxBoundsGenerater.OBJECTIVE_COEFFICIENT, 0 );
+
+			// A species may be both reactant and product:
+			final Map<Integer,Double> column = new TreeMap<>();
+			addSpeciesReferences( reaction.getListOfReactants(), -1, boundarySpeciesIds, speciesIdToRow, column );
+			addSpeciesReferences( reaction.getListOfProducts(), 1, boundarySpeciesIds, speciesIdToRow, column );
+			columns.add( column );
+		}
+
+		matrix = new SparseMatrix( speciesIdToRow.size(), reactionCount );
+
+		for( int j = 0; j < reactionCount; j++ )
+		{
+			for( Map.Entry<Integer,Double> entry : columns.get( j ).entrySet() )
+			{
+				matrix.set( entry.getKey().intValue(), j, entry.getValue().doubleValue() );
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return reaction ids, in model order, which index fluxes
+	 */
+	public String[] getReactionIds()
+	{
+		return reactionIds.clone();
+	}
+
+	/**
+	 * 
+	 * @return stoichiometric matrix, of species by reaction
+	 */
+	public SparseMatrix getStoichiometricMatrix()
+	{
+		return matrix;
+	}
+
+	/**
+	 * 
+	 * @param reactionId
+	 * @return lower flux bound
+	 */
+	public double getLowerBound( final String reactionId )
+	{
+		return lowerBounds[ getIndex( reactionId ) ];
+	}
+
+	/**
+	 * 
+	 * @param reactionId
+	 * @return upper flux bound
+	 */
+	public double getUpperBound( final String reactionId )
+	{
+		return upperBounds[ getIndex( reactionId ) ];
+	}
+
+	/**
+	 * Sets the flux bounds of a reaction, without updating the model.
+	 * 
+	 * @param reactionId
+	 * @param lowerBound
+	 * @param upperBound
+	 */
+	public void setBounds( final String reactionId, final double lowerBound, final double upperBound )
+	{
+		final int index = getIndex( reactionId );
+		lowerBounds[ index ] = lowerBound;
+		upperBounds[ index ] = upperBound;
+
+		if( problem != null )
+		{
+			problem.setColumnBounds( index, lowerBound, upperBound );
+		}
+	}
+
+	/**
+	 * Sets the objective coefficient of a reaction, without updating the
+	 * model.
+	 * 
+	 * @param reactionId
+	 * @param objectiveCoefficient
+	 */
+	public void setObjectiveCoefficient( final String reactionId, final double objectiveCoefficient )
+	{
+		final int index = getIndex( reactionId );
+		objectiveCoefficients[ index ] = objectiveCoefficient;
+
+		if( problem != null )
+		{
+			problem.setObjectiveCoefficient( index, objectiveCoefficient );
+		}
+	}
+
+	/**
+	 * Maximises the objective.
+	 * 
+	 * @return fluxes, indexed as getReactionIds(), or null if the model is
+	 *         infeasible or unbounded
+	 */
+	public double[] solve()
+	{
+		if( problem == null )
+		{
+			problem = createProblem( solver );
+		}
+
+		return problem.solve();
+	}
+
+	/**
+	 * 
+	 * @return flux of each reaction, in model order, or null if the model is
+	 *         infeasible or unbounded
+	 */
+	public Map<String,Double> getFluxes()
+	{
+		final double[] fluxes = solve();
+
+		if( fluxes == null )
+		{
+			return null;
+		}
+
+		final Map<String,Double> reactionIdToFlux = new LinkedHashMap<>();
+
+		for( int j = 0; j < reactionIds.length; j++ )
+		{
+			reactionIdToFlux.put( reactionIds[ j ], Double.valueOf( fluxes[ j ] ) );
+		}
+
+		return reactionIdToFlux;
+	}
+
+	/**
+	 * 
+	 * @return objective value of the last solve
+	 */
+	public double getObjectiveValue()
+	{
+		return problem == null ? Double.NaN : problem.getObjectiveValue();
+	}
+
+	/**
+	 * 
+	 * @return result of the last solve, or null if none
+	 */
+	public SolveResult getLastResult()
+	{
+		return problem == null ? null : problem.getLastResult();
+	}
+
+	/**
+	 * Loads the model's current bounds and objective into a new maximising
+	 * problem, which the caller must close, for example so that each thread
+	 * may solve variants of the model with its own solver.
+	 * 
+	 * @param linearProgrammingSolver
+	 * @return LinearProblem
+	 */
+	public LinearProblem createProblem( final AbstractLinearProgrammingSolver linearProgrammingSolver )
+	{
+		final LinearProblem linearProblem = linearProgrammingSolver.createProblem( matrix, reactionIds, new double[ matrix.getRowCount() ], lowerBounds, upperBounds, objectiveCoefficients );
+		linearProblem.setMaximise( true );
+		return linearProblem;
+	}
+
+	/**
+	 * As createProblem( AbstractLinearProgrammingSolver ), with an additional
+	 * last row that constrains the objective to be at least the given value,
+	 * so that the problem's own objective may then be changed freely.
+	 * 
+	 * @param linearProgrammingSolver
+	 * @param minimumObjectiveValue
+	 * @return LinearProblem
+	 */
+	public LinearProblem createProblem( final AbstractLinearProgrammingSolver linearProgrammingSolver, final double minimumObjectiveValue )
+	{
+		final int objectiveRow = matrix.getRowCount();
+		final SparseMatrix constrainedMatrix = new SparseMatrix( objectiveRow + 1, reactionIds.length );
+
+		for( int k = 0; k < matrix.getNonZeroCount(); k++ )
+		{
+			constrainedMatrix.set( matrix.getRow( k ), matrix.getColumn( k ), matrix.getValue( k ) );
+		}
+
+		for( int j = 0; j < reactionIds.length; j++ )
+		{
+			if( objectiveCoefficients[ j ] != 0 )
+			{
+				constrainedMatrix.set( objectiveRow, j, objectiveCoefficients[ j ] );
+			}
+		}
+
+		final LinearProblem linearProblem = linearProgrammingSolver.createProblem( constrainedMatrix, reactionIds, new double[ objectiveRow + 1 ], lowerBounds, upperBounds, objectiveCoefficients );
+		linearProblem.setRowBounds( objectiveRow, minimumObjectiveValue, Double.POSITIVE_INFINITY );
+		linearProblem.setMaximise( true );
+		return linearProblem;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.AutoCloseable#close()
+	 */
+	@Override
+	public void close()
+	{
+		if( problem != null )
+		{
+			problem.close();
+		}
+
+		solver.close();
+	}
+
+	/**
+	 * 
+	 * @param reactionId
+	 * @return int
+	 */
+	private int getIndex( final String reactionId )
+	{
+		final Integer index = reactionIdToIndex.get( reactionId );
+
+		if( index == null )
+		{
+			throw new IllegalArgumentException( "Unknown reaction " + reactionId ); //$NON-NLS-1$
+		}
+
+		return index.intValue();
+	}
+
+	/**
+	 * 
+	 * @param speciesReferences
+	 * @param sign
+	 * @param boundarySpeciesIds
+	 * @param speciesIdToRow
+	 * @param column
+	 */
+	private static void addSpeciesReferences( final List<SpeciesReference> speciesReferences, final int sign, final Set<String> boundarySpeciesIds, final Map<String,Integer> speciesIdToRow, final Map<Integer,Double> column )
+	{
+		for( SpeciesReference speciesReference : speciesReferences )
+		{
+			final String speciesId = speciesReference.getSpecies();
+
+			if( boundarySpeciesIds.contains( speciesId ) )
+			{
+				continue;
+			}
+
+			Integer row = speciesIdToRow.get( speciesId );
+
+			if( row == null )
+			{
+				row = Integer.valueOf( speciesIdToRow.size() );
+				speciesIdToRow.put( speciesId, row );
+			}
+
+			final Double value = column.get( row );
+			column.put( row, Double.valueOf( ( value == null ? 0 : value.doubleValue() ) + sign * speciesReference.getStoichiometry() ) );
+		}
+	}
+
+	/**
+	 * Reads a local parameter without creating a kinetic law.
+	 * 
+	 * @param reaction
+	 * @param id
+	 * @param defaultValue
+	 * @return double
+	 */
+	private static double getParameterValue( final Reaction reaction, final String id, final double defaultValue )
+	{
+		final KineticLaw kineticLaw = reaction.getKineticLaw();
+		final LocalParameter parameter = kineticLaw == null ? null : kineticLaw.getLocalParameter( id );
+		return parameter == null || !parameter.isSetValue() ? defaultValue : parameter.getValue();
+	}
+
+	/**
+	 * Usage: FluxBalanceAnalyser model.xml
+	 * 
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main( String[] args ) throws Exception
+	{
+		final Model model = SBMLReader.read( new File( args[ 0 ] ) ).getModel();
+
+		try( final FluxBalanceAnalyser analyser = new FluxBalanceAnalyser( model ) )
+		{
+			final Map<String,Double> fluxes = analyser.getFluxes();
+			System.out.println( analyser.getLastResult() );
+
+			if( fluxes != null )
+			{
+				for( Map.Entry<String,Double> entry : fluxes.entrySet() )
+				{
+					if( entry.getValue().doubleValue() != 0 )
+					{
+						System.out.println( entry.getKey() + "\t" + entry.getValue() ); //$NON-NLS-1$
+					}
+				}
+			}
+		}
+	}
+}
@@ -27,6 +27,11 @@ public class FluxBoundsGenerater
 	 */
 	public static final String FLUX_VALUE = "FLUX_VALUE"; //$NON-NLS-1$
 
+	/**
+	 * 
+	 */
+	public static final String OBJECTIVE_COEFFICIENT = "OBJECTIVE_COEFFICIENT"; //$NON-NLS-1$
+
 	/**
 	 * 
 	 */
@@ -185,8 +190,6 @@ public class FluxBoundsGenerater
 	 */
 	public static void setObjectiveCoefficient( final Reaction reaction )
 	{
-		final String OBJECTIVE_COEFFICIENT = "OBJECTIVE_COEFFICIENT"; //$NON-NLS-1$
-
 		final KineticLaw kineticLaw = reaction.getKineticLaw();
 		LocalParameter objectiveCoefficient = kineticLaw.getLocalParameter( OBJECTIVE_COEFFICIENT );
 
@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.subliminal.model;
+
+import java.beans.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.mcisb.math.linearprogramming.*;
+import org.mcisb.util.task.*;
+import org.sbml.jsbml.*;
+
+/**
+ * Flux variability analysis: the minimum and maximum flux of every reaction
+ * of a FluxBalanceAnalyser's model, subject to the objective being within a
+ * fraction of its optimum.
+ * 
+ * Each of the 2N solves differs from the last only in its objective, so
+ * reactions are divided between partitions, each of which loads the model
+ * once into a LinearProblem of its own solver and warm-starts every solve from
+ * the basis of the previous one. Partitions are run concurrently if an
+ * ExecutorService is set. Progress, as the percentage of reactions analysed,
+ * is fired to listeners as Task.PROGRESS, from the threads that analyse them.
+ * 
+ * @author Neil Swainston
+ */
+public class FluxVariabilityAnalyser
+{
+	/**
+	 * 
+	 */
+	private static final int TIMEOUT = 60 * 1000;
+
+	/**
+	 * Relative tolerance by which the objective may fall short of the
+	 * required fraction of its optimum, so that the optimal solution, found to
+	 * within the solver's own tolerance, remains feasible.
+	 */
+	private static final double OBJECTIVE_TOLERANCE = 1e-9;
+
+	/**
+	 * 
+	 */
+	private final PropertyChangeSupport support = new PropertyChangeSupport( this );
+
+	/**
+	 * 
+	 */
+	private final FluxBalanceAnalyser fluxBalanceAnalyser;
+
+	/**
+	 * 
+	 */
+	private final AtomicInteger analysedCount = new AtomicInteger();
+
+	/**
+	 * 
+	 */
+	private double optimumFraction = 1;
+
+	/**
+	 * 
+	 */
+	private ExecutorService executorService = null;
+
+	/**
+	 * 
+	 */
+	private int partitions = 1;
+
+	/**
+	 * 
+	 * @param fluxBalanceAnalyser
+	 */
+	public FluxVariabilityAnalyser( final FluxBalanceAnalyser fluxBalanceAnalyser )
+	{
+		this.fluxBalanceAnalyser = fluxBalanceAnalyser;
+	}
+
+	/**
+	 * Sets the fraction of the optimal objective value that every flux
+	 * distribution must attain. The default, 1, requires optimality; 0 removes
+	 * the constraint for a non-negative optimum.
+	 * 
+	 * @param optimumFraction
+	 */
+	public void setOptimumFraction( final double optimumFraction )
+	{
+		this.optimumFraction = optimumFraction;
+	}
+
+	/**
+	 * Analyses reactions in parallel, divided between the given number of
+	 * partitions.
+	 * 
+	 * @param executorService
+	 *            or null to analyse serially
+	 * @param partitions
+	 */
+	public void setExecutorService( final ExecutorService executorService, final int partitions )
+	{
+		this.executorService = executorService;
+		this.partitions = partitions;
+	}
+
+	/**
+	 * 
+	 * @param listener
+	 */
+	public void addPropertyChangeListener( final PropertyChangeListener listener )
+	{
+		support.addPropertyChangeListener( listener );
+	}
+
+	/**
+	 * 
+	 * @param listener
+	 */
+	public void removePropertyChangeListener( final PropertyChangeListener listener )
+	{
+		support.removePropertyChangeListener( listener );
+	}
+
+	/**
+	 * The FluxBalanceAnalyser is solved first, for its optimum, and is not
+	 * otherwise used, so it may not be used concurrently with this method.
+	 * 
+	 * @return { minimum, maximum } flux of each reaction, in model order, which
+	 *         are infinite if unbounded, or NaN if not found; or null if the
+	 *         model is infeasible
+	 * @throws Exception
+	 */
+	public Map<String,double[]> run() throws Exception
+	{
+		if( fluxBalanceAnalyser.solve() == null )
+		{
+			return null;
+		}
+
+		final double optimum = fluxBalanceAnalyser.getObjectiveValue();
+		final double minimumObjectiveValue = optimum - ( 1 - optimumFraction ) * Math.abs( optimum ) - OBJECTIVE_TOLERANCE * Math.max( 1, Math.abs( optimum ) );
+		final String[] reactionIds = fluxBalanceAnalyser.getReactionIds();
+		final double[] minima = new double[ reactionIds.length ];
+		final double[] maxima = new double[ reactionIds.length ];
+		analysedCount.set( 0 );
+
+		if( executorService == null || partitions < 2 )
+		{
+			analyse( 0, 1, minimumObjectiveValue, minima, maxima );
+		}
+		else
+		{
+			final List<Future<Void>> futures = new ArrayList<>();
+
+			for( int p = 0; p < partitions; p++ )
+			{
+				final int partition = p;
+
+				futures.add( executorService.submit( new Callable<Void>()
+				{
+					/*
+					 * (non-Javadoc)
+					 * 
+					 * @see java.util.concurrent.Callable#call()
+					 */
+					@Override
+					public Void call()
+					{
+						analyse( partition, partitions, minimumObjectiveValue, minima, maxima );
+						return null;
+					}
+				} ) );
+			}
+
+			for( Future<Void> future : futures )
+			{
+				future.get();
+			}
+		}
+
+		final Map<String,double[]> reactionIdToRange = new LinkedHashMap<>();
+
+		for( int j = 0; j < reactionIds.length; j++ )
+		{
+			reactionIdToRange.put( reactionIds[ j ], new double[] { minima[ j ], maxima[ j ] } );
+		}
+
+		return reactionIdToRange;
+	}
+
+	/**
+	 * Minimises and maximises the flux of every partitions-th reaction, from
+	 * the given partition, with a problem and solver of its own.
+	 * 
+	 * @param partition
+	 * @param partitionCount
+	 * @param minimumObjectiveValue
+	 * @param minima
+	 * @param maxima
+	 */
+	private void analyse( final int partition, final int partitionCount, final double minimumObjectiveValue, final double[] minima, final double[] maxima )
+	{
+		final int reactionCount = minima.length;
+
+		try( final AbstractLinearProgrammingSolver solver = new LinearProgrammingSolver( TIMEOUT, false ); final LinearProblem problem = fluxBalanceAnalyser.createProblem( solver, minimumObjectiveValue ) )
+		{
+			problem.setObjectiveCoefficients( new double[ reactionCount ] );
+
+			for( int j = partition; j < reactionCount; j += partitionCount )
+			{
+				problem.setObjectiveCoefficient( j, 1 );
+				problem.setMaximise( false );
+				minima[ j ] = getFlux( problem, j, Double.NEGATIVE_INFINITY );
+				problem.setMaximise( true );
+				maxima[ j ] = getFlux( problem, j, Double.POSITIVE_INFINITY );
+				problem.setObjectiveCoefficient( j, 0 );
+
+				final int analysed = analysedCount.incrementAndGet();
+				final int oldProgress = (int)( (long)( analysed - 1 ) * 100 / reactionCount );
+				final int progress = (int)( (long)analysed * 100 / reactionCount );
+
+				if( progress != oldProgress )
+				{
+					support.firePropertyChange( Task.PROGRESS, oldProgress, progress );
+				}
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param problem
+	 * @param column
+	 * @param unboundedFlux
+	 * @return optimal flux of the column, unboundedFlux if unbounded, or NaN
+	 */
+	private static double getFlux( final LinearProblem problem, final int column, final double unboundedFlux )
+	{
+		final double[] solution = problem.solve();
+
+		if( solution != null )
+		{
+			return solution[ column ];
+		}
+
+		return problem.getLastResult().getStatus() == SolveResult.Status.UNBOUNDED ? unboundedFlux : Double.NaN;
+	}
+
+	/**
+	 * Usage: FluxVariabilityAnalyser model.xml [threads]
+	 * 
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main( String[] args ) throws Exception
+	{
+		final Model model = SBMLReader.read( new File( args[ 0 ] ) ).getModel();
+		final int threads = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 1;
+		final ExecutorService executorService = threads > 1 ? Executors.newFixedThreadPool( threads ) : null;
+
+		try( final FluxBalanceAnalyser fluxBalanceAnalyser = new FluxBalanceAnalyser( model ) )
+		{
+			final FluxVariabilityAnalyser analyser = new FluxVariabilityAnalyser( fluxBalanceAnalyser );
+			analyser.setExecutorService( executorService, threads );
+
+			final Map<String,double[]> reactionIdToRange = analyser.run();
+
+			if( reactionIdToRange != null )
+			{
+				for( Map.Entry<String,double[]> entry : reactionIdToRange.entrySet() )
+				{
+					System.out.println( entry.getKey() + "\t" + entry.getValue()[ 0 ] + "\t" + entry.getValue()[ 1 ] ); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+
+			System.out.print( SolverMetrics.getInstance() );
+		}
+		finally
+		{
+			if( executorService != null )
+			{
+				executorService.shutdown();
+			}
+		}
+	}
+}
@@ -18,6 +18,7 @@ import org.mcisb.ontology.*;
 import org.mcisb.ontology.sbo.*;
 import org.mcisb.sbml.*;
 import org.mcisb.subliminal.model.*;
+import org.mcisb.subliminal.sbml.*;
 import org.mcisb.util.*;
 // import org.mcisb.util.chem.*;
 import org.sbml.jsbml.*;
@@ -144,8 +145,8 @@ public class SbmlSpeciesProtonator
 						final int protonatedCharge = ( (Integer)protonatedFormulaAndCharge[ CHARGE ] ).intValue();
 						final String protonatedFormula = (String)protonatedFormulaAndCharge[ FORMULA ];
 
-						SbmlUtils.setFormula( species, protonatedFormula );
-						SbmlUtils.setCharge( species, protonatedCharge );
+						FormulaCache.setFormula( species, protonatedFormula );
+						FormulaCache.setCharge( species, protonatedCharge );
 
 						final ChebiTerm chebiTerm = (ChebiTerm)CollectionUtils.getFirst( OntologyUtils.getInstance().getXrefs( SbmlUtils.getOntologyTerms( species ).keySet(), Ontology.CHEBI ) );
 
@@ -0,0 +1,297 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.subliminal.sbml;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import javax.xml.stream.*;
+import org.mcisb.sbml.*;
+import org.mcisb.util.chem.*;
+import org.sbml.jsbml.*;
+
+/**
+ * Formulae and charges of the species of a model, read from their notes once
+ * and parsed once. Equal formula strings share a single parsed Formula, which
+ * must therefore not be modified: callers that change a formula should parse
+ * their own copy.
+ * 
+ * Formulae and charges must be changed through the static setFormula,
+ * setCharge and set methods, which invalidate the species in every cache of
+ * its model. Changes made directly through SbmlUtils must be followed by
+ * invalidate or clear.
+ * 
+ * @author Neil Swainston
+ */
+public class FormulaCache
+{
+	/**
+	 * Caches in use, to be invalidated when a species of their model changes.
+	 */
+	private static final Set<FormulaCache> caches = Collections.newSetFromMap( new WeakHashMap<FormulaCache,Boolean>() );
+
+	/**
+	 * 
+	 */
+	private final Model model;
+
+	/**
+	 * Incremented whenever cached formulae or charges are invalidated.
+	 */
+	private final AtomicLong modificationCount = new AtomicLong();
+
+	/**
+	 * 
+	 */
+	private final Map<String,ParsedFormula> speciesIdToFormula = new ConcurrentHashMap<>();
+
+	/**
+	 * 
+	 */
+	private final Map<String,Integer> speciesIdToCharge = new ConcurrentHashMap<>();
+
+	/**
+	 * 
+	 */
+	private final Map<String,ParsedFormula> formulae = new ConcurrentHashMap<>();
+
+	/**
+	 * 
+	 * @param model
+	 */
+	public FormulaCache( final Model model )
+	{
+		this.model = model;
+
+		synchronized( caches )
+		{
+			caches.add( this );
+		}
+	}
+
+	/**
+	 * Sets the formula of the species, as SbmlUtils.setFormula, and
+	 * invalidates it in every cache of its model.
+	 * 
+	 * @param species
+	 * @param formula
+	 * @throws UnsupportedEncodingException
+	 * @throws XMLStreamException
+	 */
+	public static void setFormula( final Species species, final String formula ) throws UnsupportedEncodingException, XMLStreamException
+	{
+		SbmlUtils.setFormula( species, formula );
+		invalidate( species );
+	}
+
+	/**
+	 * Sets the charge of the species, as SbmlUtils.setCharge, and invalidates
+	 * it in every cache of its model.
+	 * 
+	 * @param species
+	 * @param charge
+	 * @throws UnsupportedEncodingException
+	 * @throws XMLStreamException
+	 */
+	public static void setCharge( final Species species, final int charge ) throws UnsupportedEncodingException, XMLStreamException
+	{
+		SbmlUtils.setCharge( species, charge );
+		invalidate( species );
+	}
+
+	/**
+	 * Sets a note of the species, as SbmlUtils.set, and invalidates it in
+	 * every cache of its model, as notes such as SbmlUtils.FORMULA and
+	 * SbmlUtils.NON_SPECIFIC_FORMULA may change its formula or charge.
+	 * 
+	 * @param species
+	 * @param key
+	 * @param value
+	 * @throws UnsupportedEncodingException
+	 * @throws XMLStreamException
+	 */
+	public static void set( final Species species, final String key, final Object value ) throws UnsupportedEncodingException, XMLStreamException
+	{
+		SbmlUtils.set( species, key, value );
+		invalidate( species );
+	}
+
+	/**
+	 * Invalidates the species in every cache of its model.
+	 * 
+	 * @param species
+	 */
+	public static void invalidate( final Species species )
+	{
+		final Model speciesModel = species.getModel();
+
+		synchronized( caches )
+		{
+			for( FormulaCache cache : caches )
+			{
+				if( cache.model == speciesModel )
+				{
+					cache.invalidate( species.getId() );
+				}
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return Model
+	 */
+	public Model getModel()
+	{
+		return model;
+	}
+
+	/**
+	 * 
+	 * @param species
+	 * @return formula, as SbmlUtils.getFormula, or null
+	 * @throws Exception
+	 */
+	public String getFormulaString( final Species species ) throws Exception
+	{
+		return getParsedFormula( species ).formulaString;
+	}
+
+	/**
+	 * 
+	 * @param species
+	 * @return shared Formula, which must not be modified, or null
+	 * @throws Exception
+	 */
+	public Formula getFormula( final Species species ) throws Exception
+	{
+		return getParsedFormula( species ).formula;
+	}
+
+	/**
+	 * 
+	 * @param species
+	 * @return charge, as SbmlUtils.getCharge
+	 * @throws Exception
+	 */
+	public int getCharge( final Species species ) throws Exception
+	{
+		Integer charge = speciesIdToCharge.get( species.getId() );
+
+		if( charge == null )
+		{
+			charge = Integer.valueOf( SbmlUtils.getCharge( model, species ) );
+			speciesIdToCharge.put( species.getId(), charge );
+		}
+
+		return charge.intValue();
+	}
+
+	/**
+	 * 
+	 * @param speciesId
+	 */
+	public void invalidate( final String speciesId )
+	{
+		speciesIdToFormula.remove( speciesId );
+		speciesIdToCharge.remove( speciesId );
+		modificationCount.incrementAndGet();
+	}
+
+	/**
+	 * 
+	 */
+	public void clear()
+	{
+		speciesIdToFormula.clear();
+		speciesIdToCharge.clear();
+		modificationCount.incrementAndGet();
+	}
+
+	/**
+	 * 
+	 * @return number of invalidations so far, which changes whenever the
+	 *         formula or charge of a species may have changed
+	 */
+	public long getModificationCount()
+	{
+		return modificationCount.get();
+	}
+
+	/**
+	 * 
+	 * @param species
+	 * @return ParsedFormula
+	 * @throws Exception
+	 */
+	private ParsedFormula getParsedFormula( final Species species ) throws Exception
+	{
+		ParsedFormula parsedFormula = speciesIdToFormula.get( species.getId() );
+
+		if( parsedFormula == null )
+		{
+			final String formulaString = SbmlUtils.getFormula( model, species );
+
+			if( formulaString == null )
+			{
+				parsedFormula = ParsedFormula.NONE;
+			}
+			else
+			{
+				parsedFormula = formulae.get( formulaString );
+
+				if( parsedFormula == null )
+				{
+					parsedFormula = new ParsedFormula( formulaString, Formula.getFormula( formulaString ) );
+					formulae.put( formulaString, parsedFormula );
+				}
+			}
+
+			speciesIdToFormula.put( species.getId(), parsedFormula );
+		}
+
+		return parsedFormula;
+	}
+
+	/**
+	 * A formula string and its parsed Formula.
+	 */
+	private static class ParsedFormula
+	{
+		/**
+		 * 
+		 */
+		static final ParsedFormula NONE = new ParsedFormula( null, null );
+
+		/**
+		 * 
+		 */
+		final String formulaString;
+
+		/**
+		 * 
+		 */
+		final Formula formula;
+
+		/**
+		 * 
+		 * @param formulaString
+		 * @param formula
+		 */
+		ParsedFormula( final String formulaString, final Formula formula )
+		{
+			this.formulaString = formulaString;
+			this.formula = formula;
+		}
+	}
+}
@@ -156,40 +156,41 @@ public class SbmlFactory
 	 */
 	public Species getSpecies( final String id, final String compartment ) throws IOException, XMLStreamException, NumberFormatException, ParseException, ChebiException
 	{
-		final String mxnRefId = chemUtils.getMxnRefId( id );
+		final MxnRefChemical chemical = chemUtils.getChemical( id );
 
-		if( mxnRefId != null )
+		if( chemical != null )
 		{
-			final String compartmentalisedId = SubliminalUtils.getCompartmentalisedId( getSpeciesId( mxnRefId ), compartment );
+			final String mxnRefId = chemical.getMxnRefId();
+			final String compartmentalisedId = SubliminalUtils.getCompartmentalisedId( getSpeciesId( chemical ), compartment );
 			Species species = idToSpecies.get( compartmentalisedId );
 
 			if( species == null )
 			{
 				species = new Species( SubliminalUtils.DEFAULT_LEVEL, SubliminalUtils.DEFAULT_VERSION );
 				species.setId( compartmentalisedId );
-				species.setName( chemUtils.getName( mxnRefId ) );
+				species.setName( chemical.getName() );
 				species.setCompartment( compartment );
 				species.setInitialConcentration( SubliminalUtils.DEFAULT_INITIAL_CONCENTRATION );
 				species.setSBOTerm( SubliminalUtils.SBO_SIMPLE_CHEMICAL );
 
 				// Notes:
 				final Map<String,Object> notes = new TreeMap<>();
-				notes.put( SubliminalUtils.FORMULA, chemUtils.getFormula( mxnRefId ) );
+				notes.put( SubliminalUtils.FORMULA, chemical.getFormula() );
 
-				final int charge = chemUtils.getCharge( mxnRefId );
+				final int charge = chemical.getCharge();
 
 				if( charge != SubliminalUtils.UNDEFINED_NUMBER )
 				{
 					notes.put( SubliminalUtils.CHARGE, Integer.valueOf( charge ) );
 				}
 
-				notes.put( SubliminalUtils.INCHI, chemUtils.getInchi( mxnRefId ) );
-				notes.put( SubliminalUtils.SMILES, chemUtils.getSmiles( mxnRefId ) );
+				notes.put( SubliminalUtils.INCHI, chemical.getInchi() );
+				notes.put( SubliminalUtils.SMILES, chemical.getSmiles() );
 
 				// Annotations:
-				final Map<String,Collection<String>> xrefIds = chemUtils.getXrefIds( mxnRefId );
+				final Map<String,Collection<String>> xrefIds = chemical.getXrefIds();
 
-				if( xrefIds != null )
+				if( !xrefIds.isEmpty() )
 				{
 					final Collection<String> resources = new ArrayList<>();
 
@@ -237,10 +238,11 @@ public class SbmlFactory
 	 */
 	public Reaction getReaction( final String reactionId, final String compartmentId ) throws IOException, XMLStreamException
 	{
-		final String mxnRefId = reactionUtils.getMxnRefId( reactionId );
+		final MxnRefReaction mxnRefReaction = reactionUtils.getReaction( reactionId );
 
-		if( mxnRefId != null )
+		if( mxnRefReaction != null )
 		{
+			final String mxnRefId = mxnRefReaction.getMxnRefId();
 			final String compartmentalisedId = SubliminalUtils.getCompartmentalisedId( mxnRefId, compartmentId );
 			Reaction reaction = idToReaction.get( compartmentalisedId );
 
@@ -248,19 +250,18 @@ public class SbmlFactory
 			{
 				reaction = new Reaction( SubliminalUtils.DEFAULT_LEVEL, SubliminalUtils.DEFAULT_VERSION );
 				reaction.setId( compartmentalisedId );
-				reaction.setName( reactionUtils.getDescription( mxnRefId ) );
+				reaction.setName( mxnRefReaction.getDescription() );
 				reaction.setSBOTerm( SubliminalUtils.SBO_BIOCHEMICAL_REACTION );
 
-				final String equation = reactionUtils.getEquation( mxnRefId );
-				parseReaction( reaction, equation, compartmentId );
+				parseReaction( reaction, mxnRefReaction.getEquation(), compartmentId );
 
 				// Notes:
 				final Map<String,Object> notes = new TreeMap<>();
 
 				// Annotations:
-				final Map<String,Collection<String>> xrefIds = reactionUtils.getXrefIds( mxnRefId );
+				final Map<String,Collection<String>> xrefIds = mxnRefReaction.getXrefIds();
 
-				if( xrefIds != null )
+				if( !xrefIds.isEmpty() )
 				{
 					final Collection<String> resources = new ArrayList<>();
 
@@ -285,7 +286,7 @@ public class SbmlFactory
 					// EC terms:
 					final Collection<String> ecResources = new TreeSet<>();
 
-					for( String ecTerm : reactionUtils.getEC( mxnRefId ) )
+					for( String ecTerm : mxnRefReaction.getEC() )
 					{
 						ecResources.add( "http://identifiers.org/ec-code/" + ecTerm ); //$NON-NLS-1$
 					}
@@ -309,7 +310,6 @@ public class SbmlFactory
 	 * 
 	 * @param reaction
 	 * @param reactionString
-	 * @param reactionSeparator
 	 * @param compartmentId
 	 * @throws IOException
 	 */
@@ -317,30 +317,47 @@ public class SbmlFactory
 	{
 		final int REACTANTS = 0;
 		final int PRODUCTS = 1;
+		final String SEPARATOR = "\\s+\\+\\s+"; //$NON-NLS-1$
 		final String[] tokens = reactionString.split( REACTION_SEPARATOR );
-		addSpeciesReferences( reaction, tokens[ REACTANTS ], compartmentId, true );
-		addSpeciesReferences( reaction, tokens[ PRODUCTS ], compartmentId, false );
+		final String[] reactants = tokens[ REACTANTS ].split( SEPARATOR );
+		final String[] products = tokens[ PRODUCTS ].split( SEPARATOR );
+
+		// Resolve all participants in a single pass:
+		final Collection<String> participantIds = new ArrayList<>();
+
+		for( String[] participants : new String[][] { reactants, products } )
+		{
+			for( String participant : participants )
+			{
+				final String[] terms = participant.split( SubliminalUtils.WHITESPACE );
+				participantIds.add( terms[ terms.length - 1 ] );
+			}
+		}
+
+		final Map<String,MxnRefChemical> chemicals = chemUtils.getChemicals( participantIds );
+		addSpeciesReferences( reaction, reactants, chemicals, compartmentId, true );
+		addSpeciesReferences( reaction, products, chemicals, compartmentId, false );
 	}
 
 	/**
 	 * 
 	 * @param reaction
-	 * @param term
+	 * @param participants
+	 * @param chemicals
 	 * @param compartmentId
 	 * @param reactant
-	 * @throws IOException
 	 */
-	private void addSpeciesReferences( final Reaction reaction, final String term, final String compartmentId, final boolean reactant ) throws IOException
+	private static void addSpeciesReferences( final Reaction reaction, final String[] participants, final Map<String,MxnRefChemical> chemicals, final String compartmentId, final boolean reactant )
 	{
 		final int STOICHIOMETRY = 0;
-		final String SEPARATOR = "\\s+\\+\\s+"; //$NON-NLS-1$
-		final String[] tokens = term.split( SEPARATOR );
 
-		for( String token : tokens )
+		for( String participant : participants )
 		{
-			final String[] terms = token.split( SubliminalUtils.WHITESPACE );
+			final String[] terms = participant.split( SubliminalUtils.WHITESPACE );
+			final String mxnRefId = terms[ terms.length - 1 ];
+			final MxnRefChemical chemical = chemicals.get( mxnRefId );
 			final SpeciesReference speciesReference = reactant ? reaction.createReactant() : reaction.createProduct();
-			speciesReference.setSpecies( SubliminalUtils.getCompartmentalisedId( getSpeciesId( terms[ terms.length - 1 ] ), compartmentId ) );
+			speciesReference.setSpecies( SubliminalUtils.getCompartmentalisedId( chemical == null ? mxnRefId : getSpeciesId( chemical ), compartmentId ) );
 
 			if( terms.length > STOICHIOMETRY )
 			{
@@ -351,19 +368,16 @@ public class SbmlFactory
 
 	/**
 	 * 
-	 * @param mxnRefId
+	 * @param chemical
 	 * @return String
-	 * @throws IOException
 	 */
-	private String getSpeciesId( final String mxnRefId ) throws IOException
+	private static String getSpeciesId( final MxnRefChemical chemical )
 	{
-		final Collection<String> biggIds = chemUtils.getXrefIds( mxnRefId, BIGG );
-
-		for( String biggId : biggIds )
+		for( String biggId : chemical.getXrefIds( BIGG ) )
 		{
 			return SubliminalUtils.getNormalisedId( BIGG_PREFIX + biggId );
 		}
 
-		return mxnRefId;
+		return chemical.getMxnRefId();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.subliminal.sbml;
+
+import java.util.*;
+import org.mcisb.ontology.*;
+import org.mcisb.ontology.sbo.*;
+import org.mcisb.sbml.*;
+import org.sbml.jsbml.*;
+
+/**
+ * Index of the simple chemical species of a model, by compartment, to find
+ * the species of a given ontology term, or failing that of a given formula and
+ * charge, without scanning the model.
+ * 
+ * Each compartment is indexed when first queried, and again if species have
+ * since been added to or removed from the model other than through add, or if
+ * the formula or charge of any species has since changed, as signalled by the
+ * modification count of the FormulaCache. Changes to the annotations of
+ * indexed species are not signalled, so must be followed by clear.
+ * 
+ * @author Neil Swainston
+ */
+public class SpeciesIndex
+{
+	/**
+	 * 
+	 */
+	private static final String SEPARATOR = "\t"; //$NON-NLS-1$
+
+	/**
+	 * 
+	 */
+	private final FormulaCache formulaCache;
+
+	/**
+	 * 
+	 */
+	private final Map<String,CompartmentIndex> compartmentIdToIndex = new HashMap<>();
+
+	/**
+	 * Number of species in the model when it was last indexed.
+	 */
+	private int numSpecies = -1;
+
+	/**
+	 * Modification count of the FormulaCache when the model was last indexed.
+	 */
+	private long modificationCount = -1;
+
+	/**
+	 * 
+	 * @param formulaCache
+	 *            of the model to index
+	 */
+	public SpeciesIndex( final FormulaCache formulaCache )
+	{
+		this.formulaCache = formulaCache;
+	}
+
+	/**
+	 * 
+	 * @return FormulaCache
+	 */
+	public FormulaCache getFormulaCache()
+	{
+		return formulaCache;
+	}
+
+	/**
+	 * Returns the first simple chemical species of the compartment, in model
+	 * order, that is annotated with the ontology term or has the given formula
+	 * and charge.
+	 * 
+	 * @param ontologyTerm
+	 * @param formula
+	 * @param charge
+	 * @param compartmentId
+	 * @return species id, or null
+	 * @throws Exception
+	 */
+	public synchronized String getSpeciesId( final OntologyTerm ontologyTerm, final String formula, final int charge, final String compartmentId ) throws Exception
+	{
+		final CompartmentIndex index = getIndex( compartmentId );
+		final Integer ontologyTermPosition = index.ontologyTermToPosition.get( ontologyTerm );
+		final Integer formulaPosition = formula == null ? null : index.formulaToPosition.get( getKey( formula, charge ) );
+
+		if( ontologyTermPosition == null && formulaPosition == null )
+		{
+			return null;
+		}
+
+		final int position = ontologyTermPosition == null ? formulaPosition.intValue() : formulaPosition == null ? ontologyTermPosition.intValue() : Math.min( ontologyTermPosition.intValue(), formulaPosition.intValue() );
+		return index.speciesIds.get( position );
+	}
+
+	/**
+	 * Indexes a species just added to the end of the model.
+	 * 
+	 * @param species
+	 * @throws Exception
+	 */
+	public synchronized void add( final Species species ) throws Exception
+	{
+		final CompartmentIndex index = compartmentIdToIndex.get( species.getCompartment() );
+
+		if( index != null )
+		{
+			index.add( species );
+		}
+
+		if( numSpecies != -1 )
+		{
+			numSpecies++;
+		}
+	}
+
+	/**
+	 * Discards the index, so that each compartment is indexed again when next
+	 * queried.
+	 */
+	public synchronized void clear()
+	{
+		compartmentIdToIndex.clear();
+		numSpecies = -1;
+	}
+
+	/**
+	 * 
+	 * @param compartmentId
+	 * @return CompartmentIndex
+	 * @throws Exception
+	 */
+	private CompartmentIndex getIndex( final String compartmentId ) throws Exception
+	{
+		final Model model = formulaCache.getModel();
+
+		final long currentModificationCount = formulaCache.getModificationCount();
+
+		if( numSpecies != model.getNumSpecies() || modificationCount != currentModificationCount )
+		{
+			compartmentIdToIndex.clear();
+			numSpecies = model.getNumSpecies();
+			modificationCount = currentModificationCount;
+		}
+
+		CompartmentIndex index = compartmentIdToIndex.get( compartmentId );
+
+		if( index == null )
+		{
+			index = new CompartmentIndex();
+
+			for( int l = 0; l < model.getNumSpecies(); l++ )
+			{
+				final Species species = model.getSpecies( l );
+
+				if( species.getCompartment().equals( compartmentId ) )
+				{
+					index.add( species );
+				}
+			}
+
+			compartmentIdToIndex.put( compartmentId, index );
+		}
+
+		return index;
+	}
+
+	/**
+	 * 
+	 * @param formula
+	 * @param charge
+	 * @return String
+	 */
+	private static String getKey( final String formula, final int charge )
+	{
+		return formula + SEPARATOR + charge;
+	}
+
+	/**
+	 * The simple chemical species of a compartment, in model order.
+	 */
+	private class CompartmentIndex
+	{
+		/**
+		 * 
+		 */
+		final List<String> speciesIds = new ArrayList<>();
+
+		/**
+		 * 
+		 */
+		final Map<OntologyTerm,Integer> ontologyTermToPosition = new HashMap<>();
+
+		/**
+		 * 
+		 */
+		final Map<String,Integer> formulaToPosition = new HashMap<>();
+
+		/**
+		 * 
+		 * @param species
+		 * @throws Exception
+		 */
+		void add( final Species species ) throws Exception
+		{
+			if( !species.isSetSBOTerm() || species.getSBOTerm() != SboUtils.SIMPLE_CHEMICAL )
+			{
+				return;
+			}
+
+			final Integer position = Integer.valueOf( speciesIds.size() );
+			speciesIds.add( species.getId() );
+
+			for( OntologyTerm ontologyTerm : SbmlUtils.getOntologyTerms( species ).keySet() )
+			{
+				if( !ontologyTermToPosition.containsKey( ontologyTerm ) )
+				{
+					ontologyTermToPosition.put( ontologyTerm, position );
+				}
+			}
+
+			final String formula = formulaCache.getFormulaString( species );
+
+			if( formula != null )
+			{
+				final String key = getKey( formula, formulaCache.getCharge( species ) );
+
+				if( !formulaToPosition.containsKey( key ) )
+				{
+					formulaToPosition.put( key, position );
+				}
+			}
+		}
+	}
+}
@@ -21,6 +21,7 @@ import org.mcisb.ontology.kegg.*;
 import org.mcisb.ontology.sbo.*;
 import org.mcisb.sbml.*;
 import org.mcisb.subliminal.*;
+import org.mcisb.subliminal.sbml.*;
 import org.mcisb.util.*;
 import org.sbml.jsbml.CVTerm.Qualifier;
 import org.sbml.jsbml.CVTerm.Type;
@@ -227,11 +228,11 @@ public class SbmlCreator
 
 			if( chebiTerm.getFormula() != null )
 			{
-				SbmlUtils.setFormula( (Species)sbase, chebiTerm.getFormula() );
+				FormulaCache.setFormula( (Species)sbase, chebiTerm.getFormula() );
 			}
 			
 			final int chebiCharge = chebiTerm.getCharge();
-			SbmlUtils.setCharge( (Species)sbase, chebiCharge == NumberUtils.UNDEFINED ? 0 : chebiCharge );
+			FormulaCache.setCharge( (Species)sbase, chebiCharge == NumberUtils.UNDEFINED ? 0 : chebiCharge );
 
 			/*
 			 * if( chebiTerm.getSmiles() != null ) { SbmlUtils.setSmiles(
@@ -245,8 +246,8 @@ public class SbmlCreator
 		}
 		else if( ontologyTerm instanceof KeggCompoundTerm )
 		{
-			SbmlUtils.setFormula( (Species)sbase, ( (KeggCompoundTerm)ontologyTerm ).getFormula() );
-			SbmlUtils.setCharge( (Species)sbase, 0 );
+			FormulaCache.setFormula( (Species)sbase, ( (KeggCompoundTerm)ontologyTerm ).getFormula() );
+			FormulaCache.setCharge( (Species)sbase, 0 );
 		}
 	}
 }
\ No newline at end of file
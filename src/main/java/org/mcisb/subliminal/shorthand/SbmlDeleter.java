@@ -37,16 +37,37 @@ public class SbmlDeleter
 	 * @throws Exception
 	 */
 	public static void clean( final SBMLDocument document, final int maxStoichCoeff ) throws Exception
+	{
+		clean( document, maxStoichCoeff, false );
+	}
+
+	/**
+	 * 
+	 * @param document
+	 * @param maxStoichCoeff
+	 * @param incremental
+	 *            if true, each pass after the first balances only the reactions
+	 *            that the previous pass may have changed: those it balanced, and
+	 *            those sharing a species that it updated or removed
+	 * @throws Exception
+	 */
+	public static void clean( final SBMLDocument document, final int maxStoichCoeff, final boolean incremental ) throws Exception
 	{
 		final Model model = document.getModel();
 		float proportionBalanced = 0;
+		SbmlReactionBalancerTask task = null;
+		Collection<String> reactionIds = null;
 
 		while( true )
 		{
 			final Collection<String> speciesIdsToRemove = new HashSet<>();
 
-			final SbmlReactionBalancerTask task = new SbmlReactionBalancerTask( document, null, maxStoichCoeff );
-			task.run();
+			if( task == null || !incremental )
+			{
+				task = new SbmlReactionBalancerTask( document, null, maxStoichCoeff );
+			}
+
+			task.run( reactionIds );
 
 			final Map<String,Integer> metaboliteDegree = SbmlUtils.getMetaboliteDegree( model, true );
 			final Map<String,Integer> problematicMetaboliteDegree = task.getProblematicMetaboliteDegree();
@@ -63,6 +84,11 @@ public class SbmlDeleter
 				}
 			}
 
+			if( incremental )
+			{
+				reactionIds = getChangedReactionIds( model, task, speciesIdsToRemove );
+			}
+
 			deleteSpecies( model, speciesIdsToRemove, true );
 
 			final float numReactions = model.getNumReactions();
@@ -81,6 +107,67 @@ public class SbmlDeleter
 		}
 	}
 
+	/**
+	 * 
+	 * @param model
+	 * @param task
+	 * @param speciesIdsToRemove
+	 * @return ids of reactions balanced by the task's last run, or sharing a
+	 *         species updated by it or to be removed
+	 */
+	private static Collection<String> getChangedReactionIds( final Model model, final SbmlReactionBalancerTask task, final Collection<String> speciesIdsToRemove )
+	{
+		final Map<String,Collection<String>> speciesIdToReactionIds = getSpeciesIdToReactionIds( model );
+		final Collection<String> changedSpeciesIds = new HashSet<>( task.getUpdatedSpeciesIds() );
+		changedSpeciesIds.addAll( speciesIdsToRemove );
+
+		final Collection<String> reactionIds = new HashSet<>( task.getBalancedReactionIds() );
+
+		for( String speciesId : changedSpeciesIds )
+		{
+			final Collection<String> speciesReactionIds = speciesIdToReactionIds.get( speciesId );
+
+			if( speciesReactionIds != null )
+			{
+				reactionIds.addAll( speciesReactionIds );
+			}
+		}
+
+		return reactionIds;
+	}
+
+	/**
+	 * 
+	 * @param model
+	 * @return Map<String,Collection<String>> of species id to the ids of the
+	 *         reactions in which it is a reactant or product
+	 */
+	private static Map<String,Collection<String>> getSpeciesIdToReactionIds( final Model model )
+	{
+		final Map<String,Collection<String>> speciesIdToReactionIds = new HashMap<>();
+
+		for( Reaction reaction : model.getListOfReactions() )
+		{
+			final List<SpeciesReference> speciesReferences = new ArrayList<>( reaction.getListOfReactants() );
+			speciesReferences.addAll( reaction.getListOfProducts() );
+
+			for( SpeciesReference ref : speciesReferences )
+			{
+				Collection<String> reactionIds = speciesIdToReactionIds.get( ref.getSpecies() );
+
+				if( reactionIds == null )
+				{
+					reactionIds = new HashSet<>();
+					speciesIdToReactionIds.put( ref.getSpecies(), reactionIds );
+				}
+
+				reactionIds.add( reaction.getId() );
+			}
+		}
+
+		return speciesIdToReactionIds;
+	}
+
 	/**
 	 * 
 	 * @param model
@@ -23,6 +23,7 @@ import org.mcisb.ontology.kegg.*;
 import org.mcisb.ontology.sbo.*;
 import org.mcisb.sbml.*;
 import org.mcisb.subliminal.model.*;
+import org.mcisb.subliminal.sbml.*;
 import org.mcisb.util.*;
 import org.mcisb.util.chem.*;
 import org.sbml.jsbml.*;
@@ -118,7 +119,7 @@ public class SbmlUpdater
 					// qualifier. (R -> CH3(CH2)n case).
 					addOntologyTerms( species, chebiTerm, inchiTerm, Qualifier.BQB_IS_VERSION_OF );
 					System.out.println( "UPDATE ANNOTATION: " + species.getId() + "\t" + chebiTerm.toUri() + "\t" + chebiTermFormula + "\t" + speciesFormula ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
-					SbmlUtils.set( species, SbmlUtils.NON_SPECIFIC_FORMULA, chebiTermFormula );
+					FormulaCache.set( species, SbmlUtils.NON_SPECIFIC_FORMULA, chebiTermFormula );
 				}
 				else
 				{
@@ -198,7 +199,7 @@ public class SbmlUpdater
 			{
 				if( SbmlUtils.getCharge( model, species ) == NumberUtils.UNDEFINED )
 				{
-					SbmlUtils.setCharge( species, DEFAULT_CHARGE );
+					FormulaCache.setCharge( species, DEFAULT_CHARGE );
 				}
 			}
 			catch( uk.ac.manchester.libchebi.ChebiException e )
@@ -215,13 +216,26 @@ public class SbmlUpdater
 	 */
 	public static void updateFormulae( final Model model ) throws Exception
 	{
-		for( Species species : model.getListOfSpecies() )
+		updateFormulae( new FormulaCache( model ) );
+	}
+
+	/**
+	 * Normalises the formula of each species of the model, through the given
+	 * cache, so that species with equal formulae are parsed once and the cache
+	 * may be shared with later stages, such as balancing.
+	 * 
+	 * @param formulaCache
+	 * @throws Exception
+	 */
+	public static void updateFormulae( final FormulaCache formulaCache ) throws Exception
+	{
+		for( Species species : formulaCache.getModel().getListOfSpecies() )
 		{
-			final String formula = SbmlUtils.getFormula( model, species );
+			final Formula formula = formulaCache.getFormula( species );
 
 			if( formula != null )
 			{
-				SbmlUtils.setFormula( species, Formula.getFormula( formula ).toString() );
+				FormulaCache.setFormula( species, formula.toString() );
 			}
 		}
 	}
@@ -458,8 +472,8 @@ public class SbmlUpdater
 				{
 					if( chebiTerm.getFormula() != null )
 					{
-						SbmlUtils.setFormula( species, chebiTerm.getFormula() );
-						SbmlUtils.setCharge( species, chebiTerm.getCharge() == NumberUtils.UNDEFINED ? 0 : chebiTerm.getCharge() );
+						FormulaCache.setFormula( species, chebiTerm.getFormula() );
+						FormulaCache.setCharge( species, chebiTerm.getCharge() == NumberUtils.UNDEFINED ? 0 : chebiTerm.getCharge() );
 					}
 
 					if( chebiTerm.getSmiles() != null )
@@ -496,8 +510,8 @@ public class SbmlUpdater
 							{
 								if( keggCompoundTerm.getFormula() != null )
 								{
-									SbmlUtils.setFormula( species, keggCompoundTerm.getFormula() );
-									SbmlUtils.setCharge( species, 0 );
+									FormulaCache.setFormula( species, keggCompoundTerm.getFormula() );
+									FormulaCache.setCharge( species, 0 );
 								}
 
 								if( keggCompoundTerm.getSmiles() != null )
@@ -551,7 +565,7 @@ public class SbmlUpdater
 
 				if( nonBoundary != null )
 				{
-					SbmlUtils.setCharge( species, SbmlUtils.getCharge( model, nonBoundary ) );
+					FormulaCache.setCharge( species, SbmlUtils.getCharge( model, nonBoundary ) );
 				}
 			}
 		}
@@ -909,11 +923,11 @@ public class SbmlUpdater
 					}
 					else if( term.equals( SbmlUtils.CHARGE ) )
 					{
-						SbmlUtils.setCharge( species, Integer.parseInt( entry.getValue() ) );
+						FormulaCache.setCharge( species, Integer.parseInt( entry.getValue() ) );
 					}
 					else
 					{
-						SbmlUtils.set( species, term, entry.getValue() );
+						FormulaCache.set( species, term, entry.getValue() );
 					}
 				}
 			}
@@ -0,0 +1,324 @@
+/**
+ * 
+ */
+package org.mcisb.subliminal.balance;
+
+import java.io.*;
+import java.nio.file.*;
+import org.gnu.glpk.*;
+import org.junit.*;
+import org.mcisb.math.linearprogramming.*;
+
+/**
+ * @author Neil Swainston
+ */
+public class BalancingCacheTest
+{
+	/**
+	 * 
+	 */
+	private static final int TIMEOUT = 1000;
+
+	/**
+	 * 
+	 */
+	private static final String[] COLUMN_IDS = { "A", "B", "C" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+	/**
+	 * 
+	 */
+	private static final double[] ROW_BOUNDS = { 0, 0 };
+
+	/**
+	 * 
+	 */
+	private static final double[] LOWER_BOUNDS = { 1, 1, 1 };
+
+	/**
+	 * 
+	 */
+	private static final double[] UPPER_BOUNDS = { 8, 8, 8 };
+
+	/**
+	 * 
+	 */
+	private static final double[] OBJECTIVE_COEFFICIENTS = { 1, 1, 1 };
+
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void memory()
+	{
+		final BalancingCache cache = new BalancingCache( 16, null );
+
+		try( final AbstractLinearProgrammingSolver solver = new MixedIntegerLinearProgrammingSolver( TIMEOUT, false ) )
+		{
+			final double[] solution = cache.solve( solver, getMatrix( false ), COLUMN_IDS, null, ROW_BOUNDS, LOWER_BOUNDS, UPPER_BOUNDS, OBJECTIVE_COEFFICIENTS );
+			Assert.assertArrayEquals( new double[] { 2, 1, 2 }, solution, 1e-8 );
+			Assert.assertEquals( 0, cache.getHits() );
+			Assert.assertEquals( 1, cache.getMisses() );
+
+			// Same problem, with elements set in a different order:
+			Assert.assertArrayEquals( solution, cache.solve( solver, getMatrix( true ), COLUMN_IDS, null, ROW_BOUNDS, LOWER_BOUNDS, UPPER_BOUNDS, OBJECTIVE_COEFFICIENTS ), 1e-8 );
+			Assert.assertEquals( 1, cache.getHits() );
+
+			// Infeasible:
+			final double[] upperBounds = { 1, 1, 1 };
+			Assert.assertNull( cache.solve( solver, getMatrix( false ), COLUMN_IDS, null, ROW_BOUNDS, LOWER_BOUNDS, upperBounds, OBJECTIVE_COEFFICIENTS ) );
+			Assert.assertNull( cache.solve( solver, getMatrix( false ), COLUMN_IDS, null, ROW_BOUNDS, LOWER_BOUNDS, upperBounds, OBJECTIVE_COEFFICIENTS ) );
+			Assert.assertEquals( 2, cache.getHits() );
+			Assert.assertEquals( 2, cache.getMisses() );
+		}
+	}
+
+	/**
+	 * Checks that a problem whose participants (columns) and elements (rows)
+	 * are in a different order is found, and its solution returned in the
+	 * caller's column order.
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void canonical()
+	{
+		final BalancingCache cache = new BalancingCache( 16, null );
+
+		try( final AbstractLinearProgrammingSolver solver = new MixedIntegerLinearProgrammingSolver( TIMEOUT, false ) )
+		{
+			Assert.assertArrayEquals( new double[] { 2, 1, 2 }, cache.solve( solver, getMatrix( false ), COLUMN_IDS, null, ROW_BOUNDS, LOWER_BOUNDS, UPPER_BOUNDS, OBJECTIVE_COEFFICIENTS ), 1e-8 );
+
+			// Columns C, A, B, and rows swapped:
+			final SparseMatrix permutedMatrix = new SparseMatrix( new double[][] { { -1, 0, 2 }, { -2, 1, 2 } }, 3 );
+			final String[] permutedColumnIds = { "C", "A", "B" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			Assert.assertArrayEquals( new double[] { 2, 2, 1 }, cache.solve( solver, permutedMatrix, permutedColumnIds, null, ROW_BOUNDS, LOWER_BOUNDS, UPPER_BOUNDS, OBJECTIVE_COEFFICIENTS ), 1e-8 );
+			Assert.assertEquals( 1, cache.getHits() );
+			Assert.assertEquals( 1, cache.getMisses() );
+		}
+	}
+
+	/**
+	 * 
+	 * @throws IOException
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void disk() throws IOException
+	{
+		final File directory = Files.createTempDirectory( "balancing" ).toFile(); //$NON-NLS-1$
+
+		try( final AbstractLinearProgrammingSolver solver = new MixedIntegerLinearProgrammingSolver( TIMEOUT, false ) )
+		{
+			final double[] solution = new BalancingCache( 16, directory ).solve( solver, getMatrix( false ), COLUMN_IDS, null, ROW_BOUNDS, LOWER_BOUNDS, UPPER_BOUNDS, OBJECTIVE_COEFFICIENTS );
+
+			// A new cache, as in a later run:
+			final BalancingCache cache = new BalancingCache( 16, directory );
+			Assert.assertArrayEquals( solution, cache.solve( solver, getMatrix( false ), COLUMN_IDS, null, ROW_BOUNDS, LOWER_BOUNDS, UPPER_BOUNDS, OBJECTIVE_COEFFICIENTS ), 1e-8 );
+			Assert.assertEquals( 1, cache.getHits() );
+			Assert.assertEquals( 1, cache.getDiskHits() );
+			Assert.assertEquals( 0, cache.getMisses() );
+			Assert.assertEquals( 0, cache.getReadErrors() );
+		}
+	}
+
+	/**
+	 * Checks that a persistent tier that cannot be written is counted, and
+	 * does not prevent the problem from being solved.
+	 * 
+	 * @throws IOException
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void writeError() throws IOException
+	{
+		final File directory = Files.createTempDirectory( "balancing" ).toFile(); //$NON-NLS-1$
+		final BalancingCache cache = new BalancingCache( 16, directory );
+		Assert.assertTrue( directory.delete() );
+
+		try( final AbstractLinearProgrammingSolver solver = new MixedIntegerLinearProgrammingSolver( TIMEOUT, false ) )
+		{
+			Assert.assertArrayEquals( new double[] { 2, 1, 2 }, cache.solve( solver, getMatrix( false ), COLUMN_IDS, null, ROW_BOUNDS, LOWER_BOUNDS, UPPER_BOUNDS, OBJECTIVE_COEFFICIENTS ), 1e-8 );
+			Assert.assertEquals( 1, cache.getWriteErrors() );
+		}
+	}
+
+	/**
+	 * Checks that a problem the solver gave up on is solved again, rather than
+	 * cached as having no solution.
+	 * 
+	 * @throws IOException
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void timeLimit() throws IOException
+	{
+		final File directory = Files.createTempDirectory( "balancing" ).toFile(); //$NON-NLS-1$
+		final BalancingCache cache = new BalancingCache( 16, directory );
+
+		try( final TimeLimitSolver solver = new TimeLimitSolver() )
+		{
+			Assert.assertNull( cache.solve( solver, getMatrix( false ), COLUMN_IDS, null, ROW_BOUNDS, LOWER_BOUNDS, UPPER_BOUNDS, OBJECTIVE_COEFFICIENTS ) );
+			Assert.assertNull( cache.solve( solver, getMatrix( false ), COLUMN_IDS, null, ROW_BOUNDS, LOWER_BOUNDS, UPPER_BOUNDS, OBJECTIVE_COEFFICIENTS ) );
+			Assert.assertEquals( 2, solver.getSolveCount() );
+			Assert.assertEquals( 0, cache.getHits() );
+			Assert.assertEquals( 2, cache.getMisses() );
+			Assert.assertEquals( 0, directory.listFiles().length );
+		}
+
+		// The problem is solved, and cached, once a solver succeeds:
+		try( final AbstractLinearProgrammingSolver solver = new MixedIntegerLinearProgrammingSolver( TIMEOUT, false ) )
+		{
+			Assert.assertArrayEquals( new double[] { 2, 1, 2 }, cache.solve( solver, getMatrix( false ), COLUMN_IDS, null, ROW_BOUNDS, LOWER_BOUNDS, UPPER_BOUNDS, OBJECTIVE_COEFFICIENTS ), 1e-8 );
+			Assert.assertEquals( 1, directory.listFiles().length );
+		}
+	}
+
+	/**
+	 * Checks that solutions are not shared between backends, which may break
+	 * ties between optima differently.
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void backend()
+	{
+		final BalancingCache cache = new BalancingCache( 16, null );
+
+		try( final Solver javaSolver = new SelectingSolver( new BranchAndBoundSolver( GLPKConstants.GLP_IV ), new MixedIntegerLinearProgrammingSolver( TIMEOUT, false ), Integer.MAX_VALUE ); final Solver glpkSolver = new SelectingSolver( new BranchAndBoundSolver( GLPKConstants.GLP_IV ), new MixedIntegerLinearProgrammingSolver( TIMEOUT, false ), 0 ) )
+		{
+			Assert.assertArrayEquals( new double[] { 2, 1, 2 }, cache.solve( javaSolver, getMatrix( false ), COLUMN_IDS, null, ROW_BOUNDS, LOWER_BOUNDS, UPPER_BOUNDS, OBJECTIVE_COEFFICIENTS ), 1e-8 );
+			Assert.assertArrayEquals( new double[] { 2, 1, 2 }, cache.solve( glpkSolver, getMatrix( false ), COLUMN_IDS, null, ROW_BOUNDS, LOWER_BOUNDS, UPPER_BOUNDS, OBJECTIVE_COEFFICIENTS ), 1e-8 );
+			Assert.assertEquals( 0, cache.getHits() );
+			Assert.assertEquals( 2, cache.getMisses() );
+
+			Assert.assertArrayEquals( new double[] { 2, 1, 2 }, cache.solve( javaSolver, getMatrix( false ), COLUMN_IDS, null, ROW_BOUNDS, LOWER_BOUNDS, UPPER_BOUNDS, OBJECTIVE_COEFFICIENTS ), 1e-8 );
+			Assert.assertEquals( 1, cache.getHits() );
+		}
+	}
+
+	/**
+	 * Checks that a problem whose relaxation the BranchAndBoundSolver cannot
+	 * solve reliably is passed to the other backend, and not cached as having
+	 * no solution if that gives up too.
+	 * 
+	 * @throws IOException
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void fallback() throws IOException
+	{
+		final File directory = Files.createTempDirectory( "balancing" ).toFile(); //$NON-NLS-1$
+		final BalancingCache cache = new BalancingCache( 16, directory );
+
+		// A = 1, with A at most 1 - 1e-6, which is within the simplex's
+		// tolerances of feasible:
+		final SparseMatrix matrix = new SparseMatrix( new double[][] { { 1 } }, 1 );
+		final String[] columnIds = { "A" }; //$NON-NLS-1$
+		final int[] columnKinds = { GLPKConstants.GLP_CV };
+
+		try( final TimeLimitSolver largeSolver = new TimeLimitSolver(); final Solver solver = new SelectingSolver( new BranchAndBoundSolver( GLPKConstants.GLP_IV ), largeSolver, Integer.MAX_VALUE ) )
+		{
+			Assert.assertNull( cache.solve( solver, matrix, columnIds, columnKinds, new double[] { 1 }, new double[] { 0 }, new double[] { 1 - 1e-6 }, new double[] { 1 } ) );
+			Assert.assertEquals( 1, largeSolver.getSolveCount() );
+			Assert.assertEquals( SolveResult.Status.TIME_LIMIT, solver.getLastResult().getStatus() );
+			Assert.assertEquals( 0, directory.listFiles().length );
+		}
+	}
+
+	/**
+	 * 2 A + B = 2 C, with elements X (A = X, B = X2, C = X2) and charge (A =
+	 * 0, B = 2, C = 1).
+	 * 
+	 * @param reverse
+	 * @return SparseMatrix
+	 */
+	private static SparseMatrix getMatrix( final boolean reverse )
+	{
+		final double[][] elements = { { 0, 0, 1 }, { 0, 1, 2 }, { 0, 2, -2 }, { 1, 1, 2 }, { 1, 2, -1 } };
+		final SparseMatrix matrix = new SparseMatrix( 2, 3 );
+
+		for( int i = 0; i < elements.length; i++ )
+		{
+			final double[] element = elements[ reverse ? elements.length - 1 - i : i ];
+			matrix.set( (int)element[ 0 ], (int)element[ 1 ], element[ 2 ] );
+		}
+
+		return matrix;
+	}
+
+	/**
+	 * Gives up on every problem at its time limit.
+	 */
+	private static class TimeLimitSolver implements Solver
+	{
+		/**
+		 * 
+		 */
+		private SolveResult lastResult = null;
+
+		/**
+		 * 
+		 */
+		private int solveCount = 0;
+
+		/**
+		 * 
+		 * @return number of solves
+		 */
+		int getSolveCount()
+		{
+			return solveCount;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see
+		 * org.mcisb.math.linearprogramming.Solver#solve(org.mcisb.math.
+		 * linearprogramming.SparseMatrix, java.lang.String[], double[],
+		 * double[], double[], double[])
+		 */
+		@Override
+		public double[] solve( final SparseMatrix matrix, final String[] columnIds, final double[] rowBounds, final double[] lowerBounds, final double[] upperBounds, final double[] objectiveCoefficients )
+		{
+			solveCount++;
+			lastResult = new SolveResult( SolveResult.Status.TIME_LIMIT, SolveResult.UNKNOWN, SolveResult.UNKNOWN, 0, Double.NaN );
+			return null;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see
+		 * org.mcisb.math.linearprogramming.Solver#solve(org.mcisb.math.
+		 * linearprogramming.SparseMatrix, java.lang.String[], int[],
+		 * double[], double[], double[], double[])
+		 */
+		@Override
+		public double[] solve( final SparseMatrix matrix, final String[] columnIds, final int[] columnKinds, final double[] rowBounds, final double[] lowerBounds, final double[] upperBounds, final double[] objectiveCoefficients )
+		{
+			return solve( matrix, columnIds, rowBounds, lowerBounds, upperBounds, objectiveCoefficients );
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.mcisb.math.linearprogramming.Solver#getLastResult()
+		 */
+		@Override
+		public SolveResult getLastResult()
+		{
+			return lastResult;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.mcisb.math.linearprogramming.Solver#close()
+		 */
+		@Override
+		public void close()
+		{
+			// No resources are held.
+		}
+	}
+}
\ No newline at end of file
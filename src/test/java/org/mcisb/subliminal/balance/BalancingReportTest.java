@@ -0,0 +1,69 @@
+/**
+ * 
+ */
+package org.mcisb.subliminal.balance;
+
+import java.io.*;
+import java.util.*;
+import org.junit.*;
+import org.mcisb.math.linearprogramming.*;
+
+/**
+ * @author Neil Swainston
+ */
+public class BalancingReportTest
+{
+	/**
+	 * 
+	 * @throws IOException
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void jsonLines() throws IOException
+	{
+		final StringWriter writer = new StringWriter();
+
+		try( final BalancingReport report = new JsonLinesBalancingReport( writer ) )
+		{
+			report.write( getUnbalanced() );
+			report.write( new ReactionResult( "R2", ReactionResult.Outcome.NO_FORMULA, null, null, Arrays.asList( "S\"1" ), 1000000 ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		final String[] lines = writer.toString().split( "\n" ); //$NON-NLS-1$
+		Assert.assertEquals( 2, lines.length );
+		Assert.assertEquals( "{\"reaction\":\"R1\",\"outcome\":\"UNBALANCED\",\"residual\":{\"C\":1.0,\"H\":-2.0},\"reset_residual\":{\"C\":1.0},\"problematic_species\":[\"S1\",\"S2\"],\"millis\":2.5,\"solve_status\":\"TIME_LIMIT\",\"solve_millis\":1000.0}", lines[ 0 ] ); //$NON-NLS-1$
+		Assert.assertEquals( "{\"reaction\":\"R2\",\"outcome\":\"NO_FORMULA\",\"residual\":null,\"reset_residual\":null,\"problematic_species\":[\"S\\\"1\"],\"millis\":1.0,\"solve_status\":null,\"solve_millis\":0.0}", lines[ 1 ] ); //$NON-NLS-1$
+	}
+
+	/**
+	 * 
+	 * @throws IOException
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void tsv() throws IOException
+	{
+		final StringWriter writer = new StringWriter();
+
+		try( final BalancingReport report = new TsvBalancingReport( writer ) )
+		{
+			report.write( getUnbalanced() );
+		}
+
+		final String[] lines = writer.toString().split( "\n" ); //$NON-NLS-1$
+		Assert.assertEquals( 2, lines.length );
+		Assert.assertEquals( "R1\tUNBALANCED\tC=1.0,H=-2.0\tC=1.0\tS1,S2\t2.5\tTIME_LIMIT\t1000.0", lines[ 1 ] ); //$NON-NLS-1$
+	}
+
+	/**
+	 * 
+	 * @return ReactionResult
+	 */
+	private static ReactionResult getUnbalanced()
+	{
+		final Map<String,Double> residual = new HashMap<>();
+		residual.put( "H", Double.valueOf( -2 ) ); //$NON-NLS-1$
+		residual.put( "C", Double.valueOf( 1 ) ); //$NON-NLS-1$
+		return new ReactionResult( "R1", ReactionResult.Outcome.UNBALANCED, residual, Collections.singletonMap( "C", Double.valueOf( 1 ) ), Arrays.asList( "S1", "S2" ), 2500000, SolveResult.Status.TIME_LIMIT, 1000000000 ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+}
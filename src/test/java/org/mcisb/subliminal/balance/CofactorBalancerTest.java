@@ -0,0 +1,149 @@
+/**
+ * 
+ */
+package org.mcisb.subliminal.balance;
+
+import org.junit.*;
+
+/**
+ * Participants are A and B, then water and a proton as reactant and as
+ * product, with elements C, H, O and charge.
+ * 
+ * @author Neil Swainston
+ */
+public class CofactorBalancerTest
+{
+	/**
+	 * 
+	 */
+	private static final int MAX = Integer.MAX_VALUE;
+
+	/**
+	 * 
+	 */
+	private static final int[] WATER = { 0, 2, 1, 0 };
+
+	/**
+	 * 
+	 */
+	private static final int[] PROTON = { 0, 1, 0, 1 };
+
+	/**
+	 * 
+	 */
+	private static final boolean[] IS_REACTANTS = { true, false, true, false, true, false };
+
+	/**
+	 * 
+	 */
+	private static final boolean[] IS_COFACTORS = { false, false, true, true, true, true };
+
+	/**
+	 * 
+	 */
+	private static final double[] LOWER_BOUNDS = { 1, 1, 0, 0, 0, 0 };
+
+	/**
+	 * 
+	 */
+	private static final double[] UPPER_BOUNDS = { 8, 8, MAX, MAX, MAX, MAX };
+
+	/**
+	 * CH4O2 = CH2O + H2O
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void water()
+	{
+		final double[] solution = solve( new int[] { 1, 4, 2, 0 }, new int[] { 1, 2, 1, 0 }, new double[] { 1, 1, 0, 0, 0, 0 } );
+		Assert.assertArrayEquals( new double[] { 1, 1, 0, 1, 0, 0 }, solution, 1e-8 );
+	}
+
+	/**
+	 * CH4O2 = CHO- + H2O + H+
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void waterAndProton()
+	{
+		final double[] solution = solve( new int[] { 1, 4, 2, 0 }, new int[] { 1, 1, 1, -1 }, new double[] { 1, 1, 0, 0, 0, 0 } );
+		Assert.assertArrayEquals( new double[] { 1, 1, 0, 1, 0, 1 }, solution, 1e-8 );
+	}
+
+	/**
+	 * CH2O + 2 H2O = CH4O2, which may be balanced by adding or removing water.
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void ambiguous()
+	{
+		Assert.assertNull( solve( new int[] { 1, 2, 1, 0 }, new int[] { 1, 4, 2, 0 }, new double[] { 1, 1, 0, 2, 0, 0 } ) );
+	}
+
+	/**
+	 * CH4O2 = C2H4O2, which cofactors cannot balance.
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void carbon()
+	{
+		Assert.assertNull( solve( new int[] { 1, 4, 2, 0 }, new int[] { 2, 4, 2, 0 }, new double[] { 1, 1, 0, 0, 0, 0 } ) );
+	}
+
+	/**
+	 * H4O2 = H2O, which is balanced as cheaply by adding water or by changing
+	 * the stoichiometry of the product.
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void alternative()
+	{
+		Assert.assertNull( solve( new int[] { 0, 4, 2, 0 }, new int[] { 0, 2, 1, 0 }, new double[] { 1, 1, 0, 0, 0, 0 } ) );
+	}
+
+	/**
+	 * CH4O2 = CH2O + H2O, with water twice as a product, which is left to the
+	 * MILP.
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void duplicate()
+	{
+		final int[][] rows = { new int[] { 1, 4, 2, 0 }, negate( new int[] { 1, 2, 1, 0 } ), WATER, negate( WATER ), negate( WATER ) };
+		final boolean[] isReactants = { true, false, true, false, false };
+		final boolean[] isCofactors = { false, false, true, true, true };
+		final double[] lowerBounds = { 1, 1, 0, 0, 0 };
+		final double[] upperBounds = { 8, 8, MAX, MAX, MAX };
+		Assert.assertNull( CofactorBalancer.solve( rows, isReactants, isCofactors, new double[] { 1, 1, 0, 0, 0 }, lowerBounds, upperBounds ) );
+	}
+
+	/**
+	 * 
+	 * @param reactant
+	 * @param product
+	 * @param stoichiometries
+	 * @return double[]
+	 */
+	private static double[] solve( final int[] reactant, final int[] product, final double[] stoichiometries )
+	{
+		final int[][] rows = { reactant, negate( product ), WATER, negate( WATER ), PROTON, negate( PROTON ) };
+		return CofactorBalancer.solve( rows, IS_REACTANTS, IS_COFACTORS, stoichiometries, LOWER_BOUNDS, UPPER_BOUNDS );
+	}
+
+	/**
+	 * 
+	 * @param composition
+	 * @return int[]
+	 */
+	private static int[] negate( final int[] composition )
+	{
+		final int[] negated = new int[ composition.length ];
+
+		for( int i = 0; i < composition.length; i++ )
+		{
+			negated[ i ] = -composition[ i ];
+		}
+
+		return negated;
+	}
+}
@@ -41,6 +41,29 @@ public class ReactionBalancerTest
 		cofactors.add( (ChebiTerm)ontologyUtils.getOntologyTerm( Ontology.CHEBI, WATER ) );
 	}
 
+	/**
+	 * @throws Exception
+	 * 
+	 */
+	@Test
+	public void getEquivalentIds() throws Exception
+	{
+		final OntologyUtils ontologyUtils = OntologyUtils.getInstance();
+		final Map<String,ChebiTerm> equivalentIdToCofactor = ReactionBalancer.getEquivalentIds( cofactors );
+
+		for( ChebiTerm cofactor : cofactors )
+		{
+			Assert.assertSame( cofactor, equivalentIdToCofactor.get( cofactor.getId() ) );
+		}
+
+		// Every enumerated id is equivalent to its cofactor:
+		for( Map.Entry<String,ChebiTerm> entry : equivalentIdToCofactor.entrySet() )
+		{
+			final OntologyTerm ontologyTerm = ontologyUtils.getOntologyTerm( Ontology.CHEBI, entry.getKey() );
+			Assert.assertTrue( ontologyUtils.areEquivalent( ontologyTerm, entry.getValue(), OntologyUtils.MatchCriteria.ANY ) );
+		}
+	}
+
 	/**
 	 * @throws Exception
 	 * 
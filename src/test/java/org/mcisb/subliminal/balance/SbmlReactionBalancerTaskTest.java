@@ -4,6 +4,8 @@
 package org.mcisb.subliminal.balance;
 
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
 import org.junit.*;
 import org.mcisb.sbml.*;
 import org.mcisb.util.io.*;
@@ -80,4 +82,69 @@ public class SbmlReactionBalancerTaskTest
 
 		Assert.assertTrue( SbmlUtils.getFormula( model, model.getSpecies( "M_mag_hs_c" ) ).equals( "C19H38O4" ) ); //$NON-NLS-1$ //$NON-NLS-2$
 	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void balanceParallel() throws Exception
+	{
+		final int MAX_STOICHIOMETRIC_COEFFICIENT = 8;
+		final int THREADS = 4;
+		final String RESOURCE = "org/mcisb/subliminal/balance/balance.xml"; //$NON-NLS-1$
+
+		final SbmlReactionBalancerTask serialTask = new SbmlReactionBalancerTask( getClass().getClassLoader().getResourceAsStream( RESOURCE ), null, MAX_STOICHIOMETRIC_COEFFICIENT );
+		final Model serialModel = serialTask.run().getModel();
+
+		final ExecutorService executorService = Executors.newFixedThreadPool( THREADS );
+
+		try
+		{
+			final SbmlReactionBalancerTask parallelTask = new SbmlReactionBalancerTask( getClass().getClassLoader().getResourceAsStream( RESOURCE ), null, MAX_STOICHIOMETRIC_COEFFICIENT );
+			parallelTask.setExecutorService( executorService, THREADS );
+			final Model parallelModel = parallelTask.run().getModel();
+
+			Assert.assertEquals( serialTask.getBalancedReactionIds(), parallelTask.getBalancedReactionIds() );
+			Assert.assertEquals( serialTask.getUnbalancedReactions().keySet(), parallelTask.getUnbalancedReactions().keySet() );
+			Assert.assertEquals( serialModel.getNumSpecies(), parallelModel.getNumSpecies() );
+
+			for( int l = 0; l < serialModel.getNumReactions(); l++ )
+			{
+				final String reactionId = serialModel.getReaction( l ).getId();
+				Assert.assertEquals( SbmlUtils.toString( serialModel, reactionId, false ), SbmlUtils.toString( parallelModel, reactionId, false ) );
+				Assert.assertEquals( SbmlUtils.toFormulaString( serialModel, reactionId ), SbmlUtils.toFormulaString( parallelModel, reactionId ) );
+			}
+		}
+		finally
+		{
+			executorService.shutdown();
+		}
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void balanceIncremental() throws Exception
+	{
+		final int MAX_STOICHIOMETRIC_COEFFICIENT = 8;
+		final String METABOLIC = "metabolic"; //$NON-NLS-1$
+
+		final SbmlReactionBalancerTask task = new SbmlReactionBalancerTask( getClass().getClassLoader().getResourceAsStream( "org/mcisb/subliminal/balance/balance.xml" ), null, MAX_STOICHIOMETRIC_COEFFICIENT ); //$NON-NLS-1$
+		final Model model = task.run().getModel();
+		final Set<String> unbalancedReactionIds = new HashSet<>( task.getUnbalancedReactions().keySet() );
+		final Map<String,Integer> problematicMetaboliteDegree = new HashMap<>( task.getProblematicMetaboliteDegree() );
+		Assert.assertTrue( task.getBalancedReactionIds().contains( METABOLIC ) );
+
+		// Balanced by the first run, so unchanged by the second:
+		final String before = SbmlUtils.toString( model, METABOLIC, false );
+		task.run( Collections.singleton( METABOLIC ) );
+
+		Assert.assertTrue( task.getBalancedReactionIds().isEmpty() );
+		Assert.assertEquals( before, SbmlUtils.toString( model, METABOLIC, false ) );
+		Assert.assertEquals( unbalancedReactionIds, task.getUnbalancedReactions().keySet() );
+		Assert.assertEquals( problematicMetaboliteDegree, task.getProblematicMetaboliteDegree() );
+	}
 }
\ No newline at end of file
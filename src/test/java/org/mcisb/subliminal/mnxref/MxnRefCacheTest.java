@@ -0,0 +1,148 @@
+package org.mcisb.subliminal.mnxref;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.concurrent.atomic.*;
+import org.junit.*;
+import com.sun.net.httpserver.*;
+
+/**
+ *
+ * @author Neil Swainston
+ */
+public class MxnRefCacheTest
+{
+	/**
+	 *
+	 */
+	private static final String CONTENT = "MNXM1\tH(+)\n"; //$NON-NLS-1$
+
+	/**
+	 *
+	 */
+	private static final String ETAG = "\"1\""; //$NON-NLS-1$
+
+	/**
+	 *
+	 */
+	@After
+	public void clearProperties()
+	{
+		System.clearProperty( MxnRefCache.CACHE_DIRECTORY );
+		System.clearProperty( MxnRefCache.OFFLINE );
+		System.clearProperty( MxnRefCache.MAX_AGE );
+	}
+
+	/**
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void offline() throws IOException
+	{
+		final URL fixtureUrl = getClass().getClassLoader().getResource( "org/mcisb/subliminal/mnxref/chem_xref.tsv" ); //$NON-NLS-1$
+		System.setProperty( MxnRefCache.CACHE_DIRECTORY, new File( fixtureUrl.getPath() ).getParent() );
+		System.setProperty( MxnRefCache.OFFLINE, Boolean.TRUE.toString() );
+
+		Assert.assertEquals( new File( fixtureUrl.getPath() ), new File( MxnRefCache.getUrl( new URL( "http://metanetx.org/cgi-bin/mnxget/mnxref/chem_xref.tsv" ) ).getPath() ) ); //$NON-NLS-1$
+
+		try
+		{
+			MxnRefCache.getUrl( new URL( "http://metanetx.org/cgi-bin/mnxget/mnxref/undefined.tsv" ) ); //$NON-NLS-1$
+			Assert.fail();
+		}
+		catch( FileNotFoundException e )
+		{
+			// Expected.
+		}
+	}
+
+	/**
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void revalidate() throws IOException
+	{
+		final AtomicInteger downloads = new AtomicInteger();
+		final AtomicInteger revalidations = new AtomicInteger();
+		final HttpServer server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), 0 );
+
+		server.createContext( "/", new HttpHandler() //$NON-NLS-1$
+		{
+			/*
+			 * (non-Javadoc)
+			 *
+			 * @see
+			 * com.sun.net.httpserver.HttpHandler#handle(com.sun.net.httpserver.
+			 * HttpExchange)
+			 */
+			@Override
+			public void handle( final HttpExchange exchange ) throws IOException
+			{
+				exchange.getResponseHeaders().set( "ETag", ETAG ); //$NON-NLS-1$
+
+				if( ETAG.equals( exchange.getRequestHeaders().getFirst( "If-None-Match" ) ) ) //$NON-NLS-1$
+				{
+					revalidations.incrementAndGet();
+					exchange.sendResponseHeaders( HttpURLConnection.HTTP_NOT_MODIFIED, -1 );
+				}
+				else
+				{
+					downloads.incrementAndGet();
+
+					final byte[] content = CONTENT.getBytes( StringBlob.UTF_8 );
+					exchange.sendResponseHeaders( HttpURLConnection.HTTP_OK, content.length );
+
+					try ( final OutputStream os = exchange.getResponseBody() )
+					{
+						os.write( content );
+					}
+				}
+
+				exchange.close();
+			}
+		} );
+
+		server.start();
+
+		final File directory = Files.createTempDirectory( "mnxref" ).toFile(); //$NON-NLS-1$
+		System.setProperty( MxnRefCache.CACHE_DIRECTORY, directory.getAbsolutePath() );
+
+		try
+		{
+			final URL url = new URL( "http://localhost:" + server.getAddress().getPort() + "/chem_prop.tsv" ); //$NON-NLS-1$ //$NON-NLS-2$
+
+			// Download, then serve from the cache without contacting the server:
+			final URL cachedUrl = MxnRefCache.getUrl( url );
+			Assert.assertEquals( cachedUrl, MxnRefCache.getUrl( url ) );
+			Assert.assertEquals( 1, downloads.get() );
+			Assert.assertEquals( 0, revalidations.get() );
+			Assert.assertEquals( CONTENT, new String( MxnRefTsvParser.read( cachedUrl ).array(), StringBlob.UTF_8 ) );
+
+			// Expire, and revalidate:
+			System.setProperty( MxnRefCache.MAX_AGE, "0" ); //$NON-NLS-1$
+			Assert.assertEquals( cachedUrl, MxnRefCache.getUrl( url ) );
+			Assert.assertEquals( 1, downloads.get() );
+			Assert.assertEquals( 1, revalidations.get() );
+			Assert.assertFalse( MxnRefCache.isStale( url ) );
+
+			// Server unavailable, so fall back to the cache:
+			server.stop( 0 );
+			Assert.assertEquals( cachedUrl, MxnRefCache.getUrl( url ) );
+			Assert.assertTrue( MxnRefCache.isStale( url ) );
+		}
+		finally
+		{
+			server.stop( 0 );
+
+			for( File file : directory.listFiles() )
+			{
+				Assert.assertTrue( file.delete() );
+			}
+
+			Assert.assertTrue( directory.delete() );
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package org.mcisb.subliminal.mnxref;
 
 import java.io.*;
+import java.util.*;
 import org.junit.*;
 import org.mcisb.subliminal.mnxref.MxnRefUtils.Evidence;
 
@@ -58,4 +59,27 @@ public class MxnRefChemUtilsTest
 	{
 		Assert.assertTrue( MxnRefChemUtils.getInstance().getEvidence( "bigg:5apru" ).equals( Evidence.inferred ) ); //$NON-NLS-1$
 	}
+
+	/**
+	 * 
+	 * @throws IOException
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void getChemicals() throws IOException
+	{
+		final MxnRefChemUtils utils = MxnRefChemUtils.getInstance();
+		final Map<String,MxnRefChemical> chemicals = utils.getChemicals( Arrays.asList( "bigg:creat", "MNXM400", "kegg:C00011", "undefined:undefined" ) ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		Assert.assertTrue( chemicals.size() == 3 );
+		Assert.assertTrue( chemicals.get( "bigg:creat" ) == chemicals.get( "MNXM400" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+
+		final MxnRefChemical creatine = chemicals.get( "bigg:creat" ); //$NON-NLS-1$
+		Assert.assertTrue( creatine.getMxnRefId().equals( "MNXM400" ) ); //$NON-NLS-1$
+		Assert.assertTrue( creatine.getName().equals( utils.getName( "MNXM400" ) ) ); //$NON-NLS-1$
+		Assert.assertTrue( creatine.getFormula().equals( utils.getFormula( "MNXM400" ) ) ); //$NON-NLS-1$
+		Assert.assertTrue( creatine.getCharge() == utils.getCharge( "MNXM400" ) ); //$NON-NLS-1$
+		Assert.assertTrue( creatine.getXrefIds().equals( utils.getXrefIds( "MNXM400" ) ) ); //$NON-NLS-1$
+		Assert.assertTrue( utils.getChemical( "kegg:C00011" ).getMxnRefId().equals( "MNXM13" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertNull( utils.getChemical( "undefined:undefined" ) ); //$NON-NLS-1$
+	}
 }
\ No newline at end of file
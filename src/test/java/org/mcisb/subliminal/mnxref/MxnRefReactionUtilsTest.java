@@ -20,4 +20,19 @@ public class MxnRefReactionUtilsTest
 		Assert.assertFalse( MxnRefReactionUtils.getInstance().getBalance( "MNXR150" ) ); //$NON-NLS-1$
 		Assert.assertFalse( MxnRefReactionUtils.getInstance().getBalance( "bigg:3HAD40" ) ); //$NON-NLS-1$
 	}
+
+	/**
+	 * 
+	 * @throws IOException
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void getReaction() throws IOException
+	{
+		final MxnRefReactionUtils utils = MxnRefReactionUtils.getInstance();
+		final MxnRefReaction reaction = utils.getReaction( "bigg:3HAD40" ); //$NON-NLS-1$
+		Assert.assertTrue( reaction.getEquation().equals( utils.getEquation( "bigg:3HAD40" ) ) ); //$NON-NLS-1$
+		Assert.assertTrue( reaction.getEC().equals( utils.getEC( "bigg:3HAD40" ) ) ); //$NON-NLS-1$
+		Assert.assertFalse( reaction.getBalance() );
+	}
 }
\ No newline at end of file
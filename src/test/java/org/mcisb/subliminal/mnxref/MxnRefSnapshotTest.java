@@ -0,0 +1,92 @@
+package org.mcisb.subliminal.mnxref;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import org.junit.*;
+import org.mcisb.subliminal.mnxref.MxnRefUtils.Evidence;
+
+/**
+ *
+ * @author Neil Swainston
+ */
+public class MxnRefSnapshotTest
+{
+	/**
+	 *
+	 */
+	private static final int FORMULA = 2;
+
+	/**
+	 *
+	 */
+	private static final int SMILES = 6;
+
+	/**
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void compileAndOpen() throws IOException
+	{
+		final MxnRefSnapshot snapshot = getSnapshot();
+
+		Assert.assertTrue( snapshot.getMxnRefId( "kegg_C00011" ).equals( "MNXM13" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertTrue( snapshot.getMxnRefId( "bigg_co2" ).equals( "MNXM13" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertNull( snapshot.getMxnRefId( "bigg_unknown" ) ); //$NON-NLS-1$
+		Assert.assertTrue( snapshot.getEvidence( "bigg_5apru" ).equals( Evidence.inferred ) ); //$NON-NLS-1$
+
+		final Map<String,Collection<String>> xrefIds = snapshot.getXrefIds( "MNXM400" ); //$NON-NLS-1$
+		Assert.assertTrue( xrefIds.get( "kegg" ).contains( "C00300" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertTrue( xrefIds.get( "chebi" ).contains( "16919" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+
+		Assert.assertTrue( snapshot.getData( "MNXM400", FORMULA ).equals( "C4H9N3O2" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertTrue( snapshot.getData( "MNXM1", SMILES ).equals( "[H+]" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertNull( snapshot.getData( "MNXM999", FORMULA ) ); //$NON-NLS-1$
+	}
+
+	/**
+	 *
+	 * @throws IOException
+	 */
+	@Test(expected = IOException.class)
+	public void detectCorruption() throws IOException
+	{
+		final File file = compile();
+
+		try ( final RandomAccessFile randomAccessFile = new RandomAccessFile( file, "rw" ) ) //$NON-NLS-1$
+		{
+			randomAccessFile.seek( randomAccessFile.length() - 1 );
+			final int last = randomAccessFile.read();
+			randomAccessFile.seek( randomAccessFile.length() - 1 );
+			randomAccessFile.write( last + 1 );
+		}
+
+		MxnRefSnapshot.open( file );
+	}
+
+	/**
+	 *
+	 * @return MxnRefSnapshot
+	 * @throws IOException
+	 */
+	private MxnRefSnapshot getSnapshot() throws IOException
+	{
+		return MxnRefSnapshot.open( compile() );
+	}
+
+	/**
+	 *
+	 * @return File
+	 * @throws IOException
+	 */
+	private File compile() throws IOException
+	{
+		final URL xrefUrl = getClass().getClassLoader().getResource( "org/mcisb/subliminal/mnxref/chem_xref.tsv" ); //$NON-NLS-1$
+		final URL dataUrl = getClass().getClassLoader().getResource( "org/mcisb/subliminal/mnxref/chem_prop.tsv" ); //$NON-NLS-1$
+		final File file = File.createTempFile( "chem", ".snapshot" ); //$NON-NLS-1$ //$NON-NLS-2$
+		file.deleteOnExit();
+		MxnRefSnapshot.compile( xrefUrl, dataUrl, file );
+		return file;
+	}
+}
@@ -0,0 +1,135 @@
+package org.mcisb.subliminal.mnxref;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.util.*;
+import org.junit.*;
+import org.mcisb.subliminal.*;
+
+/**
+ *
+ * @author Neil Swainston
+ */
+public class MxnRefTsvParserTest
+{
+	/**
+	 *
+	 */
+	private static final int MAX_CHUNKS = 8;
+
+	/**
+	 *
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void normalise()
+	{
+		final String[] ids = { "bigg:co2", "kegg:C00011", "chebi:15378", "metacyc:CPD-12345", "seed:cpd00001", "3-oxo", "a::b", "-x", "r\u00e9f:\u00e9" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$
+
+		for( String id : ids )
+		{
+			final byte[] bytes = id.getBytes( StringBlob.UTF_8 );
+			final byte[] normalised = new byte[ 6 * bytes.length + 1 ];
+			final int length = MxnRefTsvParser.normalise( bytes, 0, bytes.length, normalised );
+			Assert.assertEquals( SubliminalUtils.getNormalisedId( id ), new String( normalised, 0, length, StringBlob.UTF_8 ) );
+		}
+	}
+
+	/**
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void chunkedXrefs() throws IOException
+	{
+		final URL xrefUrl = getClass().getClassLoader().getResource( "org/mcisb/subliminal/mnxref/chem_xref.tsv" ); //$NON-NLS-1$
+		final MxnRefXrefs xrefs = MxnRefXrefs.read( xrefUrl );
+		final ByteBuffer buffer = MxnRefTsvParser.read( xrefUrl );
+
+		for( int numChunks = 1; numChunks <= MAX_CHUNKS; numChunks++ )
+		{
+			final MxnRefXrefIndex index = MxnRefXrefIndex.merge( MxnRefTsvParser.parse( buffer, MxnRefXrefIndex.ROW_PARSER_FACTORY, numChunks ) );
+
+			for( String xrefId : xrefs.getXrefIdToMxnRefId().keySet() )
+			{
+				Assert.assertEquals( xrefs.getMxnRefId( xrefId ), index.getMxnRefId( xrefId ) );
+				Assert.assertEquals( xrefs.getEvidence( xrefId ), index.getEvidence( xrefId ) );
+			}
+
+			for( String mxnRefId : xrefs.getMxnRefIdToXrefIds().keySet() )
+			{
+				Assert.assertEquals( xrefs.getXrefIds( mxnRefId ).toString(), index.getXrefIds( mxnRefId ).toString() );
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void chunkedData() throws IOException
+	{
+		final URL dataUrl = getClass().getClassLoader().getResource( "org/mcisb/subliminal/mnxref/chem_prop.tsv" ); //$NON-NLS-1$
+		final Map<String,String[]> expected = new HashMap<>();
+
+		try ( final BufferedReader reader = new BufferedReader( new InputStreamReader( dataUrl.openStream(), StringBlob.UTF_8 ) ) )
+		{
+			String line = null;
+
+			while( ( line = reader.readLine() ) != null )
+			{
+				if( !line.startsWith( "#" ) ) //$NON-NLS-1$
+				{
+					final String[] tokens = MxnRefUtils.getValidXml( line ).split( "\t" ); //$NON-NLS-1$
+					expected.put( tokens[ 0 ], tokens );
+				}
+			}
+		}
+
+		final ByteBuffer buffer = MxnRefTsvParser.read( dataUrl );
+
+		for( int numChunks = 1; numChunks <= MAX_CHUNKS; numChunks++ )
+		{
+			final MxnRefData data = MxnRefData.merge( MxnRefTsvParser.parse( buffer, MxnRefData.getRowParserFactory( null ), numChunks ) );
+			Assert.assertEquals( expected.keySet(), data.getMxnRefIdToData().keySet() );
+
+			for( Map.Entry<String,String[]> entry : expected.entrySet() )
+			{
+				for( int column = 0; column <= entry.getValue().length; column++ )
+				{
+					Assert.assertEquals( column < entry.getValue().length ? entry.getValue()[ column ] : null, data.getData( entry.getKey(), column ) );
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void selectedColumns() throws IOException
+	{
+		final int FORMULA = 2;
+		final int CHARGE = 3;
+		final URL dataUrl = getClass().getClassLoader().getResource( "org/mcisb/subliminal/mnxref/chem_prop.tsv" ); //$NON-NLS-1$
+		final MxnRefData data = MxnRefData.read( dataUrl, null );
+		final BitSet columns = new BitSet();
+		columns.set( FORMULA );
+		columns.set( CHARGE );
+		final MxnRefData selectedData = MxnRefData.read( dataUrl, columns );
+
+		Assert.assertTrue( selectedData.getFootprint() < data.getFootprint() );
+		Assert.assertEquals( data.getMxnRefIdToData().keySet(), selectedData.getMxnRefIdToData().keySet() );
+
+		for( String mxnRefId : data.getMxnRefIdToData().keySet() )
+		{
+			for( int column = 0; column < 8; column++ )
+			{
+				Assert.assertEquals( column == 0 || columns.get( column ) ? data.getData( mxnRefId, column ) : null, selectedData.getData( mxnRefId, column ) );
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package org.mcisb.subliminal.mnxref;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import org.junit.*;
+
+/**
+ *
+ * @author Neil Swainston
+ */
+public class MxnRefXrefIndexTest
+{
+	/**
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void matchesMaps() throws IOException
+	{
+		final URL xrefUrl = getClass().getClassLoader().getResource( "org/mcisb/subliminal/mnxref/chem_xref.tsv" ); //$NON-NLS-1$
+		final MxnRefXrefs xrefs = MxnRefXrefs.read( xrefUrl );
+		final MxnRefXrefIndex index = MxnRefXrefIndex.read( xrefUrl );
+
+		for( String xrefId : xrefs.getXrefIdToMxnRefId().keySet() )
+		{
+			Assert.assertEquals( xrefs.getMxnRefId( xrefId ), index.getMxnRefId( xrefId ) );
+			Assert.assertEquals( xrefs.getEvidence( xrefId ), index.getEvidence( xrefId ) );
+		}
+
+		for( String mxnRefId : xrefs.getMxnRefIdToXrefIds().keySet() )
+		{
+			Assert.assertEquals( xrefs.getXrefIds( mxnRefId ).toString(), index.getXrefIds( mxnRefId ).toString() );
+		}
+
+		Assert.assertNull( index.getMxnRefId( "bigg_unknown" ) ); //$NON-NLS-1$
+		Assert.assertNull( index.getXrefIds( "MNXM999" ) ); //$NON-NLS-1$
+	}
+
+	/**
+	 * The compact index should take less memory than a lower bound for the
+	 * xref id map of the map-based table: a 32-byte HashMap entry (with
+	 * compressed oops) plus the characters of its key and value, ignoring the
+	 * String objects, the table and the other maps.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void footprint() throws IOException
+	{
+		final URL xrefUrl = getClass().getClassLoader().getResource( "org/mcisb/subliminal/mnxref/chem_xref.tsv" ); //$NON-NLS-1$
+		final MxnRefXrefs xrefs = MxnRefXrefs.read( xrefUrl );
+		final MxnRefXrefIndex index = MxnRefXrefIndex.read( xrefUrl );
+		final int ENTRY_SIZE = 32;
+		long mapSize = 0;
+
+		for( Map.Entry<String,String> entry : xrefs.getXrefIdToMxnRefId().entrySet() )
+		{
+			mapSize += ENTRY_SIZE + 2 * ( entry.getKey().length() + entry.getValue().length() );
+		}
+
+		Assert.assertTrue( index.getFootprint() < mapSize );
+	}
+}
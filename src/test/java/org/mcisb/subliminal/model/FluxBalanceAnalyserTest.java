@@ -0,0 +1,200 @@
+/**
+ * 
+ */
+package org.mcisb.subliminal.model;
+
+import java.util.*;
+import org.junit.*;
+import org.mcisb.math.linearprogramming.*;
+import org.sbml.jsbml.*;
+
+/**
+ * A_ext -> A (bounded 0 to 10), A <-> B, A + B -> 2 B and B -> B_ext (the
+ * objective), where A_ext and B_ext are boundary species.
+ * 
+ * @author Neil Swainston
+ */
+public class FluxBalanceAnalyserTest
+{
+	/**
+	 * 
+	 */
+	private static final double EPSILON = 1e-8;
+
+	/**
+	 * 
+	 */
+	private static final String UPTAKE = "R_uptake"; //$NON-NLS-1$
+
+	/**
+	 * 
+	 */
+	private static final String CONVERSION = "R_conversion"; //$NON-NLS-1$
+
+	/**
+	 * 
+	 */
+	private static final String AUTOCATALYSIS = "R_autocatalysis"; //$NON-NLS-1$
+
+	/**
+	 * 
+	 */
+	private static final String BIOMASS = "R_biomass"; //$NON-NLS-1$
+
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void stoichiometricMatrix()
+	{
+		try( final FluxBalanceAnalyser analyser = new FluxBalanceAnalyser( createModel() ) )
+		{
+			Assert.assertArrayEquals( new String[] { UPTAKE, CONVERSION, AUTOCATALYSIS, BIOMASS }, analyser.getReactionIds() );
+
+			// Boundary species are excluded:
+			final SparseMatrix matrix = analyser.getStoichiometricMatrix();
+			Assert.assertEquals( 2, matrix.getRowCount() );
+			Assert.assertEquals( 4, matrix.getColumnCount() );
+
+			// Rows are A then B, in order of first appearance, and B, both
+			// reactant and product of autocatalysis, is merged:
+			final double[][] expected = { { 1, -1, -1, 0 }, { 0, 1, 1, -1 } };
+			final double[][] actual = new double[ 2 ][ 4 ];
+
+			for( int k = 0; k < matrix.getNonZeroCount(); k++ )
+			{
+				actual[ matrix.getRow( k ) ][ matrix.getColumn( k ) ] += matrix.getValue( k );
+			}
+
+			for( int i = 0; i < expected.length; i++ )
+			{
+				Assert.assertArrayEquals( expected[ i ], actual[ i ], EPSILON );
+			}
+
+			Assert.assertEquals( 6, matrix.getNonZeroCount() );
+		}
+	}
+
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void bounds()
+	{
+		try( final FluxBalanceAnalyser analyser = new FluxBalanceAnalyser( createModel() ) )
+		{
+			// Read from parameters:
+			Assert.assertEquals( 0, analyser.getLowerBound( UPTAKE ), EPSILON );
+			Assert.assertEquals( 10, analyser.getUpperBound( UPTAKE ), EPSILON );
+
+			// From reversibility:
+			Assert.assertEquals( Double.NEGATIVE_INFINITY, analyser.getLowerBound( CONVERSION ), 0 );
+			Assert.assertEquals( Double.POSITIVE_INFINITY, analyser.getUpperBound( CONVERSION ), 0 );
+			Assert.assertEquals( 0, analyser.getLowerBound( AUTOCATALYSIS ), 0 );
+			Assert.assertEquals( Double.POSITIVE_INFINITY, analyser.getUpperBound( AUTOCATALYSIS ), 0 );
+		}
+	}
+
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void getFluxes()
+	{
+		try( final FluxBalanceAnalyser analyser = new FluxBalanceAnalyser( createModel() ) )
+		{
+			final Map<String,Double> fluxes = analyser.getFluxes();
+			Assert.assertEquals( Arrays.asList( UPTAKE, CONVERSION, AUTOCATALYSIS, BIOMASS ), new ArrayList<>( fluxes.keySet() ) );
+			Assert.assertEquals( SolveResult.Status.OPTIMAL, analyser.getLastResult().getStatus() );
+
+			// OBJECTIVE_COEFFICIENT of 2 on biomass:
+			Assert.assertEquals( 20, analyser.getObjectiveValue(), EPSILON );
+			Assert.assertEquals( 10, fluxes.get( UPTAKE ).doubleValue(), EPSILON );
+			Assert.assertEquals( 10, fluxes.get( CONVERSION ).doubleValue() + fluxes.get( AUTOCATALYSIS ).doubleValue(), EPSILON );
+			Assert.assertEquals( 10, fluxes.get( BIOMASS ).doubleValue(), EPSILON );
+
+			// Solved again from the previous basis:
+			analyser.setBounds( UPTAKE, 0, 4 );
+			Assert.assertEquals( 4, analyser.getFluxes().get( BIOMASS ).doubleValue(), EPSILON );
+
+			// Infeasible:
+			analyser.setBounds( BIOMASS, 5, 5 );
+			Assert.assertNull( analyser.getFluxes() );
+		}
+	}
+
+	/**
+	 * 
+	 * @return Model
+	 */
+	private static Model createModel()
+	{
+		final SBMLDocument document = new SBMLDocument( 2, 4 );
+		final Model model = document.createModel();
+		final Compartment compartment = model.createCompartment( "c" ); //$NON-NLS-1$
+
+		final Species aExt = createSpecies( model, "M_a_ext", compartment, true ); //$NON-NLS-1$
+		final Species a = createSpecies( model, "M_a", compartment, false ); //$NON-NLS-1$
+		final Species b = createSpecies( model, "M_b", compartment, false ); //$NON-NLS-1$
+		final Species bExt = createSpecies( model, "M_b_ext", compartment, true ); //$NON-NLS-1$
+
+		final Reaction uptake = createReaction( model, UPTAKE, false, new Species[] { aExt }, new Species[] { a } );
+		FluxBoundsGenerater.setLocalParameter( uptake, FluxBoundsGenerater.LOWER_BOUND, 0, null );
+		FluxBoundsGenerater.setLocalParameter( uptake, FluxBoundsGenerater.UPPER_BOUND, 10, null );
+
+		createReaction( model, CONVERSION, true, new Species[] { a }, new Species[] { b } );
+
+		final Reaction autocatalysis = createReaction( model, AUTOCATALYSIS, false, new Species[] { a, b }, new Species[] { b } );
+		autocatalysis.getProduct( 0 ).setStoichiometry( 2 );
+
+		final Reaction biomass = createReaction( model, BIOMASS, false, new Species[] { b }, new Species[] { bExt } );
+		FluxBoundsGenerater.setLocalParameter( biomass, FluxBoundsGenerater.OBJECTIVE_COEFFICIENT, 2, null );
+
+		return model;
+	}
+
+	/**
+	 * 
+	 * @param model
+	 * @param id
+	 * @param compartment
+	 * @param boundaryCondition
+	 * @return Species
+	 */
+	private static Species createSpecies( final Model model, final String id, final Compartment compartment, final boolean boundaryCondition )
+	{
+		final Species species = model.createSpecies( id, compartment );
+		species.setBoundaryCondition( boundaryCondition );
+		return species;
+	}
+
+	/**
+	 * 
+	 * @param model
+	 * @param id
+	 * @param reversible
+	 * @param reactants
+	 * @param products
+	 * @return Reaction
+	 */
+	private static Reaction createReaction( final Model model, final String id, final boolean reversible, final Species[] reactants, final Species[] products )
+	{
+		final Reaction reaction = model.createReaction( id );
+		reaction.setReversible( reversible );
+
+		for( Species reactant : reactants )
+		{
+			reaction.createReactant( reactant ).setStoichiometry( 1 );
+		}
+
+		for( Species product : products )
+		{
+			reaction.createProduct( product ).setStoichiometry( 1 );
+		}
+
+		return reaction;
+	}
+}
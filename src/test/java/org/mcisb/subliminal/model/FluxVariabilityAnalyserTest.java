@@ -0,0 +1,211 @@
+/**
+ * 
+ */
+package org.mcisb.subliminal.model;
+
+import java.beans.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.*;
+import org.mcisb.util.task.*;
+import org.sbml.jsbml.*;
+
+/**
+ * A_ext -> A (bounded 0 to 10), A -> B, B <-> C and C <-> B (an unbounded
+ * cycle) and B -> B_ext (the objective), where A_ext and B_ext are boundary
+ * species.
+ * 
+ * @author Neil Swainston
+ */
+public class FluxVariabilityAnalyserTest
+{
+	/**
+	 * 
+	 */
+	private static final double EPSILON = 1e-6;
+
+	/**
+	 * 
+	 */
+	private static final String UPTAKE = "R_uptake"; //$NON-NLS-1$
+
+	/**
+	 * 
+	 */
+	private static final String CONVERSION = "R_conversion"; //$NON-NLS-1$
+
+	/**
+	 * 
+	 */
+	private static final String CYCLE_1 = "R_cycle_1"; //$NON-NLS-1$
+
+	/**
+	 * 
+	 */
+	private static final String CYCLE_2 = "R_cycle_2"; //$NON-NLS-1$
+
+	/**
+	 * 
+	 */
+	private static final String BIOMASS = "R_biomass"; //$NON-NLS-1$
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void optimal() throws Exception
+	{
+		try( final FluxBalanceAnalyser fluxBalanceAnalyser = new FluxBalanceAnalyser( createModel() ) )
+		{
+			final Map<String,double[]> ranges = new FluxVariabilityAnalyser( fluxBalanceAnalyser ).run();
+			Assert.assertEquals( Arrays.asList( UPTAKE, CONVERSION, CYCLE_1, CYCLE_2, BIOMASS ), new ArrayList<>( ranges.keySet() ) );
+			Assert.assertArrayEquals( new double[] { 10, 10 }, ranges.get( UPTAKE ), EPSILON );
+			Assert.assertArrayEquals( new double[] { 10, 10 }, ranges.get( CONVERSION ), EPSILON );
+			Assert.assertArrayEquals( new double[] { 10, 10 }, ranges.get( BIOMASS ), EPSILON );
+
+			// Unbounded reversible reactions:
+			Assert.assertArrayEquals( new double[] { Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY }, ranges.get( CYCLE_1 ), 0 );
+			Assert.assertArrayEquals( new double[] { Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY }, ranges.get( CYCLE_2 ), 0 );
+		}
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void optimumFraction() throws Exception
+	{
+		try( final FluxBalanceAnalyser fluxBalanceAnalyser = new FluxBalanceAnalyser( createModel() ) )
+		{
+			final FluxVariabilityAnalyser analyser = new FluxVariabilityAnalyser( fluxBalanceAnalyser );
+			analyser.setOptimumFraction( 0.5 );
+
+			final Map<String,double[]> ranges = analyser.run();
+			Assert.assertArrayEquals( new double[] { 5, 10 }, ranges.get( UPTAKE ), EPSILON );
+			Assert.assertArrayEquals( new double[] { 5, 10 }, ranges.get( CONVERSION ), EPSILON );
+			Assert.assertArrayEquals( new double[] { 5, 10 }, ranges.get( BIOMASS ), EPSILON );
+		}
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void partitions() throws Exception
+	{
+		final ExecutorService executorService = Executors.newFixedThreadPool( 2 );
+
+		try( final FluxBalanceAnalyser fluxBalanceAnalyser = new FluxBalanceAnalyser( createModel() ) )
+		{
+			final Map<String,double[]> serial = new FluxVariabilityAnalyser( fluxBalanceAnalyser ).run();
+
+			final FluxVariabilityAnalyser analyser = new FluxVariabilityAnalyser( fluxBalanceAnalyser );
+			analyser.setExecutorService( executorService, 3 );
+
+			final List<Object> progress = Collections.synchronizedList( new ArrayList<>() );
+
+			analyser.addPropertyChangeListener( new PropertyChangeListener()
+			{
+				/*
+				 * (non-Javadoc)
+				 * 
+				 * @see
+				 * java.beans.PropertyChangeListener#propertyChange(java.beans
+				 * .PropertyChangeEvent)
+				 */
+				@Override
+				public void propertyChange( final PropertyChangeEvent event )
+				{
+					if( event.getPropertyName().equals( Task.PROGRESS ) )
+					{
+						progress.add( event.getNewValue() );
+					}
+				}
+			} );
+
+			final Map<String,double[]> ranges = analyser.run();
+			Assert.assertEquals( serial.keySet(), ranges.keySet() );
+
+			for( Map.Entry<String,double[]> entry : serial.entrySet() )
+			{
+				Assert.assertArrayEquals( entry.getValue(), ranges.get( entry.getKey() ), EPSILON );
+			}
+
+			Assert.assertEquals( 5, progress.size() );
+			Assert.assertTrue( progress.contains( Integer.valueOf( 100 ) ) );
+		}
+		finally
+		{
+			executorService.shutdown();
+		}
+	}
+
+	/**
+	 * 
+	 * @return Model
+	 */
+	private static Model createModel()
+	{
+		final SBMLDocument document = new SBMLDocument( 2, 4 );
+		final Model model = document.createModel();
+		final Compartment compartment = model.createCompartment( "c" ); //$NON-NLS-1$
+
+		final Species aExt = createSpecies( model, "M_a_ext", compartment, true ); //$NON-NLS-1$
+		final Species a = createSpecies( model, "M_a", compartment, false ); //$NON-NLS-1$
+		final Species b = createSpecies( model, "M_b", compartment, false ); //$NON-NLS-1$
+		final Species c = createSpecies( model, "M_c", compartment, false ); //$NON-NLS-1$
+		final Species bExt = createSpecies( model, "M_b_ext", compartment, true ); //$NON-NLS-1$
+
+		final Reaction uptake = createReaction( model, UPTAKE, false, aExt, a );
+		FluxBoundsGenerater.setLocalParameter( uptake, FluxBoundsGenerater.LOWER_BOUND, 0, null );
+		FluxBoundsGenerater.setLocalParameter( uptake, FluxBoundsGenerater.UPPER_BOUND, 10, null );
+
+		createReaction( model, CONVERSION, false, a, b );
+		createReaction( model, CYCLE_1, true, b, c );
+		createReaction( model, CYCLE_2, true, c, b );
+
+		final Reaction biomass = createReaction( model, BIOMASS, false, b, bExt );
+		FluxBoundsGenerater.setLocalParameter( biomass, FluxBoundsGenerater.OBJECTIVE_COEFFICIENT, 1, null );
+
+		return model;
+	}
+
+	/**
+	 * 
+	 * @param model
+	 * @param id
+	 * @param compartment
+	 * @param boundaryCondition
+	 * @return Species
+	 */
+	private static Species createSpecies( final Model model, final String id, final Compartment compartment, final boolean boundaryCondition )
+	{
+		final Species species = model.createSpecies( id, compartment );
+		species.setBoundaryCondition( boundaryCondition );
+		return species;
+	}
+
+	/**
+	 * 
+	 * @param model
+	 * @param id
+	 * @param reversible
+	 * @param reactant
+	 * @param product
+	 * @return Reaction
+	 */
+	private static Reaction createReaction( final Model model, final String id, final boolean reversible, final Species reactant, final Species product )
+	{
+		final Reaction reaction = model.createReaction( id );
+		reaction.setReversible( reversible );
+		reaction.createReactant( reactant ).setStoichiometry( 1 );
+		reaction.createProduct( product ).setStoichiometry( 1 );
+		return reaction;
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * 
+ */
+package org.mcisb.subliminal.sbml;
+
+import org.junit.*;
+import org.mcisb.sbml.*;
+import org.sbml.jsbml.*;
+
+/**
+ * @author Neil Swainston
+ */
+public class FormulaCacheTest
+{
+	/**
+	 * 
+	 */
+	private static final String GLUCOSE = "C6H12O6"; //$NON-NLS-1$
+
+	/**
+	 * 
+	 */
+	private static final String DEPROTONATED_GLUCOSE = "C6H11O6"; //$NON-NLS-1$
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void setFormula() throws Exception
+	{
+		final Species species = createSpecies();
+		final FormulaCache formulaCache = new FormulaCache( species.getModel() );
+		Assert.assertEquals( GLUCOSE, formulaCache.getFormulaString( species ) );
+		Assert.assertEquals( 0, formulaCache.getCharge( species ) );
+
+		FormulaCache.setFormula( species, DEPROTONATED_GLUCOSE );
+		FormulaCache.setCharge( species, -1 );
+		Assert.assertEquals( DEPROTONATED_GLUCOSE, formulaCache.getFormulaString( species ) );
+		Assert.assertEquals( -1, formulaCache.getCharge( species ) );
+
+		FormulaCache.set( species, SbmlUtils.FORMULA, GLUCOSE );
+		Assert.assertEquals( GLUCOSE, formulaCache.getFormulaString( species ) );
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void otherCaches() throws Exception
+	{
+		final Species species = createSpecies();
+		final Species otherSpecies = createSpecies();
+		final FormulaCache formulaCache = new FormulaCache( species.getModel() );
+		final FormulaCache sameModelCache = new FormulaCache( species.getModel() );
+		final FormulaCache otherModelCache = new FormulaCache( otherSpecies.getModel() );
+		Assert.assertEquals( GLUCOSE, formulaCache.getFormulaString( species ) );
+		Assert.assertEquals( GLUCOSE, sameModelCache.getFormulaString( species ) );
+		Assert.assertEquals( GLUCOSE, otherModelCache.getFormulaString( otherSpecies ) );
+
+		FormulaCache.setFormula( species, DEPROTONATED_GLUCOSE );
+		Assert.assertEquals( DEPROTONATED_GLUCOSE, formulaCache.getFormulaString( species ) );
+		Assert.assertEquals( DEPROTONATED_GLUCOSE, sameModelCache.getFormulaString( species ) );
+
+		// Species of the same id in another model:
+		Assert.assertEquals( GLUCOSE, otherModelCache.getFormulaString( otherSpecies ) );
+	}
+
+	/**
+	 * 
+	 * @return Species
+	 * @throws Exception
+	 */
+	private static Species createSpecies() throws Exception
+	{
+		final SBMLDocument document = new SBMLDocument( 2, 4 );
+		final Model model = document.createModel();
+		final Species species = model.createSpecies( "M_glc", model.createCompartment( "c" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		SbmlUtils.setFormula( species, GLUCOSE );
+		SbmlUtils.setCharge( species, 0 );
+		return species;
+	}
+}
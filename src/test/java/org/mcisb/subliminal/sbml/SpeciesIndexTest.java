@@ -0,0 +1,46 @@
+/**
+ * 
+ */
+package org.mcisb.subliminal.sbml;
+
+import org.junit.*;
+import org.mcisb.ontology.sbo.*;
+import org.mcisb.sbml.*;
+import org.sbml.jsbml.*;
+
+/**
+ * @author Neil Swainston
+ */
+public class SpeciesIndexTest
+{
+	/**
+	 * 
+	 */
+	private static final String COMPARTMENT = "c"; //$NON-NLS-1$
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void setFormula() throws Exception
+	{
+		final SBMLDocument document = new SBMLDocument( 2, 4 );
+		final Model model = document.createModel();
+		final Species species = model.createSpecies( "M_glc", model.createCompartment( COMPARTMENT ) ); //$NON-NLS-1$
+		species.setSBOTerm( SboUtils.SIMPLE_CHEMICAL );
+		SbmlUtils.setFormula( species, "C6H12O6" ); //$NON-NLS-1$
+		SbmlUtils.setCharge( species, 0 );
+
+		final SpeciesIndex speciesIndex = new SpeciesIndex( new FormulaCache( model ) );
+		Assert.assertEquals( species.getId(), speciesIndex.getSpeciesId( null, "C6H12O6", 0, COMPARTMENT ) ); //$NON-NLS-1$
+		Assert.assertNull( speciesIndex.getSpeciesId( null, "C6H11O6", -1, COMPARTMENT ) ); //$NON-NLS-1$
+
+		// Same number of species, but a changed formula and charge:
+		FormulaCache.setFormula( species, "C6H11O6" ); //$NON-NLS-1$
+		FormulaCache.setCharge( species, -1 );
+		Assert.assertNull( speciesIndex.getSpeciesId( null, "C6H12O6", 0, COMPARTMENT ) ); //$NON-NLS-1$
+		Assert.assertEquals( species.getId(), speciesIndex.getSpeciesId( null, "C6H11O6", -1, COMPARTMENT ) ); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * 
+ */
+package org.mcisb.subliminal.shorthand;
+
+import java.util.*;
+import org.junit.*;
+import org.mcisb.sbml.*;
+import org.mcisb.subliminal.balance.*;
+import org.sbml.jsbml.*;
+
+/**
+ * @author Neil Swainston
+ */
+public class SbmlDeleterTest
+{
+	/**
+	 * 
+	 */
+	private static final int MAX_STOICHIOMETRIC_COEFFICIENT = 8;
+
+	/**
+	 * 
+	 */
+	private static final String RESOURCE = "org/mcisb/subliminal/balance/balance.xml"; //$NON-NLS-1$
+
+	/**
+	 * Checks that the incremental clean deletes the same species and
+	 * reactions, and leaves the same reactions balanced and unbalanced, as the
+	 * full clean.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void cleanIncremental() throws Exception
+	{
+		final SBMLDocument fullDocument = SBMLReader.read( getClass().getClassLoader().getResourceAsStream( RESOURCE ) );
+		final SBMLDocument incrementalDocument = SBMLReader.read( getClass().getClassLoader().getResourceAsStream( RESOURCE ) );
+		final Set<String> speciesIds = getSpeciesIds( fullDocument.getModel() );
+		final Set<String> reactionIds = getReactionIds( fullDocument.getModel() );
+
+		SbmlDeleter.clean( fullDocument, MAX_STOICHIOMETRIC_COEFFICIENT, false );
+		SbmlDeleter.clean( incrementalDocument, MAX_STOICHIOMETRIC_COEFFICIENT, true );
+
+		final Model fullModel = fullDocument.getModel();
+		final Model incrementalModel = incrementalDocument.getModel();
+
+		// Same deletions:
+		Assert.assertEquals( getDeleted( speciesIds, getSpeciesIds( fullModel ) ), getDeleted( speciesIds, getSpeciesIds( incrementalModel ) ) );
+		Assert.assertEquals( getDeleted( reactionIds, getReactionIds( fullModel ) ), getDeleted( reactionIds, getReactionIds( incrementalModel ) ) );
+
+		// Same balanced reactions:
+		for( Reaction reaction : fullModel.getListOfReactions() )
+		{
+			final String reactionId = reaction.getId();
+			Assert.assertEquals( SbmlUtils.toString( fullModel, reactionId, false ), SbmlUtils.toString( incrementalModel, reactionId, false ) );
+			Assert.assertEquals( SbmlUtils.toFormulaString( fullModel, reactionId ), SbmlUtils.toFormulaString( incrementalModel, reactionId ) );
+		}
+
+		// Same unbalanced reactions, which a further balancing leaves unchanged:
+		final SbmlReactionBalancerTask fullTask = new SbmlReactionBalancerTask( fullDocument, null, MAX_STOICHIOMETRIC_COEFFICIENT );
+		fullTask.run();
+		final SbmlReactionBalancerTask incrementalTask = new SbmlReactionBalancerTask( incrementalDocument, null, MAX_STOICHIOMETRIC_COEFFICIENT );
+		incrementalTask.run();
+
+		Assert.assertEquals( fullTask.getUnbalancedReactions().keySet(), incrementalTask.getUnbalancedReactions().keySet() );
+		Assert.assertEquals( fullTask.getProblematicMetaboliteDegree(), incrementalTask.getProblematicMetaboliteDegree() );
+	}
+
+	/**
+	 * 
+	 * @param ids
+	 * @param remainingIds
+	 * @return ids not remaining
+	 */
+	private static Set<String> getDeleted( final Set<String> ids, final Set<String> remainingIds )
+	{
+		final Set<String> deletedIds = new TreeSet<>( ids );
+		deletedIds.removeAll( remainingIds );
+		return deletedIds;
+	}
+
+	/**
+	 * 
+	 * @param model
+	 * @return Set<String>
+	 */
+	private static Set<String> getSpeciesIds( final Model model )
+	{
+		final Set<String> speciesIds = new TreeSet<>();
+
+		for( Species species : model.getListOfSpecies() )
+		{
+			speciesIds.add( species.getId() );
+		}
+
+		return speciesIds;
+	}
+
+	/**
+	 * 
+	 * @param model
+	 * @return Set<String>
+	 */
+	private static Set<String> getReactionIds( final Model model )
+	{
+		final Set<String> reactionIds = new TreeSet<>();
+
+		for( Reaction reaction : model.getListOfReactions() )
+		{
+			reactionIds.add( reaction.getId() );
+		}
+
+		return reactionIds;
+	}
+}
@@ -71,6 +71,56 @@ public class AbstractLinearProgrammingSolverTest
 		solveRandom( new MixedIntegerLinearProgrammingSolver( TIMEOUT, OUTPUT ) );
 	}
 
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void solveSparseMixedIntegerLinearProgram() // throws Exception
+	{
+		final AbstractLinearProgrammingSolver solver = new MixedIntegerLinearProgrammingSolver( TIMEOUT, OUTPUT );
+		final double[][] matrix = new double[][] { { 1, -1, 0, 0, 0, 0 }, { 0, 0, 1, 0, 0, -1 }, { 0, 0, 0, 2, -1, 0 } };
+		final String[] columnIds = new String[] { "A", "B", "C", "D", "E", "F" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+		final double[] rowBounds = new double[ matrix.length ];
+		final double[] lowerBounds = new double[] { 1, 0, 2, 1, 0, 0 };
+		final double[] upperBounds = new double[] { 10, 10, 10, 10, 10, 10 };
+		final double[] objectiveCoefficients = new double[ columnIds.length ];
+		Arrays.fill( objectiveCoefficients, 1 );
+
+		final SparseMatrix sparseMatrix = new SparseMatrix( matrix.length, columnIds.length );
+		sparseMatrix.set( 0, 0, 1 );
+		sparseMatrix.set( 0, 1, -1 );
+		sparseMatrix.set( 1, 2, 1 );
+		sparseMatrix.set( 1, 5, -1 );
+		sparseMatrix.set( 2, 3, 2 );
+		sparseMatrix.set( 2, 4, -1 );
+		Assert.assertEquals( 6, sparseMatrix.getNonZeroCount() );
+
+		final double[] solution = solver.solve( sparseMatrix, columnIds, rowBounds, lowerBounds, upperBounds, objectiveCoefficients );
+		Assert.assertTrue( Arrays.equals( new double[] { 1, 1, 2, 1, 2, 2 }, solution ) );
+		Assert.assertTrue( Arrays.equals( solution, solver.solve( matrix, columnIds, rowBounds, lowerBounds, upperBounds, objectiveCoefficients ) ) );
+	}
+
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test(expected = IllegalStateException.class)
+	public void reuseAndClose() // throws Exception
+	{
+		final AbstractLinearProgrammingSolver solver = new MixedIntegerLinearProgrammingSolver( TIMEOUT, OUTPUT );
+
+		try( final AbstractLinearProgrammingSolver session = solver )
+		{
+			// Grow the buffers, and reuse them for a smaller problem:
+			solve( session );
+			solveRandom( session );
+			solve( session );
+		}
+
+		solve( solver );
+	}
+
 	/**
 	 * 
 	 */
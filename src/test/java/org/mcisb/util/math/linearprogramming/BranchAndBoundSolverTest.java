@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.util.math.linearprogramming;
+
+import java.util.*;
+import org.gnu.glpk.*;
+import org.junit.*;
+import org.mcisb.math.linearprogramming.*;
+
+/**
+ * 
+ * @author Neil Swainston
+ */
+public class BranchAndBoundSolverTest
+{
+	/**
+	 * 
+	 */
+	private static final int TIMEOUT = 1000;
+
+	/**
+	 * 
+	 */
+	private static final int PROBLEMS = 200;
+
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void solve() // throws Exception
+	{
+		final double[][] matrix = new double[][] { { 1, -1, 0, 0, 0, 0 }, { 0, 0, 1, 0, 0, -1 }, { 0, 0, 0, 2, -1, 0 } };
+		final String[] columnIds = new String[] { "A", "B", "C", "D", "E", "F" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+		final double[] lowerBounds = new double[] { 1, 0, 2, 1, 0, 0 };
+		final double[] upperBounds = new double[] { 10, 10, 10, 10, 10, 10 };
+		final double[] objectiveCoefficients = new double[ columnIds.length ];
+		Arrays.fill( objectiveCoefficients, 1 );
+
+		try( final Solver solver = new BranchAndBoundSolver( GLPKConstants.GLP_IV ) )
+		{
+			final double[] solution = solver.solve( new SparseMatrix( matrix, columnIds.length ), columnIds, new double[ matrix.length ], lowerBounds, upperBounds, objectiveCoefficients );
+			Assert.assertTrue( Arrays.equals( new double[] { 1, 1, 2, 1, 2, 2 }, solution ) );
+		}
+	}
+
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void infeasible() // throws Exception
+	{
+		// 2A = 3B has no solution with A and B integers in [1, 2]:
+		final double[][] matrix = new double[][] { { 2, -3 } };
+		final String[] columnIds = new String[] { "A", "B" }; //$NON-NLS-1$ //$NON-NLS-2$
+
+		try( final BranchAndBoundSolver solver = new BranchAndBoundSolver( GLPKConstants.GLP_IV ) )
+		{
+			Assert.assertNull( solver.solve( new SparseMatrix( matrix, columnIds.length ), columnIds, new double[ 1 ], new double[] { 1, 1 }, new double[] { 2, 2 }, new double[] { 1, 1 } ) );
+			Assert.assertFalse( solver.isLimitReached() );
+		}
+	}
+
+	/**
+	 * A = 1, with A at most 1 - 1e-6, which is within the simplex's tolerances
+	 * of feasible, so is neither solved nor proven infeasible, and is passed to
+	 * the other backend.
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void numerical() // throws Exception
+	{
+		final SparseMatrix matrix = new SparseMatrix( new double[][] { { 1 } }, 1 );
+		final String[] columnIds = new String[] { "A" }; //$NON-NLS-1$
+		final int[] columnKinds = new int[] { GLPKConstants.GLP_CV };
+		final double[] upperBounds = new double[] { 1 - 1e-6 };
+
+		try( final BranchAndBoundSolver solver = new BranchAndBoundSolver( GLPKConstants.GLP_IV ) )
+		{
+			Assert.assertNull( solver.solve( matrix, columnIds, columnKinds, new double[] { 1 }, new double[] { 0 }, upperBounds, new double[] { 1 } ) );
+			Assert.assertEquals( SolveResult.Status.FAILED, solver.getLastResult().getStatus() );
+			Assert.assertTrue( solver.isLimitReached() );
+		}
+
+		final BranchAndBoundSolver smallSolver = new BranchAndBoundSolver( GLPKConstants.GLP_IV );
+
+		try( final Solver solver = new SelectingSolver( smallSolver, new MixedIntegerLinearProgrammingSolver( TIMEOUT, false ), Integer.MAX_VALUE ) )
+		{
+			solver.solve( matrix, columnIds, columnKinds, new double[] { 1 }, new double[] { 0 }, upperBounds, new double[] { 1 } );
+			Assert.assertTrue( smallSolver.isLimitReached() );
+			Assert.assertNotSame( smallSolver.getLastResult(), solver.getLastResult() );
+			Assert.assertFalse( solver.getLastResult().getStatus() == SolveResult.Status.FAILED );
+		}
+	}
+
+	/**
+	 * Checks that random balancing problems have the same optimum as with
+	 * MixedIntegerLinearProgrammingSolver.
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void compare() // throws Exception
+	{
+		final Random random = new Random( 0 );
+
+		try( final Solver solver = new BranchAndBoundSolver( GLPKConstants.GLP_IV ); final Solver milpSolver = new MixedIntegerLinearProgrammingSolver( TIMEOUT, false ) )
+		{
+			for( int i = 0; i < PROBLEMS; i++ )
+			{
+				final Object[] problem = SolverPoolTest.getProblem( random );
+				final double[] solution = SolverPoolTest.solve( solver, problem );
+				final double[] milpSolution = SolverPoolTest.solve( milpSolver, problem );
+				Assert.assertEquals( milpSolution == null, solution == null );
+
+				if( solution != null )
+				{
+					final double[] objectiveCoefficients = (double[])problem[ 5 ];
+					Assert.assertEquals( getObjective( objectiveCoefficients, milpSolution ), getObjective( objectiveCoefficients, solution ), 1e-9 );
+				}
+			}
+		}
+	}
+
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void select() // throws Exception
+	{
+		final double[][] matrix = new double[][] { { 2, -1 } };
+		final String[] columnIds = new String[] { "A", "B" }; //$NON-NLS-1$ //$NON-NLS-2$
+		final int[] columnKinds = new int[] { GLPKConstants.GLP_IV, GLPKConstants.GLP_CV };
+
+		// A node limit of 0 forces the fall back:
+		for( int maxNodes : new int[] { 0, BranchAndBoundSolver.DEFAULT_MAX_NODES } )
+		{
+			try( final Solver solver = new SelectingSolver( new BranchAndBoundSolver( GLPKConstants.GLP_IV, maxNodes ), new MixedIntegerLinearProgrammingSolver( TIMEOUT, false ), 1 ) )
+			{
+				final double[] solution = solver.solve( new SparseMatrix( matrix, columnIds.length ), columnIds, columnKinds, new double[ 1 ], new double[] { 1, 0 }, new double[] { 4, 8 }, new double[] { 1, 0 } );
+				Assert.assertTrue( Arrays.equals( new double[] { 1, 2 }, solution ) );
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param objectiveCoefficients
+	 * @param solution
+	 * @return double
+	 */
+	private static double getObjective( final double[] objectiveCoefficients, final double[] solution )
+	{
+		double objective = 0;
+
+		for( int j = 0; j < objectiveCoefficients.length; j++ )
+		{
+			objective += objectiveCoefficients[ j ] * solution[ j ];
+		}
+
+		return objective;
+	}
+}
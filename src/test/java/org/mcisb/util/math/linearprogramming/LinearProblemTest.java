@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.util.math.linearprogramming;
+
+import java.util.*;
+import org.junit.*;
+import org.mcisb.math.linearprogramming.*;
+
+/**
+ * 
+ * @author Neil Swainston
+ */
+public class LinearProblemTest
+{
+	/**
+	 * 
+	 */
+	private static final int TIMEOUT = 200;
+
+	/**
+	 * 
+	 */
+	private static final boolean OUTPUT = false;
+
+	/**
+	 * 
+	 */
+	private static final double[][] MATRIX = new double[][] { { 1, -1, 0, 0, 0, 0 }, { 0, 0, 1, 0, 0, -1 }, { 0, 0, 0, 2, -1, 0 } };
+
+	/**
+	 * 
+	 */
+	private static final String[] COLUMN_IDS = new String[] { "A", "B", "C", "D", "E", "F" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void resolve() // throws Exception
+	{
+		try( final AbstractLinearProgrammingSolver solver = new LinearProgrammingSolver( TIMEOUT, OUTPUT ) )
+		{
+			final double[] rowBounds = new double[ MATRIX.length ];
+			final double[] lowerBounds = new double[] { 1, 0, 2, 1, 0, 0 };
+			final double[] upperBounds = new double[] { 10, 10, 10, 10, 10, 10 };
+			final double[] objectiveCoefficients = new double[ COLUMN_IDS.length ];
+			Arrays.fill( objectiveCoefficients, 1 );
+
+			try( final LinearProblem problem = solver.createProblem( new SparseMatrix( MATRIX, COLUMN_IDS.length ), COLUMN_IDS, rowBounds, lowerBounds, upperBounds, objectiveCoefficients ) )
+			{
+				Assert.assertEquals( 3, problem.getRowCount() );
+				Assert.assertEquals( 6, problem.getColumnCount() );
+				Assert.assertArrayEquals( new double[] { 1, 1, 2, 1, 2, 2 }, problem.solve(), 1e-9 );
+				Assert.assertEquals( 9, problem.getObjectiveValue(), 1e-9 );
+
+				// Tighten a bound:
+				problem.setColumnBounds( 0, 3, 10 );
+				lowerBounds[ 0 ] = 3;
+				Assert.assertArrayEquals( solver.solve( MATRIX, COLUMN_IDS, rowBounds, lowerBounds, upperBounds, objectiveCoefficients ), problem.solve(), 1e-9 );
+
+				// Change the objective and maximise:
+				problem.setObjectiveCoefficients( new double[] { 1, 1, 1, 1, 1, 1 } );
+				problem.setObjectiveCoefficient( 5, 0 );
+				problem.setMaximise( true );
+				Assert.assertArrayEquals( new double[] { 10, 10, 10, 5, 10, 10 }, problem.solve(), 1e-9 );
+				Assert.assertEquals( 45, problem.getObjectiveValue(), 1e-9 );
+
+				// Unbounded below, fixed row:
+				problem.setMaximise( false );
+				problem.setColumnBounds( 3, Double.NEGATIVE_INFINITY, 4 );
+				problem.setRowBounds( 2, -4, -4 );
+				problem.setColumnBounds( 4, 0, 0 );
+				final double[] solution = problem.solve();
+				Assert.assertEquals( -2, solution[ 3 ], 1e-9 );
+			}
+		}
+	}
+
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void infiniteBounds() // throws Exception
+	{
+		// Uptake -> A <-> B -> biomass:
+		final double[][] matrix = new double[][] { { 1, -1, 0 }, { 0, 1, -1 } };
+		final String[] columnIds = new String[] { "uptake", "reversible", "biomass" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		final double[] lowerBounds = new double[] { 0, Double.NEGATIVE_INFINITY, 0 };
+		final double[] upperBounds = new double[] { 10, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+
+		try( final AbstractLinearProgrammingSolver solver = new LinearProgrammingSolver( TIMEOUT, OUTPUT ); final LinearProblem problem = solver.createProblem( new SparseMatrix( matrix, columnIds.length ), columnIds, new double[ matrix.length ], lowerBounds, upperBounds, new double[] { 0, 0, 1 } ) )
+		{
+			problem.setMaximise( true );
+			Assert.assertArrayEquals( new double[] { 10, 10, 10 }, problem.solve(), 1e-9 );
+			Assert.assertEquals( 10, problem.getObjectiveValue(), 1e-9 );
+
+			// Fix uptake:
+			problem.setColumnBounds( 0, 4, 4 );
+			Assert.assertArrayEquals( new double[] { 4, 4, 4 }, problem.solve(), 1e-9 );
+		}
+	}
+
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test(expected = IllegalStateException.class)
+	public void closeSolver() // throws Exception
+	{
+		final AbstractLinearProgrammingSolver solver = new LinearProgrammingSolver( TIMEOUT, OUTPUT );
+		final double[] bounds = new double[ COLUMN_IDS.length ];
+		final LinearProblem problem = solver.createProblem( new SparseMatrix( MATRIX, COLUMN_IDS.length ), COLUMN_IDS, new double[ MATRIX.length ], bounds, bounds, bounds );
+		solver.close();
+		problem.solve();
+	}
+}
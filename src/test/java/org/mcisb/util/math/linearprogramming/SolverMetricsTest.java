@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.util.math.linearprogramming;
+
+import org.gnu.glpk.*;
+import org.junit.*;
+import org.mcisb.math.linearprogramming.*;
+
+/**
+ * 
+ * @author Neil Swainston
+ */
+public class SolverMetricsTest
+{
+	/**
+	 * 
+	 */
+	private static final int TIMEOUT = 1000;
+
+	/**
+	 * 
+	 */
+	private static final double[][] MATRIX = new double[][] { { 2, -3 } };
+
+	/**
+	 * 
+	 */
+	private static final String[] COLUMN_IDS = new String[] { "A", "B" }; //$NON-NLS-1$ //$NON-NLS-2$
+
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void record() // throws Exception
+	{
+		final SolverMetrics metrics = SolverMetrics.getInstance();
+
+		try( final Solver javaSolver = new BranchAndBoundSolver( GLPKConstants.GLP_IV ); final Solver milpSolver = new MixedIntegerLinearProgrammingSolver( TIMEOUT, false ) )
+		{
+			for( Solver solver : new Solver[] { javaSolver, milpSolver } )
+			{
+				final String backend = solver.getClass().getSimpleName();
+				final long optimal = metrics.getCount( backend, SolveResult.Status.OPTIMAL );
+				final long infeasible = metrics.getCount( backend, SolveResult.Status.INFEASIBLE );
+
+				// 2A = 3B is solved by A = 3, B = 2 within [1, 3], but not within [1, 2]:
+				Assert.assertNotNull( solve( solver, 3 ) );
+				final SolveResult result = solver.getLastResult();
+				Assert.assertEquals( SolveResult.Status.OPTIMAL, result.getStatus() );
+				Assert.assertEquals( 5, result.getObjective(), 1e-9 );
+				Assert.assertTrue( result.getNanos() > 0 );
+				Assert.assertTrue( metrics.getMaxNanos( backend, SolveResult.Status.OPTIMAL ) >= result.getNanos() );
+
+				Assert.assertNull( solve( solver, 2 ) );
+				Assert.assertEquals( SolveResult.Status.INFEASIBLE, solver.getLastResult().getStatus() );
+				Assert.assertTrue( Double.isNaN( solver.getLastResult().getObjective() ) );
+
+				Assert.assertEquals( optimal + 1, metrics.getCount( backend, SolveResult.Status.OPTIMAL ) );
+				Assert.assertEquals( infeasible + 1, metrics.getCount( backend, SolveResult.Status.INFEASIBLE ) );
+				Assert.assertTrue( metrics.toString().contains( backend + "\tOPTIMAL\t" ) ); //$NON-NLS-1$
+			}
+
+			Assert.assertTrue( javaSolver.getLastResult().getNodes() > 0 );
+			Assert.assertEquals( SolveResult.UNKNOWN, milpSolver.getLastResult().getNodes() );
+		}
+	}
+
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void nodeLimit() // throws Exception
+	{
+		try( final BranchAndBoundSolver solver = new BranchAndBoundSolver( GLPKConstants.GLP_IV, 0 ) )
+		{
+			Assert.assertNull( solve( solver, 3 ) );
+			Assert.assertEquals( SolveResult.Status.NODE_LIMIT, solver.getLastResult().getStatus() );
+			Assert.assertTrue( solver.isLimitReached() );
+		}
+	}
+
+	/**
+	 * 
+	 * @param solver
+	 * @param upperBound
+	 * @return double[]
+	 */
+	private static double[] solve( final Solver solver, final double upperBound )
+	{
+		return solver.solve( new SparseMatrix( MATRIX, COLUMN_IDS.length ), COLUMN_IDS, new double[ 1 ], new double[] { 1, 1 }, new double[] { upperBound, upperBound }, new double[] { 1, 1 } );
+	}
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.util.math.linearprogramming;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.*;
+import org.mcisb.math.linearprogramming.*;
+
+/**
+ * 
+ * @author Neil Swainston
+ */
+public class SolverPoolTest
+{
+	/**
+	 * 
+	 */
+	private static final int TIMEOUT = 1000;
+
+	/**
+	 * 
+	 */
+	private static final int PROBLEMS = 400;
+
+	/**
+	 * 
+	 */
+	private static final int THREADS = 8;
+
+	/**
+	 * 
+	 */
+	private static final int MAX_STOICHIOMETRIC_COEFFICIENT = 8;
+
+	/**
+	 * Solves many small balancing problems concurrently, one solver per
+	 * thread, and checks that every result is identical to the serial path.
+	 * 
+	 * @throws Exception
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void stress() throws Exception
+	{
+		final List<Object[]> problems = new ArrayList<>();
+		final Random random = new Random( 0 );
+
+		for( int i = 0; i < PROBLEMS; i++ )
+		{
+			problems.add( getProblem( random ) );
+		}
+
+		final List<double[]> serialSolutions = new ArrayList<>();
+
+		try( final AbstractLinearProgrammingSolver solver = new MixedIntegerLinearProgrammingSolver( TIMEOUT, false ) )
+		{
+			for( Object[] problem : problems )
+			{
+				serialSolutions.add( solve( solver, problem ) );
+			}
+		}
+
+		final Set<Solver> threadSolvers = Collections.newSetFromMap( new ConcurrentHashMap<Solver,Boolean>() );
+		final ExecutorService executorService = Executors.newFixedThreadPool( THREADS );
+
+		try( final SolverPool solvers = new SolverPool()
+		{
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see org.mcisb.math.linearprogramming.SolverPool#newSolver()
+			 */
+			@Override
+			protected AbstractLinearProgrammingSolver newSolver()
+			{
+				return new MixedIntegerLinearProgrammingSolver( TIMEOUT, false );
+			}
+		} )
+		{
+			final List<Future<double[]>> futures = new ArrayList<>();
+
+			for( final Object[] problem : problems )
+			{
+				futures.add( executorService.submit( new Callable<double[]>()
+				{
+					/*
+					 * (non-Javadoc)
+					 * 
+					 * @see java.util.concurrent.Callable#call()
+					 */
+					@Override
+					public double[] call()
+					{
+						final Solver solver = solvers.get();
+						threadSolvers.add( solver );
+						return solve( solver, problem );
+					}
+				} ) );
+			}
+
+			for( int i = 0; i < problems.size(); i++ )
+			{
+				Assert.assertTrue( Arrays.equals( serialSolutions.get( i ), futures.get( i ).get() ) );
+			}
+		}
+		finally
+		{
+			executorService.shutdown();
+		}
+
+		Assert.assertTrue( threadSolvers.size() <= THREADS );
+	}
+
+	/**
+	 * Checks that release does not create a solver for a thread without one,
+	 * including once the pool is closed.
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void release() // throws Exception
+	{
+		final List<Solver> newSolvers = new ArrayList<>();
+
+		final SolverPool solvers = new SolverPool()
+		{
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see org.mcisb.math.linearprogramming.SolverPool#newSolver()
+			 */
+			@Override
+			protected AbstractLinearProgrammingSolver newSolver()
+			{
+				final AbstractLinearProgrammingSolver solver = new MixedIntegerLinearProgrammingSolver( TIMEOUT, false );
+				newSolvers.add( solver );
+				return solver;
+			}
+		};
+
+		solvers.release();
+		Assert.assertTrue( newSolvers.isEmpty() );
+
+		final Solver solver = solvers.get();
+		Assert.assertSame( solver, solvers.get() );
+		solvers.release();
+		Assert.assertEquals( 1, newSolvers.size() );
+
+		// A released solver is closed, and replaced on the next get:
+		Assert.assertNotSame( solver, solvers.get() );
+		Assert.assertEquals( 2, newSolvers.size() );
+
+		solvers.close();
+		solvers.release();
+		solvers.release();
+		Assert.assertEquals( 2, newSolvers.size() );
+	}
+
+	/**
+	 * 
+	 * @param solver
+	 * @param problem
+	 * @return double[]
+	 */
+	static double[] solve( final Solver solver, final Object[] problem )
+	{
+		return solver.solve( (SparseMatrix)problem[ 0 ], (String[])problem[ 1 ], (double[])problem[ 2 ], (double[])problem[ 3 ], (double[])problem[ 4 ], (double[])problem[ 5 ] );
+	}
+
+	/**
+	 * Returns a random reaction balancing problem: element (row) by participant
+	 * (column) counts, reactants positive and products negative, with
+	 * stoichiometries between 1 and MAX_STOICHIOMETRIC_COEFFICIENT.
+	 * 
+	 * @param random
+	 * @return Object[] of matrix, column ids, row bounds, lower bounds, upper
+	 *         bounds and objective coefficients
+	 */
+	static Object[] getProblem( final Random random )
+	{
+		final int elements = 2 + random.nextInt( 3 );
+		final int participants = 2 + random.nextInt( 4 );
+		final SparseMatrix matrix = new SparseMatrix( elements, participants );
+		final String[] columnIds = new String[ participants ];
+		final double[] lowerBounds = new double[ participants ];
+		final double[] upperBounds = new double[ participants ];
+		final double[] objectiveCoefficients = new double[ participants ];
+
+		for( int j = 0; j < participants; j++ )
+		{
+			final int sign = j < participants / 2 ? 1 : -1;
+
+			for( int i = 0; i < elements; i++ )
+			{
+				matrix.set( i, j, sign * random.nextInt( 4 ) );
+			}
+
+			columnIds[ j ] = "M" + j; //$NON-NLS-1$
+			lowerBounds[ j ] = 1;
+			upperBounds[ j ] = MAX_STOICHIOMETRIC_COEFFICIENT;
+			objectiveCoefficients[ j ] = 1;
+		}
+
+		return new Object[] { matrix, columnIds, new double[ elements ], lowerBounds, upperBounds, objectiveCoefficients };
+	}
+}
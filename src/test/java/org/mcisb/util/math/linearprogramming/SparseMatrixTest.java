@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Manchester Centre for Integrative Systems Biology
+ * University of Manchester
+ * Manchester M1 7ND
+ * United Kingdom
+ * 
+ * Copyright (C) 2008 University of Manchester
+ * 
+ * This program is released under the Academic Free License ("AFL") v3.0.
+ * (http://www.opensource.org/licenses/academic.php)
+ *******************************************************************************/
+package org.mcisb.util.math.linearprogramming;
+
+import org.junit.*;
+import org.mcisb.math.linearprogramming.*;
+
+/**
+ * 
+ * @author Neil Swainston
+ */
+public class SparseMatrixTest
+{
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void set() // throws Exception
+	{
+		final SparseMatrix matrix = new SparseMatrix( new double[][] { { 1, 0, -1 }, { 0, 2 } }, 3 );
+		Assert.assertEquals( 3, matrix.getNonZeroCount() );
+
+		// Zero values are ignored, even for elements already set:
+		matrix.set( 0, 1, 0 );
+		matrix.set( 0, 0, 0 );
+		Assert.assertEquals( 3, matrix.getNonZeroCount() );
+
+		matrix.set( 1, 0, 3 );
+		Assert.assertEquals( 4, matrix.getNonZeroCount() );
+		Assert.assertEquals( 1, matrix.getRow( 3 ) );
+		Assert.assertEquals( 0, matrix.getColumn( 3 ) );
+		Assert.assertEquals( 3, matrix.getValue( 3 ), 0 );
+	}
+
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void copy() // throws Exception
+	{
+		final SparseMatrix matrix = new SparseMatrix( new double[][] { { 1, 0, -1 }, { 0, 2 } }, 3 );
+		final SparseMatrix copy = new SparseMatrix( matrix, 3, 4 );
+		Assert.assertEquals( 3, copy.getRowCount() );
+		Assert.assertEquals( 4, copy.getColumnCount() );
+		Assert.assertEquals( 3, copy.getNonZeroCount() );
+
+		for( int k = 0; k < matrix.getNonZeroCount(); k++ )
+		{
+			Assert.assertEquals( matrix.getRow( k ), copy.getRow( k ) );
+			Assert.assertEquals( matrix.getColumn( k ), copy.getColumn( k ) );
+			Assert.assertEquals( matrix.getValue( k ), copy.getValue( k ), 0 );
+		}
+
+		// Further elements are set in the copy only:
+		copy.set( 2, 3, 5 );
+		Assert.assertEquals( 4, copy.getNonZeroCount() );
+		Assert.assertEquals( 3, matrix.getNonZeroCount() );
+
+		try
+		{
+			copy.set( 1, 1, 1 );
+			Assert.fail();
+		}
+		catch( IllegalArgumentException e )
+		{
+			// Copied elements may not be set again.
+		}
+	}
+
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test(expected = IllegalArgumentException.class)
+	public void setDuplicate() // throws Exception
+	{
+		final SparseMatrix matrix = new SparseMatrix( 2, 2 );
+		matrix.set( 1, 0, 1 );
+		matrix.set( 1, 0, 2 );
+	}
+
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test
+	public void setMany() // throws Exception
+	{
+		final int SIZE = 100;
+		final SparseMatrix matrix = new SparseMatrix( SIZE, SIZE );
+
+		for( int i = 0; i < SIZE; i++ )
+		{
+			for( int j = 0; j < SIZE; j++ )
+			{
+				matrix.set( i, j, i + j + 1 );
+			}
+		}
+
+		Assert.assertEquals( SIZE * SIZE, matrix.getNonZeroCount() );
+
+		for( int i = 0; i < SIZE; i++ )
+		{
+			try
+			{
+				matrix.set( i, SIZE - 1 - i, 1 );
+				Assert.fail();
+			}
+			catch( IllegalArgumentException e )
+			{
+				// Each element may be set at most once.
+			}
+		}
+	}
+
+	/**
+	 * 
+	 */
+	@SuppressWarnings("static-method")
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void setOutside() // throws Exception
+	{
+		new SparseMatrix( 2, 2 ).set( 0, 2, 1 );
+	}
+}